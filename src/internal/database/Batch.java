@@ -0,0 +1,251 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Batch.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.List;
+
+/*******************************************************************************
+ * This class holds a batch of up to SIZE consecutive tuples of a table in
+ * column vectors, for batch (vectorized) execution: integral attributes (see
+ * TupleCodec.integral, including dictionary codes) are loaded into long [],
+ * floating point ones into double [] and strings into String []. Only the
+ * attributes a query needs are loaded. Predicates are evaluated over whole
+ * vectors (see Condition.filter) and produce selection vectors, i.e., the
+ * positions within the batch of the tuples that qualify, so the inner loops
+ * run over primitive arrays and are left for the JIT to unroll/vectorize.
+ */
+@SuppressWarnings("rawtypes")
+public class Batch {
+	/**
+	 * The (maximum) number of tuples in a batch.
+	 */
+	public static final int SIZE = 1024;
+
+	/**
+	 * The selection vector selecting every tuple of a (full) batch.
+	 */
+	static final int[] ALL = new int[SIZE];
+
+	static {
+		for (int i = 0; i < SIZE; i++)
+			ALL[i] = i;
+	} // static
+
+	/**
+	 * The codec of the table the tuples come from (type codes, dictionaries).
+	 */
+	private final TupleCodec codec;
+
+	/**
+	 * The vector of each loaded attribute (null for the others).
+	 */
+	private final Object[] vector;
+
+	/**
+	 * The index (within the table) of the first tuple of the batch.
+	 */
+	int start;
+
+	/**
+	 * The number of tuples in the batch.
+	 */
+	int count;
+
+	/**
+	 * The selection vector produced by filtering the batch.
+	 */
+	final int[] sel = new int[SIZE];
+
+	/**
+	 * The reader used to load the tuples of a FileList (each batch has its
+	 * own, so batches can be loaded by different threads).
+	 */
+	private FileList.Reader reader = null;
+
+	/***************************************************************************
+	 * Construct a batch for tuples of the given layout, loading the needed
+	 * attributes only.
+	 *
+	 * @param _codec
+	 *            the codec of the table the tuples come from
+	 * @param needed
+	 *            which attributes to load
+	 */
+	public Batch(TupleCodec _codec, boolean[] needed) {
+		codec = _codec;
+		vector = new Object[needed.length];
+		for (int j = 0; j < needed.length; j++) {
+			if (!needed[j])
+				continue;
+			byte t = codec.type[j];
+			if (t == TupleCodec.STRING)
+				vector[j] = new String[SIZE];
+			else if (TupleCodec.integral(t))
+				vector[j] = new long[SIZE];
+			else
+				vector[j] = new double[SIZE];
+		} // for
+	} // constructor
+
+	/***************************************************************************
+	 * Load (up to SIZE of) the tuples from index _start to end - 1 of the
+	 * given list (a FileList or a ColumnList) into the batch.
+	 *
+	 * @param tuples
+	 *            the tuples of the table
+	 * @param _start
+	 *            the index of the first tuple to load
+	 * @param end
+	 *            the index past the last tuple that may be loaded
+	 * @return the number of tuples loaded
+	 */
+	public int load(List<Comparable[]> tuples, int _start, int end) {
+		start = _start;
+		count = Math.min(SIZE, end - start);
+
+		if (tuples instanceof FileList) {
+			if (reader == null)
+				reader = ((FileList) tuples).reader();
+			reader.load(start, count, codec, vector);
+			return count;
+		} // if
+
+		ColumnList list = (ColumnList) tuples;
+		for (int j = 0; j < vector.length; j++) {
+			if (vector[j] != null)
+				load(list.column(j), codec.type[j], vector[j]);
+		} // for
+		return count;
+	} // load
+
+	/***************************************************************************
+	 * Copy (widening) the values of a column segment for this batch's tuples
+	 * into a vector.
+	 *
+	 * @param segment
+	 *            the column segment
+	 * @param t
+	 *            the type code of the column
+	 * @param vec
+	 *            the vector to fill
+	 */
+	private void load(Object segment, byte t, Object vec) {
+		int n = count;
+		int s = start;
+		switch (t) {
+		case TupleCodec.BYTE: {
+			byte[] src = (byte[]) segment;
+			long[] dst = (long[]) vec;
+			for (int i = 0; i < n; i++)
+				dst[i] = src[s + i];
+			break;
+		}
+		case TupleCodec.SHORT: {
+			short[] src = (short[]) segment;
+			long[] dst = (long[]) vec;
+			for (int i = 0; i < n; i++)
+				dst[i] = src[s + i];
+			break;
+		}
+		case TupleCodec.INT:
+		case TupleCodec.DICT: {
+			int[] src = (int[]) segment;
+			long[] dst = (long[]) vec;
+			for (int i = 0; i < n; i++)
+				dst[i] = src[s + i];
+			break;
+		}
+		case TupleCodec.CHAR: {
+			char[] src = (char[]) segment;
+			long[] dst = (long[]) vec;
+			for (int i = 0; i < n; i++)
+				dst[i] = src[s + i];
+			break;
+		}
+		case TupleCodec.FLOAT: {
+			float[] src = (float[]) segment;
+			double[] dst = (double[]) vec;
+			for (int i = 0; i < n; i++)
+				dst[i] = src[s + i];
+			break;
+		}
+		case TupleCodec.DOUBLE:
+			System.arraycopy(segment, s, vec, 0, n);
+			break;
+		case TupleCodec.STRING:
+			System.arraycopy(segment, s, vec, 0, n);
+			break;
+		default: // LONG, TIMESTAMP, DECIMAL
+			System.arraycopy(segment, s, vec, 0, n);
+		}
+	} // load
+
+	/***************************************************************************
+	 * Return the long vector of the (integral) attribute j.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return its vector
+	 */
+	long[] longs(int j) {
+		return (long[]) vector[j];
+	} // longs
+
+	/***************************************************************************
+	 * Return the double vector of the (floating point) attribute j.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return its vector
+	 */
+	double[] doubles(int j) {
+		return (double[]) vector[j];
+	} // doubles
+
+	/***************************************************************************
+	 * Return the (boxed) value of attribute j of the ith tuple of the batch,
+	 * decoding dictionary codes.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @param i
+	 *            the position within the batch
+	 * @return the value
+	 */
+	Comparable value(int j, int i) {
+		Object vec = vector[j];
+		if (vec instanceof String[])
+			return ((String[]) vec)[i];
+		if (vec instanceof double[]) {
+			double d = ((double[]) vec)[i];
+			if (codec.type[j] == TupleCodec.FLOAT)
+				return (float) d;
+			return d;
+		} // if
+
+		long p = ((long[]) vec)[i];
+		switch (codec.type[j]) {
+		case TupleCodec.BYTE:
+			return (byte) p;
+		case TupleCodec.SHORT:
+			return (short) p;
+		case TupleCodec.INT:
+			return (int) p;
+		case TupleCodec.CHAR:
+			return (char) p;
+		case TupleCodec.DICT:
+			return codec.dictionary[j].decode((int) p);
+		case TupleCodec.TIMESTAMP:
+			return new Timestamp(p);
+		case TupleCodec.DECIMAL:
+			return new Decimal(p);
+		default:
+			return p;
+		}
+	} // value
+
+} // Batch class
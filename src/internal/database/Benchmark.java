@@ -0,0 +1,106 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Benchmark.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import org.apache.commons.math3.stat.descriptive.moment.Mean;
+import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
+
+import com.google.common.primitives.Doubles;
+
+/*******************************************************************************
+ * This class times the operations measured by the benchmarks (e.g.,
+ * TestBloomFilter): an operation runs a number of times, the warm-up runs are
+ * discarded, and the mean and standard error of the other runs are printed
+ * with the result of the operation (e.g., the number of tuples selected),
+ * which must be the same in every run.
+ */
+class Benchmark {
+	/**
+	 * The default number of runs, the first of which warms up.
+	 */
+	static final int RUNS = 6;
+
+	/***************************************************************************
+	 * Time an operation RUNS times, discarding the first run, and print the
+	 * times.
+	 *
+	 * @param label
+	 *            the name of the measured variant
+	 * @param op
+	 *            the operation, returning its result (e.g., a tuple count)
+	 * @return the result of the operation
+	 */
+	static int time(String label, IntSupplier op) {
+		return time(label, RUNS, 1, op);
+	} // time
+
+	/***************************************************************************
+	 * Time an operation runs times, discarding the first warmUp runs, and
+	 * print the times.
+	 *
+	 * @param label
+	 *            the name of the measured variant
+	 * @param runs
+	 *            the number of runs
+	 * @param warmUp
+	 *            the number of warm-up runs (less than runs)
+	 * @param op
+	 *            the operation, returning its result (e.g., a tuple count)
+	 * @return the result of the operation
+	 * @throws IllegalStateException
+	 *             if the result differs between runs
+	 */
+	static int time(String label, int runs, int warmUp, IntSupplier op) {
+		List<Double> results = new ArrayList<>();
+		int result = 0;
+		for (int run = 0; run < runs; run++) {
+			long beforeTime = System.nanoTime();
+			int r = op.getAsInt();
+			results.add((System.nanoTime() - beforeTime) / 1E6);
+			if (run > 0)
+				check(label, result, r);
+			result = r;
+		} // for
+
+		results.subList(0, warmUp).clear();
+		StandardDeviation stdDev = new StandardDeviation();
+		Mean mean = new Mean();
+
+		double stdErr = stdDev.evaluate(Doubles.toArray(results))
+				/ Math.sqrt(results.size());
+		double average = mean.evaluate(Doubles.toArray(results));
+
+		out.printf("  %-24s %9d  Average: %9.3f ms  Std Err: %7.3f ms%n",
+				label, result, average, stdErr);
+		return result;
+	} // time
+
+	/***************************************************************************
+	 * Check that two variants of an operation gave the same result.
+	 *
+	 * @param label
+	 *            the name of the operation
+	 * @param expected
+	 *            the result of the reference variant (e.g., a plain scan)
+	 * @param actual
+	 *            the result of the measured variant
+	 * @throws IllegalStateException
+	 *             if the results differ
+	 */
+	static void check(String label, int expected, int actual) {
+		if (expected != actual)
+			throw new IllegalStateException(label + ": mismatch " + actual
+					+ " != " + expected);
+	} // check
+
+} // Benchmark
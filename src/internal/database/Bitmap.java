@@ -0,0 +1,382 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Bitmap.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.Arrays;
+
+/*******************************************************************************
+ * This class provides compressed bitmaps over tuple positions, organized like
+ * Roaring bitmaps: positions are grouped by their high 16 bits into chunks of
+ * 65536, and each chunk holding any keeps them in a container of its own,
+ * either a sorted array of their low 16 bits (while it holds at most
+ * ARRAY_MAX, i.e., up to 8 KB) or a bitset of 1024 longs (8 KB, whatever it
+ * holds). Sparse chunks thus cost 2 bytes per position and dense ones 1 bit,
+ * and AND/OR combine two bitmaps chunk by chunk, merging arrays, probing
+ * bitsets with arrays or combining bitsets a word at a time.
+ */
+class Bitmap {
+	/**
+	 * The largest number of positions an array container holds.
+	 */
+	private static final int ARRAY_MAX = 4096;
+
+	/**
+	 * The number of longs in a bitset container.
+	 */
+	private static final int WORDS = 1024;
+
+	/**
+	 * The high 16 bits of the chunks (ascending), the container of each
+	 * (char [] or long []) and the number of positions in each.
+	 */
+	private char[] keys;
+	private Object[] containers;
+	private int[] cards;
+
+	/**
+	 * The number of chunks.
+	 */
+	private int size = 0;
+
+	/***************************************************************************
+	 * Construct an empty bitmap.
+	 */
+	Bitmap() {
+		this(4);
+	} // constructor
+
+	/***************************************************************************
+	 * Construct an empty bitmap with room for n chunks.
+	 */
+	private Bitmap(int n) {
+		keys = new char[Math.max(n, 1)];
+		containers = new Object[keys.length];
+		cards = new int[keys.length];
+	} // constructor
+
+	/***************************************************************************
+	 * Add a position to the bitmap (adding ascending positions is fastest).
+	 *
+	 * @param x
+	 *            the position (not negative)
+	 */
+	void add(int x) {
+		char high = (char) (x >>> 16);
+		char low = (char) x;
+		int k = (size > 0 && keys[size - 1] == high) ? size - 1 : find(high);
+		if (k < 0) {
+			k = -k - 1;
+			insert(k, high, new char[4], 0);
+		} // if
+
+		Object c = containers[k];
+		if (c instanceof long[]) {
+			long[] bits = (long[]) c;
+			long mask = 1L << low;
+			if ((bits[low >>> 6] & mask) == 0) {
+				bits[low >>> 6] |= mask;
+				cards[k]++;
+			} // if
+			return;
+		} // if
+
+		char[] a = (char[]) c;
+		int n = cards[k];
+		int i = (n > 0 && a[n - 1] < low) ? -n - 1 : Arrays.binarySearch(a, 0,
+				n, low);
+		if (i >= 0)
+			return;
+		i = -i - 1;
+		if (n == ARRAY_MAX) {
+			long[] bits = toBits(a, n);
+			bits[low >>> 6] |= 1L << low;
+			containers[k] = bits;
+			cards[k] = n + 1;
+			return;
+		} // if
+		if (n == a.length)
+			containers[k] = a = Arrays.copyOf(a, Math.min(2 * n, ARRAY_MAX));
+		System.arraycopy(a, i, a, i + 1, n - i);
+		a[i] = low;
+		cards[k] = n + 1;
+	} // add
+
+	/***************************************************************************
+	 * Return whether the bitmap holds a position.
+	 *
+	 * @param x
+	 *            the position
+	 * @return whether it is in the bitmap
+	 */
+	boolean contains(int x) {
+		int k = find((char) (x >>> 16));
+		if (k < 0)
+			return false;
+		char low = (char) x;
+		Object c = containers[k];
+		if (c instanceof long[])
+			return (((long[]) c)[low >>> 6] & (1L << low)) != 0;
+		return Arrays.binarySearch((char[]) c, 0, cards[k], low) >= 0;
+	} // contains
+
+	/***************************************************************************
+	 * Return the number of positions in the bitmap.
+	 *
+	 * @return the cardinality
+	 */
+	int cardinality() {
+		int n = 0;
+		for (int k = 0; k < size; k++)
+			n += cards[k];
+		return n;
+	} // cardinality
+
+	/***************************************************************************
+	 * Return the positions in both this bitmap and bitmap b.
+	 *
+	 * @param b
+	 *            the other bitmap
+	 * @return their intersection (a new bitmap)
+	 */
+	Bitmap and(Bitmap b) {
+		Bitmap r = new Bitmap(Math.min(size, b.size));
+		for (int i = 0, j = 0; i < size && j < b.size;) {
+			if (keys[i] < b.keys[j]) {
+				i++;
+			} else if (keys[i] > b.keys[j]) {
+				j++;
+			} else {
+				r.append(keys[i], and(containers[i], cards[i],
+						b.containers[j], b.cards[j]));
+				i++;
+				j++;
+			} // if
+		} // for
+		return r;
+	} // and
+
+	/***************************************************************************
+	 * Return the positions in this bitmap or bitmap b.
+	 *
+	 * @param b
+	 *            the other bitmap
+	 * @return their union (a new bitmap)
+	 */
+	Bitmap or(Bitmap b) {
+		Bitmap r = new Bitmap(size + b.size);
+		int i = 0, j = 0;
+		while (i < size || j < b.size) {
+			if (j == b.size || (i < size && keys[i] < b.keys[j])) {
+				r.append(keys[i], copy(containers[i], cards[i]));
+				i++;
+			} else if (i == size || keys[i] > b.keys[j]) {
+				r.append(b.keys[j], copy(b.containers[j], b.cards[j]));
+				j++;
+			} else {
+				r.append(keys[i], or(containers[i], cards[i],
+						b.containers[j], b.cards[j]));
+				i++;
+				j++;
+			} // if
+		} // while
+		return r;
+	} // or
+
+	/***************************************************************************
+	 * Return a copy of this bitmap.
+	 *
+	 * @return the copy
+	 */
+	Bitmap copy() {
+		Bitmap r = new Bitmap(size);
+		for (int k = 0; k < size; k++)
+			r.append(keys[k], copy(containers[k], cards[k]));
+		return r;
+	} // copy
+
+	/***************************************************************************
+	 * Return the positions below limit in ascending order.
+	 *
+	 * @param limit
+	 *            the position past the last one returned
+	 * @return the positions
+	 */
+	int[] toArray(int limit) {
+		int[] out = new int[cardinality()];
+		int m = 0;
+		for (int k = 0; k < size; k++) {
+			int base = keys[k] << 16;
+			if (base >= limit)
+				break;
+			Object c = containers[k];
+			if (c instanceof long[]) {
+				long[] bits = (long[]) c;
+				for (int w = 0; w < WORDS; w++) {
+					for (long word = bits[w]; word != 0; word &= word - 1)
+						out[m++] = base + (w << 6)
+								+ Long.numberOfTrailingZeros(word);
+				} // for
+			} else {
+				char[] a = (char[]) c;
+				for (int i = 0; i < cards[k]; i++)
+					out[m++] = base + a[i];
+			} // if
+		} // for
+		while (m > 0 && out[m - 1] >= limit)
+			m--;
+		return Arrays.copyOf(out, m);
+	} // toArray
+
+	/***************************************************************************
+	 * Return the chunk with the given high bits, or -(insertion point) - 1.
+	 */
+	private int find(char high) {
+		return Arrays.binarySearch(keys, 0, size, high);
+	} // find
+
+	/***************************************************************************
+	 * Insert a chunk at index k.
+	 */
+	private void insert(int k, char high, Object c, int card) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, 2 * size);
+			containers = Arrays.copyOf(containers, 2 * size);
+			cards = Arrays.copyOf(cards, 2 * size);
+		} // if
+		System.arraycopy(keys, k, keys, k + 1, size - k);
+		System.arraycopy(containers, k, containers, k + 1, size - k);
+		System.arraycopy(cards, k, cards, k + 1, size - k);
+		keys[k] = high;
+		containers[k] = c;
+		cards[k] = card;
+		size++;
+	} // insert
+
+	/***************************************************************************
+	 * Append a chunk given as its container and cardinality (see and, or and
+	 * copy), unless it is empty.
+	 */
+	private void append(char high, Object[] cc) {
+		int card = (Integer) cc[1];
+		if (card > 0)
+			insert(size, high, cc[0], card);
+	} // append
+
+	/***************************************************************************
+	 * Return the intersection of two containers with their cardinality.
+	 */
+	private static Object[] and(Object c1, int n1, Object c2, int n2) {
+		if (c1 instanceof char[] && c2 instanceof char[]) {
+			char[] a = (char[]) c1, b = (char[]) c2;
+			char[] r = new char[Math.min(n1, n2)];
+			int m = 0;
+			for (int i = 0, j = 0; i < n1 && j < n2;) {
+				if (a[i] < b[j]) {
+					i++;
+				} else if (a[i] > b[j]) {
+					j++;
+				} else {
+					r[m++] = a[i];
+					i++;
+					j++;
+				} // if
+			} // for
+			return new Object[] { r, m };
+		} // if
+		if (c1 instanceof long[] && c2 instanceof long[]) {
+			long[] a = (long[]) c1, b = (long[]) c2;
+			long[] r = new long[WORDS];
+			int m = 0;
+			for (int w = 0; w < WORDS; w++)
+				m += Long.bitCount(r[w] = a[w] & b[w]);
+			return new Object[] { (m <= ARRAY_MAX) ? toArray(r, m) : r, m };
+		} // if
+
+		char[] a = (char[]) ((c1 instanceof char[]) ? c1 : c2);
+		long[] bits = (long[]) ((c1 instanceof char[]) ? c2 : c1);
+		int n = (c1 instanceof char[]) ? n1 : n2;
+		char[] r = new char[n];
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			if ((bits[a[i] >>> 6] & (1L << a[i])) != 0)
+				r[m++] = a[i];
+		} // for
+		return new Object[] { r, m };
+	} // and
+
+	/***************************************************************************
+	 * Return the union of two containers with their cardinality.
+	 */
+	private static Object[] or(Object c1, int n1, Object c2, int n2) {
+		if (c1 instanceof char[] && c2 instanceof char[]
+				&& n1 + n2 <= ARRAY_MAX) {
+			char[] a = (char[]) c1, b = (char[]) c2;
+			char[] r = new char[n1 + n2];
+			int m = 0, i = 0, j = 0;
+			while (i < n1 || j < n2) {
+				if (j == n2 || (i < n1 && a[i] < b[j]))
+					r[m++] = a[i++];
+				else if (i == n1 || a[i] > b[j])
+					r[m++] = b[j++];
+				else {
+					r[m++] = a[i++];
+					j++;
+				} // if
+			} // while
+			return new Object[] { r, m };
+		} // if
+
+		long[] r = (c1 instanceof long[]) ? ((long[]) c1).clone() : toBits(
+				(char[]) c1, n1);
+		if (c2 instanceof long[]) {
+			long[] b = (long[]) c2;
+			for (int w = 0; w < WORDS; w++)
+				r[w] |= b[w];
+		} else {
+			char[] b = (char[]) c2;
+			for (int i = 0; i < n2; i++)
+				r[b[i] >>> 6] |= 1L << b[i];
+		} // if
+		int m = 0;
+		for (int w = 0; w < WORDS; w++)
+			m += Long.bitCount(r[w]);
+		return new Object[] { (m <= ARRAY_MAX) ? toArray(r, m) : r, m };
+	} // or
+
+	/***************************************************************************
+	 * Return a copy of a container with its cardinality.
+	 */
+	private static Object[] copy(Object c, int n) {
+		if (c instanceof long[])
+			return new Object[] { ((long[]) c).clone(), n };
+		return new Object[] { Arrays.copyOf((char[]) c, n), n };
+	} // copy
+
+	/***************************************************************************
+	 * Convert an array container into a bitset container.
+	 */
+	private static long[] toBits(char[] a, int n) {
+		long[] bits = new long[WORDS];
+		for (int i = 0; i < n; i++)
+			bits[a[i] >>> 6] |= 1L << a[i];
+		return bits;
+	} // toBits
+
+	/***************************************************************************
+	 * Convert a bitset container holding n positions into an array container.
+	 */
+	private static char[] toArray(long[] bits, int n) {
+		char[] a = new char[Math.max(n, 1)];
+		int m = 0;
+		for (int w = 0; w < WORDS; w++) {
+			for (long word = bits[w]; word != 0; word &= word - 1)
+				a[m++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+		} // for
+		return a;
+	} // toArray
+
+} // Bitmap class
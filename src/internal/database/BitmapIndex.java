@@ -0,0 +1,138 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  BitmapIndex.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*******************************************************************************
+ * This class provides the bitmap index of an attribute: for each distinct
+ * value, the positions of the tuples holding it as a Bitmap. Values are kept
+ * as they are compared by conditions (see Condition): longs for integral
+ * attributes, codes for dictionary encoded ones, doubles for floating point
+ * ones and Strings otherwise. A comparison of the attribute with a literal is
+ * answered by OR-ing the bitmaps of the values satisfying it, which is cheap
+ * as long as the attribute has few distinct values (e.g., sex or a category).
+ * Dictionary codes are not ordered like their strings, so only equality is
+ * answered for them.
+ *
+ * Tuples are added by one thread at a time, while selections may run
+ * concurrently.
+ */
+class BitmapIndex {
+	/**
+	 * The position of the attribute.
+	 */
+	private final int col;
+
+	/**
+	 * The type code of the attribute (see TupleCodec).
+	 */
+	private final byte type;
+
+	/**
+	 * The bitmap of each distinct value.
+	 */
+	private final Map<Object, Bitmap> bitmaps = new HashMap<>();
+
+	/**
+	 * The number of tuples indexed.
+	 */
+	private int size = 0;
+
+	/***************************************************************************
+	 * Construct an empty index.
+	 *
+	 * @param _col
+	 *            the position of the attribute
+	 * @param _type
+	 *            the type code of the attribute (see TupleCodec.type)
+	 */
+	BitmapIndex(int _col, byte _type) {
+		col = _col;
+		type = _type;
+	} // constructor
+
+	/***************************************************************************
+	 * Return the number of tuples indexed.
+	 *
+	 * @return the number of tuples
+	 */
+	synchronized int size() {
+		return size;
+	} // size
+
+	/***************************************************************************
+	 * Add the next tuple of the table to the bitmap of its value.
+	 *
+	 * @param v
+	 *            the view over the tuple
+	 */
+	synchronized void add(TupleView v) {
+		Object value;
+		if (type == TupleCodec.DICT)
+			value = (long) v.code(col);
+		else if (TupleCodec.integral(type))
+			value = v.getLong(col);
+		else if (type == TupleCodec.STRING)
+			value = v.get(col);
+		else
+			value = v.getDouble(col);
+
+		Bitmap b = bitmaps.get(value);
+		if (b == null)
+			bitmaps.put(value, b = new Bitmap());
+		b.add(size++);
+	} // add
+
+	/***************************************************************************
+	 * Return the positions of the tuples whose attribute satisfies the
+	 * comparison c (of this attribute with a literal).
+	 *
+	 * @param c
+	 *            the comparison
+	 * @return the positions (a new bitmap), or null if the index cannot answer
+	 *         the comparison
+	 */
+	synchronized Bitmap select(Condition c) {
+		Object lit;
+		if (c.kind == Condition.COL_CODE && type == TupleCodec.DICT)
+			lit = (long) c.code;
+		else if (c.kind == Condition.COL_LONG && TupleCodec.integral(type))
+			lit = c.longValue;
+		else if (c.kind == Condition.COL_DOUBLE && type != TupleCodec.STRING
+				&& type != TupleCodec.DICT)
+			lit = c.doubleValue;
+		else if (c.kind == Condition.COL_LIT && type == TupleCodec.STRING)
+			lit = c.value;
+		else
+			return null;
+
+		if (c.op == Condition.EQ) {
+			Bitmap b = bitmaps.get(lit);
+			return (b == null) ? new Bitmap() : b.copy();
+		} // if
+
+		Bitmap r = new Bitmap();
+		for (Map.Entry<Object, Bitmap> e : bitmaps.entrySet()) {
+			int cmp = (type == TupleCodec.DICT) ? (e.getKey().equals(lit) ? 0
+					: 1) : compare(e.getKey(), lit);
+			if (Condition.test(c.op, cmp))
+				r = r.or(e.getValue());
+		} // for
+		return r;
+	} // select
+
+	/***************************************************************************
+	 * Compare an indexed value with a literal of the same kind.
+	 */
+	@SuppressWarnings("unchecked")
+	private static int compare(Object value, Object lit) {
+		return ((Comparable<Object>) value).compareTo(lit);
+	} // compare
+
+} // BitmapIndex class
@@ -0,0 +1,138 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  BloomFilter.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+/*******************************************************************************
+ * This class provides split block Bloom filters over 64-bit hashes: the
+ * filter is an array of 256-bit blocks (8 ints), the high half of a hash
+ * picks the block and its low half, multiplied by 8 odd salts, picks one bit
+ * in each int of the block. Adding or probing a hash therefore touches a
+ * single cache line. A probe never misses a hash that was added and, filled
+ * up to its capacity (BITS_PER_KEY bits per hash), reports a hash that was
+ * not added with a probability below 1%, so it cheaply rules out most keys a
+ * lookup would not find.
+ *
+ * Hashes are added by a single writer at a time, while probes may run
+ * concurrently (a probe racing an add may miss the hash being added).
+ */
+class BloomFilter {
+	/**
+	 * The number of bits per hash at capacity.
+	 */
+	private static final int BITS_PER_KEY = 12;
+
+	/**
+	 * The salts picking the bit in each int of a block.
+	 */
+	private static final int[] SALT = { 0x47b6137b, 0x44974d91, 0x8824ad5b,
+			0xa2b7289d, 0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31 };
+
+	/**
+	 * The blocks, 8 ints each.
+	 */
+	private final int[] words;
+
+	/**
+	 * The number of blocks.
+	 */
+	private final int nBlocks;
+
+	/**
+	 * The number of hashes the filter is sized for.
+	 */
+	private final int capacity;
+
+	/**
+	 * The number of hashes added.
+	 */
+	private int count = 0;
+
+	/***************************************************************************
+	 * Construct an empty filter.
+	 *
+	 * @param _capacity
+	 *            the number of hashes to size the filter for
+	 */
+	BloomFilter(int _capacity) {
+		capacity = Math.max(_capacity, 64);
+		nBlocks = (int) ((long) capacity * BITS_PER_KEY / 256) + 1;
+		words = new int[8 * nBlocks];
+	} // constructor
+
+	/***************************************************************************
+	 * Add a hash to the filter.
+	 *
+	 * @param h
+	 *            the hash (see hash)
+	 * @return whether the filter is still within its capacity (beyond it, it
+	 *         still works but reports more false positives)
+	 */
+	boolean add(long h) {
+		int base = block(h);
+		int key = (int) h;
+		for (int i = 0; i < 8; i++)
+			words[base + i] |= 1 << ((key * SALT[i]) >>> 27);
+		return ++count <= capacity;
+	} // add
+
+	/***************************************************************************
+	 * Return whether a hash may have been added to the filter.
+	 *
+	 * @param h
+	 *            the hash (see hash)
+	 * @return false if the hash was certainly not added
+	 */
+	boolean mightContain(long h) {
+		int base = block(h);
+		int key = (int) h;
+		for (int i = 0; i < 8; i++) {
+			if ((words[base + i] & (1 << ((key * SALT[i]) >>> 27))) == 0)
+				return false;
+		} // for
+		return true;
+	} // mightContain
+
+	/***************************************************************************
+	 * Return the first int of the block of a hash (its high half scaled to
+	 * the number of blocks).
+	 */
+	private int block(long h) {
+		return (int) (((h >>> 32) * nBlocks) >>> 32) << 3;
+	} // block
+
+	/***************************************************************************
+	 * Hash a long (the murmur3 64-bit finalizer).
+	 *
+	 * @param v
+	 *            the value
+	 * @return the hash
+	 */
+	static long hash(long v) {
+		v ^= v >>> 33;
+		v *= 0xff51afd7ed558ccdL;
+		v ^= v >>> 33;
+		v *= 0xc4ceb9fe1a85ec53L;
+		v ^= v >>> 33;
+		return v;
+	} // hash
+
+	/***************************************************************************
+	 * Hash a byte string, e.g., the normalized encoding of a key (FNV-1a,
+	 * finalized so all bits are mixed).
+	 *
+	 * @param b
+	 *            the bytes
+	 * @return the hash
+	 */
+	static long hash(byte[] b) {
+		long h = 0xcbf29ce484222325L;
+		for (byte c : b)
+			h = (h ^ (c & 0xff)) * 0x100000001b3L;
+		return hash(h);
+	} // hash
+
+} // BloomFilter class
@@ -9,37 +9,68 @@ package internal.database;
 import static java.lang.System.out;
 
 import java.io.Serializable;
-import java.lang.reflect.Array;
 import java.util.AbstractMap;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Random;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.TreeMap;
 
-import org.apache.commons.math3.stat.descriptive.moment.Mean;
-import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
-
-import com.google.common.primitives.Doubles;
-
 /*******************************************************************************
  * This class provides B+Tree maps. B+Trees are used as multi-level index
  * structures that provide efficient access for both point queries and range
  * queries.
+ *
+ * Keys are stored by their normalized encoding (see KeyType.bytes), whose
+ * unsigned byte order is the key order, and nodes are sized in bytes rather
+ * than keys, so a node holds as many keys as fit in NODE_BYTES:
+ *
+ * - every node stores the prefix its keys have in common once, followed by
+ *   the remaining suffixes back to back in a single byte array, so keys such
+ *   as "ProdId1317843433" or "https://www.facebook.com/posts/..." cost little
+ *   more than their distinguishing bytes;
+ *
+ * - a leaf split posts the shortest separator between the two halves (the
+ *   first key of the right half truncated just past where it differs from
+ *   the last key of the left half), so internal nodes hold short separators
+ *   and fan out widely.
+ *
+ * Keys are decoded back into K only when they are returned (entrySet, firstKey,
+ * headMap, ...), so lookups and inserts compare bytes without allocating.
  */
 @SuppressWarnings("all")
 public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 		implements Serializable, Cloneable, SortedMap<K, V> {
 	/**
-	 * The maximum fanout for a B+Tree node.
+	 * The maximum size of a node in bytes: its prefix, its suffixes and
+	 * SLOT_BYTES per key. A node growing beyond it splits.
+	 */
+	private static final int NODE_BYTES = 4096;
+
+	/**
+	 * The bytes a key costs besides its suffix (its offset and reference).
+	 */
+	private static final int SLOT_BYTES = 8;
+
+	/**
+	 * The fewest keys a node splits with (so both halves keep keys after an
+	 * internal node promotes one).
+	 */
+	private static final int MIN_SPLIT = 4;
+
+	/**
+	 * The number of keys a new node has room for (it grows as needed).
+	 */
+	private static final int CAPACITY = 8;
+
+	/**
+	 * The empty prefix.
 	 */
-	private static final int ORDER = 5;
+	private static final byte[] EMPTY = new byte[0];
 
 	/**
 	 * The class for type K.
@@ -51,40 +82,86 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	 */
 	private final Class<V> classV;
 
+	/**
+	 * The domains of the attributes of the keys (to decode them), learned
+	 * from the first key put when the keys are KeyTypes.
+	 */
+	private Class<?>[] domain = null;
+
 	/***************************************************************************
-	 * This inner class defines nodes that are stored in the B+tree map.
+	 * This inner class defines nodes that are stored in the B+tree map. Key i
+	 * is prefix followed by data [offset [i], offset [i + 1]). A leaf holds
+	 * the value of key i in ref [i], an internal node the children in ref [0]
+	 * to ref [nKeys], the keys in child i being less than key i and those in
+	 * child i + 1 greater than or equal to it.
 	 * 
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	private class Node {
 		boolean isLeaf;
-		int nKeys;
-		K[] key;
+		int nKeys = 0;
+		byte[] prefix = EMPTY;
+		byte[] data;
+		int[] offset;
 		Object[] ref;
-		
-		Node parent;
-		Node left = null;
+
 		Node right = null;
 
-		@SuppressWarnings("unchecked")
-		Node(boolean _isLeaf) {
+		Node(boolean _isLeaf, int capacity, int dataSize) {
 			isLeaf = _isLeaf;
-			nKeys = 0;
-			key = (K[]) Array.newInstance(classK, ORDER - 1);
-			if (isLeaf) {
-				// ref = (V []) Array.newInstance (classV, ORDER);
-				ref = new Object[ORDER];
-			} else {
-				ref = (Node[]) Array.newInstance(Node.class, ORDER);
-			} // if
+			data = new byte[dataSize];
+			offset = new int[capacity + 1];
+			ref = new Object[capacity + 1];
 		} // constructor
+
+		/**
+		 * Return the size of the node in bytes (see NODE_BYTES).
+		 */
+		int size() {
+			return prefix.length + offset[nKeys] + SLOT_BYTES * nKeys;
+		} // size
+
+		/**
+		 * Return key i (its prefix and suffix).
+		 */
+		byte[] key(int i) {
+			int from = offset[i];
+			int length = offset[i + 1] - from;
+			byte[] k = Arrays.copyOf(prefix, prefix.length + length);
+			System.arraycopy(data, from, k, prefix.length, length);
+			return k;
+		} // key
 	} // Node inner class
 
+	/***************************************************************************
+	 * This inner class holds the result of splitting a node: the separator to
+	 * post in the parent and the new right sibling.
+	 */
+	private class Split {
+		byte[] key;
+		Node node;
+
+		Split(byte[] _key, Node _node) {
+			key = _key;
+			node = _node;
+		} // constructor
+	} // Split inner class
+
 	/**
 	 * The root of the B+Tree
 	 */
 	private Node root;
 
+	/**
+	 * The number of keys in the B+Tree.
+	 */
+	private int nEntries = 0;
+
+	/**
+	 * The value a put replaced (null if it added a key).
+	 */
+	private Object replaced;
+
 	/**
 	 * The counter for the number nodes accessed (for performance testing).
 	 */
@@ -101,7 +178,9 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	public BpTree(Class<K> _classK, Class<V> _classV) {
 		classK = _classK;
 		classV = _classV;
-		root = new Node(true);
+		if (classK != KeyType.class)
+			domain = new Class<?>[] { classK };
+		root = new Node(true, CAPACITY, 64);
 	} // BpTree
 
 	/***************************************************************************
@@ -113,26 +192,20 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	} // comparator
 
 	/***************************************************************************
-	 * Return a set containing all the entries as pairs of keys and values.
+	 * Return a set containing all the entries as pairs of keys and values (in
+	 * key order).
 	 * 
 	 * @return the set view of the map
 	 * 
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	public Set<Map.Entry<K, V>> entrySet() {
-		Set<Map.Entry<K, V>> enSet = new HashSet<>();
-
-		Node smallest = root;
-		while (!smallest.isLeaf){
-			smallest = (Node) smallest.ref[0];
-		}
-
-		while (smallest != null){
-			for (int i = 0; i < smallest.nKeys; i++){
-				enSet.add(new SimpleEntry(smallest.key[i], smallest.ref[i]));
-			}
-			smallest = smallest.right;
-		}
+		Set<Map.Entry<K, V>> enSet = new LinkedHashSet<>();
+		for (Node n = leftmost(); n != null; n = n.right) {
+			for (int i = 0; i < n.nKeys; i++)
+				enSet.add(new SimpleEntry<>(decode(n.key(i)),
+						classV.cast(n.ref[i])));
+		} // for
 		return enSet;
 	} // entrySet
 
@@ -145,25 +218,55 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	 * 
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
-	@SuppressWarnings("unchecked")
 	public V get(Object key) {
-		return find((K) key, root);
+		byte[] k = encode(key);
+		Node n = root;
+		for (count++; !n.isLeaf; count++)
+			n = child(n, k);
+		int i = search(n, k);
+		return (i >= 0) ? (V) n.ref[i] : null;
 	} // get
 
 	/***************************************************************************
-	 * Put the key-value pair in the B+Tree map.
+	 * Return whether the key is in the B+Tree map.
+	 * 
+	 * @param key
+	 *            the key used for look up
+	 * @return whether it is in the map
+	 */
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	} // containsKey
+
+	/***************************************************************************
+	 * Put the key-value pair in the B+Tree map (replacing the value of the key
+	 * if it is already in the map).
 	 * 
 	 * @param key
 	 *            the key to insert
 	 * @param value
 	 *            the value to insert
-	 * @return null (not the previous value)
+	 * @return the previous value of the key (null if it was not in the map)
 	 * 
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	public V put(K key, V value) {
-		insert(key, value, root, null);
-		return null;
+		if (domain == null) {
+			Comparable<?>[] values = ((KeyType) key).key;
+			domain = new Class<?>[values.length];
+			for (int j = 0; j < values.length; j++)
+				domain[j] = values[j].getClass();
+		} // if
+
+		replaced = null;
+		Split s = insert(encode(key), value, root);
+		if (s != null) {
+			Node newRoot = new Node(false, CAPACITY, 64);
+			newRoot.ref[0] = root;
+			wedge(newRoot, 0, s.key, s.node);
+			root = newRoot;
+		} // if
+		return (V) replaced;
 	} // put
 
 	/***************************************************************************
@@ -174,12 +277,9 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	public K firstKey() {
-		Node smallest = root;
-		while (!smallest.isLeaf){
-			smallest = (Node) smallest.ref[0];
-		}
-		
-		return smallest.key[0];
+		if (nEntries == 0)
+			throw new NoSuchElementException();
+		return decode(leftmost().key(0));
 	} // firstKey
 
 	/***************************************************************************
@@ -190,12 +290,12 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	public K lastKey() {
+		if (nEntries == 0)
+			throw new NoSuchElementException();
 		Node biggest = root;
-		while (!biggest.isLeaf){
+		while (!biggest.isLeaf)
 			biggest = (Node) biggest.ref[biggest.nKeys];
-		}
-		
-		return biggest.key[biggest.nKeys - 1];
+		return decode(biggest.key(biggest.nKeys - 1));
 	} // lastKey
 
 	/***************************************************************************
@@ -206,42 +306,7 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	public SortedMap<K, V> headMap(K toKey) {
-
-		Node current = root;
-		while (!current.isLeaf){
-			boolean found = false;
-			for (int i = 0; i < current.nKeys; i++){
-				if (toKey.compareTo(current.key[i]) >= 0){
-					current = (Node) current.ref[i + 1];
-					found = true;
-					break;
-				}
-			}
-			if (!found){
-				current = (Node) current.ref[0];
-			}
-		}
-
-		SortedMap<K, V> results = new TreeMap<>();
-		for (int i = 0; i < current.nKeys; i++){
-			if (current.key[i].compareTo(toKey) < 0){
-				results.put(current.key[i], (V) current.ref[i]);
-				continue;
-			}
-			break;
-		}
-		
-		current = current.left;
-		
-		while(current != null){
-			for (int i = 0; i < current.nKeys; i++){
-				results.put(current.key[i], (V) current.ref[i]);
-			}
-			
-			current = current.left;
-		}
-		
-		return results;
+		return range(null, encode(toKey));
 	} // headMap
 
 	/***************************************************************************
@@ -252,40 +317,7 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	public SortedMap<K, V> tailMap(K fromKey) {
-		Node current = root;
-		while (!current.isLeaf){
-			boolean found = false;
-			for (int i = 0; i < current.nKeys; i++){
-				if (fromKey.compareTo(current.key[i]) >= 0){
-					current = (Node) current.ref[i + 1];
-					found = true;
-					break;
-				}
-			}
-			if (!found){
-				current = (Node) current.ref[0];
-			}
-		}
-
-		SortedMap<K, V> results = new TreeMap<>();
-		for (int i = 0; i < current.nKeys; i++){
-			if (current.key[i].compareTo(fromKey) >= 0){
-				results.put(current.key[i], (V) current.ref[i]);
-				continue;
-			}
-		}
-		
-		current = current.right;
-		
-		while(current != null){
-			for (int i = 0; i < current.nKeys; i++){
-				results.put(current.key[i], (V) current.ref[i]);
-			}
-			
-			current = current.right;
-		}
-		
-		return results;
+		return range(encode(fromKey), null);
 	} // tailMap
 
 	/***************************************************************************
@@ -297,12 +329,34 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	public SortedMap<K, V> subMap(K fromKey, K toKey) {
-		SortedMap head = headMap(toKey);
-		SortedMap tail = tailMap(fromKey);
-		head.keySet().retainAll(tail.keySet());
-		return head;
+		return range(encode(fromKey), encode(toKey));
 	} // subMap
 
+	/***************************************************************************
+	 * Return the portion of the B+Tree map whose keys start with a string,
+	 * i.e., whose first attribute has the given prefix. Their encodings all
+	 * start with the encoding of the prefix (without its terminator), so they
+	 * are the keys from it up to its successor (the encoding with its last
+	 * byte below 0xff incremented), and only those leaves are scanned.
+	 * 
+	 * @param prefix
+	 *            the prefix (not empty)
+	 * @return the submap with keys starting with the prefix
+	 */
+	public SortedMap<K, V> prefixMap(String prefix) {
+		byte[] from = KeyType.encode(new Comparable<?>[] { prefix });
+		from = Arrays.copyOf(from, from.length - 2);
+		int n = from.length;
+		while (n > 0 && from[n - 1] == (byte) 0xff)
+			n--;
+		byte[] to = null;
+		if (n > 0) {
+			to = Arrays.copyOf(from, n);
+			to[n - 1]++;
+		} // if
+		return range(from, to);
+	} // prefixMap
+
 	/***************************************************************************
 	 * Return the size (number of keys) in the B+Tree.
 	 * 
@@ -311,23 +365,25 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	public int size() {
-		int sum = 0;
-
-		Node smallest = root;
-		while (!smallest.isLeaf){
-			smallest = (Node) smallest.ref[0];
-		}
-		
-		while(smallest != null){
-			sum += smallest.nKeys;
-			smallest = smallest.right;
-		}
-		
-		return sum;
+		return nEntries;
 	} // size
 
 	/***************************************************************************
-	 * Print the B+Tree using a pre-order traveral and indenting each level.
+	 * Return the height (number of levels) of the B+Tree.
+	 * 
+	 * @return the height of the B+Tree
+	 */
+	public int height() {
+		int h = 1;
+		for (Node n = root; !n.isLeaf; n = (Node) n.ref[0])
+			h++;
+		return h;
+	} // height
+
+	/***************************************************************************
+	 * Print the B+Tree using a pre-order traveral and indenting each level
+	 * (the keys of leaves decoded, the separators of internal nodes as their
+	 * prefix and suffixes in hex).
 	 * 
 	 * @param n
 	 *            the current node to print
@@ -336,318 +392,395 @@ public class BpTree<K extends Comparable<K>, V> extends AbstractMap<K, V>
 	 *  
 	 *  @Author: Sina, Arash, Navid, Sambitesh
 	 */
-	@SuppressWarnings("unchecked")
 	private void print(Node n, int level) {
-		out.println("BpTree");
-		out.println("-------------------------------------------");
+		if (level == 0) {
+			out.println("BpTree");
+			out.println("-------------------------------------------");
+		} // if
 
 		for (int j = 0; j < level; j++)
 			out.print("\t");
 		out.print("[ . ");
-		for (int i = 0; i < n.nKeys; i++)
-			out.print(n.key[i] + " . ");
+		for (int i = 0; i < n.nKeys; i++) {
+			if (n.isLeaf) {
+				out.print(decode(n.key(i)) + " . ");
+			} else {
+				out.print(hex(n.prefix, 0, n.prefix.length) + "|"
+						+ hex(n.data, n.offset[i], n.offset[i + 1]) + " . ");
+			} // if
+		} // for
 		out.println("]");
 		if (!n.isLeaf) {
 			for (int i = 0; i <= n.nKeys; i++)
 				print((Node) n.ref[i], level + 1);
 		} // if
 
-		out.println("-------------------------------------------");
+		if (level == 0)
+			out.println("-------------------------------------------");
 	} // print
 
 	/***************************************************************************
-	 * Recursive helper function for finding a key in B+trees.
+	 * Recursive helper function for inserting a key in B+trees.
 	 * 
 	 * @param key
-	 *            the key to find
-	 * @param ney
+	 *            the key to insert (encoded)
+	 * @param ref
+	 *            the value to insert
+	 * @param n
 	 *            the current node
-	 * 
+	 * @return the split of n if it overflowed (null otherwise)
+	 *
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
-	@SuppressWarnings("unchecked")
-	private V find(K key, Node n) {
-		count++;
-		boolean found = false;
-		for (int i = 0; i < n.nKeys; i++) {
-			K k_i = n.key[i];
-			
-			if (n.isLeaf){
-				if (key.compareTo(k_i) <= 0){
-					return (key.equals(k_i)) ? (V) n.ref[i] : null;
-				}
-			}else{
-				if (key.compareTo(k_i) < 0){
-					return find(key, (Node) n.ref[i]);
-				}else{
-					return find(key, (Node) n.ref[i + 1]);
-				}
-			}
-		} // for
-		return (n.isLeaf) ? null : find(key, (Node) n.ref[n.nKeys]);
-	} // find
+	private Split insert(byte[] key, V ref, Node n) {
+		int i = search(n, key);
+		if (n.isLeaf) {
+			if (i >= 0) {
+				replaced = n.ref[i];
+				n.ref[i] = ref;
+				return null;
+			} // if
+			wedge(n, -i - 1, key, ref);
+			nEntries++;
+		} else {
+			int c = (i >= 0) ? i + 1 : -i - 1;
+			Split s = insert(key, ref, (Node) n.ref[c]);
+			if (s == null)
+				return null;
+			// the separator lies strictly between the keys around child c
+			wedge(n, c, s.key, s.node);
+		} // if
+
+		return (n.size() > NODE_BYTES && n.nKeys >= MIN_SPLIT) ? split(n) : null;
+	} // insert
 
 	/***************************************************************************
-	 * Recursive helper function for inserting a key in B+trees.
+	 * Wedge the key-ref pair into node n at position i (for an internal node
+	 * the reference is the child to the right of the key). If the key does not
+	 * start with the node's prefix, the prefix is shortened first.
 	 * 
+	 * @param n
+	 *            the current node
+	 * @param i
+	 *            the insertion position within node n
 	 * @param key
-	 *            the key to insert
+	 *            the key to insert (encoded)
 	 * @param ref
 	 *            the value/node to insert
-	 * @param n
-	 *            the current node
-	 * @param p
-	 *            the parent node
 	 *
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
-	private void insert(K key, V ref, Node n, Node p) {
-		
-		if (n.isLeaf){
-
-			boolean inserted = false;
-			if (n.nKeys < ORDER - 1){
-				for (int i = 0; i < n.nKeys; i++){
-					if (key.compareTo(n.key[i]) < 0){
-						wedge(key, ref, n, i);
-						inserted = true;
-						break;
-					}else if (key.compareTo(n.key[i]) == 0 ){
-						out.println("BpTree:insert: attempt to insert duplicate key = " + key);
-					}
-				}
-				if (!inserted){
-					wedge(key, ref, n, n.nKeys);
-				}
-			}else {
-				Node newNode = split(key, ref, n);
-				K tempKey;
-				Node rightRef;
-				Node leftRef;
-				
-				Node temp = n.right;
-				n.right = newNode;
-				newNode.left = n;
-				newNode.right = temp;
-				
-				tempKey = newNode.key[0];
-				leftRef = n;
-				rightRef = newNode;
-
-				if (p == null){
-					Node parent = new Node(false);
-					p = parent;
-					root = parent;
-					n.parent = parent;
-					newNode.parent = parent;
-					
-					parent.ref[0] = n;
-					insertIntoParent(tempKey, leftRef, rightRef, parent);
-				}else{
-					newNode.parent = p;
-					insertIntoParent(tempKey, leftRef, rightRef, p);
-				}
-				
-				for (int i = 0; i < p.nKeys; i++){
-					if (p.ref[i] == n){
-						if (i - 1 >= 0){
-							p.key[i - 1] = n.key[0];
-						}
-						break;
-					}
-				}
-				
-			}
-			
-		}else{
-			boolean inserted = false;
-			for (int i = 0; i < n.nKeys; i++){
-				if (key.compareTo(n.key[i]) < 0){
-					insert(key, ref, (Node) n.ref[i], n);
-					inserted = true;
-					break;
-				}
-			}
-			if (!inserted){
-				insert(key, ref, (Node) n.ref[n.nKeys], n);
-			}
-		}
-		
-	} // insert
+	private void wedge(Node n, int i, byte[] key, Object ref) {
+		if (n.nKeys == 0) {
+			n.prefix = key;
+		} else {
+			int common = mismatch(n.prefix, 0, n.prefix.length, key, 0);
+			if (common < n.prefix.length)
+				shorten(n, common);
+		} // if
+
+		int from = n.prefix.length;
+		int length = key.length - from;
+		int end = n.offset[n.nKeys];
+		if (n.nKeys + 2 > n.offset.length) {
+			n.offset = Arrays.copyOf(n.offset, 2 * n.offset.length);
+			n.ref = Arrays.copyOf(n.ref, 2 * n.ref.length);
+		} // if
+		if (end + length > n.data.length)
+			n.data = Arrays.copyOf(n.data, Math.max(2 * n.data.length, end
+					+ length));
+
+		int at = n.offset[i];
+		System.arraycopy(n.data, at, n.data, at + length, end - at);
+		System.arraycopy(key, from, n.data, at, length);
+		for (int j = n.nKeys; j >= i; j--)
+			n.offset[j + 1] = n.offset[j] + length;
+		int r = n.isLeaf ? i : i + 1;
+		System.arraycopy(n.ref, r, n.ref, r + 1, n.nKeys + (n.isLeaf ? 0 : 1)
+				- r);
+		n.ref[r] = ref;
+		n.nKeys++;
+	} // wedge
 
-	/*****************************************************************************
-	 * This method has a recursive manner from the bottom of the B+ Tree upto a node which does not need spliting.
-	 * This is used when a leaf is splited and we need to insert a new value into its parent.
+	/***************************************************************************
+	 * Shorten the prefix of node n to its first l bytes, moving the rest of it
+	 * into every suffix.
 	 * 
-	 * @param key The new value to be inserted into the parent
-	 * @param leftRef Left reference for that new key
-	 * @param rightRef right reference for that new key
-	 * @param parent the node which we want to add the new key
+	 * @param n
+	 *            the node
+	 * @param l
+	 *            the new prefix length
+	 */
+	private void shorten(Node n, int l) {
+		int extra = n.prefix.length - l;
+		byte[] data = new byte[Math.max(n.data.length, n.offset[n.nKeys]
+				+ extra * n.nKeys)];
+		int at = 0;
+		for (int i = 0; i < n.nKeys; i++) {
+			int from = n.offset[i];
+			int length = n.offset[i + 1] - from;
+			System.arraycopy(n.prefix, l, data, at, extra);
+			System.arraycopy(n.data, from, data, at + extra, length);
+			n.offset[i] = at;
+			at += extra + length;
+		} // for
+		n.offset[n.nKeys] = at;
+		n.data = data;
+		n.prefix = Arrays.copyOf(n.prefix, l);
+	} // shorten
+
+	/***************************************************************************
+	 * Split node n in two by key count, returning the new right sibling and the
+	 * key to post in the parent: for leaves the shortest separator between the
+	 * halves, for internal nodes the middle key (moved up).
 	 * 
+	 * @param n
+	 *            the current node
+	 * @return the split
+	 *
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
-	private void insertIntoParent(K key, Node leftRef, Node rightRef, Node parent){
-		if (parent.nKeys < ORDER - 1){
-			if (parent.nKeys == 0){
-				parent.ref[0] = leftRef;
-			}
-			
-			boolean inserted = false;
-			for (int i = 0; i < parent.nKeys; i++){
-				if (key.compareTo(parent.key[i]) < 0){
-					wedge(key, (V) rightRef, parent, i);
-					inserted = true;
-					break;
-				}else if (key.compareTo(parent.key[i]) == 0 ){
-					out.println("BpTree:insert: attempt to insert duplicate key = " + key);
-				}
-			}
-			if (!inserted){
-				wedge(key, (V) rightRef, parent, parent.nKeys);
-			}
-		}else{
-			Node newNode = split(key, (V) rightRef, parent);
-			K tempKey;
-			Node tempRightRef;
-			Node tempLeftRef;
-			
-			tempKey = newNode.key[0];
-			for (int i = 0; i < newNode.nKeys - 1; i++){
-				newNode.key[i] = newNode.key[i + 1];
-			}
-			for (int i = 0; i < newNode.nKeys; i++){
-				newNode.ref[i] = newNode.ref[i + 1];
-			}
-			newNode.nKeys--;
+	private Split split(Node n) {
+		int m = n.nKeys / 2;
+		Node left;
+		Node right;
+		byte[] separator;
+
+		if (n.isLeaf) {
+			byte[] last = n.key(m - 1);
+			byte[] first = n.key(m);
+			separator = Arrays.copyOf(first,
+					mismatch(last, 0, last.length, first, 0) + 1);
+			left = copy(n, 0, m);
+			right = copy(n, m, n.nKeys);
+			right.right = n.right;
+		} else {
+			separator = n.key(m);
+			left = copy(n, 0, m);
+			right = copy(n, m + 1, n.nKeys);
+		} // if
 
-			tempRightRef = newNode;
-			tempLeftRef = parent;
+		// the node keeps its identity (its left sibling links to it)
+		n.nKeys = left.nKeys;
+		n.prefix = left.prefix;
+		n.data = left.data;
+		n.offset = left.offset;
+		n.ref = left.ref;
+		if (n.isLeaf)
+			n.right = right;
+		return new Split(separator, right);
+	} // split
 
-			if (parent.parent == null){
-				parent.parent = new Node(false);
-				root = parent.parent;
-			}
-			
-			insertIntoParent(tempKey, tempLeftRef, tempRightRef, parent.parent);
-		}
-		
-	}
-	
 	/***************************************************************************
-	 * Wedge the key-ref pair into node n.
+	 * Return a new node holding keys from to to - 1 of node n (with the
+	 * children from to to for an internal node), compressed by the prefix
+	 * those keys have in common.
 	 * 
+	 * @param n
+	 *            the node to copy from
+	 * @param from
+	 *            the first key
+	 * @param to
+	 *            the key after the last
+	 * @return the new node
+	 */
+	private Node copy(Node n, int from, int to) {
+		// the keys are sorted, so the first and last share the common prefix
+		int extra = mismatch(n.data, n.offset[from], n.offset[from + 1],
+				n.data, n.offset[to - 1], n.offset[to]);
+		int base = n.offset[from] + extra;
+
+		Node c = new Node(n.isLeaf, n.offset.length - 1, n.data.length);
+		c.prefix = Arrays.copyOf(n.key(from), n.prefix.length + extra);
+		int at = 0;
+		for (int i = from; i < to; i++) {
+			int length = n.offset[i + 1] - n.offset[i] - extra;
+			System.arraycopy(n.data, n.offset[i] + extra, c.data, at, length);
+			c.offset[i - from] = at;
+			at += length;
+		} // for
+		c.offset[to - from] = at;
+		c.nKeys = to - from;
+		int nRefs = to - from + (n.isLeaf ? 0 : 1);
+		System.arraycopy(n.ref, from, c.ref, 0, nRefs);
+		return c;
+	} // copy
+
+	/***************************************************************************
+	 * Return the position of the key in node n if it is there, otherwise
+	 * -(insertion point) - 1 (as Arrays.binarySearch). The key is first
+	 * matched against the node's prefix: if it differs there, it precedes or
+	 * follows every key in the node.
+	 * 
+	 * @param n
+	 *            the node
 	 * @param key
-	 *            the key to insert
-	 * @param ref
-	 *            the value/node to insert
+	 *            the key (encoded)
+	 * @return the position or insertion point of the key
+	 */
+	private int search(Node n, byte[] key) {
+		byte[] p = n.prefix;
+		for (int j = 0; j < p.length; j++) {
+			if (j == key.length)
+				return -1;
+			int c = (key[j] & 0xff) - (p[j] & 0xff);
+			if (c != 0)
+				return (c < 0) ? -1 : -n.nKeys - 1;
+		} // for
+
+		int lo = 0;
+		int hi = n.nKeys - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = compare(key, p.length, n.data, n.offset[mid],
+					n.offset[mid + 1]);
+			if (c > 0)
+				lo = mid + 1;
+			else if (c < 0)
+				hi = mid - 1;
+			else
+				return mid;
+		} // while
+		return -lo - 1;
+	} // search
+
+	/***************************************************************************
+	 * Return the child of internal node n that may contain the key.
+	 * 
 	 * @param n
-	 *            the current node
-	 * @param i
-	 *            the insertion position within node n
-	 *
-	 * @Author: Sina, Arash, Navid, Sambitesh
+	 *            the internal node
+	 * @param key
+	 *            the key (encoded)
+	 * @return the child
 	 */
-	private void wedge(K key, V ref, Node n, int i) {
-		if (n.isLeaf){
-			for (int j = n.nKeys; j > i; j--) {
-				n.key[j] = n.key[j - 1];
-				n.ref[j] = n.ref[j - 1];
-			} // for
-			n.key[i] = key;
-			n.ref[i] = ref;
-			n.nKeys++;
-		}else{
-			for (int j = n.nKeys; j > i; j--) {
-				n.key[j] = n.key[j - 1];
-				n.ref[j + 1] = n.ref[j];
+	private Node child(Node n, byte[] key) {
+		int i = search(n, key);
+		return (Node) n.ref[(i >= 0) ? i + 1 : -i - 1];
+	} // child
+
+	/***************************************************************************
+	 * Return the leftmost leaf.
+	 * 
+	 * @return the leaf holding the smallest keys
+	 */
+	private Node leftmost() {
+		Node smallest = root;
+		while (!smallest.isLeaf)
+			smallest = (Node) smallest.ref[0];
+		return smallest;
+	} // leftmost
+
+	/***************************************************************************
+	 * Return the entries whose keys are in [from, to) by scanning the leaves.
+	 * 
+	 * @param from
+	 *            the lower bound (encoded, null for none)
+	 * @param to
+	 *            the upper bound (encoded, null for none)
+	 * @return the entries in the range
+	 */
+	private SortedMap<K, V> range(byte[] from, byte[] to) {
+		SortedMap<K, V> results = new TreeMap<>();
+		Node n;
+		int i = 0;
+		if (from == null) {
+			n = leftmost();
+		} else {
+			for (n = root; !n.isLeaf;)
+				n = child(n, from);
+			i = search(n, from);
+			if (i < 0)
+				i = -i - 1;
+		} // if
+
+		for (; n != null; n = n.right, i = 0) {
+			for (; i < n.nKeys; i++) {
+				byte[] k = n.key(i);
+				if (to != null && KeyType.compare(k, to) >= 0)
+					return results;
+				results.put(decode(k), (V) n.ref[i]);
 			} // for
-			n.key[i] = key;
-			n.ref[i + 1] = ref;
-			n.nKeys++;
-		}
-	} // wedge
-	
+		} // for
+		return results;
+	} // range
+
 	/***************************************************************************
-	 * Split node n and return the newly created node.
+	 * Return the normalized encoding of a key.
 	 * 
 	 * @param key
-	 *            the key to insert
-	 * @param ref
-	 *            the value/node to insert
-	 * @param n
-	 *            the current node
-	 *
-	 * @Author: Sina, Arash, Navid, Sambitesh
+	 *            the key (a KeyType or a single value)
+	 * @return its encoding
 	 */
-	private Node split(K key, V ref, Node n) {
-		List<Pair> pairs = new ArrayList<>();
-		Object firstRef = n.ref[0];
-		
-		if (!n.isLeaf){
-			for (int i = 0; i < n.nKeys; i++){
-				pairs.add(new Pair(n.key[i], n.ref[i + 1]));
-			}
-		}else{
-			for (int i = 0; i < n.nKeys; i++){
-				pairs.add(new Pair(n.key[i], n.ref[i]));
-			}
-		}
-		pairs.add(new Pair(key, ref));
-		
-		Comparator<Pair> comparator = new Comparator<BpTree<K,V>.Pair>() {
-			public int compare(Pair o1, Pair o2) {
-				return o1.key.compareTo(o2.key);
-			}
-		};
-		Collections.sort(pairs, comparator);
-
-		Node newNode = new Node(n.isLeaf);
-		if (!n.isLeaf){
-			n.ref[0] = firstRef;
-			n.nKeys = 0;
-			for (int i = 0; i < ORDER / 2; i++){
-				n.key[i] = pairs.get(i).key;
-				n.ref[i + 1] = pairs.get(i).ref;
-				n.nKeys++;
-			}
-			
-			for (int i = ORDER / 2; i < pairs.size(); i++){
-				newNode.key[i - ORDER / 2] = pairs.get(i).key;
-				newNode.ref[i - ORDER / 2 + 1] = pairs.get(i).ref;
-				newNode.nKeys++;
-			}
-		}else{
-			n.nKeys = 0;
-			for (int i = 0; i < ORDER / 2; i++){
-				n.key[i] = pairs.get(i).key;
-				n.ref[i] = pairs.get(i).ref;
-				n.nKeys++;
-			}
-			
-			for (int i = ORDER / 2; i < pairs.size(); i++){
-				newNode.key[i - ORDER / 2] = pairs.get(i).key;
-				newNode.ref[i - ORDER / 2] = pairs.get(i).ref;
-				newNode.nKeys++;
-			}
-		}
-		
-		return newNode;
-	} // split
+	private static byte[] encode(Object key) {
+		byte[] b = (key instanceof KeyType) ? ((KeyType) key).bytes() : KeyType
+				.encode(new Comparable<?>[] { (Comparable<?>) key });
+		if (b == null)
+			throw new IllegalArgumentException("BpTree: key " + key
+					+ " has a type that cannot be encoded");
+		return b;
+	} // encode
 
 	/***************************************************************************
-	 * This inner class is used to hold all pairs of Keys and their References for the sorting purpose. 
-	 * @author Sina, Arash, Navid, Sam
+	 * Decode a key from its normalized encoding.
+	 * 
+	 * @param b
+	 *            the encoding
+	 * @return the key
 	 */
-	private class Pair {
-		public K key;
-		public Object ref;
-		
-		public Pair(K key, Object ref){
-			this.key = key;
-			this.ref = ref;
-		}
-	}		
-	
+	private K decode(byte[] b) {
+		Comparable<?>[] values = KeyType.decode(b, domain);
+		return classK.cast((classK == KeyType.class) ? new KeyType(values)
+				: values[0]);
+	} // decode
+
+	/***************************************************************************
+	 * Compare a[aFrom ..] with b[bFrom, bTo) as unsigned byte strings.
+	 * 
+	 * @return negative, zero or positive as the first is less than, equal to
+	 *         or greater than the second
+	 */
+	private static int compare(byte[] a, int aFrom, byte[] b, int bFrom,
+			int bTo) {
+		int n = Math.min(a.length - aFrom, bTo - bFrom);
+		for (int i = 0; i < n; i++) {
+			int c = (a[aFrom + i] & 0xff) - (b[bFrom + i] & 0xff);
+			if (c != 0)
+				return c;
+		} // for
+		return (a.length - aFrom) - (bTo - bFrom);
+	} // compare
+
+	/***************************************************************************
+	 * Return the length of the common prefix of a[aFrom, aTo) and b[bFrom ..].
+	 */
+	private static int mismatch(byte[] a, int aFrom, int aTo, byte[] b,
+			int bFrom) {
+		return mismatch(a, aFrom, aTo, b, bFrom, b.length);
+	} // mismatch
+
+	/***************************************************************************
+	 * Return the length of the common prefix of a[aFrom, aTo) and
+	 * b[bFrom, bTo).
+	 */
+	private static int mismatch(byte[] a, int aFrom, int aTo, byte[] b,
+			int bFrom, int bTo) {
+		int n = Math.min(aTo - aFrom, bTo - bFrom);
+		int i = 0;
+		while (i < n && a[aFrom + i] == b[bFrom + i])
+			i++;
+		return i;
+	} // mismatch
+
+	/***************************************************************************
+	 * Return bytes [from, to) of b in hex.
+	 */
+	private static String hex(byte[] b, int from, int to) {
+		StringBuilder s = new StringBuilder();
+		for (int i = from; i < to; i++)
+			s.append(String.format("%02x", b[i] & 0xff));
+		return s.toString();
+	} // hex
+
 	/***************************************************************************
 	 * The main method used for testing.
 	 * 
@@ -0,0 +1,85 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Checkpoint.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/*******************************************************************************
+ * This class stores the checkpoints of logged tables (see Table.checkpoint).
+ * A checkpoint is an image of a table's state as of a log sequence number
+ * (LSN): the page directory and last page of its data file, its dictionaries,
+ * the versions of its tuples and a snapshot of its index, followed by
+ * nothing else, since the records themselves stay in the data file. The image
+ * starts with its LSN, so recovery only replays the log from there on. A new
+ * checkpoint replaces the previous one atomically (it is written to a
+ * temporary file, forced and renamed), so a crash while checkpointing leaves
+ * the previous checkpoint in place.
+ */
+class Checkpoint {
+	/**
+	 * File extension for checkpoint files.
+	 */
+	private static final String EXT = ".ckpt";
+
+	/***************************************************************************
+	 * Return whether the given table has a checkpoint, in which case its data
+	 * files must be kept when it is created again (to be recovered).
+	 *
+	 * @param tableName
+	 *            the name of the table
+	 * @return whether it has a checkpoint
+	 */
+	static boolean exists(String tableName) {
+		return new File(tableName + EXT).exists();
+	} // exists
+
+	/***************************************************************************
+	 * Make the given image the checkpoint of the table.
+	 *
+	 * @param tableName
+	 *            the name of the table
+	 * @param image
+	 *            the image (starting with its LSN)
+	 * @throws IOException
+	 *             if the checkpoint cannot be written
+	 */
+	static synchronized void save(String tableName, byte[] image)
+			throws IOException {
+		File temp = new File(tableName + EXT + ".tmp");
+		try (FileOutputStream os = new FileOutputStream(temp)) {
+			os.write(image);
+			os.getChannel().force(true);
+		} // try
+		Files.move(temp.toPath(), new File(tableName + EXT).toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	} // save
+
+	/***************************************************************************
+	 * Return the image of the table's checkpoint.
+	 *
+	 * @param tableName
+	 *            the name of the table
+	 * @return the image (null if there is no checkpoint)
+	 * @throws IOException
+	 *             if the checkpoint cannot be read
+	 */
+	static DataInputStream load(String tableName) throws IOException {
+		File file = new File(tableName + EXT);
+		if (!file.exists())
+			return null;
+		return new DataInputStream(new ByteArrayInputStream(
+				Files.readAllBytes(file.toPath())));
+	} // load
+
+} // Checkpoint class
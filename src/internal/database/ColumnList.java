@@ -0,0 +1,548 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  ColumnList.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/*******************************************************************************
+ * This class stores data tuples column by column: every attribute has a
+ * segment of its own, a primitive array for the numeric and character domains
+ * (e.g., int [] for Integer) and a String array for strings. A scan through a
+ * View only touches the segments of the attributes it actually reads, which
+ * pays off for analytic queries over wide tables that need a few columns.
+ * Dictionary encoded strings are kept as their codes in an int [] segment,
+ * Timestamp and Decimal values as their long representation in a long [].
+ */
+@SuppressWarnings("rawtypes")
+public class ColumnList extends AbstractList<Comparable[]> implements
+		List<Comparable[]>, RandomAccess {
+	/**
+	 * The initial number of rows each segment can hold.
+	 */
+	private static final int INIT_SIZE = 64;
+
+	/**
+	 * The type code (see TupleCodec) of each attribute.
+	 */
+	private final byte[] type;
+
+	/**
+	 * The dictionary of each dictionary encoded attribute.
+	 */
+	private final Dictionary[] dictionary;
+
+	/**
+	 * The segment of each attribute (byte [], short [], int [], long [],
+	 * float [], double [], char [] or String []).
+	 */
+	private final Object[] column;
+
+	/**
+	 * The number of rows the segments can hold.
+	 */
+	private int capacity = INIT_SIZE;
+
+	/**
+	 * Counter for the number of tuples in this list.
+	 */
+	private int nRows = 0;
+
+	/***************************************************************************
+	 * This inner class provides a view over one row that reads an attribute
+	 * from its segment only when it is accessed.
+	 */
+	public class View implements TupleView {
+		int row;
+
+		public Comparable get(int j) {
+			return value(j, row);
+		} // get
+
+		public long getLong(int j) {
+			return longValue(j, row);
+		} // getLong
+
+		public double getDouble(int j) {
+			return doubleValue(j, row);
+		} // getDouble
+
+		public int code(int j) {
+			return ((int[]) column[j])[row];
+		} // code
+
+		public Comparable[] toTuple() {
+			return ColumnList.this.get(row);
+		} // toTuple
+
+		ColumnList list() {
+			return ColumnList.this;
+		} // list
+	} // View inner class
+
+	/***************************************************************************
+	 * Construct an empty ColumnList for the given domains.
+	 *
+	 * @param domain
+	 *            the attribute domains (data types)
+	 */
+	public ColumnList(Class[] domain) {
+		type = new byte[domain.length];
+		dictionary = new Dictionary[domain.length];
+		column = new Object[domain.length];
+		for (int j = 0; j < domain.length; j++) {
+			type[j] = TupleCodec.typeOf(domain[j]);
+			column[j] = Array.newInstance(primitive(type[j]), capacity);
+		} // for
+	} // constructor
+
+	/***************************************************************************
+	 * Dictionary encode the (string) attribute j, i.e., keep the codes the
+	 * given dictionary assigns its values. The list must be empty.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @param dict
+	 *            the dictionary to use
+	 */
+	public void encode(int j, Dictionary dict) {
+		if (nRows > 0)
+			throw new IllegalStateException("ColumnList.encode: list is not empty");
+
+		dictionary[j] = dict;
+		type[j] = TupleCodec.DICT;
+		column[j] = new int[capacity];
+	} // encode
+
+	/***************************************************************************
+	 * Add a new tuple by appending each of its values to the segment of its
+	 * attribute.
+	 *
+	 * @param tuple
+	 *            the tuple to add
+	 * @return whether the addition succeeded
+	 */
+	public boolean add(Comparable[] tuple) {
+		ensureCapacity(nRows + 1);
+		for (int j = 0; j < type.length; j++) {
+			Object c = column[j];
+			switch (type[j]) {
+			case TupleCodec.BYTE:
+				((byte[]) c)[nRows] = (Byte) tuple[j];
+				break;
+			case TupleCodec.SHORT:
+				((short[]) c)[nRows] = (Short) tuple[j];
+				break;
+			case TupleCodec.INT:
+				((int[]) c)[nRows] = (Integer) tuple[j];
+				break;
+			case TupleCodec.LONG:
+				((long[]) c)[nRows] = (Long) tuple[j];
+				break;
+			case TupleCodec.FLOAT:
+				((float[]) c)[nRows] = (Float) tuple[j];
+				break;
+			case TupleCodec.DOUBLE:
+				((double[]) c)[nRows] = (Double) tuple[j];
+				break;
+			case TupleCodec.CHAR:
+				((char[]) c)[nRows] = (Character) tuple[j];
+				break;
+			case TupleCodec.DICT:
+				((int[]) c)[nRows] = dictionary[j].encode((String) tuple[j]);
+				break;
+			case TupleCodec.TIMESTAMP:
+				((long[]) c)[nRows] = ((Timestamp) tuple[j]).micros;
+				break;
+			case TupleCodec.DECIMAL:
+				((long[]) c)[nRows] = ((Decimal) tuple[j]).unscaled;
+				break;
+			default:
+				((String[]) c)[nRows] = (String) tuple[j];
+			}
+		} // for
+		nRows++;
+		return true;
+	} // add
+
+	/***************************************************************************
+	 * Add a new row by appending each of its values to the segment of its
+	 * attribute without boxing them. The row must have the layout of this
+	 * list (see Table.newRow).
+	 *
+	 * @param r
+	 *            the row to add
+	 * @return whether the addition succeeded
+	 */
+	public boolean add(Row r) {
+		ensureCapacity(nRows + 1);
+		for (int j = 0; j < type.length; j++) {
+			Object c = column[j];
+			long p = r.prim[j];
+			switch (type[j]) {
+			case TupleCodec.BYTE:
+				((byte[]) c)[nRows] = (byte) p;
+				break;
+			case TupleCodec.SHORT:
+				((short[]) c)[nRows] = (short) p;
+				break;
+			case TupleCodec.INT:
+			case TupleCodec.DICT:
+				((int[]) c)[nRows] = (int) p;
+				break;
+			case TupleCodec.FLOAT:
+				((float[]) c)[nRows] = (float) Double.longBitsToDouble(p);
+				break;
+			case TupleCodec.DOUBLE:
+				((double[]) c)[nRows] = Double.longBitsToDouble(p);
+				break;
+			case TupleCodec.CHAR:
+				((char[]) c)[nRows] = (char) p;
+				break;
+			case TupleCodec.STRING:
+				((String[]) c)[nRows] = r.str[j];
+				break;
+			default:
+				((long[]) c)[nRows] = p;
+			}
+		} // for
+		nRows++;
+		return true;
+	} // add
+
+	/***************************************************************************
+	 * Add the projection of the row behind view v onto the given attributes by
+	 * copying the values segment to segment, i.e., without boxing them. The
+	 * projected domains must be the domains of this list.
+	 *
+	 * @param v
+	 *            the view over the source row
+	 * @param cols
+	 *            the source attribute positions to keep
+	 * @return whether the addition succeeded
+	 */
+	public boolean add(View v, int[] cols) {
+		ensureCapacity(nRows + 1);
+		Object[] src = v.list().column;
+		for (int k = 0; k < cols.length; k++) {
+			System.arraycopy(src[cols[k]], v.row, column[k], nRows, 1);
+		} // for
+		nRows++;
+		return true;
+	} // add
+
+	/***************************************************************************
+	 * Append the projection of n rows of another list onto the given columns
+	 * segment by segment: rows from, from + 1, ... (sel == null) are copied as
+	 * whole ranges, otherwise the rows from + sel [k] are gathered. The
+	 * projected domains must be the domains of this list.
+	 *
+	 * @param src
+	 *            the list to copy from
+	 * @param cols
+	 *            the source attribute positions to keep
+	 * @param from
+	 *            the index of the first source row considered
+	 * @param sel
+	 *            the selected positions relative to from (null for all)
+	 * @param n
+	 *            the number of rows to append
+	 */
+	public void append(ColumnList src, int[] cols, int from, int[] sel, int n) {
+		ensureCapacity(nRows + n);
+		for (int k = 0; k < cols.length; k++) {
+			Object s = src.column[cols[k]];
+			Object d = column[k];
+			if (sel == null) {
+				System.arraycopy(s, from, d, nRows, n);
+				continue;
+			} // if
+
+			int to = nRows;
+			switch (type[k]) {
+			case TupleCodec.BYTE: {
+				byte[] a = (byte[]) s, b = (byte[]) d;
+				for (int r = 0; r < n; r++)
+					b[to + r] = a[from + sel[r]];
+				break;
+			}
+			case TupleCodec.SHORT: {
+				short[] a = (short[]) s, b = (short[]) d;
+				for (int r = 0; r < n; r++)
+					b[to + r] = a[from + sel[r]];
+				break;
+			}
+			case TupleCodec.INT:
+			case TupleCodec.DICT: {
+				int[] a = (int[]) s, b = (int[]) d;
+				for (int r = 0; r < n; r++)
+					b[to + r] = a[from + sel[r]];
+				break;
+			}
+			case TupleCodec.FLOAT: {
+				float[] a = (float[]) s, b = (float[]) d;
+				for (int r = 0; r < n; r++)
+					b[to + r] = a[from + sel[r]];
+				break;
+			}
+			case TupleCodec.DOUBLE: {
+				double[] a = (double[]) s, b = (double[]) d;
+				for (int r = 0; r < n; r++)
+					b[to + r] = a[from + sel[r]];
+				break;
+			}
+			case TupleCodec.CHAR: {
+				char[] a = (char[]) s, b = (char[]) d;
+				for (int r = 0; r < n; r++)
+					b[to + r] = a[from + sel[r]];
+				break;
+			}
+			case TupleCodec.STRING: {
+				String[] a = (String[]) s, b = (String[]) d;
+				for (int r = 0; r < n; r++)
+					b[to + r] = a[from + sel[r]];
+				break;
+			}
+			default: {
+				long[] a = (long[]) s, b = (long[]) d;
+				for (int r = 0; r < n; r++)
+					b[to + r] = a[from + sel[r]];
+			}
+			}
+		} // for
+		nRows += n;
+	} // append
+
+	/***************************************************************************
+	 * Get the ith tuple by collecting its values from all segments.
+	 *
+	 * @param i
+	 *            the index of the tuple to get
+	 * @return the ith tuple
+	 */
+	public Comparable[] get(int i) {
+		if (i < 0 || i >= nRows)
+			throw new IndexOutOfBoundsException("ColumnList.get: " + i);
+
+		Comparable[] tup = new Comparable[type.length];
+		for (int j = 0; j < type.length; j++)
+			tup[j] = value(j, i);
+		return tup;
+	} // get
+
+	/***************************************************************************
+	 * Position a view over the ith row without reading any value.
+	 *
+	 * @param i
+	 *            the index of the row
+	 * @param v
+	 *            the view to reposition (null to create a new one)
+	 * @return the view over the ith row
+	 */
+	public View view(int i, View v) {
+		if (i < 0 || i >= nRows)
+			throw new IndexOutOfBoundsException("ColumnList.view: " + i);
+
+		if (v == null || v.list() != this)
+			v = new View();
+		v.row = i;
+		return v;
+	} // view
+
+	/***************************************************************************
+	 * Return the value of attribute j in row i.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @param i
+	 *            the row
+	 * @return the (boxed) value
+	 */
+	public Comparable value(int j, int i) {
+		Object c = column[j];
+		switch (type[j]) {
+		case TupleCodec.BYTE:
+			return ((byte[]) c)[i];
+		case TupleCodec.SHORT:
+			return ((short[]) c)[i];
+		case TupleCodec.INT:
+			return ((int[]) c)[i];
+		case TupleCodec.LONG:
+			return ((long[]) c)[i];
+		case TupleCodec.FLOAT:
+			return ((float[]) c)[i];
+		case TupleCodec.DOUBLE:
+			return ((double[]) c)[i];
+		case TupleCodec.CHAR:
+			return ((char[]) c)[i];
+		case TupleCodec.DICT:
+			return dictionary[j].decode(((int[]) c)[i]);
+		case TupleCodec.TIMESTAMP:
+			return new Timestamp(((long[]) c)[i]);
+		case TupleCodec.DECIMAL:
+			return new Decimal(((long[]) c)[i]);
+		default:
+			return ((String[]) c)[i];
+		}
+	} // value
+
+	/***************************************************************************
+	 * Return the long representation of attribute j (of an integral type) in
+	 * row i, without boxing it.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @param i
+	 *            the row
+	 * @return the value as a long
+	 */
+	public long longValue(int j, int i) {
+		Object c = column[j];
+		switch (type[j]) {
+		case TupleCodec.BYTE:
+			return ((byte[]) c)[i];
+		case TupleCodec.SHORT:
+			return ((short[]) c)[i];
+		case TupleCodec.INT:
+		case TupleCodec.DICT:
+			return ((int[]) c)[i];
+		case TupleCodec.FLOAT:
+			return (long) ((float[]) c)[i];
+		case TupleCodec.DOUBLE:
+			return (long) ((double[]) c)[i];
+		case TupleCodec.CHAR:
+			return ((char[]) c)[i];
+		default:
+			return ((long[]) c)[i];
+		}
+	} // longValue
+
+	/***************************************************************************
+	 * Return attribute j (not a string) in row i as a double, without boxing
+	 * it.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @param i
+	 *            the row
+	 * @return the value as a double
+	 */
+	public double doubleValue(int j, int i) {
+		switch (type[j]) {
+		case TupleCodec.FLOAT:
+			return ((float[]) column[j])[i];
+		case TupleCodec.DOUBLE:
+			return ((double[]) column[j])[i];
+		default:
+			return longValue(j, i);
+		}
+	} // doubleValue
+
+	/***************************************************************************
+	 * Return the segment of attribute j. Only the first size () entries are
+	 * in use.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the segment (a primitive or String array)
+	 */
+	public Object column(int j) {
+		return column[j];
+	} // column
+
+	/***************************************************************************
+	 * Return the size of the column list in terms of the number of tuples.
+	 *
+	 * @return the number of tuples
+	 */
+	public int size() {
+		return nRows;
+	} // size
+
+	/***************************************************************************
+	 * Keep only the given rows, moving them (in order) to the front of new
+	 * segments sized for them, see Table.vacuum. Runs of consecutive rows are
+	 * copied at once.
+	 *
+	 * @param keep
+	 *            the rows to keep, in ascending order
+	 * @param n
+	 *            the number of rows to keep
+	 */
+	void retain(int[] keep, int n) {
+		int rows = INIT_SIZE;
+		while (rows < n)
+			rows *= 2;
+		for (int j = 0; j < type.length; j++) {
+			Object c = Array.newInstance(primitive(type[j]), rows);
+			for (int k = 0; k < n;) {
+				int run = 1;
+				while (k + run < n && keep[k + run] == keep[k] + run)
+					run++;
+				System.arraycopy(column[j], keep[k], c, k, run);
+				k += run;
+			} // for
+			column[j] = c;
+		} // for
+		capacity = rows;
+		nRows = n;
+	} // retain
+
+	/***************************************************************************
+	 * Double the capacity of all segments until they can hold the given
+	 * number of rows.
+	 *
+	 * @param rows
+	 *            the number of rows to make room for
+	 */
+	private void ensureCapacity(int rows) {
+		if (rows <= capacity)
+			return;
+
+		while (capacity < rows)
+			capacity *= 2;
+		for (int j = 0; j < type.length; j++) {
+			Object c = Array.newInstance(primitive(type[j]), capacity);
+			System.arraycopy(column[j], 0, c, 0, nRows);
+			column[j] = c;
+		} // for
+	} // ensureCapacity
+
+	/***************************************************************************
+	 * Return the component type of the segment for the given type code.
+	 *
+	 * @param t
+	 *            the type code
+	 * @return the component class of the segment
+	 */
+	private static Class primitive(byte t) {
+		switch (t) {
+		case TupleCodec.BYTE:
+			return byte.class;
+		case TupleCodec.SHORT:
+			return short.class;
+		case TupleCodec.INT:
+		case TupleCodec.DICT:
+			return int.class;
+		case TupleCodec.LONG:
+		case TupleCodec.TIMESTAMP:
+		case TupleCodec.DECIMAL:
+			return long.class;
+		case TupleCodec.FLOAT:
+			return float.class;
+		case TupleCodec.DOUBLE:
+			return double.class;
+		case TupleCodec.CHAR:
+			return char.class;
+		default:
+			return String.class;
+		}
+	} // primitive
+
+} // ColumnList class
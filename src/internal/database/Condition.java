@@ -0,0 +1,628 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Condition.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.Stack;
+
+/*******************************************************************************
+ * This class represents a selection condition compiled from its postfix form
+ * (see Table.infix2postfix) into an expression tree. Attribute names are
+ * resolved to positions and literals are parsed into the domain of the
+ * attribute they are compared with once, at compile time. Evaluation
+ * short-circuits "&" and "|" and reads attribute values through a TupleView,
+ * so a lazily decoded tuple only decodes the attributes actually needed.
+ * Equality tests on dictionary encoded attributes compare codes, so the
+ * attribute is not decoded at all, and comparisons on attributes that are not
+ * strings read them as primitives (see TupleView.getLong), so they are not
+ * boxed. Text attributes are searched by "contains" (all the terms of the
+ * literal occur in the text) and "match" (any of them does), see TextIndex,
+ * and strings are matched against patterns by "like" (see like). A
+ * condition can also be evaluated over a whole Batch at once (see filter),
+ * narrowing a selection vector with one tight loop per comparison.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+class Condition {
+	/**
+	 * Node kinds.
+	 */
+	static final int CONST = 0, COL_LIT = 1, COL_COL = 2, AND = 3, OR = 4,
+			COL_CODE = 5, CODE_CODE = 6, COL_LONG = 7, COL_DOUBLE = 8,
+			LONG_LONG = 9, COL_TEXT = 10, COL_LIKE = 11;
+
+	/**
+	 * Comparison operators.
+	 */
+	static final int EQ = 0, NE = 1, LT = 2, LE = 3, GT = 4, GE = 5;
+
+	/**
+	 * Text search operators (COL_TEXT nodes).
+	 */
+	static final int CONTAINS = 6, MATCH = 7;
+
+	/**
+	 * The kind of this node.
+	 */
+	final int kind;
+
+	/**
+	 * The comparison operator (comparison nodes).
+	 */
+	final int op;
+
+	/**
+	 * The position of the (left) attribute compared.
+	 */
+	final int col;
+
+	/**
+	 * The position of the right attribute compared (COL_COL, LONG_LONG and
+	 * CODE_CODE nodes).
+	 */
+	final int col2;
+
+	/**
+	 * The literal compared with (COL_LIT, COL_LONG and COL_DOUBLE nodes).
+	 */
+	final Comparable value;
+
+	/**
+	 * The long representation of the literal (COL_LONG nodes).
+	 */
+	final long longValue;
+
+	/**
+	 * The literal as a double (COL_DOUBLE nodes).
+	 */
+	final double doubleValue;
+
+	/**
+	 * The dictionary code of the literal compared with (COL_CODE nodes), -1
+	 * if the literal does not occur in the attribute.
+	 */
+	final int code;
+
+	/**
+	 * The terms of the literal searched for (COL_TEXT nodes).
+	 */
+	final String[] terms;
+
+	/**
+	 * The characters of the pattern before its first wildcard (COL_LIKE
+	 * nodes).
+	 */
+	final String prefix;
+
+	/**
+	 * The value of a condition not referring to any attribute (CONST nodes).
+	 */
+	final boolean constant;
+
+	/**
+	 * The operands of "&" and "|" (AND and OR nodes).
+	 */
+	final Condition left, right;
+
+	/***************************************************************************
+	 * Construct a condition node.
+	 */
+	private Condition(int _kind, int _op, int _col, int _col2,
+			Comparable _value, boolean _constant, Condition _left,
+			Condition _right) {
+		this(_kind, _op, _col, _col2, _value, -1, _constant, _left, _right);
+	} // constructor
+
+	/***************************************************************************
+	 * Construct a condition node testing a dictionary code.
+	 */
+	private Condition(int _kind, int _op, int _col, int _col2,
+			Comparable _value, int _code, boolean _constant, Condition _left,
+			Condition _right) {
+		kind = _kind;
+		op = _op;
+		col = _col;
+		col2 = _col2;
+		value = _value;
+		longValue = (_kind == COL_LONG) ? TupleCodec.toLong(_value) : 0;
+		doubleValue = (_kind == COL_DOUBLE) ? TupleCodec.toDouble(_value) : 0;
+		code = _code;
+		terms = (_kind == COL_TEXT) ? TextIndex.tokenize((String) _value)
+				: null;
+		prefix = (_kind == COL_LIKE) ? ((String) _value).split("[%_]", 2)[0]
+				: null;
+		constant = _constant;
+		left = _left;
+		right = _right;
+	} // constructor
+
+	/***************************************************************************
+	 * Compile a postfix condition over the given attributes.
+	 *
+	 * @param postfix
+	 *            the tokenized postfix condition (null means always true)
+	 * @param attribute
+	 *            the attribute names of the table
+	 * @param domain
+	 *            the attribute domains of the table
+	 * @param dictionary
+	 *            the dictionary of each dictionary encoded attribute
+	 * @return the compiled condition
+	 * @throws IllegalArgumentException
+	 *             if "like", "contains" or "match" is applied to an
+	 *             attribute that is not a String
+	 */
+	static Condition compile(String[] postfix, String[] attribute,
+			Class[] domain, Dictionary[] dictionary) {
+		if (postfix == null)
+			return new Condition(CONST, 0, -1, -1, null, true, null, null);
+
+		Stack<Object> s = new Stack<>();
+		for (String token : postfix) {
+			if (token == null)
+				continue;
+			switch (token) {
+			case "&":
+			case "|":
+				Condition r = (Condition) s.pop();
+				Condition l = (Condition) s.pop();
+				s.push(new Condition(token.equals("&") ? AND : OR, 0, -1, -1,
+						null, false, l, r));
+				break;
+			case "==":
+			case "!=":
+			case "<":
+			case "<=":
+			case ">":
+			case ">=":
+				String rTok = (String) s.pop();
+				String lTok = (String) s.pop();
+				s.push(compare(lTok, opCode(token), rTok, attribute, domain,
+						dictionary));
+				break;
+			case "contains":
+			case "match":
+				rTok = (String) s.pop();
+				lTok = (String) s.pop();
+				s.push(search(lTok, token.equals("contains") ? CONTAINS
+						: MATCH, rTok, attribute, domain));
+				break;
+			case "like":
+				rTok = (String) s.pop();
+				lTok = (String) s.pop();
+				String pattern = (String) Table.parseOperand(rTok, String.class);
+				int lc = position(lTok, attribute);
+				if (lc >= 0 && domain[lc] != String.class)
+					throw new IllegalArgumentException("Condition: " + lTok
+							+ " like " + rTok + ": " + lTok + " is not a String");
+				if (lc >= 0)
+					s.push(new Condition(COL_LIKE, 0, lc, -1, pattern, false,
+							null, null));
+				else
+					s.push(new Condition(CONST, 0, -1, -1, null, like(
+							(String) Table.parseOperand(lTok, String.class),
+							pattern), null, null));
+				break;
+			default:
+				s.push(token);
+			}
+		} // for
+
+		return (Condition) s.pop();
+	} // compile
+
+	/***************************************************************************
+	 * Build the node for the comparison lTok op rTok, normalizing it so that
+	 * the attribute (if any) is on the left.
+	 */
+	private static Condition compare(String lTok, int op, String rTok,
+			String[] attribute, Class[] domain, Dictionary[] dictionary) {
+		int lc = position(lTok, attribute);
+		int rc = position(rTok, attribute);
+		boolean equality = op == EQ || op == NE;
+
+		if (lc >= 0 && rc >= 0) {
+			if (equality && dictionary[lc] != null
+					&& dictionary[lc] == dictionary[rc])
+				return new Condition(CODE_CODE, op, lc, rc, null, false, null,
+						null);
+			byte t = TupleCodec.typeOf(domain[lc]);
+			if (TupleCodec.integral(t) && t == TupleCodec.typeOf(domain[rc]))
+				return new Condition(LONG_LONG, op, lc, rc, null, false, null,
+						null);
+			return new Condition(COL_COL, op, lc, rc, null, false, null, null);
+		} // if
+		if (lc < 0 && rc >= 0) {
+			lc = rc;
+			rTok = lTok;
+			op = flip(op);
+		} // if
+		if (lc >= 0) {
+			Comparable value = Table.parseOperand(rTok, domain[lc]);
+			if (equality && dictionary[lc] != null)
+				return new Condition(COL_CODE, op, lc, -1, value,
+						dictionary[lc].code((String) value), false, null, null);
+			byte t = TupleCodec.typeOf(domain[lc]);
+			if (TupleCodec.integral(t))
+				return new Condition(COL_LONG, op, lc, -1, value, false, null,
+						null);
+			if (t != TupleCodec.STRING)
+				return new Condition(COL_DOUBLE, op, lc, -1, value, false,
+						null, null);
+			return new Condition(COL_LIT, op, lc, -1, value, false, null, null);
+		} // if
+
+		Comparable l = Table.parseOperand(lTok, String.class);
+		Comparable r = Table.parseOperand(rTok, String.class);
+		return new Condition(CONST, 0, -1, -1, null, test(op, l.compareTo(r)),
+				null, null);
+	} // compare
+
+	/***************************************************************************
+	 * Build the node for the text search lTok op rTok (lTok should be a
+	 * string attribute, rTok the literal holding the terms).
+	 */
+	private static Condition search(String lTok, int op, String rTok,
+			String[] attribute, Class[] domain) {
+		String lit = (String) Table.parseOperand(rTok, String.class);
+		int lc = position(lTok, attribute);
+		if (lc >= 0 && domain[lc] != String.class)
+			throw new IllegalArgumentException("Condition: " + lTok
+					+ (op == CONTAINS ? " contains " : " match ") + rTok + ": "
+					+ lTok + " is not a String");
+		if (lc >= 0)
+			return new Condition(COL_TEXT, op, lc, -1, lit, false, null, null);
+
+		String text = (String) Table.parseOperand(lTok, String.class);
+		return new Condition(CONST, 0, -1, -1, null, TextIndex.matches(text,
+				TextIndex.tokenize(lit), op == CONTAINS), null, null);
+	} // search
+
+	/***************************************************************************
+	 * Check whether the tuple satisfies this condition.
+	 *
+	 * @param tup
+	 *            the tuple to check
+	 * @return whether to keep the tuple
+	 */
+	boolean eval(TupleView tup) {
+		switch (kind) {
+		case AND:
+			return left.eval(tup) && right.eval(tup);
+		case OR:
+			return left.eval(tup) || right.eval(tup);
+		case COL_LIT:
+			return test(op, tup.get(col).compareTo(value));
+		case COL_COL:
+			return test(op, tup.get(col).compareTo(tup.get(col2)));
+		case COL_LONG:
+			return test(op, Long.compare(tup.getLong(col), longValue));
+		case COL_DOUBLE:
+			return test(op, Double.compare(tup.getDouble(col), doubleValue));
+		case LONG_LONG:
+			return test(op, Long.compare(tup.getLong(col), tup.getLong(col2)));
+		case COL_CODE:
+			return test(op, (tup.code(col) == code) ? 0 : 1);
+		case CODE_CODE:
+			return test(op, (tup.code(col) == tup.code(col2)) ? 0 : 1);
+		case COL_TEXT:
+			return TextIndex.matches((String) tup.get(col), terms,
+					op == CONTAINS);
+		case COL_LIKE:
+			return like((String) tup.get(col), (String) value);
+		default:
+			return constant;
+		}
+	} // eval
+
+	/***************************************************************************
+	 * Mark the attributes this condition reads.
+	 *
+	 * @param needed
+	 *            the flags to set, one per attribute
+	 * @return the flags
+	 */
+	boolean[] columns(boolean[] needed) {
+		if (left != null)
+			left.columns(needed);
+		if (right != null)
+			right.columns(needed);
+		if (col >= 0)
+			needed[col] = true;
+		if (col2 >= 0)
+			needed[col2] = true;
+		return needed;
+	} // columns
+
+	/***************************************************************************
+	 * Evaluate this condition over the tuples of a batch selected by the
+	 * input selection vector, writing the positions of those satisfying it
+	 * (in order) to the output selection vector, which may be the input one.
+	 * The batch must have loaded the attributes given by columns. A condition
+	 * may filter different batches concurrently.
+	 *
+	 * @param b
+	 *            the batch
+	 * @param in
+	 *            the input selection vector
+	 * @param n
+	 *            the number of selected tuples
+	 * @param out
+	 *            the output selection vector
+	 * @return the number of tuples satisfying the condition
+	 */
+	int filter(Batch b, int[] in, int n, int[] out) {
+		switch (kind) {
+		case AND:
+			return right.filter(b, out, left.filter(b, in, n, out), out);
+		case OR:
+			// the operands get selection vectors of their own per call, so a
+			// condition can filter batches on several threads at once
+			int[] leftSel = new int[n];
+			int[] rightSel = new int[n];
+			return union(leftSel, left.filter(b, in, n, leftSel), rightSel,
+					right.filter(b, in, n, rightSel), out);
+		case COL_LONG:
+		case COL_CODE:
+			return filter(b.longs(col), (kind == COL_CODE) ? code : longValue,
+					in, n, out);
+		case COL_DOUBLE:
+			return filter(b.doubles(col), in, n, out);
+		case CONST:
+			if (!constant)
+				return 0;
+			System.arraycopy(in, 0, out, 0, n);
+			return n;
+		case COL_TEXT:
+			int matched = 0;
+			for (int k = 0; k < n; k++) {
+				int i = in[k];
+				out[matched] = i;
+				if (TextIndex.matches((String) b.value(col, i), terms,
+						op == CONTAINS))
+					matched++;
+			} // for
+			return matched;
+		case COL_LIKE:
+			int liked = 0;
+			for (int k = 0; k < n; k++) {
+				int i = in[k];
+				out[liked] = i;
+				if (like((String) b.value(col, i), (String) value))
+					liked++;
+			} // for
+			return liked;
+		default:
+			// comparisons between attributes and on strings
+			int m = 0;
+			for (int k = 0; k < n; k++) {
+				int i = in[k];
+				out[m] = i;
+				if (test(op, compare(b, i)))
+					m++;
+			} // for
+			return m;
+		}
+	} // filter
+
+	/***************************************************************************
+	 * Compare the operands of this (COL_LIT, COL_COL, LONG_LONG or CODE_CODE)
+	 * node for the ith tuple of a batch.
+	 */
+	private int compare(Batch b, int i) {
+		switch (kind) {
+		case LONG_LONG:
+			return Long.compare(b.longs(col)[i], b.longs(col2)[i]);
+		case CODE_CODE:
+			return (b.longs(col)[i] == b.longs(col2)[i]) ? 0 : 1;
+		case COL_COL:
+			return b.value(col, i).compareTo(b.value(col2, i));
+		default:
+			return b.value(col, i).compareTo(value);
+		}
+	} // compare
+
+	/***************************************************************************
+	 * Select the positions whose value in the long vector v is op lit. There
+	 * is a branch free loop per operator.
+	 */
+	private int filter(long[] v, long lit, int[] in, int n, int[] out) {
+		int m = 0;
+		switch (op) {
+		case EQ:
+			for (int k = 0; k < n; k++) {
+				int i = in[k];
+				out[m] = i;
+				m += (v[i] == lit) ? 1 : 0;
+			} // for
+			break;
+		case NE:
+			for (int k = 0; k < n; k++) {
+				int i = in[k];
+				out[m] = i;
+				m += (v[i] != lit) ? 1 : 0;
+			} // for
+			break;
+		case LT:
+			for (int k = 0; k < n; k++) {
+				int i = in[k];
+				out[m] = i;
+				m += (v[i] < lit) ? 1 : 0;
+			} // for
+			break;
+		case LE:
+			for (int k = 0; k < n; k++) {
+				int i = in[k];
+				out[m] = i;
+				m += (v[i] <= lit) ? 1 : 0;
+			} // for
+			break;
+		case GT:
+			for (int k = 0; k < n; k++) {
+				int i = in[k];
+				out[m] = i;
+				m += (v[i] > lit) ? 1 : 0;
+			} // for
+			break;
+		default:
+			for (int k = 0; k < n; k++) {
+				int i = in[k];
+				out[m] = i;
+				m += (v[i] >= lit) ? 1 : 0;
+			} // for
+		}
+		return m;
+	} // filter
+
+	/***************************************************************************
+	 * Select the positions whose value in the double vector v is op the
+	 * literal, comparing as Double.compare does.
+	 */
+	private int filter(double[] v, int[] in, int n, int[] out) {
+		int m = 0;
+		double lit = doubleValue;
+		for (int k = 0; k < n; k++) {
+			int i = in[k];
+			out[m] = i;
+			m += test(op, Double.compare(v[i], lit)) ? 1 : 0;
+		} // for
+		return m;
+	} // filter
+
+	/***************************************************************************
+	 * Merge two ordered selection vectors into their (ordered) union.
+	 */
+	private static int union(int[] a, int na, int[] b, int nb, int[] out) {
+		int m = 0;
+		int i = 0;
+		int k = 0;
+		while (i < na && k < nb) {
+			if (a[i] < b[k])
+				out[m++] = a[i++];
+			else if (a[i] > b[k])
+				out[m++] = b[k++];
+			else {
+				out[m++] = a[i++];
+				k++;
+			} // if
+		} // while
+		while (i < na)
+			out[m++] = a[i++];
+		while (k < nb)
+			out[m++] = b[k++];
+		return m;
+	} // union
+
+	/***************************************************************************
+	 * Apply the comparison operator to the result of a compareTo.
+	 *
+	 * @param op
+	 *            the comparison operator
+	 * @param c
+	 *            the result of left.compareTo (right)
+	 * @return whether left op right holds
+	 */
+	static boolean test(int op, int c) {
+		switch (op) {
+		case EQ:
+			return c == 0;
+		case NE:
+			return c != 0;
+		case LT:
+			return c < 0;
+		case LE:
+			return c <= 0;
+		case GT:
+			return c > 0;
+		default:
+			return c >= 0;
+		}
+	} // test
+
+	/***************************************************************************
+	 * Return whether a string matches a LIKE pattern, where "%" stands for
+	 * any run of characters and "_" for any single character. Matches
+	 * greedily, going back to the last "%" on a mismatch.
+	 *
+	 * @param s
+	 *            the string
+	 * @param pattern
+	 *            the pattern
+	 * @return whether the string matches the pattern
+	 */
+	static boolean like(String s, String pattern) {
+		int i = 0, j = 0, star = -1, mark = 0;
+		while (i < s.length()) {
+			if (j < pattern.length()
+					&& (pattern.charAt(j) == '_' || pattern.charAt(j) == s
+							.charAt(i))) {
+				i++;
+				j++;
+			} else if (j < pattern.length() && pattern.charAt(j) == '%') {
+				star = j++;
+				mark = i;
+			} else if (star >= 0) {
+				j = star + 1;
+				i = ++mark;
+			} else {
+				return false;
+			} // if
+		} // while
+		while (j < pattern.length() && pattern.charAt(j) == '%')
+			j++;
+		return j == pattern.length();
+	} // like
+
+	/***************************************************************************
+	 * Map an operator string to its code.
+	 */
+	static int opCode(String op) {
+		switch (op) {
+		case "==":
+			return EQ;
+		case "!=":
+			return NE;
+		case "<":
+			return LT;
+		case "<=":
+			return LE;
+		case ">":
+			return GT;
+		default:
+			return GE;
+		}
+	} // opCode
+
+	/***************************************************************************
+	 * Return the operator to use when the operands are swapped.
+	 */
+	static int flip(int op) {
+		switch (op) {
+		case LT:
+			return GT;
+		case LE:
+			return GE;
+		case GT:
+			return LT;
+		case GE:
+			return LE;
+		default:
+			return op;
+		}
+	} // flip
+
+	/***************************************************************************
+	 * Return the position of the named attribute, or -1 if the token is not an
+	 * attribute name (i.e., it is a literal).
+	 */
+	private static int position(String token, String[] attribute) {
+		for (int j = 0; j < attribute.length; j++) {
+			if (attribute[j].equals(token))
+				return j;
+		} // for
+		return -1;
+	} // position
+
+} // Condition class
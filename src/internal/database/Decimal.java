@@ -0,0 +1,120 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Decimal.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+/*******************************************************************************
+ * This class provides a fixed-point decimal domain (e.g., for prices) with
+ * SCALE fractional digits. The value is kept as a long count of 10^-SCALE
+ * units, so decimals are packed into 8 bytes, compared as longs and never
+ * suffer from binary floating point rounding.
+ */
+public final class Decimal implements Comparable<Decimal> {
+	/**
+	 * The number of fractional digits.
+	 */
+	public static final int SCALE = 4;
+
+	/**
+	 * 10^SCALE.
+	 */
+	private static final long ONE = 10000L;
+
+	/**
+	 * The value in units of 10^-SCALE.
+	 */
+	public final long unscaled;
+
+	/***************************************************************************
+	 * Construct a decimal from its value in units of 10^-SCALE.
+	 *
+	 * @param _unscaled
+	 *            the unscaled value
+	 */
+	public Decimal(long _unscaled) {
+		unscaled = _unscaled;
+	} // constructor
+
+	/***************************************************************************
+	 * Construct a decimal by parsing "[-]digits[.digits]" with at most SCALE
+	 * fractional digits.
+	 *
+	 * @param s
+	 *            the string to parse
+	 */
+	public Decimal(String s) {
+		unscaled = parse(s);
+	} // constructor
+
+	/***************************************************************************
+	 * Parse "[-]digits[.digits]" with at most SCALE fractional digits into an
+	 * unscaled value.
+	 *
+	 * @param s
+	 *            the string to parse
+	 * @return the value in units of 10^-SCALE
+	 */
+	public static long parse(String s) {
+		int dot = s.indexOf('.');
+		String whole = (dot < 0) ? s : s.substring(0, dot);
+		String frac = (dot < 0) ? "" : s.substring(dot + 1);
+		if (frac.length() > SCALE || (dot >= 0 && frac.isEmpty())
+				|| frac.startsWith("-") || frac.startsWith("+"))
+			throw new NumberFormatException("Decimal: cannot parse \"" + s
+					+ "\"");
+
+		boolean negative = whole.startsWith("-");
+		long v = (whole.isEmpty() || whole.equals("-")) ? 0 : Math
+				.multiplyExact(Math.abs(Long.parseLong(whole)), ONE);
+		if (!frac.isEmpty()) {
+			long f = Long.parseLong(frac);
+			for (int k = frac.length(); k < SCALE; k++)
+				f *= 10;
+			v += f;
+		} // if
+		return negative ? -v : v;
+	} // parse
+
+	/***************************************************************************
+	 * Return the value as a double (which may round it).
+	 *
+	 * @return the approximate value
+	 */
+	public double doubleValue() {
+		return (double) unscaled / ONE;
+	} // doubleValue
+
+	/***************************************************************************
+	 * Compare this decimal with another one.
+	 *
+	 * @param other
+	 *            the other decimal
+	 * @return negative, zero or positive as this is less, equal or greater
+	 */
+	public int compareTo(Decimal other) {
+		return Long.compare(unscaled, other.unscaled);
+	} // compareTo
+
+	public boolean equals(Object obj) {
+		return obj instanceof Decimal && ((Decimal) obj).unscaled == unscaled;
+	} // equals
+
+	public int hashCode() {
+		return Long.hashCode(unscaled);
+	} // hashCode
+
+	/***************************************************************************
+	 * Format the decimal with all SCALE fractional digits (e.g., "12.3400").
+	 *
+	 * @return the formatted decimal
+	 */
+	public String toString() {
+		long abs = Math.abs(unscaled);
+		return String.format("%s%d.%04d", unscaled < 0 ? "-" : "", abs / ONE,
+				abs % ONE);
+	} // toString
+
+} // Decimal class
@@ -0,0 +1,168 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Dictionary.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*******************************************************************************
+ * This class provides the dictionary of a dictionary encoded string attribute.
+ * Each distinct value is given an int code (in order of first appearance) and
+ * records store the code instead of the string. The dictionary lives in
+ * memory and is persisted with the checkpoints of its table (see save and
+ * restore). Values are added by one thread at a time, while any number of
+ * threads may look up and decode values concurrently.
+ */
+public class Dictionary {
+	/**
+	 * The values, indexed by their code (replaced by a larger copy when full).
+	 */
+	private volatile String[] values = new String[16];
+
+	/**
+	 * The number of values.
+	 */
+	private volatile int size = 0;
+
+	/**
+	 * The codes, keyed by their value.
+	 */
+	private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+
+	/***************************************************************************
+	 * Return the code for the given value, adding the value to the dictionary
+	 * if it is new.
+	 *
+	 * @param value
+	 *            the value to encode
+	 * @return its code
+	 */
+	public int encode(String value) {
+		Integer code = codes.get(value);
+		if (code != null)
+			return code;
+		return add(value);
+	} // encode
+
+	/***************************************************************************
+	 * Add a (probably) new value to the dictionary. The value is stored before
+	 * its code is published, so readers never see a code without its value.
+	 *
+	 * @param value
+	 *            the value to add
+	 * @return its code
+	 */
+	private synchronized int add(String value) {
+		Integer code = codes.get(value);
+		if (code != null)
+			return code;
+
+		code = size;
+		if (code == values.length)
+			values = Arrays.copyOf(values, 2 * code);
+		values[code] = value;
+		size = code + 1;
+		codes.put(value, code);
+		return code;
+	} // add
+
+	/***************************************************************************
+	 * Return the code for the given value without adding it.
+	 *
+	 * @param value
+	 *            the value to look up
+	 * @return its code, or -1 if the value is not in the dictionary
+	 */
+	public int code(String value) {
+		Integer code = codes.get(value);
+		return (code == null) ? -1 : code;
+	} // code
+
+	/***************************************************************************
+	 * Return the value for the given code.
+	 *
+	 * @param code
+	 *            the code to decode
+	 * @return its value
+	 */
+	public String decode(int code) {
+		return values[code];
+	} // decode
+
+	/***************************************************************************
+	 * Return the number of distinct values in the dictionary.
+	 *
+	 * @return the number of values
+	 */
+	public int size() {
+		return size;
+	} // size
+
+	/***************************************************************************
+	 * Build a table translating the codes of this dictionary into the codes
+	 * the same values have in the other dictionary, so values encoded with
+	 * the two can be compared on their codes.
+	 *
+	 * @param other
+	 *            the other dictionary
+	 * @return the translation table (-1 for values missing from other)
+	 */
+	public int[] translate(Dictionary other) {
+		String[] v = values;
+		int[] t = new int[Math.min(size, v.length)];
+		for (int c = 0; c < t.length; c++)
+			t[c] = (other == this) ? c : other.code(v[c]);
+		return t;
+	} // translate
+
+	/***************************************************************************
+	 * Save the values of the dictionary in code order (for a checkpoint).
+	 *
+	 * @param out
+	 *            the output to save them to
+	 * @throws IOException
+	 *             if the values cannot be written
+	 */
+	void save(DataOutput out) throws IOException {
+		String[] v = values;
+		int n = Math.min(size, v.length);
+		out.writeInt(n);
+		for (int c = 0; c < n; c++) {
+			byte[] b = v[c].getBytes(StandardCharsets.UTF_8);
+			out.writeInt(b.length);
+			out.write(b);
+		} // for
+	} // save
+
+	/***************************************************************************
+	 * Restore the saved values into this (empty) dictionary, which gives them
+	 * their saved codes.
+	 *
+	 * @param in
+	 *            the input to restore them from
+	 * @return whether values were saved (i.e., the attribute was encoded)
+	 * @throws IOException
+	 *             if the values cannot be read
+	 */
+	boolean restore(DataInput in) throws IOException {
+		int n = in.readInt();
+		if (n < 0)
+			return false;
+		for (int c = 0; c < n; c++) {
+			byte[] b = new byte[in.readInt()];
+			in.readFully(b);
+			encode(new String(b, StandardCharsets.UTF_8));
+		} // for
+		return true;
+	} // restore
+
+} // Dictionary class
@@ -12,18 +12,19 @@ import java.lang.reflect.Array;
 import static java.lang.System.out;
 
 import java.util.*;
-import java.util.Map.Entry;
-
-import javax.swing.JOptionPane;
-
-import sun.util.logging.resources.logging;
-
-import com.sun.corba.se.impl.interceptors.SlotTableStack;
 
 /*******************************************************************************
  * This class provides hash maps that use the Extendable Hashing algorithm.
  * Buckets are allocated and stored in a hash table and are referenced using
- * directory dir.
+ * directory dir. A key is located through the low D (global depth) bits of
+ * its (mixed) hash code, which index the directory. A bucket of local depth d
+ * holds the keys agreeing on their low d bits, and is referenced by the
+ * 2^(D-d) directory entries ending in those bits. When a bucket overflows,
+ * only that bucket is split on its next bit: its keys are divided between it
+ * and a new bucket and the directory entries with that bit set are pointed to
+ * the new one. The directory doubles (by copying it behind itself, as the low
+ * bits of the copies are the same) only when the overflowing bucket's local
+ * depth is the global depth.
  */
 @SuppressWarnings("all")
 public class ExtHash<K, V> extends AbstractMap<K, V> implements Serializable,
@@ -47,18 +48,36 @@ public class ExtHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	 * This inner class defines buckets that are stored in the hash table.
 	 */
 	private class Bucket {
-		int localMod;
+		int localDepth;
 		int nKeys;
 		K[] key;
 		V[] value;
+		int[] hash;
 
 		@SuppressWarnings("unchecked")
-		Bucket(int localMod) {
+		Bucket(int localDepth) {
 			nKeys = 0;
 			key = (K[]) Array.newInstance(classK, SLOTS);
 			value = (V[]) Array.newInstance(classV, SLOTS);
-			this.localMod = localMod;
+			hash = new int[SLOTS];
+			this.localDepth = localDepth;
 		} // constructor
+
+		/***********************************************************************
+		 * Add a key-value pair with the given hash, growing the bucket (as an
+		 * overflow area) if it is full.
+		 */
+		void add(K k, V v, int hk) {
+			if (nKeys == key.length) {
+				key = Arrays.copyOf(key, 2 * nKeys);
+				value = Arrays.copyOf(value, 2 * nKeys);
+				hash = Arrays.copyOf(hash, 2 * nKeys);
+			} // if
+			key[nKeys] = k;
+			value[nKeys] = v;
+			hash[nKeys] = hk;
+			nKeys++;
+		} // add
 	} // Bucket inner class
 
 	/**
@@ -70,17 +89,17 @@ public class ExtHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	 * The directory providing access paths to the buckets (buckets in logical
 	 * oder)
 	 */
-	private final List<Bucket> dir;
+	private Bucket[] dir;
 
 	/**
-	 * The modulus for hashing (= 2^D) where D is the global depth
+	 * The global depth D (the directory has 2^D entries).
 	 */
-	private int mod;
+	private int depth;
 
 	/**
-	 * The number of buckets
+	 * The number of key-value pairs.
 	 */
-	private int nBuckets;
+	private int nEntries = 0;
 
 	/**
 	 * Counter for the number buckets accessed (for performance testing).
@@ -100,7 +119,7 @@ public class ExtHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	 */
 	public ExtHash(Class<K> _classK, Class<V> _classV, int initSize) {
 		
-		if ((initSize & (initSize - 1)) != 0.0){
+		if (initSize < 1 || (initSize & (initSize - 1)) != 0){
 			System.err.println("As mentioned in the comments, the init size should be a power of two.");
 			System.exit(-1);
 		}
@@ -108,13 +127,13 @@ public class ExtHash<K, V> extends AbstractMap<K, V> implements Serializable,
 		classK = _classK;
 		classV = _classV;
 		hTable = new ArrayList<>(); // for bucket storage
-		dir = new ArrayList<>(); // for bucket access
-		mod = nBuckets = initSize;
+		depth = Integer.numberOfTrailingZeros(initSize);
+		dir = (Bucket[]) Array.newInstance(Bucket.class, initSize); // for bucket access
 		
 		for (int i = 0; i < initSize; i++){
-			Bucket temp = new Bucket(initSize);
+			Bucket temp = new Bucket(depth);
 			hTable.add(temp);
-			dir.add(temp);
+			dir[i] = temp;
 		}
 		
 	} // ExtHash
@@ -148,12 +167,12 @@ public class ExtHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	public V get(Object key) {
-		int i = h(key);
-		Bucket b = dir.get(i);
+		int hk = h(key);
+		Bucket b = dir[hk & (dir.length - 1)];
 		count++;
 
 		for (int j = 0; j < b.nKeys; j++){
-			if (((K)key).equals(b.key[j])){
+			if (b.hash[j] == hk && key.equals(b.key[j])){
 				return b.value[j];
 			}
 		}
@@ -170,94 +189,103 @@ public class ExtHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	}
 	
 	/***************************************************************************
-	 * Put the key-value pair in the hash table.
+	 * Put the key-value pair in the hash table, replacing the value of the key
+	 * if it is already there. A full bucket is split first (see split).
 	 * 
 	 * @param key
 	 *            the key to insert
 	 * @param value
 	 *            the value to insert
-	 * @return null (not the previous value)
+	 * @return the previous value of the key (null if it was not there)
 	 * 
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
 	public V put(K key, V value) {
-		int i = h(key);
-		Bucket b = dir.get(i);
+		int hk = h(key);
+		Bucket b = dir[hk & (dir.length - 1)];
 		count++;
 
-		if (b.nKeys < SLOTS){
-			b.key[b.nKeys] = key;
-			b.value[b.nKeys] = value;
-			b.nKeys++;
-		}else{
-			if (b.localMod == mod){
-				mod *= 2;
-				nBuckets++;
-				
-				b.localMod = mod;
-				Bucket newBucket = new Bucket(mod);
-				hTable.add(newBucket);
-				
-				for (int j = 0; j < mod / 2; j++){
-					if (j != i){
-						dir.add(dir.get(j));
-					}else{
-						dir.add(newBucket);
-					}
-				}
-				redistribute(b, key, value);
-				
-			}else if (b.localMod < mod){
-				b.localMod *= 2;
-				Bucket newBucket = new Bucket(b.localMod);
-				
-				hTable.add(newBucket);
-				
-				dir.set(i, newBucket);
-				count++;
-				
-				redistribute(b, key, value);
-			}else{
-				System.err.println("There was an error detected in the indexing system :D");
-				System.exit(-1);
+		for (int j = 0; j < b.nKeys; j++){
+			if (b.hash[j] == hk && key.equals(b.key[j])){
+				V old = b.value[j];
+				b.value[j] = value;
+				return old;
 			}
 		}
 
+		while (b.nKeys >= SLOTS && split(b)){
+			b = dir[hk & (dir.length - 1)];
+			count++;
+		}
+		b.add(key, value, hk);
+		nEntries++;
+
 		return null;
 	} // put
 
-	
 	/***************************************************************************
-	 * This method is used to redistribute the items in the overflowed bucket and the new values which needs to be added to the table.
-	 * @param b the overflowed bucket
-	 * @param key the new key 
-	 * @param value the new value
+	 * Split the (full) bucket b on bit d (its local depth): the keys with the
+	 * bit set move to a new bucket, and so do the directory entries ending in
+	 * b's low d bits followed by a 1. The directory is doubled first if d is
+	 * the global depth. A bucket whose keys all share their hash code cannot
+	 * be split (it grows instead).
+	 * 
+	 * @param b
+	 *            the bucket to split
+	 * @return whether the bucket was split
+	 * 
 	 * @Author: Sina, Arash, Navid, Sambitesh
 	 */
-	private void redistribute(Bucket b, K key, V value){
-		List<K> keys = new ArrayList<>();
-		List<V> values = new ArrayList<>();
-		
-		keys.addAll(Arrays.asList(b.key));
-		values.addAll(Arrays.asList(b.value));
-		
-		keys.add(key);
-		values.add(value);
-		
-		b.nKeys = 0;
-		
-		for (int i = 0; i < keys.size(); i++){
-			put(keys.get(i), values.get(i));
+	private boolean split(Bucket b){
+		boolean distinct = false;
+		for (int j = 1; j < b.nKeys && !distinct; j++){
+			distinct = b.hash[j] != b.hash[0];
 		}
-	}
+		if (!distinct || b.localDepth == 31){
+			return false;
+		}
+
+		if (b.localDepth == depth){
+			int size = dir.length;
+			dir = Arrays.copyOf(dir, 2 * size);
+			System.arraycopy(dir, 0, dir, size, size);
+			depth++;
+		}
+
+		int bit = 1 << b.localDepth;
+		int low = b.hash[0] & (bit - 1);
+		b.localDepth++;
+		Bucket newBucket = new Bucket(b.localDepth);
+		hTable.add(newBucket);
+
+		int kept = 0;
+		for (int j = 0; j < b.nKeys; j++){
+			if ((b.hash[j] & bit) != 0){
+				newBucket.add(b.key[j], b.value[j], b.hash[j]);
+			}else{
+				b.key[kept] = b.key[j];
+				b.value[kept] = b.value[j];
+				b.hash[kept] = b.hash[j];
+				kept++;
+			}
+		}
+		Arrays.fill(b.key, kept, b.nKeys, null);
+		Arrays.fill(b.value, kept, b.nKeys, null);
+		b.nKeys = kept;
+
+		for (int i = low | bit; i < dir.length; i += 2 * bit){
+			dir[i] = newBucket;
+		}
+		return true;
+	} // split
 	
 	/***************************************************************************
-	 * Return the size (SLOTS * number of buckets) of the hash table.
+	 * Return the number of key-value pairs in the hash table.
 	 * 
 	 * @return the size of the hash table
 	 */
 	public int size() {
-		return SLOTS * nBuckets;
+		return nEntries;
 	} // size
 
 	/***************************************************************************
@@ -269,9 +297,9 @@ public class ExtHash<K, V> extends AbstractMap<K, V> implements Serializable,
 		out.println("Hash Table (Extendable Hashing)");
 		out.println("-------------------------------------------");
 
-		for (int i = 0; i < dir.size(); i++){
-			Bucket b = dir.get(i);
-			System.out.print(i + ":\t");
+		for (int i = 0; i < dir.length; i++){
+			Bucket b = dir[i];
+			System.out.print(i + " (d = " + b.localDepth + "):\t");
 			
 			for (int j = 0; j < b.nKeys; j++){
 				System.out.print("[ " + b.key[j] + " ] ");	
@@ -282,9 +310,7 @@ public class ExtHash<K, V> extends AbstractMap<K, V> implements Serializable,
 		out.println("-------------------------------------------");
 		
 		int N = 0;
-		for (int i = 0; i < dir.size(); i++){
-			Bucket b = dir.get(i);
-			
+		for (Bucket b : hTable){
 			for (int j = 0; j < b.nKeys; j++){
 				System.out.println("Key = " + b.key[j] + " value = " + b.value[j]);
 				N++;
@@ -297,18 +323,23 @@ public class ExtHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	} // print
 
 	/***************************************************************************
-	 * Hash the key using the hash function.
+	 * Hash the key using the hash function: its hash code, with the bits
+	 * mixed (murmur3 finalizer) so the low bits indexing the directory depend
+	 * on all of them.
 	 * 
 	 * @param key
 	 *            the key to hash
-	 * @return the location of the directory entry referencing the bucket
+	 * @return the hash (its low D bits locate the directory entry referencing
+	 *         the bucket)
 	 */
-	private int h(Object key) {
-		int temp = ((K)key).hashCode() % mod;
-		if (temp < 0){
-			temp += mod;
-		}
-		return temp;
+	private static int h(Object key) {
+		int x = key.hashCode();
+		x ^= x >>> 16;
+		x *= 0x85ebca6b;
+		x ^= x >>> 13;
+		x *= 0xc2b2ae35;
+		x ^= x >>> 16;
+		return x;
 	} // h
 
 	/***************************************************************************
@@ -10,12 +10,28 @@ import java.io.*;
 
 import static java.lang.System.out;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /*******************************************************************************
  * This class allows data tuples/tuples (e.g., those making up a relational
- * table) to be stored in a random access file. This implementation requires
- * that each tuple be packed into a fixed length byte array.
+ * table) to be stored in a random access file. Records are variable length and
+ * are kept in slotted pages: each page starts with a header (number of slots
+ * and the start of the heap), followed by a slot table of (offset, length)
+ * pairs, while the records themselves are placed in a heap that grows from the
+ * end of the page towards the slot table. Optionally, sealed pages (all but
+ * the last one) are deflated into blocks of a separate compressed file and
+ * inflated into the page cache when they are read again. The file is only
+ * accessed through positional reads and writes of its channel, so no file
+ * pointer is shared. Tuples are added by one thread at a time (see Table),
+ * while any number of threads may read the records added before they
+ * started, either through the (synchronized) page cache or through Readers
+ * of their own: records are never moved, and the last page is only replaced
+ * under the guard of the page cache.
  */
 @SuppressWarnings("all")
 public class FileList extends AbstractList<Comparable[]> implements
@@ -25,6 +41,31 @@ public class FileList extends AbstractList<Comparable[]> implements
 	 */
 	private static final String EXT = ".dat";
 
+	/**
+	 * File extension for compressed data files.
+	 */
+	private static final String CEXT = ".cdat";
+
+	/**
+	 * The size of a regular page in bytes.
+	 */
+	static final int PAGE_SIZE = 4096;
+
+	/**
+	 * The size of the page header (number of slots, start of the heap).
+	 */
+	private static final int HEADER = 8;
+
+	/**
+	 * The size of a slot table entry (record offset, record length).
+	 */
+	private static final int SLOT = 8;
+
+	/**
+	 * The number of pages kept in the page cache.
+	 */
+	private static final int CACHE_PAGES = 16;
+
 	/**
 	 * The random access file that holds the tuples.
 	 */
@@ -36,36 +77,121 @@ public class FileList extends AbstractList<Comparable[]> implements
 	private final Table table;
 
 	/**
-	 * The number bytes required to store a "packed tuple"/record.
+	 * Counter for the number of tuples in this list.
 	 */
-	private final int recordSize;
+	private int nRecords = 0;
 
 	/**
-	 * Counter for the number of tuples in this list.
+	 * Counter for the number of pages in this list (published after the page
+	 * arrays are updated).
 	 */
-	private int nRecords = 0;
+	private volatile int nPages = 0;
+
+	/**
+	 * The file offset of each page (the offset of its block in the compressed
+	 * file for sealed pages of a compressed list).
+	 */
+	private long[] pageOffset = new long[16];
+
+	/**
+	 * The (uncompressed) size of each page.
+	 */
+	private int[] pageSize = new int[16];
+
+	/**
+	 * The size of the compressed block of each sealed page (compressed lists
+	 * only).
+	 */
+	private int[] blockSize = new int[16];
+
+	/**
+	 * The index of the first record stored in each page.
+	 */
+	private int[] firstRecord = new int[16];
+
+	/**
+	 * The offset at which the next page will be written.
+	 */
+	private long fileEnd = 0;
+
+	/**
+	 * The last page of the file, the only one records are appended to.
+	 */
+	private ByteBuffer tail = null;
+
+	/**
+	 * The file offset of the last page.
+	 */
+	private long tailOffset = 0;
+
+	/**
+	 * The file holding the compressed blocks of the sealed pages (null unless
+	 * the list is compressed).
+	 */
+	private RandomAccessFile blocks = null;
+
+	/**
+	 * The offset at which the next compressed block will be written.
+	 */
+	private long blocksEnd = 0;
+
+	/**
+	 * Compressor for sealed pages.
+	 */
+	private Deflater deflater;
+
+	/**
+	 * The reader used to fill the page cache.
+	 */
+	private final Reader reader = new Reader();
+
+	/**
+	 * Buffer for compressed blocks.
+	 */
+	private byte[] block = new byte[0];
+
+	/**
+	 * The page cache, mapping page numbers to recently read pages in least
+	 * recently used order.
+	 */
+	private final LinkedHashMap<Integer, ByteBuffer> cache = new LinkedHashMap<Integer, ByteBuffer>(
+			2 * CACHE_PAGES, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> e) {
+			return size() > CACHE_PAGES;
+		} // removeEldestEntry
+	};
+
+	/**
+	 * The most recently read page (reused by sequential scans), guarded by
+	 * the page cache like the cache itself.
+	 */
+	private ByteBuffer cached = null;
+
+	/**
+	 * The page number of the most recently read page (read without the guard
+	 * as a hint only).
+	 */
+	private volatile int cachedPage = -1;
 
 	/***************************************************************************
-	 * Construct a FileList.
-	 * 
+	 * Construct a FileList. The data file of a table with a checkpoint is
+	 * kept, so the table can restore its records from it (see restore).
+	 *
 	 * @param _table
-	 *            the name of list
-	 * @param _recordSize
-	 *            the size of tuple in bytes.
+	 *            the table the list stores tuples for
 	 */
-	public FileList(Table _table, int _recordSize) {
+	public FileList(Table _table) {
 		table = _table;
-		recordSize = _recordSize;
 
 		try {
 			File temp = new File(table.getName() + EXT);
-			if (temp.exists() && !temp.delete()){
+			if (temp.exists() && !Checkpoint.exists(table.getName()) && !temp.delete()){
 				System.err.println("Please remove this file and try to run the project again. File --> " + temp.getAbsolutePath());
 				System.exit(-1);
 			}
-			
+
 			file = new RandomAccessFile(table.getName() + EXT, "rw");
-			
+
 		} catch (FileNotFoundException ex) {
 			file = null;
 			out.println("FileList.constructor: unable to open - " + ex);
@@ -73,77 +199,845 @@ public class FileList extends AbstractList<Comparable[]> implements
 	} // constructor
 
 	/***************************************************************************
-	 * Add a new tuple into the file list by packing it into a record and
-	 * writing this record to the random access file. Write the record either at
-	 * the end-of-file or into an empty slot.
-	 * 
+	 * Keep the sealed pages of this (empty) list compressed: whenever the last
+	 * page fills up, it is deflated into a block appended to a compressed file
+	 * and only the new last page is kept in the data file. Blocks are inflated
+	 * into the page cache when their records are read.
+	 *
+	 * @return whether the list is compressed
+	 */
+	public boolean compress() {
+		if (blocks != null)
+			return true;
+		if (nRecords > 0)
+			return false;
+
+		try {
+			File temp = new File(table.getName() + CEXT);
+			if (temp.exists() && !Checkpoint.exists(table.getName()) && !temp.delete()){
+				System.err.println("Please remove this file and try to run the project again. File --> " + temp.getAbsolutePath());
+				System.exit(-1);
+			}
+
+			blocks = new RandomAccessFile(table.getName() + CEXT, "rw");
+		} catch (FileNotFoundException ex) {
+			out.println("FileList.compress: unable to open - " + ex);
+			return false;
+		} // try
+
+		deflater = new Deflater(Deflater.BEST_SPEED);
+		return true;
+	} // compress
+
+	/***************************************************************************
+	 * Add a new tuple into the file list by packing it directly into the heap
+	 * of the last page and writing this record to the file. A new page is
+	 * started when the record does not fit into the free space of the last
+	 * page.
+	 *
 	 * @param tuple
 	 *            the tuple to add
 	 * @return whether the addition succeeded
 	 */
 	public boolean add(Comparable[] tuple) {
-		byte[] record = table.pack(tuple);
+		TupleCodec codec = table.codec();
+		int length = codec.size(tuple);
 
-		if (record.length != recordSize) {
-			out.println("FileList.add: wrong record size " + record.length);
-			return false;
-		} // if
+		int heap = reserve(length);
+		codec.encode(tuple, tail);
+		return write(heap, length);
+	} // add
 
-		try {
-			this.file.seek(this.file.length());
-			this.file.write(record);
-			
-			nRecords++;
-		} catch (IOException e) {
-			System.err.println("There was an error while writing to file");
-			e.printStackTrace();
-		}
+	/***************************************************************************
+	 * Add a new row (laid out by the table's codec) by packing it directly
+	 * into the heap of the last page, without boxing its values.
+	 *
+	 * @param row
+	 *            the row to add
+	 * @return whether the addition succeeded
+	 */
+	public boolean add(Row row) {
+		TupleCodec codec = table.codec();
+		int length = codec.size(row);
 
-		return true;
+		int heap = reserve(length);
+		codec.encode(row, tail);
+		return write(heap, length);
 	} // add
 
 	/***************************************************************************
-	 * Get the ith tuple by seeking to the correct file position and reading the
-	 * record.
-	 * 
+	 * Add the projection of the record behind view v onto the given attributes
+	 * by copying its raw bytes into the last page, i.e., without unpacking it.
+	 * The projected domains must be the domains of the table of this list.
+	 *
+	 * @param v
+	 *            the view over the source record
+	 * @param cols
+	 *            the source attribute positions to keep
+	 * @return whether the addition succeeded
+	 */
+	public boolean add(RecordView v, int[] cols) {
+		int length = v.size(cols);
+
+		int heap = reserve(length);
+		v.project(cols, tail);
+		return write(heap, length);
+	} // add
+
+	/***************************************************************************
+	 * Get the ith tuple by locating the page holding it and reading the record
+	 * through the page's slot table.
+	 *
 	 * @param i
 	 *            the index of the tuple to get
 	 * @return the ith tuple
 	 */
 	public Comparable[] get(int i) {
-		byte[] record = new byte[recordSize];
+		RecordView v = view(i, null);
+		return (v == null) ? null : v.toTuple();
+	} // get
 
-		try {
-			file.seek(i * recordSize);
-			file.read(record, 0, recordSize);
-		} catch (IOException e) {
-			System.err
-					.println("There was an error while reading from the file.");
-			e.printStackTrace();
-		}
+	/***************************************************************************
+	 * Position a view over the ith record without decoding it. Pages read
+	 * into the page cache are never modified, so the view stays valid while no
+	 * tuples are added.
+	 *
+	 * @param i
+	 *            the index of the record
+	 * @param v
+	 *            the view to reposition (null to create a new one)
+	 * @return the view over the ith record
+	 */
+	public RecordView view(int i, RecordView v) {
+		if (i < 0 || i >= nRecords)
+			throw new IndexOutOfBoundsException("FileList.view: " + i);
 
-		return table.unpack(record);
-	} // get
+		int p = pageOf(i, cachedPage);
+		ByteBuffer page = page(p);
+		if (page == null)
+			return null;
+
+		if (v == null)
+			v = new RecordView(table.codec());
+		return v.reset(page, page.getInt(HEADER + (i - firstRecord[p]) * SLOT));
+	} // view
+
+	/***************************************************************************
+	 * Return a new reader over this list, e.g., for one task of a parallel
+	 * scan.
+	 *
+	 * @return the reader
+	 */
+	public Reader reader() {
+		return new Reader();
+	} // reader
+
+	/***************************************************************************
+	 * Return the index of the first record of each range of (about) grain
+	 * records among the first size records, with ranges cut at page boundaries
+	 * so that no two ranges share a page, followed by size.
+	 *
+	 * @param grain
+	 *            the number of records per range
+	 * @param size
+	 *            the number of records to split (e.g., those of a snapshot)
+	 * @return the range boundaries
+	 */
+	public int[] split(int grain, int size) {
+		int pages = nPages;
+		int[] bounds = new int[pages + 1];
+		int n = 0;
+		for (int p = 0; p < pages && firstRecord[p] < size; p++) {
+			if (p == 0 || firstRecord[p] - bounds[n - 1] >= grain)
+				bounds[n++] = firstRecord[p];
+		} // for
+		if (n == 0)
+			bounds[n++] = 0;
+		bounds[n++] = size;
+		return Arrays.copyOf(bounds, n);
+	} // split
 
 	/***************************************************************************
 	 * Return the size of the file list in terms of the number of
 	 * tuples/records.
-	 * 
+	 *
 	 * @return the number of tuples
 	 */
 	public int size() {
 		return nRecords;
 	} // size
 
+	/***************************************************************************
+	 * Return the number of pages used by the file list.
+	 *
+	 * @return the number of pages
+	 */
+	public int pages() {
+		return nPages;
+	} // pages
+
+	/***************************************************************************
+	 * Save the page directory and the last page of this list (for a
+	 * checkpoint). The records themselves stay in the data (and compressed)
+	 * file, which only needs to be forced (see force), since records are
+	 * written to it as they are added and never moved.
+	 *
+	 * @param out
+	 *            the output to save them to
+	 * @throws IOException
+	 *             if they cannot be written
+	 */
+	void save(DataOutput out) throws IOException {
+		int pages = nPages;
+		out.writeBoolean(blocks != null);
+		out.writeInt(nRecords);
+		out.writeInt(pages);
+		out.writeLong(fileEnd);
+		out.writeLong(tailOffset);
+		out.writeLong(blocksEnd);
+		for (int p = 0; p < pages; p++) {
+			out.writeLong(pageOffset[p]);
+			out.writeInt(pageSize[p]);
+			out.writeInt(blockSize[p]);
+			out.writeInt(firstRecord[p]);
+		} // for
+		if (pages > 0)
+			out.write(tail.array(), 0, pageSize[pages - 1]);
+	} // save
+
+	/***************************************************************************
+	 * Restore the saved page directory and last page into this (empty) list,
+	 * reopening the records in the data file as of the checkpoint. The last
+	 * page is written back, since later records (to be replayed from the log)
+	 * may have changed it on disk.
+	 *
+	 * @param in
+	 *            the input to restore them from
+	 * @return whether the list could be restored (it must be compressed iff
+	 *         it was)
+	 * @throws IOException
+	 *             if they cannot be read or the last page written
+	 */
+	boolean restore(DataInput in) throws IOException {
+		if (in.readBoolean() != (blocks != null) || nRecords > 0) {
+			out.println("FileList.restore: the list is not empty or not compressed as saved");
+			return false;
+		} // if
+
+		int records = in.readInt();
+		int pages = in.readInt();
+		fileEnd = in.readLong();
+		tailOffset = in.readLong();
+		blocksEnd = in.readLong();
+		int capacity = Math.max(16, pages);
+		pageOffset = new long[capacity];
+		pageSize = new int[capacity];
+		blockSize = new int[capacity];
+		firstRecord = new int[capacity];
+		for (int p = 0; p < pages; p++) {
+			pageOffset[p] = in.readLong();
+			pageSize[p] = in.readInt();
+			blockSize[p] = in.readInt();
+			firstRecord[p] = in.readInt();
+		} // for
+
+		if (pages > 0) {
+			byte[] last = new byte[pageSize[pages - 1]];
+			in.readFully(last);
+			writeFully(file.getChannel(), ByteBuffer.wrap(last), tailOffset);
+			synchronized (cache) {
+				tail = ByteBuffer.wrap(last);
+				nPages = pages;
+			} // synchronized
+		} // if
+		nRecords = records;
+		return true;
+	} // restore
+
+	/***************************************************************************
+	 * Keep only the given records, moving them (in order) into new pages, see
+	 * Table.vacuum. No reader may use the list meanwhile. The new pages are
+	 * written after the end of the files, so the old ones stay intact (and a
+	 * checkpoint referring to them valid) until the list switches to the new
+	 * page directory. Unless the old pages must be kept, the new ones are
+	 * then moved to the start of the files, which are truncated.
+	 *
+	 * @param keep
+	 *            the records to keep, in ascending order
+	 * @param n
+	 *            the number of records to keep
+	 * @param inPlace
+	 *            whether the space of the old pages may be reused (i.e., no
+	 *            checkpoint refers to them)
+	 * @return whether the records were moved (if not, the list is unchanged)
+	 */
+	boolean retain(int[] keep, int n, boolean inPlace) {
+		int pages = nPages;
+		int records = nRecords;
+		long[] oldOffset = pageOffset;
+		int[] oldSize = pageSize;
+		int[] oldBlock = blockSize;
+		int[] oldFirst = firstRecord;
+		ByteBuffer oldTail = tail;
+		long oldTailOffset = tailOffset;
+		long start = fileEnd;
+		long blocksStart = blocksEnd;
+		RandomAccessFile compressed = blocks;
+
+		Reader r = new Reader();
+		ByteBuffer page = null;
+		int read = -1;
+		pageOffset = new long[16];
+		pageSize = new int[16];
+		blockSize = new int[16];
+		firstRecord = new int[16];
+		nRecords = 0;
+		synchronized (cache) {
+			tail = null;
+			nPages = 0;
+			cache.clear();
+			cached = null;
+			cachedPage = -1;
+		} // synchronized
+
+		boolean moved = true;
+		for (int k = 0, p = 0; k < n && moved; k++) {
+			int i = keep[k];
+			while (p + 1 < pages && oldFirst[p + 1] <= i)
+				p++;
+			if (p == pages - 1) {
+				page = oldTail;
+			} else if (p != read) {
+				if (page == null || page == oldTail || page.capacity() != oldSize[p])
+					page = ByteBuffer.allocate(oldSize[p]);
+				read = r.read(oldOffset[p], oldSize[p], oldBlock[p], page) ? p : -1;
+				moved = read >= 0;
+			} // if
+			if (!moved)
+				break;
+
+			int slot = HEADER + (i - oldFirst[p]) * SLOT;
+			int length = page.getInt(slot + 4);
+			int heap = reserve(length);
+			System.arraycopy(page.array(), page.getInt(slot), tail.array(), heap, length);
+			moved = write(heap, length);
+		} // for
+
+		try {
+			if (moved && inPlace) {
+				for (int p = 0; p < nPages; p++)
+					pageOffset[p] -= (blockSize[p] > 0) ? blocksStart : start;
+				move(file.getChannel(), start, fileEnd - start);
+				tailOffset -= start;
+				fileEnd -= start;
+				file.setLength(fileEnd);
+				if (blocks != null) {
+					move(blocks.getChannel(), blocksStart, blocksEnd - blocksStart);
+					blocksEnd -= blocksStart;
+					blocks.setLength(blocksEnd);
+				} // if
+			} // if
+		} catch (IOException e) {
+			System.err.println("There was an error while moving the pages of the file");
+			e.printStackTrace();
+			moved = false;
+		}
+
+		if (!moved) {
+			pageOffset = oldOffset;
+			pageSize = oldSize;
+			blockSize = oldBlock;
+			firstRecord = oldFirst;
+			nRecords = records;
+			tailOffset = oldTailOffset;
+			fileEnd = start;
+			blocksEnd = blocksStart;
+			blocks = compressed;
+			synchronized (cache) {
+				tail = oldTail;
+				nPages = pages;
+				cache.clear();
+				cached = null;
+				cachedPage = -1;
+			} // synchronized
+		} // if
+		return moved;
+	} // retain
+
+	/***************************************************************************
+	 * Force the records written so far to disk.
+	 *
+	 * @return whether they were forced
+	 */
+	boolean force() {
+		try {
+			file.getChannel().force(false);
+			if (blocks != null)
+				blocks.getChannel().force(false);
+			return true;
+		} catch (IOException e) {
+			System.err.println("There was an error while forcing the data file");
+			e.printStackTrace();
+			return false;
+		}
+	} // force
+
 	/***************************************************************************
 	 * Close the file.
 	 */
 	public void close() {
 		try {
 			file.close();
+			if (blocks != null)
+				blocks.close();
 		} catch (IOException ex) {
 			out.println("FileList.close: unable to close - " + ex);
 		} // try
 	} // close
 
+	/***************************************************************************
+	 * Reserve room for a record of the given length in the last page (starting
+	 * a new page if needed) and position the last page at it.
+	 *
+	 * @param length
+	 *            the length of the record
+	 * @return the offset of the record within the last page
+	 */
+	private int reserve(int length) {
+		if (tail == null || free(tail) < length + SLOT) {
+			newPage(length);
+		} // if
+
+		int heap = tail.getInt(4) - length;
+		tail.position(heap);
+		return heap;
+	} // reserve
+
+	/***************************************************************************
+	 * Register the record just placed at offset heap of the last page in its
+	 * slot table and write the record, its slot and the page header to the
+	 * file.
+	 *
+	 * @param heap
+	 *            the offset of the record within the last page
+	 * @param length
+	 *            the length of the record
+	 * @return whether the write succeeded
+	 */
+	private boolean write(int heap, int length) {
+		int slots = tail.getInt(0);
+		tail.putInt(HEADER + slots * SLOT, heap);
+		tail.putInt(HEADER + slots * SLOT + 4, length);
+		tail.putInt(0, slots + 1);
+		tail.putInt(4, heap);
+
+		try {
+			long base = tailOffset;
+			FileChannel channel = file.getChannel();
+			writeFully(channel, ByteBuffer.wrap(tail.array(), heap, length), base + heap);
+			writeFully(channel, ByteBuffer.wrap(tail.array(), HEADER + slots * SLOT, SLOT), base + HEADER + slots * SLOT);
+			writeFully(channel, ByteBuffer.wrap(tail.array(), 0, HEADER), base);
+
+			nRecords++;
+		} catch (IOException e) {
+			System.err.println("There was an error while writing to file");
+			e.printStackTrace();
+			return false;
+		}
+
+		return true;
+	} // write
+
+	/***************************************************************************
+	 * Start a new (empty) last page, sealing the current one. Records too big
+	 * for a regular page get an oversized page of their own (a multiple of the
+	 * page size).
+	 *
+	 * @param recordLength
+	 *            the length of the record that did not fit
+	 */
+	private void newPage(int recordLength) {
+		int size = PAGE_SIZE;
+		while (size < HEADER + SLOT + recordLength)
+			size += PAGE_SIZE;
+
+		if (blocks != null && tail != null && !seal())
+			blocks = null;
+
+		int p = nPages;
+		if (p == pageOffset.length) {
+			pageOffset = Arrays.copyOf(pageOffset, 2 * p);
+			pageSize = Arrays.copyOf(pageSize, 2 * p);
+			blockSize = Arrays.copyOf(blockSize, 2 * p);
+			firstRecord = Arrays.copyOf(firstRecord, 2 * p);
+		} // if
+		// the data file region of a page sealed into a block is reused
+		if (p == 0 || blockSize[p - 1] == 0)
+			tailOffset = fileEnd;
+		fileEnd = Math.max(fileEnd, tailOffset + size);
+		pageOffset[p] = tailOffset;
+		pageSize[p] = size;
+		firstRecord[p] = nRecords;
+
+		ByteBuffer page = ByteBuffer.allocate(size);
+		page.putInt(0, 0);
+		page.putInt(4, size);
+		synchronized (cache) {
+			tail = page;
+			nPages = p + 1;
+		} // synchronized
+	} // newPage
+
+	/***************************************************************************
+	 * Deflate the (full) last page into a block appended to the compressed
+	 * file. The data file region of the page is then reused for the next last
+	 * page. The sealed page stays in the page cache, since its records were
+	 * just written.
+	 *
+	 * @return whether the page was compressed (if not, it stays in the data
+	 *         file and the list stops compressing)
+	 */
+	private boolean seal() {
+		int p = nPages - 1;
+		int size = pageSize[p];
+		if (block.length < size + (size >> 10) + 64)
+			block = new byte[size + (size >> 10) + 64];
+
+		deflater.reset();
+		deflater.setInput(tail.array(), 0, size);
+		deflater.finish();
+		int length = deflater.deflate(block);
+		if (!deflater.finished())
+			return false;
+
+		try {
+			writeFully(blocks.getChannel(), ByteBuffer.wrap(block, 0, length), blocksEnd);
+		} catch (IOException e) {
+			System.err.println("There was an error while writing to the compressed file");
+			e.printStackTrace();
+			return false;
+		}
+
+		pageOffset[p] = blocksEnd;
+		blockSize[p] = length;
+		blocksEnd += length;
+		synchronized (cache) {
+			cache.put(p, tail);
+		} // synchronized
+		return true;
+	} // seal
+
+	/***************************************************************************
+	 * Return the number of free bytes between the slot table and the heap of
+	 * the given page.
+	 *
+	 * @param page
+	 *            the page to check
+	 * @return the number of free bytes
+	 */
+	private static int free(ByteBuffer page) {
+		return page.getInt(4) - (HEADER + page.getInt(0) * SLOT);
+	} // free
+
+	/***************************************************************************
+	 * Find the page holding the ith record using binary search over the first
+	 * record index of each page.
+	 *
+	 * @param i
+	 *            the index of the record
+	 * @param hint
+	 *            the page to check first (e.g., the one read last)
+	 * @return the page number
+	 */
+	private int pageOf(int i, int hint) {
+		if (hint >= 0 && hint < nPages - 1 && firstRecord[hint] <= i
+				&& i < firstRecord[hint + 1])
+			return hint;
+
+		int lo = 0;
+		int hi = nPages - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (firstRecord[mid] <= i)
+				lo = mid;
+			else
+				hi = mid - 1;
+		} // while
+		return lo;
+	} // pageOf
+
+	/***************************************************************************
+	 * Return the pth page, reading it from the file (inflating its block if it
+	 * is compressed) unless it is the last page or in the page cache. Threads
+	 * take turns on the page cache (and the reader filling it).
+	 *
+	 * @param p
+	 *            the page number
+	 * @return the page
+	 */
+	private ByteBuffer page(int p) {
+		synchronized (cache) {
+			if (p == nPages - 1)
+				return tail;
+			if (p == cachedPage)
+				return cached;
+
+			ByteBuffer page = cache.get(p);
+			if (page == null) {
+				page = ByteBuffer.allocate(pageSize[p]);
+				if (!reader.read(p, page))
+					return null;
+				cache.put(p, page);
+			} // if
+
+			cached = page;
+			cachedPage = p;
+			return page;
+		} // synchronized
+	} // page
+
+	/***************************************************************************
+	 * Return the last page if it is the pth page.
+	 *
+	 * @param p
+	 *            the page number
+	 * @return the last page, or null if p is not the last page
+	 */
+	private ByteBuffer tail(int p) {
+		synchronized (cache) {
+			return (p == nPages - 1) ? tail : null;
+		} // synchronized
+	} // tail
+
+	/***************************************************************************
+	 * This inner class provides a reader over the list with a page buffer and
+	 * decompressor of its own. Pages are read through positional reads of the
+	 * file's channel, so readers can be used by different threads at the same
+	 * time (even while tuples are added). Views and batches filled through a
+	 * reader are valid until the reader reads another page.
+	 */
+	public class Reader {
+		/**
+		 * The most recently read page.
+		 */
+		private ByteBuffer cached = null;
+
+		/**
+		 * The page number of the most recently read page.
+		 */
+		private int cachedPage = -1;
+
+		/**
+		 * Decompressor for the blocks of compressed pages.
+		 */
+		private Inflater inflater = null;
+
+		/**
+		 * Buffer for compressed blocks.
+		 */
+		private byte[] block = new byte[0];
+
+		/***********************************************************************
+		 * Position a view over the ith record without decoding it.
+		 *
+		 * @param i
+		 *            the index of the record
+		 * @param v
+		 *            the view to reposition (null to create a new one)
+		 * @return the view over the ith record
+		 */
+		public RecordView view(int i, RecordView v) {
+			if (i < 0 || i >= nRecords)
+				throw new IndexOutOfBoundsException("FileList.Reader.view: " + i);
+
+			int p = pageOf(i, cachedPage);
+			ByteBuffer page = page(p);
+			if (page == null)
+				return null;
+
+			if (v == null)
+				v = new RecordView(table.codec());
+			return v.reset(page, page.getInt(HEADER + (i - firstRecord[p]) * SLOT));
+		} // view
+
+		/***********************************************************************
+		 * Load records start, ..., start + n - 1 into the vectors of a batch
+		 * (see Batch), page by page: each page is fetched once and its records
+		 * are located through its slot table.
+		 *
+		 * @param start
+		 *            the index of the first record
+		 * @param n
+		 *            the number of records
+		 * @param codec
+		 *            the codec of the records
+		 * @param vector
+		 *            the vector of each attribute to load (null to skip it)
+		 */
+		void load(int start, int n, TupleCodec codec, Object[] vector) {
+			int i = start;
+			int end = start + n;
+			while (i < end) {
+				int p = pageOf(i, cachedPage);
+				ByteBuffer page = page(p);
+				int last = (p + 1 < nPages) ? Math.min(end, firstRecord[p + 1]) : end;
+				for (int j = 0; j < vector.length; j++) {
+					Object vec = vector[j];
+					if (vec == null)
+						continue;
+					for (int r = i; r < last; r++) {
+						int base = page.getInt(HEADER + (r - firstRecord[p]) * SLOT);
+						if (vec instanceof long[])
+							((long[]) vec)[r - start] = codec.getLong(page, base, j);
+						else if (vec instanceof double[])
+							((double[]) vec)[r - start] = codec.getDouble(page, base, j);
+						else
+							((String[]) vec)[r - start] = (String) codec.decode(page, base, j);
+					} // for
+				} // for
+				i = last;
+			} // while
+		} // load
+
+		/***********************************************************************
+		 * Return the pth page, reading it into this reader's page buffer
+		 * unless it is the last page or the one read last.
+		 *
+		 * @param p
+		 *            the page number
+		 * @return the page
+		 */
+		private ByteBuffer page(int p) {
+			if (p == cachedPage)
+				return cached;
+			ByteBuffer last = tail(p);
+			if (last != null)
+				return last;
+
+			if (cached == null || cached.capacity() != pageSize[p])
+				cached = ByteBuffer.allocate(pageSize[p]);
+			cachedPage = read(p, cached) ? p : -1;
+			return (cachedPage < 0) ? null : cached;
+		} // page
+
+		/***********************************************************************
+		 * Read the (sealed) pth page from the file into the given buffer,
+		 * inflating its block if it is compressed.
+		 *
+		 * @param p
+		 *            the page number
+		 * @param page
+		 *            the buffer to read into (of the page's size)
+		 * @return whether the page could be read
+		 */
+		boolean read(int p, ByteBuffer page) {
+			return read(pageOffset[p], pageSize[p], blockSize[p], page);
+		} // read
+
+		/***********************************************************************
+		 * Read a (sealed) page given its place in the files into the given
+		 * buffer, inflating its block if it is compressed.
+		 *
+		 * @param offset
+		 *            the file offset of the page (of its block if compressed)
+		 * @param size
+		 *            the size of the page
+		 * @param length
+		 *            the size of its compressed block (0 if not compressed)
+		 * @param page
+		 *            the buffer to read into (of the page's size)
+		 * @return whether the page could be read
+		 */
+		boolean read(long offset, int size, int length, ByteBuffer page) {
+			try {
+				if (length > 0) {
+					if (block.length < length)
+						block = new byte[length];
+					readFully(blocks.getChannel(), ByteBuffer.wrap(block, 0, length), offset);
+					if (inflater == null)
+						inflater = new Inflater();
+					inflater.reset();
+					inflater.setInput(block, 0, length);
+					inflater.inflate(page.array());
+				} else {
+					readFully(file.getChannel(), ByteBuffer.wrap(page.array(), 0, size), offset);
+				} // if
+			} catch (IOException | DataFormatException e) {
+				System.err
+						.println("There was an error while reading from the file.");
+				e.printStackTrace();
+				return false;
+			}
+			return true;
+		} // read
+
+	} // Reader inner class
+
+	/***************************************************************************
+	 * Fill buf from the channel starting at the given file position, without
+	 * moving the channel's own position.
+	 *
+	 * @param channel
+	 *            the channel to read from
+	 * @param buf
+	 *            the buffer to fill
+	 * @param position
+	 *            the file position to start at
+	 * @throws IOException
+	 *             if the end of the file is reached first
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buf,
+			long position) throws IOException {
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, position + buf.position()) < 0)
+				throw new EOFException("FileList: unexpected end of file");
+		} // while
+	} // readFully
+
+	/***************************************************************************
+	 * Move the given number of bytes at position from of the channel to its
+	 * start, a chunk at a time (in ascending order, so a chunk is only
+	 * overwritten once it has been moved).
+	 *
+	 * @param channel
+	 *            the channel of the file
+	 * @param from
+	 *            the position of the first byte to move
+	 * @param length
+	 *            the number of bytes to move
+	 * @throws IOException
+	 *             if the bytes cannot be read or written
+	 */
+	private static void move(FileChannel channel, long from, long length)
+			throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(16 * PAGE_SIZE);
+		for (long at = 0; at < length; at += buf.capacity()) {
+			buf.clear();
+			buf.limit((int) Math.min(buf.capacity(), length - at));
+			readFully(channel, buf, from + at);
+			buf.flip();
+			writeFully(channel, buf, at);
+		} // for
+	} // move
+
+	/***************************************************************************
+	 * Write buf to the channel starting at the given file position, without
+	 * moving the channel's own position.
+	 *
+	 * @param channel
+	 *            the channel to write to
+	 * @param buf
+	 *            the buffer to write
+	 * @param position
+	 *            the file position to start at
+	 * @throws IOException
+	 *             if the write fails
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buf,
+			long position) throws IOException {
+		long at = position - buf.position();
+		while (buf.hasRemaining())
+			channel.write(buf, at + buf.position());
+	} // writeFully
+
 } // FileList class
@@ -0,0 +1,425 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  HashJoin.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*******************************************************************************
+ * This class computes an equi-join of two tables with a radix partitioned hash
+ * join that runs on several threads. Every phase is split into independent
+ * tasks on a ForkJoinPool:
+ *
+ * (1) the join key and its hash are extracted for every tuple of both tables,
+ * range by range (see Batch);
+ *
+ * (2) both tables are partitioned on the high bits of the hash: each chunk of
+ * tuples builds a histogram of its partitions, the histograms are summed into
+ * the start of every chunk's share of every partition, and the chunks then
+ * scatter their tuple positions there;
+ *
+ * (3) each pair of matching partitions (small enough to stay in cache) is
+ * joined on its own, building a chained hash table over the right partition
+ * and probing it with the left one.
+ *
+ * The right table is the build side: its keys are extracted first and, if
+ * requested, hashed into a Bloom filter that is pushed down into the
+ * extraction of the left keys, so left tuples whose key cannot match are
+ * dropped as soon as their key is decoded (only the join attribute is) and
+ * are never partitioned or probed.
+ *
+ * The matching pairs of positions are finally sorted, so the join produces
+ * the same order as a nested loop join (left tuples in order, each with its
+ * matches in order).
+ */
+@SuppressWarnings("rawtypes")
+class HashJoin {
+	/**
+	 * The number of tuples a partition of the right table should hold at most
+	 * (about).
+	 */
+	private static final int PARTITION_SIZE = 2048;
+
+	/**
+	 * The maximum number of partitions.
+	 */
+	private static final int MAX_PARTITIONS = 1024;
+
+	/**
+	 * The join keys of a table: longs (integral attributes or dictionary
+	 * codes) or objects (all other attributes), with their hashes and, when
+	 * a runtime filter was applied, the tuples it dropped.
+	 */
+	private static class Keys {
+		long[] longs;
+		Object[] objects;
+		int[] hash;
+		int[] bounds;
+		boolean[] dropped;
+
+		boolean equal(int i, Keys other, int k) {
+			return (longs != null) ? longs[i] == other.longs[k]
+					: objects[i].equals(other.objects[k]);
+		} // equal
+	} // Keys inner class
+
+	/***************************************************************************
+	 * This inner class runs a task for each of the indices lo, ..., hi - 1 by
+	 * recursively splitting the index range.
+	 */
+	private static abstract class Tasks extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int lo, hi;
+
+		Tasks(int _lo, int _hi) {
+			lo = _lo;
+			hi = _hi;
+		} // constructor
+
+		abstract void run(int t);
+
+		abstract Tasks sub(int _lo, int _hi);
+
+		protected void compute() {
+			if (hi - lo == 1) {
+				run(lo);
+				return;
+			} // if
+			int mid = (lo + hi) >>> 1;
+			invokeAll(sub(lo, mid), sub(mid, hi));
+		} // compute
+	} // Tasks inner class
+
+	/***************************************************************************
+	 * Join the tuples of two tables on tuples1 [col1] == tuples2 [col2].
+	 *
+	 * @param tuples1
+	 *            the tuples of the left table
+	 * @param size1
+	 *            the number of left tuples to join (e.g., those of a snapshot)
+	 * @param codec1
+	 *            the codec of the left table
+	 * @param col1
+	 *            the position of the left join attribute
+	 * @param tuples2
+	 *            the tuples of the right table
+	 * @param size2
+	 *            the number of right tuples to join
+	 * @param codec2
+	 *            the codec of the right table
+	 * @param col2
+	 *            the position of the right join attribute
+	 * @param asLong
+	 *            whether the join attributes are compared as longs (see
+	 *            TupleCodec.integral)
+	 * @param translate
+	 *            for dictionary encoded join attributes, the translation of
+	 *            the left codes into right ones (see Dictionary.translate),
+	 *            otherwise null
+	 * @param filter
+	 *            whether to filter the left tuples with a Bloom filter over
+	 *            the right keys (a runtime filter)
+	 * @param parallelism
+	 *            the number of threads to use
+	 * @return the matching pairs, each as (left position << 32 | right
+	 *         position), in ascending order
+	 */
+	static long[] join(List<Comparable[]> tuples1, int size1,
+			TupleCodec codec1, int col1, List<Comparable[]> tuples2, int size2,
+			TupleCodec codec2, int col2, boolean asLong, int[] translate,
+			boolean filter, int parallelism) {
+		ForkJoinPool pool = ParallelScan.pool(parallelism);
+
+		Keys right = keys(pool, tuples2, size2, codec2, col2, asLong, null,
+				null, parallelism);
+		BloomFilter runtimeFilter = null;
+		if (filter) {
+			runtimeFilter = new BloomFilter(size2);
+			for (int h : right.hash)
+				runtimeFilter.add(BloomFilter.hash(h));
+		} // if
+		Keys left = keys(pool, tuples1, size1, codec1, col1, asLong,
+				translate, runtimeFilter, parallelism);
+
+		int parts = Integer.highestOneBit(Math.max(1, size2 / PARTITION_SIZE));
+		parts = Math.min(MAX_PARTITIONS,
+				Math.max(parts, Integer.highestOneBit(4 * parallelism)));
+		int bits = Integer.numberOfTrailingZeros(parts);
+
+		final int[][] start1 = new int[1][];
+		final int[][] start2 = new int[1][];
+		int[] pos1 = partition(pool, left, bits, start1);
+		int[] pos2 = partition(pool, right, bits, start2);
+
+		long[][] matches = new long[parts][];
+		pool.invoke(new Probe(0, parts, left, right, pos1, pos2, start1[0],
+				start2[0], bits, matches));
+
+		int n = 0;
+		for (long[] m : matches)
+			n += (int) m[0];
+		long[] pairs = new long[n];
+		n = 0;
+		for (long[] m : matches) {
+			System.arraycopy(m, 1, pairs, n, (int) m[0]);
+			n += (int) m[0];
+		} // for
+
+		if (parallelism > 1)
+			Arrays.parallelSort(pairs);
+		else
+			Arrays.sort(pairs);
+		return pairs;
+	} // join
+
+	/***************************************************************************
+	 * Extract the join keys and their hashes from the first size tuples of a
+	 * table, range by range (cut at page boundaries for a FileList), marking
+	 * the tuples whose keys the runtime filter (if any) rules out as dropped.
+	 */
+	private static Keys keys(ForkJoinPool pool,
+			final List<Comparable[]> tuples, int size, final TupleCodec codec,
+			final int col, boolean asLong, final int[] translate,
+			final BloomFilter filter, int parallelism) {
+		final Keys keys = new Keys();
+		keys.hash = new int[size];
+		if (asLong)
+			keys.longs = new long[size];
+		else
+			keys.objects = new Object[size];
+		if (filter != null)
+			keys.dropped = new boolean[size];
+
+		int grain = Math.max(Batch.SIZE, size / (4 * parallelism));
+		if (tuples instanceof FileList) {
+			keys.bounds = ((FileList) tuples).split(grain, size);
+		} else {
+			keys.bounds = new int[(size + grain - 1) / grain + 1];
+			for (int r = 0; r < keys.bounds.length; r++)
+				keys.bounds[r] = Math.min(r * grain, size);
+		} // if
+		if (size == 0)
+			return keys;
+
+		final boolean[] needed = new boolean[codec.type.length];
+		needed[col] = true;
+
+		class Extract extends Tasks {
+			private static final long serialVersionUID = 1L;
+
+			Extract(int lo, int hi) {
+				super(lo, hi);
+			} // constructor
+
+			Tasks sub(int lo, int hi) {
+				return new Extract(lo, hi);
+			} // sub
+
+			void run(int t) {
+				Batch b = new Batch(codec, needed);
+				int end = keys.bounds[t + 1];
+				for (int s = keys.bounds[t]; s < end; s += Batch.SIZE) {
+					int n = b.load(tuples, s, end);
+					if (keys.longs != null) {
+						long[] v = b.longs(col);
+						for (int i = 0; i < n; i++) {
+							long k = (translate == null) ? v[i]
+									: translate[(int) v[i]];
+							keys.longs[s + i] = k;
+							keys.hash[s + i] = hash(k);
+						} // for
+					} else {
+						for (int i = 0; i < n; i++) {
+							Object k = b.value(col, i);
+							keys.objects[s + i] = k;
+							keys.hash[s + i] = hash(k.hashCode());
+						} // for
+					} // if
+					if (filter != null) {
+						for (int i = s; i < s + n; i++)
+							keys.dropped[i] = !filter.mightContain(BloomFilter
+									.hash(keys.hash[i]));
+					} // if
+				} // for
+			} // run
+		} // Extract class
+
+		pool.invoke(new Extract(0, keys.bounds.length - 1));
+		return keys;
+	} // keys
+
+	/***************************************************************************
+	 * Partition the tuple positions of a table on the top bits of their
+	 * hashes: the chunks (the key ranges) count their tuples per partition
+	 * in parallel, then scatter their positions in parallel into their share
+	 * of each partition, so positions stay in ascending order within a
+	 * partition. Dropped tuples are left out.
+	 *
+	 * @return the positions ordered by partition (start [0] receives the
+	 *         start of every partition, followed by the number of tuples)
+	 */
+	private static int[] partition(ForkJoinPool pool, final Keys keys,
+			final int bits, int[][] start) {
+		final int parts = 1 << bits;
+		final int chunks = keys.bounds.length - 1;
+		final int[][] offset = new int[chunks][parts];
+		final int[] pos = new int[keys.hash.length];
+
+		int[] partStart = new int[parts + 1];
+		start[0] = partStart;
+		if (chunks <= 0 || pos.length == 0)
+			return pos;
+
+		class Histogram extends Tasks {
+			private static final long serialVersionUID = 1L;
+
+			Histogram(int lo, int hi) {
+				super(lo, hi);
+			} // constructor
+
+			Tasks sub(int lo, int hi) {
+				return new Histogram(lo, hi);
+			} // sub
+
+			void run(int t) {
+				int[] h = offset[t];
+				for (int i = keys.bounds[t]; i < keys.bounds[t + 1]; i++) {
+					if (keys.dropped == null || !keys.dropped[i])
+						h[part(keys.hash[i], bits)]++;
+				} // for
+			} // run
+		} // Histogram class
+		pool.invoke(new Histogram(0, chunks));
+
+		// turn the counts into the offset of each chunk's share
+		int at = 0;
+		for (int p = 0; p < parts; p++) {
+			partStart[p] = at;
+			for (int t = 0; t < chunks; t++) {
+				int c = offset[t][p];
+				offset[t][p] = at;
+				at += c;
+			} // for
+		} // for
+		partStart[parts] = at;
+
+		class Scatter extends Tasks {
+			private static final long serialVersionUID = 1L;
+
+			Scatter(int lo, int hi) {
+				super(lo, hi);
+			} // constructor
+
+			Tasks sub(int lo, int hi) {
+				return new Scatter(lo, hi);
+			} // sub
+
+			void run(int t) {
+				int[] o = offset[t];
+				for (int i = keys.bounds[t]; i < keys.bounds[t + 1]; i++) {
+					if (keys.dropped == null || !keys.dropped[i])
+						pos[o[part(keys.hash[i], bits)]++] = i;
+				} // for
+			} // run
+		} // Scatter class
+		pool.invoke(new Scatter(0, chunks));
+
+		return pos;
+	} // partition
+
+	/***************************************************************************
+	 * This inner class joins the partition pairs lo, ..., hi - 1, storing the
+	 * matches of partition p in matches [p] (whose first entry is the number
+	 * of pairs that follow).
+	 */
+	private static class Probe extends Tasks {
+		private static final long serialVersionUID = 1L;
+		private final Keys left, right;
+		private final int[] pos1, pos2, start1, start2;
+		private final int bits;
+		private final long[][] matches;
+
+		Probe(int lo, int hi, Keys _left, Keys _right, int[] _pos1,
+				int[] _pos2, int[] _start1, int[] _start2, int _bits,
+				long[][] _matches) {
+			super(lo, hi);
+			left = _left;
+			right = _right;
+			pos1 = _pos1;
+			pos2 = _pos2;
+			start1 = _start1;
+			start2 = _start2;
+			bits = _bits;
+			matches = _matches;
+		} // constructor
+
+		Tasks sub(int lo, int hi) {
+			return new Probe(lo, hi, left, right, pos1, pos2, start1, start2,
+					bits, matches);
+		} // sub
+
+		void run(int p) {
+			long[] out = new long[16];
+			int n = 0;
+			int from2 = start2[p];
+			int size2 = start2[p + 1] - from2;
+			if (size2 > 0) {
+				// chained hash table over the right partition, on the hash
+				// bits below the partition bits
+				int buckets = Integer.highestOneBit(Math.max(1, size2)) << 1;
+				int mask = buckets - 1;
+				int[] head = new int[buckets];
+				int[] next = new int[size2];
+				Arrays.fill(head, -1);
+				for (int e = size2 - 1; e >= 0; e--) {
+					int b = right.hash[pos2[from2 + e]] & mask;
+					next[e] = head[b];
+					head[b] = e;
+				} // for
+
+				for (int k = start1[p]; k < start1[p + 1]; k++) {
+					int i = pos1[k];
+					int h = left.hash[i];
+					for (int e = head[h & mask]; e >= 0; e = next[e]) {
+						int r = pos2[from2 + e];
+						if (right.hash[r] == h && left.equal(i, right, r)) {
+							if (n + 2 > out.length)
+								out = Arrays.copyOf(out, 2 * out.length);
+							out[++n] = ((long) i << 32) | r;
+						} // if
+					} // for
+				} // for
+			} // if
+			out[0] = n;
+			matches[p] = out;
+		} // run
+	} // Probe inner class
+
+	/***************************************************************************
+	 * Return the partition of a hash (its top bits).
+	 */
+	private static int part(int hash, int bits) {
+		return (bits == 0) ? 0 : hash >>> (32 - bits);
+	} // part
+
+	/***************************************************************************
+	 * Hash a long key (Fibonacci hashing, so the top bits are well mixed).
+	 */
+	private static int hash(long k) {
+		return (int) ((k * 0x9E3779B97F4A7C15L) >>> 32);
+	} // hash
+
+	/***************************************************************************
+	 * Spread an object's hash code over all bits.
+	 */
+	private static int hash(int h) {
+		return h * 0x9E3779B9;
+	} // hash
+
+} // HashJoin class
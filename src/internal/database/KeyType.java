@@ -10,10 +10,21 @@ package internal.database;
 
 import static java.lang.System.out;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /*******************************************************************************
  * The KeyType class provides a key type for handling both non-composite and
  * composite keys. A key is a minimal set of attributes that can be used to
- * uniquely identify a tuple.
+ * uniquely identify a tuple. Keys are compared through their normalized
+ * encoding: the attribute values concatenated as bytes whose unsigned
+ * lexicographic order is the order of the keys (integral values, characters,
+ * timestamps and decimals as sign-flipped big-endian longs, floating point
+ * values as order-preserving IEEE bits, strings as UTF-8 with 0 escaped and a
+ * 0 0 terminator, so a prefix sorts first). Comparing two keys is then a
+ * single byte array compare, and the encoding (with its hash) is computed
+ * once per key and can be stored as is, e.g., by on-disk indexes.
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class KeyType implements Comparable<KeyType> {
@@ -22,6 +33,22 @@ public class KeyType implements Comparable<KeyType> {
 	 */
 	public final Comparable[] key;
 
+	/**
+	 * The normalized encoding of the key (computed on first use, null if an
+	 * attribute has a type that cannot be encoded).
+	 */
+	private byte[] bytes = null;
+
+	/**
+	 * Whether the encoding was computed.
+	 */
+	private boolean encoded = false;
+
+	/**
+	 * The hash code of the key (computed on first use).
+	 */
+	private int hash = 0;
+
 	/***************************************************************************
 	 * Construct an instance of KeyType from a Comparable array.
 	 * 
@@ -41,11 +68,15 @@ public class KeyType implements Comparable<KeyType> {
 	 * @return resultant integer that's negative, zero or positive
 	 */
 	public int compareTo(KeyType k) {
+		byte[] a = bytes();
+		byte[] b = k.bytes();
+		if (a != null && b != null)
+			return compare(a, b);
+
 		for (int i = 0; i < key.length; i++) {
-			if (key[i].compareTo(k.key[i]) < 0)
-				return -1;
-			if (key[i].compareTo(k.key[i]) > 0)
-				return 1;
+			int c = key[i].compareTo(k.key[i]);
+			if (c != 0)
+				return (c < 0) ? -1 : 1;
 		} // for
 		return 0;
 	} // compareTo
@@ -58,22 +89,167 @@ public class KeyType implements Comparable<KeyType> {
 	 * @return true if equal, false otherwise
 	 */
 	public boolean equals(Object k) {
-		return compareTo((KeyType)k) == 0;
+		if (this == k)
+			return true;
+		if (!(k instanceof KeyType))
+			return false;
+		KeyType other = (KeyType) k;
+		byte[] a = bytes();
+		byte[] b = other.bytes();
+		if (a != null && b != null)
+			return hashCode() == other.hashCode() && Arrays.equals(a, b);
+		return compareTo(other) == 0;
 	} // equals
 
 	/***************************************************************************
 	 * Compute a hash code for this object (equal objects should produce the
-	 * same hash code).
+	 * same hash code), cached after the first call.
 	 * 
 	 * @return an integer hash code value
 	 */
 	public int hashCode() {
-		int sum = 0;
-		for (int i = 0; i < key.length; i++)
-			sum = 7 * sum + key[i].hashCode();
-		return sum;
+		int h = hash;
+		if (h == 0) {
+			byte[] b = bytes();
+			if (b != null) {
+				h = Arrays.hashCode(b);
+			} else {
+				for (int i = 0; i < key.length; i++)
+					h = 31 * h + key[i].hashCode();
+			} // if
+			hash = h = (h == 0) ? 1 : h;
+		} // if
+		return h;
 	} // hashCode
 
+	/***************************************************************************
+	 * Return the normalized encoding of the key (see the class comment).
+	 * 
+	 * @return the encoding, or null if the key cannot be encoded
+	 */
+	public byte[] bytes() {
+		if (!encoded) {
+			bytes = encode(key);
+			encoded = true;
+		} // if
+		return bytes;
+	} // bytes
+
+	/***************************************************************************
+	 * Compare two normalized encodings as unsigned byte strings.
+	 * 
+	 * @param a
+	 *            the first encoding
+	 * @param b
+	 *            the second encoding
+	 * @return negative, zero or positive as a is less than, equal to or
+	 *         greater than b
+	 */
+	public static int compare(byte[] a, byte[] b) {
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			int c = (a[i] & 0xff) - (b[i] & 0xff);
+			if (c != 0)
+				return c;
+		} // for
+		return a.length - b.length;
+	} // compare
+
+	/***************************************************************************
+	 * Encode the attribute values of a key into their normalized encoding.
+	 * 
+	 * @param values
+	 *            the attribute values
+	 * @return the encoding, or null if a value has a type that cannot be
+	 *         encoded
+	 */
+	static byte[] encode(Comparable[] values) {
+		int size = 0;
+		for (Comparable v : values) {
+			if (v instanceof String)
+				size += 2 * ((String) v).length() + 2;
+			else
+				size += 8;
+		} // for
+
+		ByteBuffer buf = ByteBuffer.allocate(size);
+		for (Comparable v : values) {
+			if (v instanceof String) {
+				byte[] b = ((String) v).getBytes(StandardCharsets.UTF_8);
+				if (buf.remaining() < 2 * b.length + 2) {
+					ByteBuffer larger = ByteBuffer.allocate(buf.capacity() + 2 * b.length + 2);
+					buf.flip();
+					buf = larger.put(buf);
+				} // if
+				for (byte c : b) {
+					buf.put(c);
+					if (c == 0)
+						buf.put((byte) 0xff);
+				} // for
+				buf.put((byte) 0).put((byte) 0);
+			} else if (v instanceof Double || v instanceof Float) {
+				long bits = Double.doubleToLongBits(((Number) v).doubleValue());
+				buf.putLong((bits < 0) ? ~bits : bits ^ Long.MIN_VALUE);
+			} else if (v instanceof Number || v instanceof Character
+					|| v instanceof Timestamp || v instanceof Decimal) {
+				buf.putLong(TupleCodec.toLong(v) ^ Long.MIN_VALUE);
+			} else {
+				return null;
+			} // if
+		} // for
+		return Arrays.copyOf(buf.array(), buf.position());
+	} // encode
+
+	/***************************************************************************
+	 * Decode a normalized encoding back into the attribute values of the key,
+	 * the inverse of encode.
+	 *
+	 * @param b
+	 *            the encoding
+	 * @param domain
+	 *            the domains of the attributes
+	 * @return the attribute values
+	 */
+	static Comparable[] decode(byte[] b, Class[] domain) {
+		Comparable[] values = new Comparable[domain.length];
+		ByteBuffer buf = ByteBuffer.wrap(b);
+		for (int j = 0; j < domain.length; j++) {
+			Class d = domain[j];
+			if (d == String.class) {
+				byte[] s = new byte[b.length];
+				int n = 0;
+				for (byte c = buf.get();; c = buf.get()) {
+					if (c == 0 && buf.get() == 0)
+						break;
+					s[n++] = c;
+				} // for
+				values[j] = new String(s, 0, n, StandardCharsets.UTF_8);
+			} else if (d == Double.class || d == Float.class) {
+				long bits = buf.getLong();
+				double v = Double.longBitsToDouble((bits < 0) ? bits
+						^ Long.MIN_VALUE : ~bits);
+				values[j] = (d == Float.class) ? (Comparable) (float) v : v;
+			} else {
+				long v = buf.getLong() ^ Long.MIN_VALUE;
+				if (d == Integer.class)
+					values[j] = (int) v;
+				else if (d == Short.class)
+					values[j] = (short) v;
+				else if (d == Byte.class)
+					values[j] = (byte) v;
+				else if (d == Character.class)
+					values[j] = (char) v;
+				else if (d == Timestamp.class)
+					values[j] = new Timestamp(v);
+				else if (d == Decimal.class)
+					values[j] = new Decimal(v);
+				else
+					values[j] = v;
+			} // if
+		} // for
+		return values;
+	} // decode
+
 	/***************************************************************************
 	 * Convert the key to a string.
 	 * 
@@ -15,7 +15,16 @@ import java.util.*;
 
 /*******************************************************************************
  * This class provides hash maps that use the Linear Hashing algorithm. A hash
- * table is created that is an array of buckets.
+ * table is created that is an array of buckets. Each home bucket heads a
+ * chain of overflow buckets. The table grows one bucket at a time: whenever
+ * the load factor (entries per slot of the home buckets) exceeds MAX_LOAD, the
+ * bucket at the split pointer is split, i.e., its chain is rehashed with the
+ * high resolution hash function h2 between itself and a new home bucket
+ * appended to the table, and the split pointer advances. Buckets before the
+ * split pointer are addressed with h2, the others with h. Once all buckets of
+ * a round are split, the moduli double and the split pointer starts over, so
+ * there is never a directory to double and no insert rehashes more than one
+ * chain.
  */
 @SuppressWarnings("all")
 public class LinHash<K, V> extends AbstractMap<K, V> implements Serializable,
@@ -25,6 +34,11 @@ public class LinHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	 */
 	private static final int SLOTS = 4;
 
+	/**
+	 * The load factor above which a bucket is split.
+	 */
+	private static final double MAX_LOAD = 0.75;
+
 	/**
 	 * The class for type K.
 	 */
@@ -78,6 +92,11 @@ public class LinHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	 */
 	private int split = 0;
 
+	/**
+	 * The number of key-value pairs in the hash table.
+	 */
+	private int nEntries = 0;
+
 	/***************************************************************************
 	 * Construct a hash table that uses Linear Hashing.
 	 * 
@@ -92,8 +111,10 @@ public class LinHash<K, V> extends AbstractMap<K, V> implements Serializable,
 		classK = _classK;
 		classV = _classV;
 		hTable = new ArrayList<>();
-		mod1 = initSize;
+		mod1 = Math.max(1, initSize);
 		mod2 = 2 * mod1;
+		for (int i = 0; i < mod1; i++)
+			hTable.add(new Bucket(null));
 	} // LinHash
 
 	/***************************************************************************
@@ -104,9 +125,12 @@ public class LinHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	public Set<Map.Entry<K, V>> entrySet() {
 		Set<Map.Entry<K, V>> enSet = new HashSet<>();
 
-		// -----------------\\
-		// TO BE IMPLEMENTED \\
-		// ---------------------\\
+		for (Bucket home : hTable) {
+			for (Bucket b = home; b != null; b = b.next) {
+				for (int j = 0; j < b.nKeys; j++)
+					enSet.add(new AbstractMap.SimpleEntry<>(b.key[j], b.value[j]));
+			} // for
+		} // for
 
 		return enSet;
 	} // entrySet
@@ -119,43 +143,103 @@ public class LinHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	 * @return the value associated with the key
 	 */
 	public V get(Object key) {
-		int i = h(key);
-
-		// -----------------\\
-		// TO BE IMPLEMENTED \\
-		// ---------------------\\
+		int i = address(key);
+
+		for (Bucket b = hTable.get(i); b != null; b = b.next) {
+			count++;
+			for (int j = 0; j < b.nKeys; j++) {
+				if (key.equals(b.key[j]))
+					return b.value[j];
+			} // for
+		} // for
 
 		return null;
 	} // get
 
 	/***************************************************************************
-	 * Put the key-value pair in the hash table.
+	 * Put the key-value pair in the hash table, replacing the value of the key
+	 * if it is already there. The pair goes into the first bucket of the
+	 * key's chain with a free slot (a new overflow bucket if there is none).
 	 * 
 	 * @param key
 	 *            the key to insert
 	 * @param value
 	 *            the value to insert
-	 * @return null (not the previous value)
+	 * @return the previous value of the key (null if it was not there)
 	 */
 	public V put(K key, V value) {
-		int i = h(key);
+		int i = address(key);
+
+		Bucket free = null;
+		Bucket last = null;
+		for (Bucket b = hTable.get(i); b != null; b = b.next) {
+			for (int j = 0; j < b.nKeys; j++) {
+				if (key.equals(b.key[j])) {
+					V old = b.value[j];
+					b.value[j] = value;
+					return old;
+				} // if
+			} // for
+			if (free == null && b.nKeys < SLOTS)
+				free = b;
+			last = b;
+		} // for
 
-		// -----------------\\
-		// TO BE IMPLEMENTED \\
-		// ---------------------\\
+		if (free == null)
+			free = last.next = new Bucket(null);
+		free.key[free.nKeys] = key;
+		free.value[free.nKeys] = value;
+		free.nKeys++;
+		nEntries++;
 
+		if (nEntries > MAX_LOAD * SLOTS * hTable.size())
+			split();
 		return null;
 	} // put
 
 	/***************************************************************************
-	 * Return the size (SLOTS * number of home buckets) of the hash table.
+	 * Return the number of key-value pairs in the hash table.
 	 * 
 	 * @return the size of the hash table
 	 */
 	public int size() {
-		return SLOTS * (mod1 + split);
+		return nEntries;
 	} // size
 
+	/***************************************************************************
+	 * Split the bucket at the split pointer: rehash its chain with h2 between
+	 * it and a new home bucket at the end of the table, and advance the split
+	 * pointer (starting a new round with doubled moduli after the last
+	 * bucket of the round).
+	 */
+	private void split() {
+		Bucket old = hTable.get(split);
+		Bucket stay = new Bucket(null);
+		Bucket move = new Bucket(null);
+		hTable.set(split, stay);
+		hTable.add(move);
+
+		for (Bucket b = old; b != null; b = b.next) {
+			for (int j = 0; j < b.nKeys; j++) {
+				Bucket to = (h2(b.key[j]) == split) ? stay : move;
+				while (to.nKeys == SLOTS) {
+					if (to.next == null)
+						to.next = new Bucket(null);
+					to = to.next;
+				} // while
+				to.key[to.nKeys] = b.key[j];
+				to.value[to.nKeys] = b.value[j];
+				to.nKeys++;
+			} // for
+		} // for
+
+		if (++split == mod1) {
+			split = 0;
+			mod1 = mod2;
+			mod2 = 2 * mod1;
+		} // if
+	} // split
+
 	/***************************************************************************
 	 * Print the hash table.
 	 */
@@ -163,13 +247,33 @@ public class LinHash<K, V> extends AbstractMap<K, V> implements Serializable,
 		out.println("Hash Table (Linear Hashing)");
 		out.println("-------------------------------------------");
 
-		// -----------------\\
-		// TO BE IMPLEMENTED \\
-		// ---------------------\\
+		for (int i = 0; i < hTable.size(); i++) {
+			out.print(((i == split) ? "->" : "  ") + i + ":");
+			for (Bucket b = hTable.get(i); b != null; b = b.next) {
+				out.print(" [");
+				for (int j = 0; j < b.nKeys; j++)
+					out.print(((j > 0) ? ", " : "") + b.key[j] + "=" + b.value[j]);
+				out.print("]");
+			} // for
+			out.println();
+		} // for
 
 		out.println("-------------------------------------------");
 	} // print
 
+	/***************************************************************************
+	 * Compute the home bucket of the key: h, or h2 if that bucket is already
+	 * split in this round.
+	 * 
+	 * @param key
+	 *            the key to hash
+	 * @return the location of the bucket chain containing the key-value pair
+	 */
+	private int address(Object key) {
+		int i = h(key);
+		return (i < split) ? h2(key) : i;
+	} // address
+
 	/***************************************************************************
 	 * Hash the key using the low resolution hash function.
 	 * 
@@ -178,7 +282,7 @@ public class LinHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	 * @return the location of the bucket chain containing the key-value pair
 	 */
 	private int h(Object key) {
-		return key.hashCode() % mod1;
+		return (key.hashCode() & 0x7fffffff) % mod1;
 	} // h
 
 	/***************************************************************************
@@ -189,7 +293,7 @@ public class LinHash<K, V> extends AbstractMap<K, V> implements Serializable,
 	 * @return the location of the bucket chain containing the key-value pair
 	 */
 	private int h2(Object key) {
-		return key.hashCode() % mod2;
+		return (key.hashCode() & 0x7fffffff) % mod2;
 	} // h2
 
 	/***************************************************************************
@@ -0,0 +1,263 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  LongIndex.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*******************************************************************************
+ * This class provides the index of a table whose key is a single integral
+ * attribute (Byte, Short, Integer or Long). It is an open addressing hash
+ * table with linear probing over two parallel arrays, the keys as longs and
+ * the tuple positions as ints, so looking up or adding a key allocates
+ * nothing: no KeyType, no boxed key and no entry. A free slot holds the
+ * position -1. The table doubles once it is more than MAX_LOAD full.
+ *
+ * The primitive methods (get (long), put (long, int)) are the ones the table
+ * uses, while the Map methods (keyed by KeyType) serve the operators that
+ * work on any index.
+ */
+@SuppressWarnings({ "rawtypes", "serial" })
+public class LongIndex extends AbstractMap<KeyType, Integer> {
+	/**
+	 * The load factor above which the table doubles.
+	 */
+	private static final double MAX_LOAD = 0.6;
+
+	/**
+	 * The domain of the key attribute (to rebuild the keys as KeyTypes).
+	 */
+	private final Class domain;
+
+	/**
+	 * The keys, and the tuple position of each (-1 for a free slot).
+	 */
+	private long[] keys;
+	private int[] positions;
+
+	/**
+	 * The number of keys.
+	 */
+	private int size = 0;
+
+	/**
+	 * The number of keys at which the table doubles.
+	 */
+	private int threshold;
+
+	/***************************************************************************
+	 * Construct an empty index.
+	 *
+	 * @param _domain
+	 *            the domain of the key attribute
+	 */
+	public LongIndex(Class _domain) {
+		domain = _domain;
+		allocate(64);
+	} // constructor
+
+	/***************************************************************************
+	 * Return whether the given domain can be indexed by a LongIndex.
+	 *
+	 * @param domain
+	 *            the domain of the key attribute
+	 * @return whether it is integral
+	 */
+	static boolean supports(Class domain) {
+		return domain == Integer.class || domain == Long.class
+				|| domain == Short.class || domain == Byte.class;
+	} // supports
+
+	/***************************************************************************
+	 * Return the position of the tuple with the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return its position, or -1 if the key is not indexed
+	 */
+	public int get(long key) {
+		int mask = keys.length - 1;
+		for (int s = hash(key) & mask;; s = (s + 1) & mask) {
+			int p = positions[s];
+			if (p < 0 || keys[s] == key)
+				return p;
+		} // for
+	} // get
+
+	/***************************************************************************
+	 * Index the tuple at the given position under the given key (replacing
+	 * the position of the key if it is already indexed).
+	 *
+	 * @param key
+	 *            the key
+	 * @param position
+	 *            the position of the tuple (not negative)
+	 * @return the previous position of the key, or -1 if it was not indexed
+	 */
+	public int put(long key, int position) {
+		int mask = keys.length - 1;
+		int s = hash(key) & mask;
+		while (positions[s] >= 0) {
+			if (keys[s] == key) {
+				int old = positions[s];
+				positions[s] = position;
+				return old;
+			} // if
+			s = (s + 1) & mask;
+		} // while
+
+		keys[s] = key;
+		positions[s] = position;
+		if (++size > threshold)
+			resize();
+		return -1;
+	} // put
+
+	/***************************************************************************
+	 * Look up a key given as a KeyType (or a single value).
+	 *
+	 * @param key
+	 *            the key
+	 * @return the position of its tuple (null if the key is not indexed)
+	 */
+	public Integer get(Object key) {
+		int p = get(toLong(key));
+		return (p < 0) ? null : p;
+	} // get
+
+	/***************************************************************************
+	 * Index a tuple under a key given as a KeyType.
+	 *
+	 * @param key
+	 *            the key
+	 * @param position
+	 *            the position of the tuple
+	 * @return its previous position (null if the key was not indexed)
+	 */
+	public Integer put(KeyType key, Integer position) {
+		int p = put(toLong(key), position);
+		return (p < 0) ? null : p;
+	} // put
+
+	/***************************************************************************
+	 * Return whether a key given as a KeyType is indexed.
+	 *
+	 * @param key
+	 *            the key
+	 * @return whether it is indexed
+	 */
+	public boolean containsKey(Object key) {
+		return get(toLong(key)) >= 0;
+	} // containsKey
+
+	/***************************************************************************
+	 * Return the number of keys.
+	 *
+	 * @return the number of keys
+	 */
+	public int size() {
+		return size;
+	} // size
+
+	/***************************************************************************
+	 * Return a set containing all the entries as pairs of keys (rebuilt as
+	 * KeyTypes of the key's domain) and positions.
+	 *
+	 * @return the set view of the map
+	 */
+	public Set<Map.Entry<KeyType, Integer>> entrySet() {
+		Set<Map.Entry<KeyType, Integer>> enSet = new HashSet<>();
+		for (int s = 0; s < keys.length; s++) {
+			if (positions[s] >= 0)
+				enSet.add(new SimpleEntry<>(new KeyType(
+						new Comparable[] { box(keys[s]) }), positions[s]));
+		} // for
+		return enSet;
+	} // entrySet
+
+	/***************************************************************************
+	 * Double the table, reinserting the keys.
+	 */
+	private void resize() {
+		long[] k = keys;
+		int[] p = positions;
+		allocate(2 * k.length);
+		int mask = keys.length - 1;
+		for (int s = 0; s < k.length; s++) {
+			if (p[s] < 0)
+				continue;
+			int t = hash(k[s]) & mask;
+			while (positions[t] >= 0)
+				t = (t + 1) & mask;
+			keys[t] = k[s];
+			positions[t] = p[s];
+		} // for
+	} // resize
+
+	/***************************************************************************
+	 * Allocate empty arrays of the given capacity (a power of 2).
+	 *
+	 * @param capacity
+	 *            the number of slots
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		positions = new int[capacity];
+		Arrays.fill(positions, -1);
+		threshold = (int) (MAX_LOAD * capacity);
+	} // allocate
+
+	/***************************************************************************
+	 * Return the long value of a key given as a KeyType (or a single value).
+	 *
+	 * @param key
+	 *            the key
+	 * @return its value
+	 */
+	private static long toLong(Object key) {
+		Object v = (key instanceof KeyType) ? ((KeyType) key).key[0] : key;
+		return ((Number) v).longValue();
+	} // toLong
+
+	/***************************************************************************
+	 * Box a key value into the domain of the key attribute.
+	 *
+	 * @param v
+	 *            the value
+	 * @return the boxed value
+	 */
+	private Comparable box(long v) {
+		if (domain == Integer.class)
+			return (int) v;
+		if (domain == Short.class)
+			return (short) v;
+		if (domain == Byte.class)
+			return (byte) v;
+		return v;
+	} // box
+
+	/***************************************************************************
+	 * Hash a key: the murmur3 64-bit finalizer, so keys that differ only in
+	 * their high bits (or form a sequence) spread over the whole table.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the hash
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	} // hash
+
+} // LongIndex class
@@ -0,0 +1,181 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  ParallelScan.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*******************************************************************************
+ * This class evaluates a condition over the tuples of a table in parallel. The
+ * tuples are split into ranges (cut at page boundaries for a FileList, so no
+ * two tasks ever need the same page), each range is filtered batch by batch
+ * (see Batch) by a task of a ForkJoinPool reading through a FileList.Reader of
+ * its own, and the positions of the qualifying tuples are merged in order.
+ * Batches the zone map of the table rules out (see ZoneMap) are not read.
+ */
+@SuppressWarnings({ "rawtypes", "serial" })
+class ParallelScan extends RecursiveTask<int[]> {
+	/**
+	 * The smallest number of tuples a range is given.
+	 */
+	private static final int MIN_GRAIN = 4 * Batch.SIZE;
+
+	/**
+	 * The pools running the scans, by parallelism.
+	 */
+	private static final Map<Integer, ForkJoinPool> pools = new HashMap<>();
+
+	/**
+	 * The tuples of the table (a FileList or a ColumnList).
+	 */
+	private final List<Comparable[]> tuples;
+
+	/**
+	 * The codec of the table.
+	 */
+	private final TupleCodec codec;
+
+	/**
+	 * The condition to evaluate.
+	 */
+	private final Condition cond;
+
+	/**
+	 * The zone map of the table (null to read every batch).
+	 */
+	private final ZoneMap zones;
+
+	/**
+	 * The attributes the condition reads.
+	 */
+	private final boolean[] needed;
+
+	/**
+	 * The range boundaries (index of the first tuple of each range, followed
+	 * by the number of tuples).
+	 */
+	private final int[] bounds;
+
+	/**
+	 * The ranges lo, ..., hi - 1 are scanned by this task.
+	 */
+	private final int lo, hi;
+
+	/***************************************************************************
+	 * Construct a task scanning the ranges lo, ..., hi - 1.
+	 */
+	private ParallelScan(List<Comparable[]> _tuples, TupleCodec _codec,
+			Condition _cond, ZoneMap _zones, boolean[] _needed, int[] _bounds,
+			int _lo, int _hi) {
+		tuples = _tuples;
+		codec = _codec;
+		cond = _cond;
+		zones = _zones;
+		needed = _needed;
+		bounds = _bounds;
+		lo = _lo;
+		hi = _hi;
+	} // constructor
+
+	/***************************************************************************
+	 * Return the positions (in ascending order) of the first size tuples
+	 * satisfying the condition, scanning with the given number of threads.
+	 * Tuples may be added while the scan runs.
+	 *
+	 * @param tuples
+	 *            the tuples of the table (a FileList or a ColumnList)
+	 * @param size
+	 *            the number of tuples to scan (e.g., those of a snapshot)
+	 * @param codec
+	 *            the codec of the table
+	 * @param cond
+	 *            the condition to evaluate
+	 * @param zones
+	 *            the zone map of the table (null to read every batch)
+	 * @param parallelism
+	 *            the number of threads to use
+	 * @return the positions of the qualifying tuples
+	 */
+	static int[] scan(List<Comparable[]> tuples, int size, TupleCodec codec,
+			Condition cond, ZoneMap zones, int parallelism) {
+		int grain = Math.max(MIN_GRAIN, size / (4 * parallelism));
+
+		int[] bounds;
+		if (tuples instanceof FileList) {
+			bounds = ((FileList) tuples).split(grain, size);
+		} else {
+			bounds = new int[(size + grain - 1) / grain + 1];
+			for (int r = 0; r < bounds.length; r++)
+				bounds[r] = Math.min(r * grain, size);
+		} // if
+
+		boolean[] needed = cond.columns(new boolean[codec.type.length]);
+		return pool(parallelism).invoke(
+				new ParallelScan(tuples, codec, cond, zones, needed, bounds, 0,
+						bounds.length - 1));
+	} // scan
+
+	/***************************************************************************
+	 * Return the pool with the given parallelism, creating it on first use.
+	 * Pools are never shut down, as a query may still be running on one when
+	 * Table.parallelism changes: their workers are daemon threads that exit
+	 * once idle.
+	 *
+	 * @param parallelism
+	 *            the number of threads
+	 * @return the pool
+	 */
+	static synchronized ForkJoinPool pool(int parallelism) {
+		ForkJoinPool pool = pools.get(parallelism);
+		if (pool == null)
+			pools.put(parallelism, pool = new ForkJoinPool(parallelism));
+		return pool;
+	} // pool
+
+	/***************************************************************************
+	 * Scan a single range, or split the ranges between two subtasks and
+	 * concatenate their results.
+	 *
+	 * @return the positions of the qualifying tuples of the ranges
+	 */
+	protected int[] compute() {
+		if (hi - lo > 1) {
+			int mid = (lo + hi) >>> 1;
+			ParallelScan left = new ParallelScan(tuples, codec, cond, zones,
+					needed, bounds, lo, mid);
+			ParallelScan right = new ParallelScan(tuples, codec, cond, zones,
+					needed, bounds, mid, hi);
+			left.fork();
+			int[] r = right.compute();
+			int[] l = left.join();
+
+			int[] hits = Arrays.copyOf(l, l.length + r.length);
+			System.arraycopy(r, 0, hits, l.length, r.length);
+			return hits;
+		} // if
+
+		int start = bounds[lo];
+		int end = bounds[hi];
+		Batch b = new Batch(codec, needed);
+		int[] hits = new int[end - start];
+		int m = 0;
+		for (int s = start; s < end; s += Batch.SIZE) {
+			if (zones != null
+					&& !zones.mayMatch(cond, s, Math.min(s + Batch.SIZE, end)))
+				continue;
+			int n = cond.filter(b, Batch.ALL, b.load(tuples, s, end), b.sel);
+			for (int k = 0; k < n; k++)
+				hits[m++] = s + b.sel[k];
+		} // for
+		return Arrays.copyOf(hits, m);
+	} // compute
+
+} // ParallelScan class
@@ -0,0 +1,150 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Postings.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.Arrays;
+
+/*******************************************************************************
+ * This class provides the postings list of an inverted index (see TextIndex
+ * and TrigramIndex): the ascending positions of the tuples holding a term,
+ * stored as the gaps between consecutive positions, each as a varint (7 bits
+ * per byte, the high bit set on all bytes but the last), so a frequent term,
+ * whose gaps are small, takes about a byte per tuple. Lists are intersected
+ * from the shortest one, decoding the others on the fly.
+ */
+class Postings {
+	/**
+	 * The gaps as varints.
+	 */
+	private byte[] data = new byte[4];
+
+	/**
+	 * The number of bytes used, the last position added and the number of
+	 * positions.
+	 */
+	private int length = 0, last = -1, count = 0;
+
+	/***************************************************************************
+	 * Add a position.
+	 *
+	 * @param p
+	 *            the position (greater than the last one added)
+	 */
+	void add(int p) {
+		if (length + 5 > data.length)
+			data = Arrays.copyOf(data, 2 * data.length + 5);
+		int gap = p - last - 1;
+		while ((gap & ~0x7f) != 0) {
+			data[length++] = (byte) (gap | 0x80);
+			gap >>>= 7;
+		} // while
+		data[length++] = (byte) gap;
+		last = p;
+		count++;
+	} // add
+
+	/***************************************************************************
+	 * Return the number of positions.
+	 *
+	 * @return the number of positions
+	 */
+	int count() {
+		return count;
+	} // count
+
+	/***************************************************************************
+	 * Return the number of bytes the list takes.
+	 *
+	 * @return the size of the encoded gaps
+	 */
+	int bytes() {
+		return length;
+	} // bytes
+
+	/***************************************************************************
+	 * Decode the positions.
+	 *
+	 * @return the positions in ascending order
+	 */
+	int[] positions() {
+		int[] p = new int[count];
+		int x = -1;
+		for (int i = 0, k = 0; k < count; k++) {
+			int gap = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = data[i++];
+				gap |= (b & 0x7f) << shift;
+				if (b >= 0)
+					break;
+			} // for
+			p[k] = x += gap + 1;
+		} // for
+		return p;
+	} // positions
+
+	/***************************************************************************
+	 * Return the positions in both p and this list, decoding it on the fly.
+	 *
+	 * @param p
+	 *            the positions in ascending order (overwritten)
+	 * @return the common positions
+	 */
+	int[] intersect(int[] p) {
+		int m = 0, x = -1;
+		for (int i = 0, j = 0, k = 0; k < count && j < p.length; k++) {
+			int gap = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = data[i++];
+				gap |= (b & 0x7f) << shift;
+				if (b >= 0)
+					break;
+			} // for
+			x += gap + 1;
+			while (j < p.length && p[j] < x)
+				j++;
+			if (j < p.length && p[j] == x)
+				p[m++] = p[j++];
+		} // for
+		return Arrays.copyOf(p, m);
+	} // intersect
+
+	/***************************************************************************
+	 * Return the positions in all the given lists as a bitmap, intersecting
+	 * them from the shortest one.
+	 *
+	 * @param lists
+	 *            the postings lists (at least one, reordered)
+	 * @return the common positions
+	 */
+	static Bitmap intersect(Postings[] lists) {
+		Arrays.sort(lists, (a, b) -> Integer.compare(a.count, b.count));
+		int[] hits = lists[0].positions();
+		for (int k = 1; k < lists.length && hits.length > 0; k++)
+			hits = lists[k].intersect(hits);
+		return toBitmap(hits);
+	} // intersect
+
+	/***************************************************************************
+	 * Return the positions of this list as a bitmap.
+	 *
+	 * @return the positions
+	 */
+	Bitmap toBitmap() {
+		return toBitmap(positions());
+	} // toBitmap
+
+	/***************************************************************************
+	 * Build a bitmap from ascending positions.
+	 */
+	private static Bitmap toBitmap(int[] positions) {
+		Bitmap b = new Bitmap();
+		for (int p : positions)
+			b.add(p);
+		return b;
+	} // toBitmap
+
+} // Postings class
@@ -0,0 +1,171 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  RecordView.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.nio.ByteBuffer;
+
+/*******************************************************************************
+ * This class provides a zero-copy view over a packed record (see TupleCodec)
+ * that still sits in its page. Attribute values are decoded only when they are
+ * accessed, and a projection of the record can be copied as raw bytes. A view
+ * is only valid until the list it came from reads another page, so scans
+ * reposition a single view (see FileList.view) rather than keeping views.
+ */
+@SuppressWarnings("rawtypes")
+public class RecordView implements TupleView {
+	/**
+	 * The codec describing the record layout.
+	 */
+	private final TupleCodec codec;
+
+	/**
+	 * The buffer (page) holding the record.
+	 */
+	private ByteBuffer buf;
+
+	/**
+	 * The position at which the record starts.
+	 */
+	private int base;
+
+	/***************************************************************************
+	 * Construct an (unpositioned) view for records of the given layout.
+	 *
+	 * @param _codec
+	 *            the codec describing the record layout
+	 */
+	public RecordView(TupleCodec _codec) {
+		codec = _codec;
+	} // constructor
+
+	/***************************************************************************
+	 * Position the view over the record starting at position _base of _buf.
+	 *
+	 * @param _buf
+	 *            the buffer holding the record
+	 * @param _base
+	 *            the position at which the record starts
+	 * @return this view
+	 */
+	RecordView reset(ByteBuffer _buf, int _base) {
+		buf = _buf;
+		base = _base;
+		return this;
+	} // reset
+
+	/***************************************************************************
+	 * Decode the value of the jth attribute.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value
+	 */
+	public Comparable get(int j) {
+		return codec.decode(buf, base, j);
+	} // get
+
+	/***************************************************************************
+	 * Read the jth attribute, which must be of an integral type, as a long.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value as a long
+	 */
+	public long getLong(int j) {
+		return codec.getLong(buf, base, j);
+	} // getLong
+
+	/***************************************************************************
+	 * Read the jth attribute, which must not be a string, as a double.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value as a double
+	 */
+	public double getDouble(int j) {
+		return codec.getDouble(buf, base, j);
+	} // getDouble
+
+	/***************************************************************************
+	 * Read the code of the dictionary encoded jth attribute.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the dictionary code
+	 */
+	public int code(int j) {
+		return codec.code(buf, base, j);
+	} // code
+
+	/***************************************************************************
+	 * Decode all the attribute values.
+	 *
+	 * @return the unpacked tuple
+	 */
+	public Comparable[] toTuple() {
+		return codec.decode(buf, base);
+	} // toTuple
+
+	/***************************************************************************
+	 * Return the number of bytes the projection of this record onto the given
+	 * attributes takes, without decoding any value.
+	 *
+	 * @param cols
+	 *            the attribute positions to project onto
+	 * @return the size of the projected record in bytes
+	 */
+	public int size(int[] cols) {
+		int s = 0;
+		for (int c : cols) {
+			s += TupleCodec.width(codec.type[c]);
+			if (codec.type[c] == TupleCodec.STRING)
+				s += buf.getInt(base + codec.offset[c])
+						- codec.stringStart(buf, base, c);
+		} // for
+		return s;
+	} // size
+
+	/***************************************************************************
+	 * Copy the projection of this record onto the given attributes into dest
+	 * at its current position (which is advanced past the new record). Values
+	 * are copied as raw bytes, so the new record has the layout TupleCodec
+	 * gives the projected domains.
+	 *
+	 * @param cols
+	 *            the attribute positions to project onto
+	 * @param dest
+	 *            the buffer to copy into
+	 */
+	public void project(int[] cols, ByteBuffer dest) {
+		byte[] src = buf.array();
+		byte[] dst = dest.array();
+		int from = buf.arrayOffset() + base;
+		int to = dest.arrayOffset() + dest.position();
+
+		int fixed = 0;
+		for (int c : cols)
+			fixed += TupleCodec.width(codec.type[c]);
+
+		int at = 0;
+		int heap = fixed;
+		for (int c : cols) {
+			int w = TupleCodec.width(codec.type[c]);
+			if (codec.type[c] == TupleCodec.STRING) {
+				int start = codec.stringStart(buf, base, c);
+				int len = buf.getInt(base + codec.offset[c]) - start;
+				System.arraycopy(src, from + start, dst, to + heap, len);
+				heap += len;
+				dest.putInt(dest.position() + at, heap);
+			} else {
+				System.arraycopy(src, from + codec.offset[c], dst, to + at, w);
+			} // if
+			at += w;
+		} // for
+		dest.position(dest.position() + heap);
+	} // project
+
+} // RecordView class
@@ -0,0 +1,287 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Row.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+/*******************************************************************************
+ * This class provides a schema-aware tuple that keeps its values unboxed: every
+ * attribute that is not a string is held in a flat long [] (integral values as
+ * their long representation, see TupleCodec.toLong, floating point values as
+ * their raw bits) and strings in a String []. Rows are built and read through
+ * typed accessors, and can be inserted into a table (see Table.newRow and
+ * Table.insert (Row)) without ever creating a Comparable array, which stays
+ * available as the compatibility representation (see toTuple).
+ */
+@SuppressWarnings("rawtypes")
+public class Row implements TupleView {
+	/**
+	 * The codec of the table the row is laid out for.
+	 */
+	private final TupleCodec codec;
+
+	/**
+	 * The values of the attributes that are not strings.
+	 */
+	final long[] prim;
+
+	/**
+	 * The values of the string attributes.
+	 */
+	final String[] str;
+
+	/***************************************************************************
+	 * Construct an empty row laid out by the given codec.
+	 *
+	 * @param _codec
+	 *            the codec of the table the row is for
+	 */
+	public Row(TupleCodec _codec) {
+		codec = _codec;
+		prim = new long[codec.type.length];
+		str = new String[codec.type.length];
+	} // constructor
+
+	/***************************************************************************
+	 * Return the codec the row is laid out by.
+	 *
+	 * @return the codec
+	 */
+	TupleCodec codec() {
+		return codec;
+	} // codec
+
+	/***************************************************************************
+	 * Return the number of attributes of the row.
+	 *
+	 * @return the arity
+	 */
+	public int arity() {
+		return prim.length;
+	} // arity
+
+	/***************************************************************************
+	 * Return the jth attribute, which must be of an integral type, as a long.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value as a long
+	 */
+	public long getLong(int j) {
+		byte t = codec.type[j];
+		if (t == TupleCodec.FLOAT || t == TupleCodec.DOUBLE)
+			return (long) Double.longBitsToDouble(prim[j]);
+		return prim[j];
+	} // getLong
+
+	/***************************************************************************
+	 * Return the jth attribute, which must be an Integer, as an int.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value
+	 */
+	public int getInt(int j) {
+		return (int) prim[j];
+	} // getInt
+
+	/***************************************************************************
+	 * Return the jth attribute, which must not be a string, as a double.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value as a double
+	 */
+	public double getDouble(int j) {
+		byte t = codec.type[j];
+		if (t == TupleCodec.FLOAT || t == TupleCodec.DOUBLE)
+			return Double.longBitsToDouble(prim[j]);
+		return prim[j];
+	} // getDouble
+
+	/***************************************************************************
+	 * Return the jth attribute, which must be a string.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value
+	 */
+	public String getString(int j) {
+		if (codec.type[j] == TupleCodec.DICT)
+			return codec.dictionary[j].decode((int) prim[j]);
+		return str[j];
+	} // getString
+
+	/***************************************************************************
+	 * Return the code of the dictionary encoded jth attribute.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the dictionary code
+	 */
+	public int code(int j) {
+		return (int) prim[j];
+	} // code
+
+	/***************************************************************************
+	 * Return the (boxed) value of the jth attribute.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value
+	 */
+	public Comparable get(int j) {
+		long p = prim[j];
+		switch (codec.type[j]) {
+		case TupleCodec.BYTE:
+			return (byte) p;
+		case TupleCodec.SHORT:
+			return (short) p;
+		case TupleCodec.INT:
+			return (int) p;
+		case TupleCodec.LONG:
+			return p;
+		case TupleCodec.FLOAT:
+			return (float) Double.longBitsToDouble(p);
+		case TupleCodec.DOUBLE:
+			return Double.longBitsToDouble(p);
+		case TupleCodec.CHAR:
+			return (char) p;
+		case TupleCodec.TIMESTAMP:
+			return new Timestamp(p);
+		case TupleCodec.DECIMAL:
+			return new Decimal(p);
+		default:
+			return getString(j);
+		}
+	} // get
+
+	/***************************************************************************
+	 * Return all the attribute values as a (boxed) tuple.
+	 *
+	 * @return the tuple
+	 */
+	public Comparable[] toTuple() {
+		Comparable[] tup = new Comparable[prim.length];
+		for (int j = 0; j < tup.length; j++)
+			tup[j] = get(j);
+		return tup;
+	} // toTuple
+
+	/***************************************************************************
+	 * Set the jth attribute, which must be of an integral type, from its long
+	 * representation.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @param v
+	 *            the value
+	 * @return this row
+	 */
+	public Row setLong(int j, long v) {
+		prim[j] = v;
+		return this;
+	} // setLong
+
+	/***************************************************************************
+	 * Set the jth attribute, which must be a Float or a Double.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @param v
+	 *            the value
+	 * @return this row
+	 */
+	public Row setDouble(int j, double v) {
+		prim[j] = Double.doubleToRawLongBits(v);
+		return this;
+	} // setDouble
+
+	/***************************************************************************
+	 * Set the jth attribute, which must be a string (encoding it if the
+	 * attribute is dictionary encoded).
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @param v
+	 *            the value
+	 * @return this row
+	 */
+	public Row setString(int j, String v) {
+		if (codec.type[j] == TupleCodec.DICT)
+			prim[j] = codec.dictionary[j].encode(v);
+		else
+			str[j] = v;
+		return this;
+	} // setString
+
+	/***************************************************************************
+	 * Set the jth attribute from its (boxed) value.
+	 *
+	 * @param j
+	 *            the attribute position
+	 * @param v
+	 *            the value
+	 * @return this row
+	 */
+	public Row set(int j, Comparable v) {
+		switch (codec.type[j]) {
+		case TupleCodec.FLOAT:
+		case TupleCodec.DOUBLE:
+			return setDouble(j, TupleCodec.toDouble(v));
+		case TupleCodec.STRING:
+		case TupleCodec.DICT:
+			return setString(j, (String) v);
+		default:
+			return setLong(j, TupleCodec.toLong(v));
+		}
+	} // set
+
+	/***************************************************************************
+	 * Set all attributes from a (boxed) tuple.
+	 *
+	 * @param tup
+	 *            the tuple
+	 * @return this row
+	 */
+	public Row set(Comparable[] tup) {
+		for (int j = 0; j < prim.length; j++)
+			set(j, tup[j]);
+		return this;
+	} // set
+
+	/***************************************************************************
+	 * Copy the first n attributes of the tuple behind view v into the
+	 * attributes from, from + 1, ..., from + n - 1 of this row. Values that
+	 * are not strings are copied without boxing them.
+	 *
+	 * @param v
+	 *            the view over the source tuple
+	 * @param from
+	 *            the position of the first attribute to set
+	 * @param n
+	 *            the number of attributes to copy
+	 * @return this row
+	 */
+	public Row load(TupleView v, int from, int n) {
+		for (int k = 0; k < n; k++) {
+			int j = from + k;
+			switch (codec.type[j]) {
+			case TupleCodec.FLOAT:
+			case TupleCodec.DOUBLE:
+				setDouble(j, v.getDouble(k));
+				break;
+			case TupleCodec.STRING:
+			case TupleCodec.DICT:
+				setString(j, (String) v.get(k));
+				break;
+			default:
+				prim[j] = v.getLong(k);
+			}
+		} // for
+		return this;
+	} // load
+
+} // Row class
@@ -8,7 +8,12 @@ package internal.database;
 
 import static java.lang.System.out;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -18,13 +23,22 @@ import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /*******************************************************************************
  * This class implements relational database tables (including attribute names,
  * domains and a list of tuples. Five basic relational algebra operators are
  * provided: project, select, union, minus and join. The insert data
- * manipulation operator is also provided. Missing are update and delete data
- * manipulation operators.
+ * manipulation operator is also provided, along with update and delete. A
+ * table may be queried by any number of threads while tuples are inserted,
+ * updated and deleted: tuples are versioned (see Versions), so every operator
+ * reads a snapshot of its tables and neither waits for nor sees concurrent
+ * writers, which only take turns among themselves on the table's latch. The
+ * changes to a table may be logged to a write-ahead log (see log), which
+ * rebuilds the table after a crash, starting from its last checkpoint (see
+ * checkpoint).
  */
 @SuppressWarnings({ "rawtypes", "serial", "unchecked" })
 public class Table implements Serializable, Cloneable {
@@ -33,10 +47,114 @@ public class Table implements Serializable, Cloneable {
 	 */
 	public static final boolean DEBUG = false;
 
+	/**
+	 * Storage organizations for the tuples of a table: ROW keeps packed records
+	 * in a FileList, COLUMN keeps a segment per attribute in a ColumnList.
+	 */
+	public enum Storage {
+		ROW, COLUMN
+	} // Storage
+
+	/**
+	 * Execution modes of select and project: TUPLE evaluates one tuple at a
+	 * time through views, BATCH evaluates batches of tuples over column
+	 * vectors (see Batch).
+	 */
+	public enum Execution {
+		TUPLE, BATCH
+	} // Execution
+
+	/**
+	 * Index structures mapping the keys of a table to its tuples: BPTREE (B+
+	 * tree, see BpTree), EXTHASH (extendible hashing, see ExtHash), LINHASH
+	 * (linear hashing, see LinHash) or TREEMAP (java.util.TreeMap).
+	 */
+	public enum Indexing {
+		BPTREE, EXTHASH, LINHASH, TREEMAP
+	} // Indexing
+
+	/**
+	 * The index structure of the tables created from now on.
+	 */
+	public static Indexing indexing = Indexing.BPTREE;
+
+	/**
+	 * Whether the tables created from now on whose key is a single integral
+	 * attribute index it with a LongIndex (instead of the indexing
+	 * structure), which needs no KeyType or boxing per lookup.
+	 */
+	public static boolean primitiveKeys = true;
+
+	/**
+	 * Whether operators probing an index (minus, union, index_join) first
+	 * check the key filter of the table probed, and hash joins push a runtime
+	 * filter over their build side into their probe side (see BloomFilter).
+	 */
+	public static boolean bloomFilters = true;
+
+	/**
+	 * Whether select skips the blocks of tuples whose zones show that none of
+	 * them satisfies the condition (see ZoneMap).
+	 */
+	public static boolean zoneMaps = true;
+
+	/**
+	 * Whether select answers the comparisons of attributes having a bitmap
+	 * index (see bitmapIndex) through it.
+	 */
+	public static boolean bitmapIndexes = true;
+
+	/**
+	 * Whether select answers the text searches of attributes having an
+	 * inverted index (see textIndex) through it.
+	 */
+	public static boolean textIndexes = true;
+
+	/**
+	 * Whether select narrows "like" patterns through the index (a prefix of
+	 * the key, when the index is ordered) or a trigram index (see
+	 * trigramIndex).
+	 */
+	public static boolean likeIndexes = true;
+
+	/**
+	 * The execution mode of select and project.
+	 */
+	public static Execution execution = Execution.BATCH;
+
+	/**
+	 * The number of threads scans may use (see ParallelScan).
+	 */
+	public static int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The smallest number of tuples a table must have to be scanned in
+	 * parallel.
+	 */
+	private static final int PARALLEL_MIN = 1 << 15;
+
+	/**
+	 * The largest fraction (1 / SPARSE) of a table the tuples left by its
+	 * bitmap indexes may make up for select to read them one by one when the
+	 * indexes cannot answer the whole condition.
+	 */
+	private static final int SPARSE = 8;
+
+	/**
+	 * The longest vacuum waits for the open snapshots of a table to be closed
+	 * in milliseconds (new ones wait meanwhile).
+	 */
+	private static final long DRAIN_MILLIS = 100;
+
 	/**
 	 * Counter for naming temporary tables.
 	 */
-	private static int count = 0;
+	private static final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * Counter for numbering tables.
+	 */
+	private static final AtomicLong serials = new AtomicLong();
 
 	/**
 	 * Table name.
@@ -65,9 +183,107 @@ public class Table implements Serializable, Cloneable {
 	private final String[] key;
 
 	/**
-	 * Index into tuples (maps key to tuple).
+	 * Index into tuples (maps key to tuple), rebuilt when the table is
+	 * compacted (see vacuum).
+	 */
+	private Map<KeyType, Integer> index;
+
+	/**
+	 * The index as a LongIndex if it is one (null otherwise), see
+	 * primitiveKeys.
+	 */
+	private LongIndex longIndex;
+
+	/**
+	 * The index structure of the table (unless it has a LongIndex).
+	 */
+	private final Indexing structure;
+
+	/**
+	 * A Bloom filter over the keys in the index, ruling out most keys a
+	 * lookup would not find (null until an operator probing the index builds
+	 * it, see filterKeys). Index insertions add their keys to it, and it is
+	 * dropped once it outgrows its capacity, to be rebuilt larger by the next
+	 * probing operator. Tables with a LongIndex have none, since a lookup
+	 * there costs no more than a probe of the filter.
+	 */
+	private volatile BloomFilter keyFilter = null;
+
+	/**
+	 * Dictionaries of the dictionary encoded attributes (null for the others).
+	 */
+	private Dictionary[] dictionary;
+
+	/**
+	 * Codec compiled from the domains, used to pack/unpack tuples.
+	 */
+	private TupleCodec codec;
+
+	/**
+	 * The smallest and largest value of each attribute per block of tuples,
+	 * summarizing the tuples as they are added (see summarize).
+	 */
+	private ZoneMap zones;
+
+	/**
+	 * The bitmap index of each attribute (null if not indexed, see
+	 * bitmapIndex), maintained as the zones are.
+	 */
+	private final BitmapIndex[] bitmaps;
+
+	/**
+	 * The inverted index of each attribute (null if not indexed, see
+	 * textIndex), maintained as the zones are.
+	 */
+	private final TextIndex[] texts;
+
+	/**
+	 * The trigram index of each attribute (null if not indexed, see
+	 * trigramIndex), maintained as the zones are.
+	 */
+	private final TrigramIndex[] trigrams;
+
+	/**
+	 * The storage organization of the tuples.
+	 */
+	private final Storage storage;
+
+	/**
+	 * The latch guarding the index and serializing the writers: index
+	 * lookups share it, writers (inserts, updates, deletes) hold it
+	 * exclusively.
+	 */
+	private final ReentrantReadWriteLock latch = new ReentrantReadWriteLock();
+
+	/**
+	 * The versions of the tuples (one per tuple), compacting the table from
+	 * time to time (see vacuum).
+	 */
+	private final Versions versions = new Versions(new Runnable() {
+		public void run() {
+			vacuum();
+		} // run
+	});
+
+	/**
+	 * The number of checkpoints being taken, during which the records must
+	 * not move (see vacuum).
+	 */
+	private final AtomicInteger checkpoints = new AtomicInteger();
+
+	/**
+	 * The number of the table, ordering the latches of two tables so they are
+	 * always acquired in the same order (see lockShared).
+	 */
+	private final long serial = serials.getAndIncrement();
+
+	/**
+	 * The write-ahead log of the changes to this table (null if not logged),
+	 * and the codecs (without dictionaries) encoding its tuples and keys.
 	 */
-	private final Map<KeyType, Integer> index;
+	private WriteAheadLog log = null;
+	private TupleCodec logCodec = null;
+	private TupleCodec keyCodec = null;
 
 	/***************************************************************************
 	 * Construct an empty table from the meta-data specifications.
@@ -83,18 +299,73 @@ public class Table implements Serializable, Cloneable {
 	 */
 	public Table(String _name, String[] _attribute, Class[] _domain,
 			String[] _key) {
+		this(_name, _attribute, _domain, _key, Storage.ROW);
+	} // Table
+
+	/***************************************************************************
+	 * Construct an empty table from the meta-data specifications, storing its
+	 * tuples with the given organization.
+	 * 
+	 * @param _name
+	 *            the name of the relation
+	 * @param _attribute
+	 *            the string containing attributes names
+	 * @param _domain
+	 *            the string containing attribute domains (data types)
+	 * @param _key
+	 *            the primary key
+	 * @param _storage
+	 *            the storage organization (row or column)
+	 */
+	public Table(String _name, String[] _attribute, Class[] _domain,
+			String[] _key, Storage _storage) {
 		name = _name;
 		attribute = _attribute;
 		domain = _domain;
 		key = _key;
+		dictionary = new Dictionary[domain.length];
+		codec = new TupleCodec(domain, dictionary);
+		zones = new ZoneMap(codec.type);
+		bitmaps = new BitmapIndex[domain.length];
+		texts = new TextIndex[domain.length];
+		trigrams = new TrigramIndex[domain.length];
+		storage = _storage;
 		//tuples = new ArrayList<>(); // also try FileList, see below
-		tuples = new FileList(this, tupleSize());
+		if (storage == Storage.COLUMN)
+			tuples = new ColumnList(domain);
+		else
+			tuples = new FileList(this);
 		
-		index = new BpTree(KeyType.class, Integer.class);  // B+ Tree Indexing
-		//index = new ExtHash<>(KeyType.class, Integer.class, 2);  // Extendible Hash Table Indexing
-		//index = new TreeMap<>(); // also try BPTreeMap, LinHash or ExtHash
+		int k = (key.length == 1) ? Arrays.asList(attribute).indexOf(key[0]) : -1;
+		if (primitiveKeys && k >= 0 && LongIndex.supports(domain[k]))
+			longIndex = new LongIndex(domain[k]);
+		else
+			longIndex = null;
+		structure = indexing;
+		index = newIndex();
 	} // Table
 
+	/***************************************************************************
+	 * Return a new (empty) index for the table: its LongIndex if it has one,
+	 * otherwise an index of its structure.
+	 * 
+	 * @return the index
+	 */
+	private Map<KeyType, Integer> newIndex() {
+		if (longIndex != null)
+			return longIndex;
+		switch (structure) {
+		case EXTHASH:
+			return new ExtHash<>(KeyType.class, Integer.class, 2);
+		case LINHASH:
+			return new LinHash<>(KeyType.class, Integer.class, 4);
+		case TREEMAP:
+			return new TreeMap<>();
+		default:
+			return new BpTree(KeyType.class, Integer.class);
+		} // switch
+	} // newIndex
+
 	/***************************************************************************
 	 * Construct an empty table from the raw string specifications.
 	 * 
@@ -113,6 +384,29 @@ public class Table implements Serializable, Cloneable {
 			out.println("DDL> create table " + name + " (" + attributes + ")");
 	} // Table
 
+	/***************************************************************************
+	 * Construct an empty table from the raw string specifications, storing its
+	 * tuples with the given organization. #usage new Table ("purchase", ...,
+	 * Table.Storage.COLUMN)
+	 * 
+	 * @param name
+	 *            the name of the relation
+	 * @param attributes
+	 *            the string containing attributes names
+	 * @param domains
+	 *            the string containing attribute domains (data types)
+	 * @param _storage
+	 *            the storage organization (row or column)
+	 */
+	public Table(String name, String attributes, String domains, String _key,
+			Storage _storage) {
+		this(name, attributes.split(" "), findClass(domains.split(" ")), _key
+				.split(" "), _storage);
+
+		if (DEBUG)
+			out.println("DDL> create table " + name + " (" + attributes + ")");
+	} // Table
+
 	/***************************************************************************
 	 * Construct an empty table using the meta-data of an existing table.
 	 * 
@@ -122,9 +416,461 @@ public class Table implements Serializable, Cloneable {
 	 *            the suffix appended to create new table name
 	 */
 	public Table(Table tab, String suffix) {
-		this(tab.name + suffix, tab.attribute, tab.domain, tab.key);
+		this(tab.name + suffix, tab.attribute, tab.domain, tab.key, tab.storage);
+		useDictionaries(tab.dictionary);
 	} // Table
 
+	/***************************************************************************
+	 * Dictionary encode the given string attributes: each distinct value is
+	 * stored once in a per-attribute dictionary (persisted with the
+	 * checkpoints of the table) and tuples only store its int code. Equality predicates and joins
+	 * on encoded attributes are evaluated on the codes. This must be done
+	 * before any tuple is inserted. #usage product.dictionaryEncode
+	 * ("ProdCategory")
+	 * 
+	 * @param attributeList
+	 *            the attributes to encode
+	 * @return whether the attributes could be encoded
+	 * 
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	public boolean dictionaryEncode(String attributeList) {
+		latch.writeLock().lock();
+		try {
+			if (tuples.size() > 0) {
+				out.println("dictionaryEncode: table " + name + " is not empty");
+				return false;
+			} // if
+
+			Dictionary[] dict = Arrays.copyOf(dictionary, dictionary.length);
+			for (String a : attributeList.split(" ")) {
+				int j = columnPos(a);
+				if (j == -1)
+					return false;
+				if (domain[j] != String.class) {
+					out.println("dictionaryEncode: " + a + " is not a String");
+					return false;
+				} // if
+				if (dict[j] == null)
+					dict[j] = new Dictionary();
+			} // for
+
+			useDictionaries(dict);
+			return true;
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+	} // dictionaryEncode
+
+	/***************************************************************************
+	 * Build a bitmap index (see BitmapIndex) on each of the given attributes,
+	 * meant for attributes with few distinct values. The indexes are
+	 * maintained as tuples are added, and select answers comparisons of these
+	 * attributes with literals, combined by "&" and "|", as AND and OR of
+	 * their bitmaps before reading any tuple. #usage customer.bitmapIndex
+	 * ("sex")
+	 * 
+	 * @param attributeList
+	 *            the attributes to index
+	 * @return whether the attributes could be indexed
+	 * 
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	public boolean bitmapIndex(String attributeList) {
+		latch.writeLock().lock();
+		try {
+			String[] attrs = attributeList.split(" ");
+			int[] cols = new int[attrs.length];
+			for (int k = 0; k < attrs.length; k++) {
+				cols[k] = columnPos(attrs[k]);
+				if (cols[k] == -1)
+					return false;
+			} // for
+
+			summarize();
+			for (int j : cols) {
+				if (bitmaps[j] != null)
+					continue;
+				BitmapIndex b = new BitmapIndex(j, codec.type[j]);
+				TupleView v = null;
+				for (int i = 0; i < tuples.size(); i++) {
+					v = view(i, v);
+					b.add(v);
+				} // for
+				bitmaps[j] = b;
+			} // for
+			return true;
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+	} // bitmapIndex
+
+	/***************************************************************************
+	 * Build an inverted index (see TextIndex) on each of the given string
+	 * attributes, e.g., TextStr. The indexes are maintained as tuples are
+	 * added, and select answers "contains" (all the terms) and "match" (any
+	 * term) on these attributes from their postings lists. #usage
+	 * tweet.textIndex ("TextStr"), then tweet.select ("TextStr contains
+	 * 'magna erat'")
+	 * 
+	 * @param attributeList
+	 *            the attributes to index
+	 * @return whether the attributes could be indexed
+	 * 
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	public boolean textIndex(String attributeList) {
+		latch.writeLock().lock();
+		try {
+			String[] attrs = attributeList.split(" ");
+			int[] cols = new int[attrs.length];
+			for (int k = 0; k < attrs.length; k++) {
+				cols[k] = columnPos(attrs[k]);
+				if (cols[k] == -1)
+					return false;
+				if (domain[cols[k]] != String.class) {
+					out.println("textIndex: " + attrs[k] + " is not a String");
+					return false;
+				} // if
+			} // for
+
+			summarize();
+			for (int j : cols) {
+				if (texts[j] != null)
+					continue;
+				TextIndex t = new TextIndex(j);
+				TupleView v = null;
+				for (int i = 0; i < tuples.size(); i++) {
+					v = view(i, v);
+					t.add(v);
+				} // for
+				texts[j] = t;
+			} // for
+			return true;
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+	} // textIndex
+
+	/***************************************************************************
+	 * Build a trigram index (see TrigramIndex) on each of the given string
+	 * attributes. The indexes are maintained as tuples are added, and select
+	 * reads only the tuples holding all the trigrams of a "like" pattern,
+	 * e.g., '%phone%'. #usage product.trigramIndex ("ProdName"), then
+	 * product.select ("ProdName like '%phone%'")
+	 * 
+	 * @param attributeList
+	 *            the attributes to index
+	 * @return whether the attributes could be indexed
+	 * 
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	public boolean trigramIndex(String attributeList) {
+		latch.writeLock().lock();
+		try {
+			String[] attrs = attributeList.split(" ");
+			int[] cols = new int[attrs.length];
+			for (int k = 0; k < attrs.length; k++) {
+				cols[k] = columnPos(attrs[k]);
+				if (cols[k] == -1)
+					return false;
+				if (domain[cols[k]] != String.class) {
+					out.println("trigramIndex: " + attrs[k] + " is not a String");
+					return false;
+				} // if
+			} // for
+
+			summarize();
+			for (int j : cols) {
+				if (trigrams[j] != null)
+					continue;
+				TrigramIndex t = new TrigramIndex(j);
+				TupleView v = null;
+				for (int i = 0; i < tuples.size(); i++) {
+					v = view(i, v);
+					t.add(v);
+				} // for
+				trigrams[j] = t;
+			} // for
+			return true;
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+	} // trigramIndex
+
+	/***************************************************************************
+	 * Return the number of bytes the postings lists of the inverted index of
+	 * an attribute take (see TextIndex).
+	 * 
+	 * @param attr
+	 *            the attribute
+	 * @return the size of its postings, or -1 if it has no inverted index
+	 */
+	long postingsBytes(String attr) {
+		int j = columnPos(attr);
+		return (j < 0 || texts[j] == null) ? -1 : texts[j].postingsBytes();
+	} // postingsBytes
+
+	/***************************************************************************
+	 * Keep the sealed pages of this (row stored) table compressed, see
+	 * FileList.compress. Pays off for tables with long repetitive strings
+	 * (e.g., TextStr). Must be called before any tuple is inserted. #usage
+	 * post.compress ()
+	 * 
+	 * @return whether the table is compressed
+	 * 
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	public boolean compress() {
+		latch.writeLock().lock();
+		try {
+			if (!(tuples instanceof FileList) || tuples.size() > 0) {
+				out.println("compress: table " + name + " is not an empty row table");
+				return false;
+			} // if
+			return ((FileList) tuples).compress();
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+	} // compress
+
+	/***************************************************************************
+	 * Log the changes to this table to a write-ahead log (file name.wal). If
+	 * the log already holds changes, e.g., when the table is created again
+	 * after a crash, the table is recovered first: its last checkpoint (if
+	 * any) is restored and the changes logged after it are replayed,
+	 * rebuilding the tuples and the index. Must be called before any tuple is
+	 * inserted (and after dictionaryEncode and compress, as when the table
+	 * was checkpointed). #usage movie.log
+	 * (WriteAheadLog.Sync.FSYNC)
+	 * 
+	 * @param sync
+	 *            when a change is durable (see WriteAheadLog.Sync)
+	 * @return whether the table is logged
+	 */
+	public boolean log(WriteAheadLog.Sync sync) {
+		return log(sync, 1, 0);
+	} // log
+
+	/***************************************************************************
+	 * Log the changes to this table to a write-ahead log, grouping the fsyncs
+	 * of concurrent commits (see log (Sync)): a commit waits up to
+	 * groupMicros for groupSize commits to gather before forcing the log.
+	 * #usage movie.log (WriteAheadLog.Sync.FSYNC, 16, 200)
+	 * 
+	 * @param sync
+	 *            when a change is durable (see WriteAheadLog.Sync)
+	 * @param groupSize
+	 *            the number of commits to gather per fsync
+	 * @param groupMicros
+	 *            the longest to wait for them in microseconds
+	 * @return whether the table is logged
+	 */
+	public boolean log(WriteAheadLog.Sync sync, int groupSize, long groupMicros) {
+		latch.writeLock().lock();
+		try {
+			if (log != null || tuples.size() > 0) {
+				out.println("log: table " + name + " is not an empty unlogged table");
+				return false;
+			} // if
+
+			WriteAheadLog wal;
+			try {
+				wal = new WriteAheadLog(name, sync, groupSize, groupMicros);
+			} catch (IOException e) {
+				System.err.println("There was an error while opening the log of " + name);
+				e.printStackTrace();
+				return false;
+			} // try
+
+			logCodec = new TupleCodec(domain);
+			keyCodec = new TupleCodec(extractDom(domain, match(key)));
+			long from = 0;
+			try {
+				DataInputStream image = Checkpoint.load(name);
+				if (image != null)
+					from = restore(image);
+			} catch (IOException e) {
+				System.err.println("There was an error while restoring the checkpoint of " + name);
+				e.printStackTrace();
+				from = -1;
+			} // try
+			if (from < 0) {
+				wal.close();
+				return false;
+			} // if
+
+			int n = wal.recover(new WriteAheadLog.Redo() {
+				public void redo(byte type, ByteBuffer buf, int base) {
+					if (type == WriteAheadLog.DELETE)
+						delete(keyCodec.decode(buf, base));
+					else if (type == WriteAheadLog.UPDATE)
+						update(logCodec.decode(buf, base));
+					else
+						insert(logCodec.decode(buf, base));
+				} // redo
+			}, from);
+			if (DEBUG && n > 0)
+				out.println("log: replayed " + n + " changes into table " + name);
+			log = wal;
+			return true;
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+	} // log
+
+	/***************************************************************************
+	 * Take a (fuzzy) checkpoint of this logged row table, so recovery only
+	 * replays the changes logged after it. The image of the table (the page
+	 * directory, dictionaries, versions and an index snapshot, as of the
+	 * current LSN) is copied in memory under the latch, which is released
+	 * before any I/O: writers go on while the log up to that LSN and the data
+	 * pages are forced and the image is written. #usage movie.checkpoint ()
+	 * 
+	 * @return whether the checkpoint was taken
+	 */
+	public boolean checkpoint() {
+		WriteAheadLog wal;
+		ByteArrayOutputStream image = new ByteArrayOutputStream();
+		latch.writeLock().lock();
+		try {
+			if (log == null || !(tuples instanceof FileList)) {
+				out.println("checkpoint: table " + name + " is not a logged row table");
+				return false;
+			} // if
+			wal = log;
+			checkpoints.incrementAndGet();
+
+			DataOutputStream os = new DataOutputStream(image);
+			os.writeLong(wal.lsn());
+			((FileList) tuples).save(os);
+			for (Dictionary d : dictionary) {
+				if (d == null)
+					os.writeInt(-1);
+				else
+					d.save(os);
+			} // for
+			versions.save(os);
+
+			ByteArrayOutputStream entries = new ByteArrayOutputStream();
+			DataOutputStream es = new DataOutputStream(entries);
+			ByteBuffer buf = ByteBuffer.allocate(256);
+			int n = 0;
+			for (Map.Entry<KeyType, Integer> e : index.entrySet()) {
+				int length = keyCodec.size(e.getKey().key);
+				if (buf.capacity() < length)
+					buf = ByteBuffer.allocate(2 * length);
+				buf.clear();
+				keyCodec.encode(e.getKey().key, buf);
+				es.writeInt(length);
+				es.write(buf.array(), 0, length);
+				es.writeInt(e.getValue());
+				n++;
+			} // for
+			os.writeInt(n);
+			entries.writeTo(os);
+			os.flush();
+		} catch (IOException e) {
+			System.err.println("There was an error while taking the checkpoint of " + name);
+			e.printStackTrace();
+			checkpoints.decrementAndGet();
+			return false;
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+
+		try {
+			wal.flush();
+			if (!((FileList) tuples).force())
+				return false;
+			Checkpoint.save(name, image.toByteArray());
+		} catch (IOException e) {
+			System.err.println("There was an error while saving the checkpoint of " + name);
+			e.printStackTrace();
+			return false;
+		} finally {
+			checkpoints.decrementAndGet();
+		} // try
+		return true;
+	} // checkpoint
+
+	/***************************************************************************
+	 * Restore this (empty) table from the image of its checkpoint (see
+	 * checkpoint).
+	 * 
+	 * @param in
+	 *            the image
+	 * @return the LSN of the checkpoint, or -1 if the table does not match it
+	 * @throws IOException
+	 *             if the image cannot be read
+	 */
+	private long restore(DataInputStream in) throws IOException {
+		long lsn = in.readLong();
+		if (!(tuples instanceof FileList) || !((FileList) tuples).restore(in))
+			return -1;
+		for (int j = 0; j < dictionary.length; j++) {
+			boolean encoded = (dictionary[j] != null) ? dictionary[j].restore(in) : in.readInt() >= 0;
+			if (encoded != (dictionary[j] != null)) {
+				out.println("log: attribute " + attribute[j] + " is not encoded as when " + name + " was checkpointed");
+				return -1;
+			} // if
+		} // for
+		summarize();
+		versions.restore(in);
+		if (versions.ended() > 0)
+			versions.collectInBackground();
+
+		byte[] b = new byte[256];
+		for (int n = in.readInt(); n > 0; n--) {
+			int length = in.readInt();
+			if (b.length < length)
+				b = new byte[2 * length];
+			in.readFully(b, 0, length);
+			index.put(new KeyType(keyCodec.decode(ByteBuffer.wrap(b), 0)),
+					in.readInt());
+		} // for
+		return lsn;
+	} // restore
+
+	/***************************************************************************
+	 * Wait until the change logged with the given LSN is durable (as far as
+	 * the sync mode of the log requires). Called after releasing the latch,
+	 * so concurrent commits can share a flush.
+	 * 
+	 * @param wal
+	 *            the log of the table when the change was made (or null)
+	 * @param lsn
+	 *            the LSN of the change
+	 */
+	private static void commit(WriteAheadLog wal, long lsn) {
+		if (wal != null)
+			wal.commit(lsn);
+	} // commit
+
+	/***************************************************************************
+	 * Encode the attributes of this (empty) table with the given dictionaries,
+	 * e.g., the ones of the table it is derived from, so records can be copied
+	 * between the two without decoding.
+	 * 
+	 * @param dict
+	 *            the dictionary for each attribute (null if not encoded)
+	 */
+	private void useDictionaries(Dictionary[] dict) {
+		dictionary = dict;
+		codec = new TupleCodec(domain, dictionary);
+		zones = new ZoneMap(codec.type);
+		for (int j = 0; j < bitmaps.length; j++) {
+			if (bitmaps[j] != null)
+				bitmaps[j] = new BitmapIndex(j, codec.type[j]);
+		} // for
+		if (tuples instanceof ColumnList) {
+			for (int j = 0; j < dictionary.length; j++) {
+				if (dictionary[j] != null)
+					((ColumnList) tuples).encode(j, dictionary[j]);
+			} // for
+		} // if
+	} // useDictionaries
+
 	/***************************************************************************
 	 * Project the tuples onto a lower dimension by keeping only the given
 	 * attributes. Check whether the original key is included in the projection.
@@ -137,46 +883,99 @@ public class Table implements Serializable, Cloneable {
 	 * @author Sina, Arash, Navid, Sambitesh
 	 */
 	public Table project(String attributeList) {
-		if (DEBUG)
-			out.println("RA> " + name + ".project (" + attributeList + ")");
-
-		String[] pAttribute = attributeList.split(" ");
-		int[] colPos = match(pAttribute);
-		Class[] colDomain = extractDom(domain, colPos);
-		String[] newKey = null;
+		Versions.Snapshot snap = versions.snapshot();
+		try {
+			if (DEBUG)
+				out.println("RA> " + name + ".project (" + attributeList + ")");
+
+			String[] pAttribute = attributeList.split(" ");
+			int[] colPos = match(pAttribute);
+			Class[] colDomain = extractDom(domain, colPos);
+			String[] newKey = null;
+
+			for (String s : this.key) {
+				if (!Arrays.asList(pAttribute).contains(s)) {
+					newKey = new String[1];
+					break;
+				}
+			}
 
-		for (String s : this.key) {
-			if (!Arrays.asList(pAttribute).contains(s)) {
-				newKey = new String[1];
-				break;
+			if (newKey == null) {
+				newKey = Arrays.copyOf(this.key, this.key.length);
+			} else {
+				newKey = Arrays.copyOf(pAttribute, pAttribute.length);
 			}
-		}
 
-		if (newKey == null) {
-			newKey = Arrays.copyOf(this.key, this.key.length);
-		} else {
-			newKey = Arrays.copyOf(pAttribute, pAttribute.length);
-		}
+			Table result = new Table(name + count.getAndIncrement(), pAttribute, colDomain,
+					newKey, storage);
+			Dictionary[] pDictionary = new Dictionary[colPos.length];
+			for (int j = 0; j < colPos.length; j++)
+				pDictionary[j] = dictionary[colPos[j]];
+			result.useDictionaries(pDictionary);
+			int[] cols = match(result.key);
 
-		Table result = new Table(name + count++, pAttribute, colDomain, newKey);
+			if (execution == Execution.BATCH && tuples instanceof ColumnList
+					&& result.tuples instanceof ColumnList) {
+				// copy the projected segments a batch at a time, as whole ranges
+				// when the key is kept (no duplicates possible) and otherwise
+				// gathering the first tuple of each new key
+				boolean keepsKey = Arrays.equals(result.key, key);
+				ColumnList src = (ColumnList) tuples;
+				int[] sel = new int[Batch.SIZE];
+				for (int start = 0; start < snap.size; start += Batch.SIZE) {
+					int n = Math.min(Batch.SIZE, snap.size - start);
+					if (keepsKey && snap.all) {
+						result.append(this, colPos, start, null, n);
+						continue;
+					} // if
+					if (keepsKey) {
+						System.arraycopy(Batch.ALL, 0, sel, 0, n);
+						result.append(this, colPos, start, sel, snap.filter(start, sel, n));
+						continue;
+					} // if
+
+					int m = 0;
+					for (int k = 0; k < n; k++) {
+						if (!snap.visible(start + k))
+							continue;
+						Comparable[] keyVal = new Comparable[cols.length];
+						for (int j = 0; j < keyVal.length; j++)
+							keyVal[j] = src.value(cols[j], start + k);
+						if (result.indexGet(keyVal) < 0) {
+							result.indexPut(keyVal, result.tuples.size() + m);
+							sel[m++] = k;
+						} // if
+					} // for
+					((ColumnList) result.tuples).append(src, colPos, start, sel, m);
+					result.stamp();
+				} // for
+				return result;
+			} // if
 
-		for (Comparable[] tup : tuples) {
-			Comparable[] current = tup;
-			Comparable[] keyVal = new Comparable[result.key.length];
-			int[] cols = match(result.key);
+			// copy the projected attributes without unpacking the tuples, only
+			// the key attributes are decoded
+			TupleView v = null;
+			for (int i = 0; i < snap.size; i++) {
+				if (!snap.visible(i))
+					continue;
+				v = view(i, v);
+				Comparable[] keyVal = new Comparable[result.key.length];
 
-			for (int j = 0; j < keyVal.length; j++) {
-				keyVal[j] = current[cols[j]];
-			}
+				for (int j = 0; j < keyVal.length; j++) {
+					keyVal[j] = v.get(cols[j]);
+				}
 
-			// Insert only those keys which are in table2 but not in table
-			// one
-			if (!(result.index.containsKey(new KeyType(keyVal)))) {
-				result.insert(extractTup(tup, colPos));
-			}
-		} // for
+				// Insert only those keys which are in table2 but not in table
+				// one
+				if (result.indexGet(keyVal) < 0) {
+					result.insert(v, colPos, keyVal);
+				}
+			} // for
 
-		return result;
+			return result;
+		} finally {
+			snap.close();
+		} // try
 	} // project
 
 /***************************************************************************
@@ -192,87 +991,162 @@ public class Table implements Serializable, Cloneable {
 	 * @author Sina, Arash, Navid, Sambitesh
 	 */
 	public Table select(String condition) {
-		if (DEBUG)
-			out.println("RA> " + name + ".select (" + condition + ")");
-		Table result = new Table(name + count++, attribute, domain, key);
+		Versions.Snapshot snap = versions.snapshot();
+		try {
+			if (DEBUG)
+				out.println("RA> " + name + ".select (" + condition + ")");
+			Table result = new Table(name + count.getAndIncrement(), attribute, domain, key, storage);
+			result.useDictionaries(dictionary);
 		
-		ArrayList<String> infix = new ArrayList<String>(Arrays.asList(condition.split(" ")));
-
-		if (key.length == 1 && infix.contains(key[0]) && infix.size() == 3){
-			infix.remove(key[0]);
-			if (infix.contains("==")){
-				// Extendible Hash
-				infix.remove("==");
-				Comparable[] keyVal = {Integer.parseInt(infix.get(0))};
-				Integer pos = index.get(new KeyType(keyVal));
-				if (pos != null)
-					result.insert(tuples.get(pos));
-			}
-			else if (infix.contains("!=")){
-				infix.remove("!=");
-				Table resultReverse = new Table(name + count++, attribute, domain, key);
-				Comparable[] keyVal = {Integer.parseInt(infix.get(0))};
-				Integer pos = index.get(new KeyType(keyVal));
-				if (pos != null)
-					resultReverse.insert(tuples.get(pos));
-				result = this.minus(resultReverse);
-			}
-			else{
-				if ((infix.contains(">") || infix.contains(">=")) && (index instanceof BpTree || index instanceof TreeMap)){
-					infix.remove(0);
-					Comparable[] keyVal = {Integer.parseInt(infix.get(0))};
-					SortedMap tail = null;
-					if (index instanceof BpTree)
-						tail = ((BpTree)index).tailMap(new KeyType(keyVal));
-					else
-						tail = ((TreeMap)index).tailMap(new KeyType(keyVal));
-					for (Object t: tail.values()){
-						result.insert(tuples.get((Integer) t));
+			ArrayList<String> infix = new ArrayList<String>(Arrays.asList(tokens(condition)));
+
+			String op = (infix.size() == 3) ? infix.get(1) : null;
+			boolean ordered = index instanceof BpTree || index instanceof TreeMap;
+			if (key.length == 1 && infix.contains(key[0]) && infix.size() == 3
+					&& (op.equals("==") || op.equals("!=") || ordered
+							&& operator2priority(op) >= 3 && operator2priority(op) <= 8)){
+				// the key is looked up in the index, or its range scanned when
+				// the index is ordered (a range over a hash index is scanned
+				// like any other condition)
+				latch.readLock().lock();
+				try {
+					infix.remove(key[0]);
+					if (infix.contains("==")){
+						// Extendible Hash
+						infix.remove("==");
+						Comparable[] keyVal = {Integer.parseInt(infix.get(0))};
+						int pos = lookup(keyVal, snap);
+						if (pos >= 0)
+							result.insert(tuples.get(pos));
 					}
-				}else if ((infix.contains("<") || infix.contains("<=")) && (index instanceof BpTree || index instanceof TreeMap)){
-					infix.remove(0);
-					Comparable[] keyVal = {Integer.parseInt(infix.get(0))};
-					SortedMap head = null;
-					if (index instanceof BpTree)
-						head = ((BpTree)index).headMap(new KeyType(keyVal));
-					else
-						head = ((TreeMap)index).headMap(new KeyType(keyVal));
-					for (Object t: head.values()){
-						result.insert(tuples.get((Integer) t));
+					else if (infix.contains("!=")){
+						infix.remove("!=");
+						Table resultReverse = new Table(name + count.getAndIncrement(), attribute, domain, key);
+						Comparable[] keyVal = {Integer.parseInt(infix.get(0))};
+						int pos = lookup(keyVal, snap);
+						if (pos >= 0)
+							resultReverse.insert(tuples.get(pos));
+						result = this.minus(resultReverse);
 					}
-				}else{
-					// We have ExtHash
-					if (infix.contains("<") || infix.contains("<=")){
+					else if (infix.contains(">") || infix.contains(">=")){
 						infix.remove(0);
-						for (Object t : ((ExtHash)index).entrySet()){
+						Comparable[] keyVal = {Integer.parseInt(infix.get(0))};
+						KeyType k = new KeyType(keyVal);
+						SortedMap tail = null;
+						if (index instanceof BpTree)
+							tail = ((BpTree)index).tailMap(k);
+						else
+							tail = ((TreeMap)index).tailMap(k);
+						for (Object t: tail.entrySet()){
 							Map.Entry entry = (Entry) t;
-							Integer leftSide = (Integer) ((KeyType)entry.getKey()).key[0];
-							if (leftSide <= Integer.parseInt(infix.get(0))){
-								result.insert(tuples.get(((Integer)entry.getValue())));
-							}
+							if (op.equals(">") && k.compareTo((KeyType) entry.getKey()) == 0)
+								continue;
+							int pos = snap.resolve((Integer) entry.getValue());
+							if (pos >= 0)
+								result.insert(tuples.get(pos));
 						}
 					}else{
 						infix.remove(0);
-						for (Object t : ((ExtHash)index).entrySet()){
-							Map.Entry entry = (Entry) t;
-							Integer leftSide = (Integer) ((KeyType)entry.getKey()).key[0];
-							if (leftSide >= Integer.parseInt(infix.get(0))){
-								result.insert(tuples.get(((Integer)entry.getValue())));
-							}
+						Comparable[] keyVal = {Integer.parseInt(infix.get(0))};
+						SortedMap head = null;
+						if (index instanceof BpTree)
+							head = ((BpTree)index).headMap(new KeyType(keyVal));
+						else
+							head = ((TreeMap)index).headMap(new KeyType(keyVal));
+						for (Object t: head.values()){
+							int pos = snap.resolve((Integer) t);
+							if (pos >= 0)
+								result.insert(tuples.get(pos));
+						}
+						if (op.equals("<=")){
+							int pos = lookup(keyVal, snap);
+							if (pos >= 0)
+								result.insert(tuples.get(pos));
 						}
 					}
-				}
+				} finally {
+					latch.readLock().unlock();
+				} // try
+			}
+			else{
+				Condition cond = Condition.compile(infix2postfix(condition),
+						attribute, domain, dictionary);
+				int[] all = match(attribute);
+				TupleView v = null;
+				boolean[] exact = { true };
+				Bitmap candidates = candidates(cond, snap, exact);
+				if (candidates != null
+						&& (exact[0] || SPARSE * candidates.cardinality() <= snap.size)) {
+					// read only the tuples the indexes leave (checking
+					// the rest of the condition unless they answered it all)
+					int[] hits = candidates.toArray(snap.size);
+					int m = 0;
+					for (int i : hits) {
+						if (!snap.visible(i))
+							continue;
+						if (!exact[0] && !cond.eval(v = view(i, v)))
+							continue;
+						hits[m++] = i;
+					} // for
+					copy(result, hits, m);
+				} else if (execution == Execution.BATCH && parallelism > 1
+						&& snap.size >= PARALLEL_MIN) {
+					// filter page aligned ranges on several threads, then copy
+					// the selected tuples (of the snapshot) in order
+					int[] hits = ParallelScan.scan(tuples, snap.size, codec,
+							cond, zoneMaps ? zones : null, parallelism);
+					int m = hits.length;
+					if (!snap.all) {
+						m = 0;
+						for (int i : hits) {
+							if (snap.visible(i))
+								hits[m++] = i;
+						} // for
+					} // if
+					copy(result, hits, m);
+				} else if (execution == Execution.BATCH) {
+					// filter a batch at a time over vectors of the attributes the
+					// condition needs (skipping the batches its zones rule out),
+					// then copy the selected tuples
+					Batch b = new Batch(codec, cond.columns(new boolean[attribute.length]));
+					for (int start = 0; start < snap.size; start += Batch.SIZE) {
+						if (zoneMaps && !zones.mayMatch(cond, start,
+								Math.min(start + Batch.SIZE, snap.size)))
+							continue;
+						int n = cond.filter(b, Batch.ALL, b.load(tuples, start, snap.size), b.sel);
+						n = snap.filter(start, b.sel, n);
+						if (tuples instanceof ColumnList
+								&& result.tuples instanceof ColumnList) {
+							result.append(this, all, start, b.sel, n);
+						} else {
+							for (int k = 0; k < n; k++) {
+								v = view(start + b.sel[k], v);
+								result.insert(v, all, null);
+							} // for
+						} // if
+					} // for
+				} else {
+					// evaluate through views, reading only the attributes the
+					// condition needs (skipping the blocks its zones rule out)
+					for (int i = 0; i < snap.size; i++) {
+						if (zoneMaps && i % ZoneMap.BLOCK == 0 && !zones.mayMatch(cond, i,
+								Math.min(i + ZoneMap.BLOCK, snap.size))) {
+							i += ZoneMap.BLOCK - 1;
+							continue;
+						} // if
+						if (!snap.visible(i))
+							continue;
+						v = view(i, v);
+						if (cond.eval(v))
+							result.insert(v, all, null);
+					} // for
+				} // if
 			}
-		}
-		else{
-			String[] postfix = infix2postfix(condition);
-			for (Comparable[] tup : tuples) {
-				if (evalTup(postfix, tup))
-					result.insert(tup);
-			} // for
-		}
 
-		return result;
+			return result;
+		} finally {
+			snap.close();
+		} // try
 	} // select
 
 	/***************************************************************************
@@ -287,402 +1161,1094 @@ public class Table implements Serializable, Cloneable {
 	 * @author Sina, Arash, Navid, Sambitesh
 	 */
 	public Table union(Table table2) {
-		if (DEBUG)
-			out.println("RA> " + name + ".union (" + table2.name + ")");
+		Versions.Snapshot snap = versions.snapshot();
+		Versions.Snapshot snap2 = table2.versions.snapshot();
+		try {
+			if (DEBUG)
+				out.println("RA> " + name + ".union (" + table2.name + ")");
+
+			Table result = new Table(name + count.getAndIncrement(), attribute, domain, key, storage);
+
+			// Compatibility check
+			if (!this.compatible(table2)) {
+				out.println("Incompatible Tables");
+				return this;
+			}
+
+			else {
+				// the (empty) key filter of the result is filled as it is
+				result.filterKeys(snap.size + snap2.size);
+
+				// Adds first table as it is to the result
+				for (int i = 0; i < snap.size; i++) {
+					if (snap.visible(i))
+						result.insert(this.tuples.get(i));
+				}
+
+				for (int i = 0; i < snap2.size; i++) {
+					if (!snap2.visible(i))
+						continue;
+					Comparable[] current = (Comparable[]) table2.tuples.get(i);
+					Comparable[] keyVal = new Comparable[table2.key.length];
+					int[] cols = match(result.key);
+
+					for (int j = 0; j < keyVal.length; j++) {
+						keyVal[j] = current[cols[j]];
+					}
+
+					// Insert only those keys which are in table2 but not in table
+					// one (most of which the key filter tells without a lookup)
+					if (!result.mayContain(keyVal) || result.indexGet(keyVal) < 0) {
+						result.insert(current);
+					}
+				}
+			}
+
+			return result;
+		} finally {
+			snap2.close();
+			snap.close();
+		} // try
+	} // union
+
+	/***************************************************************************
+	 * Take the difference of this table and table2. Check that the two tables
+	 * are compatible. #usage movie.minus (show)
+	 * 
+	 * @param table2
+	 *            the rhs table in the minus operation
+	 * 
+	 * @return the table representing the difference (this - table2)
+	 * 
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	public Table minus(Table table2) {
+		Versions.Snapshot snap = versions.snapshot();
+		Versions.Snapshot snap2 = table2.versions.snapshot();
+		try {
+			if (DEBUG)
+				out.println("RA> " + name + ".minus (" + table2.name + ")");
+
+			Table result = new Table(name + count.getAndIncrement(), attribute, domain, key, storage);
+
+			// Compatibility check
+			if (!this.compatible(table2)) {
+				out.println("Incompatible Tables");
+				return this;
+			} else {
+				// Check whether tuples in Table1 are Equal to tuples in Table2 or
+				// not (the key filter rules out most keys missing from table2)
+				table2.filterKeys(0);
+				for (int i = 0; i < snap.size; i++) {
+					if (!snap.visible(i))
+						continue;
+					Comparable[] tup1 = this.tuples.get(i);
+					Comparable[] keyVal = new Comparable[table2.key.length];
+					int[] cols = match(result.key);
+
+					for (int j = 0; j < keyVal.length; j++) {
+						keyVal[j] = tup1[cols[j]];
+					}
+
+					if (!table2.mayContain(keyVal) || table2.lookup(keyVal, snap2) < 0) {
+						result.insert(tup1);
+					}
+				}
+			}
 
-		Table result = new Table(name + count++, attribute, domain, key);
+			return result;
+		} finally {
+			snap2.close();
+			snap.close();
+		} // try
+	} // minus
 
-		// Compatibility check
-		if (!this.compatible(table2)) {
-			out.println("Incompatible Tables");
-			return this;
+	/***************************************************************************
+	 * Compare two tuples deeply
+	 * 
+	 * @param tup1
+	 *            the first tuple
+	 * @param tup2
+	 *            the second tuple
+	 * @return true if two arrays are equal, false if those two differ
+	 * 
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@SuppressWarnings("unused")
+	private boolean compareTuples(Comparable[] tup1, Comparable[] tup2) {
+		for (int i = 0; i < tup1.length; i++) {
+			if (tup1[i].compareTo(tup2[i]) != 0) {
+				return false;
+			}
 		}
+		return true;
+	}
 
-		else {
-			// Adds first table as it is to the result
-			int length1 = this.tuples.size();
-			for (int i = 0; i < length1; i++) {
-				result.insert(this.tuples.get(i));
+	/***************************************************************************
+	 * Join this table and table2. If an attribute name appears in both tables,
+	 * assume it is from the first table unless it is qualified with the first
+	 * letter of the second table's name (e.g., "s."). In the result,
+	 * disambiguate the attribute names in a similar way (e.g., prefix the
+	 * second occurrence with "s_"). Caveat: the key parameter assumes joining
+	 * the table with the foreign key (this) to the table containing the primary
+	 * key (table2). #usage movie.join ("studioNo == name", studio); #usage
+	 * movieStar.join ("name == s.name", starsIn);
+	 * 
+	 * @param condition
+	 *            the join condition for tuples
+	 * @param table2
+	 *            the rhs table in the join operation
+	 * @return the table representing the join (this |><| table2)
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	public Table join(String condition, Table table2) {
+		Versions.Snapshot snap = versions.snapshot();
+		Versions.Snapshot snap2 = table2.versions.snapshot();
+		try {
+			/*
+			 * Step one - Check for valid input it should be of type
+			 * attributeonename == attributetwoname", both attributes should be
+			 * available in respective tables
+			 * 
+			 * Step two - Create appropriate resulting table. In case of duplicate
+			 * coloumn names add a "s_" prefix
+			 */
+
+			Table emptyTable = new Table(name + count.getAndIncrement(), new String[0],
+					new Class[0], key);
+			// first check the condition input to make sure it is valid
+			String[] splitCondition = condition.split(" ");
+			if (splitCondition.length != 3) {
+				out.println("Invalid join : format must be \"attribute1name == attribute2Name\"");
+				return (emptyTable);
+			}
+			if (!(splitCondition[1].equalsIgnoreCase("=="))) {
+				out.println("Invalid join : comparator must be \"==\"");
+				return (emptyTable);
+			}
+			// make sure the first attribute in the condition exists in the first
+			// table
+			int firstValuePos = this.columnPos(splitCondition[0]);
+			if (firstValuePos == -1) {
+				out.println("Invalid join : first attribute does not exist in calling table");
+				return (emptyTable);
+			}
+			// make sure the second attribute in the condition exists in the second
+			// table
+			int secondValuePos = table2.columnPos(splitCondition[2]);
+			if (secondValuePos == -1) {
+				// The second attribute might be name s.attributename, so check for
+				// it too
+				if (splitCondition[2].startsWith("s.")) {
+					splitCondition[2] = splitCondition[2].substring(2);
+					secondValuePos = table2.columnPos(splitCondition[2]);
+				}
+				// If still not found,then invalid join
+				if (secondValuePos == -1) {
+					out.println("Invalid join : second attribute does not exist in parameter table");
+					return (emptyTable);
+				}
+			}
+			// Validity check successful
+
+			// First figure out how big the table will be (which should = table1 +
+			// table2)
+			int firstTable = this.attribute.length;
+			int secondTableSize = table2.attribute.length;
+			int resultTableSize = firstTable + secondTableSize;
+			// create appropriate variables to hold attributes and domains for the
+			// new table
+			String[] resultAttributes = new String[resultTableSize];
+			Class[] resultDomains = new Class[resultTableSize];
+			// initialize these arrays by adding every attribute of table1
+			// and every attribute of table2 EXCEPT for the one named in the
+			// condition
+			int colCounter = 0;
+			// handle the first table
+			while (colCounter < firstTable) {
+				resultAttributes[colCounter] = this.attribute[colCounter];
+				resultDomains[colCounter] = this.domain[colCounter];
+				colCounter++;
+			}
+			// handle the second table
+			int table2Counter = (colCounter - firstTable);
+			while (colCounter < resultTableSize) {
+					// check against the first table's attributes to look for
+					// prefixing requirements
+					String s_ = "s_";
+					String curAttr = table2.attribute[table2Counter];
+					for (int i = 0; i < firstTable; i++) {
+						String current1Attr = this.attribute[i];
+						// if the attribute name already exists in table 1, add a
+						// prefix to the table 2 attribute name
+						if (current1Attr.equalsIgnoreCase(curAttr)) {
+							curAttr = s_ + curAttr;
+							break;
+						}
+					}
+					// carry on
+					resultAttributes[colCounter] = curAttr;
+					resultDomains[colCounter] = table2.domain[table2Counter];
+					// if it is the exception, leave the table2 counter, but back up
+					// on the colCounter, then carry on without adding anything
+				colCounter++;
+				table2Counter++;
 			}
 
-			for (int i = 0; i < table2.tuples.size(); i++) {
-				Comparable[] current = (Comparable[]) table2.tuples.get(i);
-				Comparable[] keyVal = new Comparable[table2.key.length];
-				int[] cols = match(result.key);
+			// create the new table
+			Table result = new Table(name + count.getAndIncrement(), resultAttributes,
+					resultDomains, key);
 
-				for (int j = 0; j < keyVal.length; j++) {
-					keyVal[j] = current[cols[j]];
+			if (snap.size == 0) {
+				out.println("There are no tuples in the first table, therefore join results in empty table");
+			}
+
+			// find the matching pairs with a (parallel) radix partitioned hash
+			// join: dictionary encoded join attributes are matched on their
+			// codes (translating this table's codes into table2's once) and
+			// those of the same integral type as longs; with bloomFilters, a
+			// filter over table2's keys drops tuples of this table early
+			byte t1 = TupleCodec.typeOf(domain[firstValuePos]);
+			int[] translate = null;
+			boolean asLong = TupleCodec.integral(t1)
+					&& t1 == TupleCodec.typeOf(table2.domain[secondValuePos]);
+			if (dictionary[firstValuePos] != null
+					&& table2.dictionary[secondValuePos] != null) {
+				translate = dictionary[firstValuePos]
+						.translate(table2.dictionary[secondValuePos]);
+				asLong = true;
+			} // if
+			long[] pairs = HashJoin.join(tuples, snap.size, codec,
+					firstValuePos, table2.tuples, snap2.size, table2.codec,
+					secondValuePos, asLong, translate, bloomFilters, parallelism);
+
+			// joined tuples are assembled in a row through views, so values that
+			// are not strings are never boxed
+			Row row = result.newRow();
+			TupleView v1 = null;
+			TupleView v2 = null;
+			int last = -1;
+			for (long pair : pairs) {
+				int i = (int) (pair >>> 32);
+				if (!snap.visible(i) || !snap2.visible((int) pair))
+					continue;
+				if (i != last) {
+					v1 = view(i, v1);
+					row.load(v1, 0, firstTable);
+					last = i;
+				} // if
+				v2 = table2.view((int) pair, v2);
+				row.load(v2, firstTable, secondTableSize);
+				result.insert(row, false);
+			} // for
+
+			// all done
+			return result;
+		} finally {
+			snap2.close();
+			snap.close();
+		} // try
+	} // join
+	
+	public Table index_join (String condition, Table table2){
+		Versions.Snapshot snap = versions.snapshot();
+		Versions.Snapshot snap2 = table2.versions.snapshot();
+		table2.filterKeys(0);
+		lockShared(table2);
+		try {
+			Table emptyTable = new Table(name + count.getAndIncrement(), new String[0],
+					new Class[0], key);
+			// first check the condition input to make sure it is valid
+			String[] splitCondition = condition.split(" ");
+			if (splitCondition.length != 3) {
+				out.println("Invalid join : format must be \"attribute1name == attribute2Name\"");
+				return (emptyTable);
+			}
+			if (!(splitCondition[1].equalsIgnoreCase("=="))) {
+				out.println("Invalid join : comparator must be \"==\"");
+				return (emptyTable);
+			}
+			// make sure the first attribute in the condition exists in the first
+			// table
+			int firstValuePos = this.columnPos(splitCondition[0]);
+			if (firstValuePos == -1) {
+				out.println("Invalid join : first attribute does not exist in calling table");
+				return (emptyTable);
+			}
+			// make sure the second attribute in the condition exists in the second
+			// table
+			int secondValuePos = table2.columnPos(splitCondition[2]);
+			if (secondValuePos == -1) {
+				// The second attribute might be name s.attributename, so check for
+				// it too
+				if (splitCondition[2].startsWith("s.")) {
+					splitCondition[2] = splitCondition[2].substring(2);
+					secondValuePos = table2.columnPos(splitCondition[2]);
+				}
+				// If still not found,then invalid join
+				if (secondValuePos == -1) {
+					out.println("Invalid join : second attribute does not exist in parameter table");
+					return (emptyTable);
+				}
+			}
+			// Validity check successful
+
+			// First figure out how big the table will be (which should = table1 +
+			// table2)
+			int firstTable = this.attribute.length;
+			int secondTableSize = table2.attribute.length;
+			int resultTableSize = firstTable + secondTableSize;
+			// create appropriate variables to hold attributes and domains for the
+			// new table
+			String[] resultAttributes = new String[resultTableSize];
+			Class[] resultDomains = new Class[resultTableSize];
+			// initialize these arrays by adding every attribute of table1
+			// and every attribute of table2 EXCEPT for the one named in the
+			// condition
+			int colCounter = 0;
+			// handle the first table
+			while (colCounter < firstTable) {
+				resultAttributes[colCounter] = this.attribute[colCounter];
+				resultDomains[colCounter] = this.domain[colCounter];
+				colCounter++;
+			}
+			// handle the second table
+			int table2Counter = (colCounter - firstTable);
+			while (colCounter < resultTableSize) {
+					// check against the first table's attributes to look for
+					// prefixing requirements
+					String s_ = "s_";
+					String curAttr = table2.attribute[table2Counter];
+					for (int i = 0; i < firstTable; i++) {
+						String current1Attr = this.attribute[i];
+						// if the attribute name already exists in table 1, add a
+						// prefix to the table 2 attribute name
+						if (current1Attr.equalsIgnoreCase(curAttr)) {
+							curAttr = s_ + curAttr;
+							break;
+						}
+					}
+					// carry on
+					resultAttributes[colCounter] = curAttr;
+					resultDomains[colCounter] = table2.domain[table2Counter];
+					// if it is the exception, leave the table2 counter, but back up
+					// on the colCounter, then carry on without adding anything
+				colCounter++;
+				table2Counter++;
+			}
+
+			// create the new table
+			Table result = new Table(name + count.getAndIncrement(), resultAttributes,
+					resultDomains, key);
+		
+			if (snap.size == 0 || snap2.size == 0) {
+				out.println("There are no tuples in one of the tables, therefore join results in empty table");
+				return emptyTable;
+			}
+		
+			for (Object t : this.index.entrySet()) {
+		
+				Map.Entry entry = (Map.Entry) t;
+				// the key filter of table2 rules out most keys it does not have
+				Integer res = table2.mayContain(((KeyType) entry.getKey()).key)
+						? table2.index.get(entry.getKey()) : null;
+				int pos = snap.resolve((Integer) entry.getValue());
+				res = (res == null) ? -1 : snap2.resolve(res);
+				if ( res >= 0 && pos >= 0){
+					// make a new tuple
+					Comparable[] newTup = new Comparable[resultTableSize];
+					Comparable[] tup1 = this.tuples.get(pos);
+					Comparable[] tup2 = table2.tuples.get(res);
+				
+					for (int i = 0; i < tup1.length + tup2.length; i++){
+						if (i < tup1.length)
+							newTup[i] = tup1[i];
+						else
+							newTup[i] = tup2[i - tup1.length];
+					}
+					result.insert(newTup);
 				}
+			}
+		
+			return result;
+		} finally {
+			unlockShared(table2);
+			snap2.close();
+			snap.close();
+		} // try
+	} // index_join
+
+	/***************************************************************************
+	 * Insert a tuple to the table, unless its key has a current tuple (which
+	 * must be updated or deleted instead). #usage movie.insert ("'Star_Wars'",
+	 * 1977, 124, "T", "Fox", 12345)
+	 * 
+	 * @param tup
+	 *            the array of attribute values forming the tuple
+	 * @return whether insertion was successful
+	 */
+	public boolean insert(Comparable[] tup) {
+		WriteAheadLog wal;
+		long lsn = 0;
+		latch.writeLock().lock();
+		try {
+			if (DEBUG)
+				out.println("DML> insert into " + name + " values ( " + Arrays.toString(tup) + " )");
+
+			if (!typeCheck(tup, domain))
+				return false;
+			Comparable[] keyVal = new Comparable[key.length];
+			int[] cols = match(key);
+			for (int j = 0; j < keyVal.length; j++)
+				keyVal[j] = tup[cols[j]];
+			int head = indexGet(keyVal);
+			if (live(head))
+				return false;
+			tuples.add(tup);
+			commitInsert(keyVal, head);
+			wal = log;
+			if (wal != null)
+				lsn = wal.append(WriteAheadLog.INSERT, logCodec, tup);
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+		commit(wal, lsn);
+		return true;
+	} // insert
+
+	/***************************************************************************
+	 * Update the tuple with the key of the given tuple to the given tuple: the
+	 * new version is appended (chained to the current one) and the current
+	 * one ended, so snapshots taken before keep seeing the old one. #usage movie.update ("'Star_Wars'",
+	 * 1977, 125, "T", "Fox", 12345)
+	 * 
+	 * @param tup
+	 *            the array of attribute values forming the new tuple
+	 * @return whether the update was successful (i.e., the key exists)
+	 * 
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	public boolean update(Comparable[] tup) {
+		WriteAheadLog wal;
+		long lsn = 0;
+		latch.writeLock().lock();
+		try {
+			if (DEBUG)
+				out.println("DML> update " + name + " values ( " + Arrays.toString(tup) + " )");
+
+			if (!typeCheck(tup, domain))
+				return false;
+			Comparable[] keyVal = new Comparable[key.length];
+			int[] cols = match(key);
+			for (int j = 0; j < keyVal.length; j++)
+				keyVal[j] = tup[cols[j]];
+			int head = indexGet(keyVal);
+			if (head < 0)
+				return false;
+			int old = versions.newest(head);
+			if (!versions.current(old) || !tuples.add(tup))
+				return false;
+
+			summarize();
+			long ts = versions.next();
+			versions.add(tuples.size(), old);
+			versions.end(old, ts);
+			versions.commit(ts);
+			versions.collectInBackground();
+			wal = log;
+			if (wal != null)
+				lsn = wal.append(WriteAheadLog.UPDATE, logCodec, tup);
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+		commit(wal, lsn);
+		return true;
+	} // update
+
+	/***************************************************************************
+	 * Delete the tuple with the given key by ending its current version, so
+	 * snapshots taken before keep seeing it. #usage movie.delete (new
+	 * Comparable [] { "'Star_Wars'", 1977 })
+	 * 
+	 * @param keyVal
+	 *            the key values of the tuple
+	 * @return whether the deletion was successful (i.e., the key exists)
+	 * 
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	public boolean delete(Comparable[] keyVal) {
+		WriteAheadLog wal;
+		long lsn = 0;
+		latch.writeLock().lock();
+		try {
+			if (DEBUG)
+				out.println("DML> delete from " + name + " key ( " + Arrays.toString(keyVal) + " )");
+
+			int head = indexGet(keyVal);
+			if (head < 0 || !versions.current(versions.newest(head)))
+				return false;
+
+			long ts = versions.next();
+			versions.end(versions.newest(head), ts);
+			versions.commit(ts);
+			versions.collectInBackground();
+			wal = log;
+			if (wal != null)
+				lsn = wal.append(WriteAheadLog.DELETE, keyCodec, keyVal);
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+		commit(wal, lsn);
+		return true;
+	} // delete
+
+	/***************************************************************************
+	 * Compact this table right away (this is done in the background for tables
+	 * with updates or deletes anyway, once most of their tuples are old
+	 * versions): if no snapshot is open, the old versions of the tuples are
+	 * dropped and the current ones moved to the front, in order (see
+	 * FileList.retain and ColumnList.retain), and the index, zones and
+	 * bitmap, inverted and trigram indexes rebuilt over them. The records of a
+	 * table with a checkpoint are moved after the old ones, which its
+	 * checkpoint refers to, instead of over them. New snapshots wait for the
+	 * open ones to close first (up to DRAIN_MILLIS); if they do not, or a
+	 * checkpoint is being taken, the old versions are only unlinked from
+	 * their chains.
+	 * 
+	 * @return the number of versions dropped (or unlinked)
+	 */
+	public int vacuum() {
+		boolean drained = versions.drain(DRAIN_MILLIS);
+		latch.writeLock().lock();
+		try {
+			return versions.compact((!drained || checkpoints.get() > 0) ? null
+					: new Versions.Compactor() {
+						public boolean compact(int[] keep, int n) {
+							return retain(keep, n);
+						} // compact
+					});
+		} finally {
+			latch.writeLock().unlock();
+			if (drained)
+				versions.release();
+		} // try
+	} // vacuum
+
+	/***************************************************************************
+	 * Keep only the given tuples, renumbered in order, see vacuum.
+	 * 
+	 * @param keep
+	 *            the positions of the tuples to keep, in ascending order
+	 * @param n
+	 *            the number of tuples to keep
+	 * @return whether the tuples were moved (if not, nothing changed)
+	 */
+	private boolean retain(int[] keep, int n) {
+		if (tuples instanceof FileList) {
+			boolean inPlace = !Checkpoint.exists(name);
+			if (!((FileList) tuples).retain(keep, n, inPlace))
+				return false;
+		} else if (tuples instanceof ColumnList) {
+			((ColumnList) tuples).retain(keep, n);
+		} else {
+			return false;
+		} // if
+
+		if (longIndex != null)
+			longIndex = new LongIndex(domain[match(key)[0]]);
+		index = newIndex();
+		keyFilter = null;
+		int[] cols = match(key);
+		TupleView v = null;
+		for (int i = 0; i < n; i++) {
+			v = view(i, v);
+			Comparable[] keyVal = new Comparable[cols.length];
+			for (int j = 0; j < keyVal.length; j++)
+				keyVal[j] = v.get(cols[j]);
+			indexPut(keyVal, i);
+		} // for
+
+		zones = new ZoneMap(codec.type);
+		for (int j = 0; j < domain.length; j++) {
+			if (bitmaps[j] != null)
+				bitmaps[j] = new BitmapIndex(j, codec.type[j]);
+			if (texts[j] != null)
+				texts[j] = new TextIndex(j);
+			if (trigrams[j] != null)
+				trigrams[j] = new TrigramIndex(j);
+		} // for
+		summarize();
+		return true;
+	} // retain
+
+	/***************************************************************************
+	 * Return a new (empty) row laid out for this table, to be filled through
+	 * its typed setters and inserted with insert (Row). #usage Row r =
+	 * movie.newRow (); r.setString (0, "Star_Wars").setLong (1, 1977) ...
+	 * 
+	 * @return the new row
+	 */
+	public Row newRow() {
+		return new Row(codec);
+	} // newRow
+
+	/***************************************************************************
+	 * Insert a row to the table without boxing its values: the row is packed
+	 * (rows) or appended to the segments (columns) directly and only the key
+	 * attributes are boxed to maintain the index.
+	 * 
+	 * @param row
+	 *            the row to insert (see newRow)
+	 * @return whether insertion was successful (i.e., the key has no current
+	 *         tuple)
+	 */
+	public boolean insert(Row row) {
+		return insert(row, true);
+	} // insert
+
+	/***************************************************************************
+	 * Insert a row to the table, see insert (Row).
+	 * 
+	 * @param row
+	 *            the row to insert
+	 * @param unique
+	 *            whether to reject the row if its key has a current tuple
+	 *            (otherwise the index is pointed to the row and the other
+	 *            tuple only stays reachable by scans, as in join results,
+	 *            where a tuple of the first table may match several of the
+	 *            second)
+	 * @return whether insertion was successful
+	 */
+	private boolean insert(Row row, boolean unique) {
+		WriteAheadLog wal;
+		long lsn = 0;
+		latch.writeLock().lock();
+		try {
+			boolean added;
+			int[] cols = match(key);
+			Comparable[] keyVal = new Comparable[key.length];
+			for (int j = 0; j < keyVal.length; j++)
+				keyVal[j] = row.get(cols[j]);
+			int head = indexGet(keyVal);
+			if (unique && live(head))
+				return false;
+
+			if (row.codec() != codec || row.arity() != domain.length)
+				return insert(row.toTuple());
+			if (tuples instanceof FileList)
+				added = ((FileList) tuples).add(row);
+			else if (tuples instanceof ColumnList)
+				added = ((ColumnList) tuples).add(row);
+			else
+				added = tuples.add(row.toTuple());
+			if (!added)
+				return false;
+			commitInsert(keyVal, head);
+			wal = log;
+			if (wal != null)
+				lsn = wal.append(WriteAheadLog.INSERT, logCodec, row.toTuple());
+		} finally {
+			latch.writeLock().unlock();
+		} // try
+		commit(wal, lsn);
+		return true;
+	} // insert
+
+	/***************************************************************************
+	 * Insert the projection of the tuple behind view v into the table without
+	 * unpacking it: when both use the same storage the values are copied as
+	 * raw bytes (rows) or primitives (columns) and only the key attributes are
+	 * decoded (unless already given) to maintain the index. The projected
+	 * domains must be the domains of this table.
+	 * 
+	 * @param v
+	 *            the view over the source tuple
+	 * @param colPos
+	 *            the source positions of this table's attributes
+	 * @param keyVal
+	 *            the key values of the record (null to decode them)
+	 * @return whether insertion was successful
+	 */
+	private boolean insert(TupleView v, int[] colPos, Comparable[] keyVal) {
+		boolean added;
+		if (v instanceof RecordView && tuples instanceof FileList)
+			added = ((FileList) tuples).add((RecordView) v, colPos);
+		else if (v instanceof ColumnList.View && tuples instanceof ColumnList)
+			added = ((ColumnList) tuples).add((ColumnList.View) v, colPos);
+		else
+			return insert(extractTup(v.toTuple(), colPos));
+		if (!added)
+			return false;
 
-				// Insert only those keys which are in table2 but not in table
-				// one
-				if (!(result.index.containsKey(new KeyType(keyVal)))) {
-					result.insert(current);
-				}
-			}
-		}
+		if (keyVal == null) {
+			int[] cols = match(key);
+			keyVal = new Comparable[key.length];
+			for (int j = 0; j < keyVal.length; j++)
+				keyVal[j] = v.get(colPos[cols[j]]);
+		} // if
 
-		return result;
-	} // union
+		indexPut(keyVal, tuples.size() - 1);
+		stamp();
+		return true;
+	} // insert
 
 	/***************************************************************************
-	 * Take the difference of this table and table2. Check that the two tables
-	 * are compatible. #usage movie.minus (show)
-	 * 
-	 * @param table2
-	 *            the rhs table in the minus operation
+	 * Append the projection of n tuples of src (whose tuples, like this
+	 * table's, are stored in columns) segment by segment and index them, see
+	 * ColumnList.append.
 	 * 
-	 * @return the table representing the difference (this - table2)
-	 * 
-	 * @author Sina, Arash, Navid, Sambitesh
+	 * @param src
+	 *            the table to copy from
+	 * @param colPos
+	 *            the source positions of this table's attributes
+	 * @param from
+	 *            the index of the first source tuple considered
+	 * @param sel
+	 *            the selected positions relative to from (null for all)
+	 * @param n
+	 *            the number of tuples to append
 	 */
-	public Table minus(Table table2) {
-		if (DEBUG)
-			out.println("RA> " + name + ".minus (" + table2.name + ")");
+	private void append(Table src, int[] colPos, int from, int[] sel, int n) {
+		ColumnList list = (ColumnList) tuples;
+		int first = list.size();
+		list.append((ColumnList) src.tuples, colPos, from, sel, n);
+
+		int[] cols = match(key);
+		for (int i = first; i < first + n; i++) {
+			Comparable[] keyVal = new Comparable[cols.length];
+			for (int j = 0; j < keyVal.length; j++)
+				keyVal[j] = list.value(cols[j], i);
+			indexPut(keyVal, i);
+		} // for
+		stamp();
+	} // append
 
-		Table result = new Table(name + count++, attribute, domain, key);
+	/***************************************************************************
+	 * Index the tuple just added under the given key and commit it. If all
+	 * versions of the key were deleted, the tuple is chained to them (as the
+	 * index keeps pointing to the oldest one).
+	 * 
+	 * @param keyVal
+	 *            the key of the tuple
+	 * @param head
+	 *            the oldest version of the key before the tuple was added (-1
+	 *            if none)
+	 */
+	private void commitInsert(Comparable[] keyVal, int head) {
+		summarize();
+		int i = tuples.size() - 1;
+		if (head < 0 || live(head)) {
+			indexPut(keyVal, i);
+			stamp();
+			return;
+		} // if
 
-		// Compatibility check
-		if (!this.compatible(table2)) {
-			out.println("Incompatible Tables");
-			return this;
-		} else {
-			// Check whether tuples in Table1 are Equal to tuples in Table2 or
-			// not
-			for (Comparable[] tup1 : this.tuples) {
-				Comparable[] keyVal = new Comparable[table2.key.length];
-				int[] cols = match(result.key);
+		long ts = versions.next();
+		versions.add(i + 1, versions.newest(head));
+		versions.commit(ts);
+	} // commitInsert
 
-				for (int j = 0; j < keyVal.length; j++) {
-					keyVal[j] = tup1[cols[j]];
-				}
+	/***************************************************************************
+	 * Return whether the newest version of a key is current, i.e., the key
+	 * has a tuple that was neither updated nor deleted.
+	 * 
+	 * @param head
+	 *            the oldest version of the key (-1 if none)
+	 * @return whether the key has a current tuple
+	 */
+	private boolean live(int head) {
+		return head >= 0 && versions.current(versions.newest(head));
+	} // live
 
-				if (!table2.index.containsKey(new KeyType(keyVal))) {
-					result.insert(tup1);
-				}
-			}
-		}
+	/***************************************************************************
+	 * Stamp the tuples just added (not versioned yet) as created by a
+	 * transaction of their own and commit it.
+	 */
+	private void stamp() {
+		summarize();
+		long ts = versions.next();
+		versions.add(tuples.size(), -1);
+		versions.commit(ts);
+	} // stamp
 
-		return result;
-	} // minus
+	/***************************************************************************
+	 * Add the tuples appended since the last call to the zones of their
+	 * blocks and to the bitmap, inverted and trigram indexes. Called by the
+	 * writers before the tuples are committed.
+	 */
+	private void summarize() {
+		TupleView v = null;
+		for (int i = zones.size(); i < tuples.size(); i++) {
+			v = view(i, v);
+			zones.add(v);
+			for (BitmapIndex b : bitmaps) {
+				if (b != null)
+					b.add(v);
+			} // for
+			for (TextIndex t : texts) {
+				if (t != null)
+					t.add(v);
+			} // for
+			for (TrigramIndex t : trigrams) {
+				if (t != null)
+					t.add(v);
+			} // for
+		} // for
+	} // summarize
 
 	/***************************************************************************
-	 * Compare two tuples deeply
-	 * 
-	 * @param tup1
-	 *            the first tuple
-	 * @param tup2
-	 *            the second tuple
-	 * @return true if two arrays are equal, false if those two differ
+	 * Return the positions of the tuples that may satisfy the condition,
+	 * computed from the indexes alone: comparisons of attributes having a
+	 * bitmap index with literals and text searches are looked up, "like"
+	 * patterns narrowed (see likeCandidates), "&" is an AND of bitmaps (or
+	 * the bitmap of the side that has one) and "|" an OR of bitmaps.
 	 * 
-	 * @author Sina, Arash, Navid, Sambitesh
+	 * @param c
+	 *            the condition
+	 * @param snap
+	 *            the snapshot selected from
+	 * @param exact
+	 *            set to false if some tuples of the result may not satisfy
+	 *            the condition (so it must still be evaluated on them)
+	 * @return the positions, or null if the indexes cannot narrow them
 	 */
-	@SuppressWarnings("unused")
-	private boolean compareTuples(Comparable[] tup1, Comparable[] tup2) {
-		for (int i = 0; i < tup1.length; i++) {
-			if (tup1[i].compareTo(tup2[i]) != 0) {
-				return false;
-			}
-		}
-		return true;
-	}
+	private Bitmap candidates(Condition c, Versions.Snapshot snap,
+			boolean[] exact) {
+		if (c.kind == Condition.AND || c.kind == Condition.OR) {
+			Bitmap l = candidates(c.left, snap, exact);
+			Bitmap r = (l == null && c.kind == Condition.OR) ? null
+					: candidates(c.right, snap, exact);
+			if (l != null && r != null)
+				return (c.kind == Condition.AND) ? l.and(r) : l.or(r);
+			if (c.kind == Condition.OR)
+				return null;
+			exact[0] = false;
+			return (l == null) ? r : l;
+		} // if
+		if (c.kind == Condition.COL_TEXT)
+			return (textIndexes && texts[c.col] != null) ? texts[c.col]
+					.select(c) : null;
+		if (c.kind == Condition.COL_LIKE) {
+			exact[0] = false;
+			return likeIndexes ? likeCandidates(c, snap) : null;
+		} // if
+		if (bitmapIndexes && c.col >= 0 && c.col2 < 0 && bitmaps[c.col] != null)
+			return bitmaps[c.col].select(c);
+		return null;
+	} // candidates
 
 	/***************************************************************************
-	 * Join this table and table2. If an attribute name appears in both tables,
-	 * assume it is from the first table unless it is qualified with the first
-	 * letter of the second table's name (e.g., "s."). In the result,
-	 * disambiguate the attribute names in a similar way (e.g., prefix the
-	 * second occurrence with "s_"). Caveat: the key parameter assumes joining
-	 * the table with the foreign key (this) to the table containing the primary
-	 * key (table2). #usage movie.join ("studioNo == name", studio); #usage
-	 * movieStar.join ("name == s.name", starsIn);
+	 * Return the positions of the tuples that may match a "like" pattern: if
+	 * the attribute is the key and the index is ordered, the tuples (visible
+	 * to the snapshot) whose key starts with the prefix of the pattern, found
+	 * by a range scan of the index; otherwise, if the attribute has a trigram
+	 * index, the tuples holding all the trigrams of the pattern.
 	 * 
-	 * @param condition
-	 *            the join condition for tuples
-	 * @param table2
-	 *            the rhs table in the join operation
-	 * @return the table representing the join (this |><| table2)
-	 * @author Sina, Arash, Navid, Sambitesh
+	 * @param c
+	 *            the "like" condition
+	 * @param snap
+	 *            the snapshot selected from
+	 * @return the positions, or null if the indexes cannot narrow them
 	 */
-	public Table join(String condition, Table table2) {
-		/*
-		 * Step one - Check for valid input it should be of type
-		 * attributeonename == attributetwoname", both attributes should be
-		 * available in respective tables
-		 * 
-		 * Step two - Create appropriate resulting table. In case of duplicate
-		 * coloumn names add a "s_" prefix
-		 */
-
-		Table emptyTable = new Table(name + count++, new String[0],
-				new Class[0], key);
-		// first check the condition input to make sure it is valid
-		String[] splitCondition = condition.split(" ");
-		if (splitCondition.length != 3) {
-			out.println("Invalid join : format must be \"attribute1name == attribute2Name\"");
-			return (emptyTable);
-		}
-		if (!(splitCondition[1].equalsIgnoreCase("=="))) {
-			out.println("Invalid join : comparator must be \"==\"");
-			return (emptyTable);
-		}
-		// make sure the first attribute in the condition exists in the first
-		// table
-		int firstValuePos = this.columnPos(splitCondition[0]);
-		if (firstValuePos == -1) {
-			out.println("Invalid join : first attribute does not exist in calling table");
-			return (emptyTable);
-		}
-		// make sure the second attribute in the condition exists in the second
-		// table
-		int secondValuePos = table2.columnPos(splitCondition[2]);
-		if (secondValuePos == -1) {
-			// The second attribute might be name s.attributename, so check for
-			// it too
-			if (splitCondition[2].startsWith("s.")) {
-				splitCondition[2] = splitCondition[2].substring(2);
-				secondValuePos = table2.columnPos(splitCondition[2]);
-			}
-			// If still not found,then invalid join
-			if (secondValuePos == -1) {
-				out.println("Invalid join : second attribute does not exist in parameter table");
-				return (emptyTable);
-			}
-		}
-		// Validity check successful
-
-		// First figure out how big the table will be (which should = table1 +
-		// table2)
-		int firstTable = this.attribute.length;
-		int secondTableSize = table2.attribute.length;
-		int resultTableSize = firstTable + secondTableSize;
-		// create appropriate variables to hold attributes and domains for the
-		// new table
-		String[] resultAttributes = new String[resultTableSize];
-		Class[] resultDomains = new Class[resultTableSize];
-		// initialize these arrays by adding every attribute of table1
-		// and every attribute of table2 EXCEPT for the one named in the
-		// condition
-		int colCounter = 0;
-		// handle the first table
-		while (colCounter < firstTable) {
-			resultAttributes[colCounter] = this.attribute[colCounter];
-			resultDomains[colCounter] = this.domain[colCounter];
-			colCounter++;
-		}
-		// handle the second table
-		int table2Counter = (colCounter - firstTable);
-		while (colCounter < resultTableSize) {
-				// check against the first table's attributes to look for
-				// prefixing requirements
-				String s_ = "s_";
-				String curAttr = table2.attribute[table2Counter];
-				for (int i = 0; i < firstTable; i++) {
-					String current1Attr = this.attribute[i];
-					// if the attribute name already exists in table 1, add a
-					// prefix to the table 2 attribute name
-					if (current1Attr.equalsIgnoreCase(curAttr)) {
-						curAttr = s_ + curAttr;
+	private Bitmap likeCandidates(Condition c, Versions.Snapshot snap) {
+		if (domain[c.col] != String.class)
+			return null;
+		if (key.length == 1 && attribute[c.col].equals(key[0])
+				&& !c.prefix.isEmpty()
+				&& (index instanceof BpTree || index instanceof TreeMap)) {
+			KeyType from = new KeyType(new Comparable[] { c.prefix });
+			int[] hits = new int[16];
+			int m = 0;
+			latch.readLock().lock();
+			try {
+				Iterable<Map.Entry<KeyType, Integer>> range = (index instanceof BpTree)
+						? ((BpTree<KeyType, Integer>) index).prefixMap(c.prefix).entrySet()
+						: ((TreeMap<KeyType, Integer>) index).tailMap(from).entrySet();
+				for (Map.Entry<KeyType, Integer> e : range) {
+					if (!((String) e.getKey().key[0]).startsWith(c.prefix))
 						break;
-					}
-				}
-				// carry on
-				resultAttributes[colCounter] = curAttr;
-				resultDomains[colCounter] = table2.domain[table2Counter];
-				// if it is the exception, leave the table2 counter, but back up
-				// on the colCounter, then carry on without adding anything
-			colCounter++;
-			table2Counter++;
-		}
-
-		// create the new table
-		Table result = new Table(name + count++, resultAttributes,
-				resultDomains, key);
+					int pos = snap.resolve(e.getValue());
+					if (pos < 0)
+						continue;
+					if (m == hits.length)
+						hits = Arrays.copyOf(hits, 2 * m);
+					hits[m++] = pos;
+				} // for
+			} finally {
+				latch.readLock().unlock();
+			} // try
+			Arrays.sort(hits, 0, m);
+			Bitmap b = new Bitmap();
+			for (int k = 0; k < m; k++)
+				b.add(hits[k]);
+			return b;
+		} // if
+		return (trigrams[c.col] != null) ? trigrams[c.col].select(c) : null;
+	} // likeCandidates
 
-		// now we can insert the tuples into the table
-		// go through every tuple of the first table
-		int tupCounter = 0;
-		if (this.tuples.size() == 0) {
-			out.println("There are no tuples in the first table, therefore join results in empty table");
-		}
-		while (tupCounter < this.tuples.size()) {
-			// make a new tuple
-			Comparable[] newTup = new Comparable[resultTableSize];
-			// go through the first table's attributes and assign as usual
-			colCounter = 0;
-			while (colCounter < firstTable) {
-				int[] pos = new int[1];
-				pos[0] = colCounter;
-				Comparable[] thisTupVal = extractTup(
-						this.tuples.get(tupCounter), pos);
-				newTup[colCounter] = thisTupVal[0];
-				colCounter++;
-			}
+	/***************************************************************************
+	 * Copy the selected tuples at the given positions (ascending) into the
+	 * result of a selection.
+	 * 
+	 * @param result
+	 *            the result table
+	 * @param hits
+	 *            the positions of the tuples
+	 * @param m
+	 *            the number of positions
+	 */
+	private void copy(Table result, int[] hits, int m) {
+		int[] all = match(attribute);
+		if (tuples instanceof ColumnList
+				&& result.tuples instanceof ColumnList) {
+			result.append(this, all, 0, hits, m);
+		} else {
+			TupleView v = null;
+			for (int k = 0; k < m; k++) {
+				v = view(hits[k], v);
+				result.insert(v, all, null);
+			} // for
+		} // if
+	} // copy
 
-			List<Comparable[]> reference = new ArrayList<>();
-			for (int i = 0; i < table2.tuples.size(); i++){
-				Comparable[] temp = table2.tuples.get(i);
-				if (temp[secondValuePos].equals(newTup[firstValuePos])){
-					reference.add(temp);
-				}
-			}
-			
-			for (Comparable[] tup : reference){
-				int i = 0;
-				while (colCounter + i < resultTableSize) {
-					newTup[i + colCounter] = tup[i];
-					i++;
-				}
-				result.insert(newTup);
-			}
-			
-			tupCounter++;
-		}
+	/***************************************************************************
+	 * Return the position the index maps the given key to, going through the
+	 * LongIndex without allocating if the table has one.
+	 * 
+	 * @param keyVal
+	 *            the key values
+	 * @return the position (the oldest version of the key), or -1 if the key
+	 *         is not indexed
+	 */
+	private int indexGet(Comparable[] keyVal) {
+		if (longIndex != null)
+			return longIndex.get(TupleCodec.toLong(keyVal[0]));
+		Integer pos = index.get(new KeyType(keyVal));
+		return (pos == null) ? -1 : pos;
+	} // indexGet
 
-		// all done
-		return result;
-	} // join
-	
-	public Table index_join (String condition, Table table2){
+	/***************************************************************************
+	 * Map the given key to the given position in the index.
+	 * 
+	 * @param keyVal
+	 *            the key values
+	 * @param pos
+	 *            the position of the tuple
+	 */
+	private void indexPut(Comparable[] keyVal, int pos) {
+		if (longIndex != null) {
+			longIndex.put(TupleCodec.toLong(keyVal[0]), pos);
+			return;
+		} // if
 
+		KeyType k = new KeyType(keyVal);
+		index.put(k, pos);
+		BloomFilter f = keyFilter;
+		if (f != null && !f.add(BloomFilter.hash(k.bytes())))
+			keyFilter = null;
+	} // indexPut
 
-		Table emptyTable = new Table(name + count++, new String[0],
-				new Class[0], key);
-		// first check the condition input to make sure it is valid
-		String[] splitCondition = condition.split(" ");
-		if (splitCondition.length != 3) {
-			out.println("Invalid join : format must be \"attribute1name == attribute2Name\"");
-			return (emptyTable);
-		}
-		if (!(splitCondition[1].equalsIgnoreCase("=="))) {
-			out.println("Invalid join : comparator must be \"==\"");
-			return (emptyTable);
-		}
-		// make sure the first attribute in the condition exists in the first
-		// table
-		int firstValuePos = this.columnPos(splitCondition[0]);
-		if (firstValuePos == -1) {
-			out.println("Invalid join : first attribute does not exist in calling table");
-			return (emptyTable);
-		}
-		// make sure the second attribute in the condition exists in the second
-		// table
-		int secondValuePos = table2.columnPos(splitCondition[2]);
-		if (secondValuePos == -1) {
-			// The second attribute might be name s.attributename, so check for
-			// it too
-			if (splitCondition[2].startsWith("s.")) {
-				splitCondition[2] = splitCondition[2].substring(2);
-				secondValuePos = table2.columnPos(splitCondition[2]);
-			}
-			// If still not found,then invalid join
-			if (secondValuePos == -1) {
-				out.println("Invalid join : second attribute does not exist in parameter table");
-				return (emptyTable);
-			}
-		}
-		// Validity check successful
-
-		// First figure out how big the table will be (which should = table1 +
-		// table2)
-		int firstTable = this.attribute.length;
-		int secondTableSize = table2.attribute.length;
-		int resultTableSize = firstTable + secondTableSize;
-		// create appropriate variables to hold attributes and domains for the
-		// new table
-		String[] resultAttributes = new String[resultTableSize];
-		Class[] resultDomains = new Class[resultTableSize];
-		// initialize these arrays by adding every attribute of table1
-		// and every attribute of table2 EXCEPT for the one named in the
-		// condition
-		int colCounter = 0;
-		// handle the first table
-		while (colCounter < firstTable) {
-			resultAttributes[colCounter] = this.attribute[colCounter];
-			resultDomains[colCounter] = this.domain[colCounter];
-			colCounter++;
-		}
-		// handle the second table
-		int table2Counter = (colCounter - firstTable);
-		while (colCounter < resultTableSize) {
-				// check against the first table's attributes to look for
-				// prefixing requirements
-				String s_ = "s_";
-				String curAttr = table2.attribute[table2Counter];
-				for (int i = 0; i < firstTable; i++) {
-					String current1Attr = this.attribute[i];
-					// if the attribute name already exists in table 1, add a
-					// prefix to the table 2 attribute name
-					if (current1Attr.equalsIgnoreCase(curAttr)) {
-						curAttr = s_ + curAttr;
-						break;
-					}
-				}
-				// carry on
-				resultAttributes[colCounter] = curAttr;
-				resultDomains[colCounter] = table2.domain[table2Counter];
-				// if it is the exception, leave the table2 counter, but back up
-				// on the colCounter, then carry on without adding anything
-			colCounter++;
-			table2Counter++;
-		}
+	/***************************************************************************
+	 * Build the key filter of this table unless it has one (or needs none),
+	 * before an operator probes its index.
+	 * 
+	 * @param expected
+	 *            the number of keys the operator is about to add (so the
+	 *            filter has room for them)
+	 */
+	private void filterKeys(int expected) {
+		if (!bloomFilters || longIndex != null || keyFilter != null)
+			return;
+		latch.readLock().lock();
+		try {
+			BloomFilter f = new BloomFilter(2 * index.size() + expected);
+			for (KeyType k : index.keySet())
+				f.add(BloomFilter.hash(k.bytes()));
+			keyFilter = f;
+		} finally {
+			latch.readLock().unlock();
+		} // try
+	} // filterKeys
 
-		// create the new table
-		Table result = new Table(name + count++, resultAttributes,
-				resultDomains, key);
-		
-		if (this.tuples.size() == 0 || table2.tuples.size() == 0) {
-			out.println("There are no tuples in one of the tables, therefore join results in empty table");
-			return emptyTable;
-		}
-		
-		for (Object t : this.index.entrySet()) {
-		
-			Map.Entry entry = (Map.Entry) t;
-			Integer res = table2.index.get(entry.getKey());
-			if ( res != null){
-				// make a new tuple
-				Comparable[] newTup = new Comparable[resultTableSize];
-				Comparable[] tup1 = this.tuples.get((Integer)entry.getValue());
-				Comparable[] tup2 = table2.tuples.get(res);
-				
-				for (int i = 0; i < tup1.length + tup2.length; i++){
-					if (i < tup1.length)
-						newTup[i] = tup1[i];
-					else
-						newTup[i] = tup2[i - tup1.length];
-				}
-				result.insert(newTup);
-			}
-		}
-		
-		return result;
-	}
+	/***************************************************************************
+	 * Return whether the index may map the given key: false only if the key
+	 * filter rules it out.
+	 * 
+	 * @param keyVal
+	 *            the key values
+	 * @return whether the key may be in the index
+	 */
+	private boolean mayContain(Comparable[] keyVal) {
+		BloomFilter f = keyFilter;
+		return f == null || !bloomFilters
+				|| f.mightContain(BloomFilter.hash(KeyType.encode(keyVal)));
+	} // mayContain
 
 	/***************************************************************************
-	 * Insert a tuple to the table. #usage movie.insert ("'Star_Wars'", 1977,
-	 * 124, "T", "Fox", 12345)
+	 * Look up the tuple with the given key visible to a snapshot of this
+	 * table.
 	 * 
-	 * @param tup
-	 *            the array of attribute values forming the tuple
-	 * @return whether insertion was successful
+	 * @param keyVal
+	 *            the key
+	 * @param snap
+	 *            the snapshot
+	 * @return the position of the tuple, or -1 if there is none
 	 */
-	public boolean insert(Comparable[] tup) {
-		if (DEBUG)
-			out.println("DML> insert into " + name + " values ( " + Arrays.toString(tup) + " )");
+	private int lookup(Comparable[] keyVal, Versions.Snapshot snap) {
+		latch.readLock().lock();
+		try {
+			int pos = indexGet(keyVal);
+			return (pos < 0) ? -1 : snap.resolve(pos);
+		} finally {
+			latch.readLock().unlock();
+		} // try
+	} // lookup
 
-		if (typeCheck(tup, domain)) {
-			tuples.add(tup);
-			Comparable[] keyVal = new Comparable[key.length];
-			int[] cols = match(key);
-			for (int j = 0; j < keyVal.length; j++)
-				keyVal[j] = tup[cols[j]];
-			index.put(new KeyType(keyVal), this.getTupleCount() - 1);
-			return true;
+	/***************************************************************************
+	 * Acquire the read latches of this table and table2, in the order of their
+	 * numbers, so two operators latching the same two tables in opposite
+	 * roles cannot deadlock behind waiting writers.
+	 * 
+	 * @param table2
+	 *            the other table the operator reads
+	 */
+	private void lockShared(Table table2) {
+		if (serial <= table2.serial) {
+			latch.readLock().lock();
+			table2.latch.readLock().lock();
 		} else {
-			return false;
+			table2.latch.readLock().lock();
+			latch.readLock().lock();
 		} // if
-	} // insert
+	} // lockShared
+
+	/***************************************************************************
+	 * Release the read latches acquired by lockShared.
+	 * 
+	 * @param table2
+	 *            the other table the operator read
+	 */
+	private void unlockShared(Table table2) {
+		table2.latch.readLock().unlock();
+		latch.readLock().unlock();
+	} // unlockShared
+
+	/***************************************************************************
+	 * Return a view over the ith tuple that reads attribute values from the
+	 * underlying storage only when they are accessed.
+	 * 
+	 * @param i
+	 *            the index of the tuple
+	 * @param v
+	 *            the view returned for the previous tuple (null if none), it
+	 *            may be repositioned and returned
+	 * @return the view over the ith tuple
+	 */
+	private TupleView view(int i, TupleView v) {
+		if (tuples instanceof FileList)
+			return ((FileList) tuples).view(i, (v instanceof RecordView) ? (RecordView) v : null);
+		return ((ColumnList) tuples).view(i, (v instanceof ColumnList.View) ? (ColumnList.View) v : null);
+	} // view
 
 	/***************************************************************************
 	 * Get the name of the table.
@@ -697,51 +2263,61 @@ public class Table implements Serializable, Cloneable {
 	 * Print the table.
 	 */
 	public void print() {
-		out.println("\n Table " + name);
-
-		out.print("|-");
-		for (int i = 0; i < attribute.length; i++)
-			out.print("---------------");
-		out.println("-|");
-		out.print("| ");
-		for (String a : attribute)
-			out.printf("%15s", a);
-		out.println(" |");
-
-		if (DEBUG) {
+		Versions.Snapshot snap = versions.snapshot();
+		latch.readLock().lock();
+		try {
+			out.println("\n Table " + name);
+
 			out.print("|-");
-			for (int i = 0; i < domain.length; i++)
+			for (int i = 0; i < attribute.length; i++)
 				out.print("---------------");
 			out.println("-|");
 			out.print("| ");
-			for (Class d : domain)
-				out.printf("%15s", d.getSimpleName());
+			for (String a : attribute)
+				out.printf("%15s", a);
 			out.println(" |");
-		} // if
 
-		out.print("|-");
-		for (int i = 0; i < attribute.length; i++)
-			out.print("---------------");
-		out.println("-|");
-//		for (Comparable[] tup : tuples) {
-//			out.print("| ");
-//			for (Comparable attr : tup)
-//				out.printf("%15s", attr);
-//			out.println(" |");
-//		} // for
+			if (DEBUG) {
+				out.print("|-");
+				for (int i = 0; i < domain.length; i++)
+					out.print("---------------");
+				out.println("-|");
+				out.print("| ");
+				for (Class d : domain)
+					out.printf("%15s", d.getSimpleName());
+				out.println(" |");
+			} // if
+
+			out.print("|-");
+			for (int i = 0; i < attribute.length; i++)
+				out.print("---------------");
+			out.println("-|");
+	//		for (Comparable[] tup : tuples) {
+	//			out.print("| ");
+	//			for (Comparable attr : tup)
+	//				out.printf("%15s", attr);
+	//			out.println(" |");
+	//		} // for
 		
-		for (Integer i : index.values()) {
-			out.print("| ");
-			Comparable[] tup = tuples.get(i);
-			for (Comparable attr : tup)
-				out.printf("%15s", attr);
-			out.println(" |");
-		} // for
+			for (Integer i : index.values()) {
+				int pos = snap.resolve(i);
+				if (pos < 0)
+					continue;
+				out.print("| ");
+				Comparable[] tup = tuples.get(pos);
+				for (Comparable attr : tup)
+					out.printf("%15s", attr);
+				out.println(" |");
+			} // for
 		
-		out.print("|-");
-		for (int i = 0; i < attribute.length; i++)
-			out.print("---------------");
-		out.println("-|");
+			out.print("|-");
+			for (int i = 0; i < attribute.length; i++)
+				out.print("---------------");
+			out.println("-|");
+		} finally {
+			latch.readLock().unlock();
+			snap.close();
+		} // try
 	} // print
 
 	/***************************************************************************
@@ -826,7 +2402,7 @@ public class Table implements Serializable, Cloneable {
 	 * 
 	 * @author Sina, Arash, Navid, Sambitesh
 	 */
-	private static Comparable parseOperand(String inputStr, Class inputType) {
+	static Comparable parseOperand(String inputStr, Class inputType) {
 
 		if (inputType == String.class) {
 			inputStr = inputStr.replaceAll("'", "");
@@ -834,7 +2410,7 @@ public class Table implements Serializable, Cloneable {
 		}
 
 		if (inputType == Character.class)
-			return inputStr.charAt(0);
+			return inputStr.replaceAll("'", "").charAt(0);
 
 		if (inputType == Byte.class)
 			return Byte.parseByte(inputStr);
@@ -854,112 +2430,32 @@ public class Table implements Serializable, Cloneable {
 		if (inputType == Double.class)
 			return Double.parseDouble(inputStr);
 
-		return null;
-	}
+		if (inputType == Timestamp.class)
+			return new Timestamp(inputStr.replaceAll("'", ""));
 
-	/***************************************************************************
-	 * Check whether the tuple satisfies the condition. Use a stack-based
-	 * postfix expression evaluation algorithm.
-	 * 
-	 * @param postfix
-	 *            the postfix expression for the condition
-	 * 
-	 * @param tup
-	 *            the tuple to check
-	 * 
-	 * @return whether to keep the tuple
-	 * 
-	 * @author Sina, Arash, Navid, Sambitesh
-	 */
-	private boolean evalTup(String[] postfix, Comparable[] tup) {
-		if (postfix == null)
-			return true;
-		Stack<Comparable<?>> s = new Stack<>();
-
-		Class typeOfOperand = String.class;
-		for (String token : postfix) {
-			if (operator2priority(token) != 0) {
-				Comparable operand1 = s.pop();
-				Comparable operand2 = s.pop();
-				s.push(evaluate(operand1, operand2, token));
-				continue;
-			}
-			if (Arrays.asList(this.attribute).contains(token)) {
-				s.push(tup[Arrays.asList(this.attribute).indexOf(token)]);
-				typeOfOperand = this.domain[Arrays.asList(this.attribute)
-						.indexOf(token)];
-				continue;
-			} else {
-				s.push(parseOperand(token, typeOfOperand));
-				typeOfOperand = String.class;
-				continue;
-			}
-		}
+		if (inputType == Decimal.class)
+			return new Decimal(inputStr);
 
-		return (Boolean) s.pop();
-	} // evalTup
+		return null;
+	}
 
 	/***************************************************************************
-	 * Pack tuple tup into a record/byte-buffer (array of bytes).
+	 * Pack tuple tup into a record/byte-buffer (array of bytes). The record
+	 * starts with a fixed part holding every attribute in schema order:
+	 * numeric and character values are stored in place, while each string is
+	 * represented by the (int) offset at which its bytes end. The bytes of the
+	 * strings follow the fixed part in a heap, so strings may be of any length.
 	 * 
+	 * @see TupleCodec
 	 * @param tup
 	 *            the array of attribute values forming the tuple
 	 * @return a tuple packed into a record/byte-buffer
 	 */
 	public byte[] pack(Comparable[] tup) {
-		byte[] record = new byte[tupleSize()];
-		byte[] b = null;
-		int s = 0;
-		int i = 0;
-		for (int j = 0; j < this.domain.length; j++) {
-			switch (this.domain[j].getName()) {
-			case "java.lang.Byte":
-				b = new byte[1];
-				b[0] = (Byte) tup[j];
-				s = 1;
-				break;
-			case "java.lang.Short":
-				b = Conversions.short2ByteArray((Short) tup[j]);
-				s = 2;
-				break;
-			case "java.lang.Integer":
-				b = Conversions.int2ByteArray((Integer) tup[j]);
-				s = 4;
-				break;
-			case "java.lang.Long":
-				b = Conversions.long2ByteArray((Long) tup[j]);
-				s = 8;
-				break;
-			case "java.lang.Float":
-				b = Conversions.float2ByteArray((Float) tup[j]);
-				s = 4;
-				break;
-			case "java.lang.Double":
-				b = Conversions.double2ByteArray((Double) tup[j]);
-				s = 8;
-				break;
-			case "java.lang.Character":
-				b = ((Character) tup[j]).toString().getBytes();
-				s = 1;
-				break;
-			case "java.lang.String":
-				String len = String.format("%02d", ((String) tup[j]).length());
-				byte[] temp = (len + (String) tup[j]).getBytes();
-				s = 66;
-				b = new byte[s];
-				System.arraycopy(temp, 0, b, 0, temp.length);
-				break;
-			}
-			if (b == null) {
-				out.println("Table.pack: byte array b is null");
-				return null;
-			}
-			for (int k = 0; k < s; k++) {
-				record[i++] = b[k];
-			}
-		}
+		byte[] record = new byte[codec.size(tup)];
+		codec.encode(tup, ByteBuffer.wrap(record));
 		return record;
-	}
+	} // pack
 
 	/***************************************************************************
 	 * Unpack the record/byte-buffer (array of bytes) to reconstruct a tuple.
@@ -969,127 +2465,17 @@ public class Table implements Serializable, Cloneable {
 	 * @return an unpacked tuple
 	 */
 	public Comparable[] unpack(byte[] record) {
-		Comparable[] tuple = new Comparable[this.domain.length];
-
-		byte[] b = null;
-		int i = 0;
-		int s = 0;
-		for (int j = 0; j < this.domain.length; j++) {
-			switch (this.domain[j].getName()) {
-			case "java.lang.Byte":
-				tuple[j] = (byte) record[i];
-				i++;
-				break;
-			case "java.lang.Short":
-				s = 2;
-				b = new byte[s];
-				for (int k = 0; k < s; k++) {
-					b[k] = record[i + k];
-				}
-				i += s;
-				tuple[j] = Conversions.byteArray2Short(b);
-				break;
-			case "java.lang.Integer":
-				s = 4;
-				b = new byte[s];
-				for (int k = 0; k < s; k++) {
-					b[k] = record[i + k];
-				}
-				i += s;
-				tuple[j] = Conversions.byteArray2Int(b);
-				break;
-			case "java.lang.Long":
-				s = 8;
-				b = new byte[s];
-				for (int k = 0; k < s; k++) {
-					b[k] = record[i + k];
-				}
-				i += s;
-				tuple[j] = Conversions.byteArray2Long(b);
-				break;
-			case "java.lang.Float":
-				s = 4;
-				b = new byte[s];
-				for (int k = 0; k < s; k++) {
-					b[k] = record[i + k];
-				}
-				i += s;
-				tuple[j] = Conversions.byteArray2Float(b);
-				break;
-			case "java.lang.Double":
-				s = 8;
-				b = new byte[s];
-				for (int k = 0; k < s; k++) {
-					b[k] = record[i + k];
-				}
-				i += s;
-				tuple[j] = Conversions.byteArray2Double(b);
-				break;
-			case "java.lang.Character":
-				tuple[j] = (char) record[i];
-				i++;
-				break;
-			case "java.lang.String":
-				s = 66;
-				b = new byte[s];
-				for (int k = 0; k < s; k++) {
-					b[k] = record[i + k];
-				}
-				i += s;
-				tuple[j] = new String(b);
-				int len = Integer.parseInt(((String) tuple[j]).substring(0, 2));
-				tuple[j] = ((String) tuple[j]).substring(2, len + 2);
-				break;
-			}
-			if (tuple[j] == null) {
-				out.println("Table.pack: There was an error here!");
-				return null;
-			}
-		}
-
-		return tuple;
+		return codec.decode(ByteBuffer.wrap(record), 0);
 	} // unpack
 
 	/***************************************************************************
-	 * Determine the size of tuples in this table in terms of the number of
-	 * bytes required to store it in a record/byte-buffer.
+	 * Return the codec used to pack/unpack the tuples of this table.
 	 * 
-	 * @return the size of packed-tuples in bytes
+	 * @return the codec compiled from this table's domains
 	 */
-	private int tupleSize() {
-		int s = 0;
-
-		for (int j = 0; j < domain.length; j++) {
-			switch (domain[j].getName()) {
-			case "java.lang.Byte":
-				s += 1;
-				break;
-			case "java.lang.Short":
-				s += 2;
-				break;
-			case "java.lang.Integer":
-				s += 4;
-				break;
-			case "java.lang.Long":
-				s += 8;
-				break;
-			case "java.lang.Float":
-				s += 4;
-				break;
-			case "java.lang.Double":
-				s += 8;
-				break;
-			case "java.lang.Character":
-				s += 1;
-				break;
-			case "java.lang.String":
-				s += 66;
-				break;
-			} // if
-		} // for
-
-		return s;
-	} // tupleSize
+	TupleCodec codec() {
+		return codec;
+	} // codec
 
 	// ------------------------ Static Utility Methods
 	// --------------------------
@@ -1115,46 +2501,6 @@ public class Table implements Serializable, Cloneable {
 		return true;
 	} // typeCheck
 
-	/***************************************************************************
-	 * This method will take two values and apply the operator between them and
-	 * return the result.
-	 * 
-	 * @param value1
-	 *            The first value
-	 * @param value2
-	 *            the second value
-	 * @param operator
-	 *            the operator which is applied
-	 * @return the result of value1 (operator) value2
-	 * 
-	 * @author Sina, Arash, Navid, Sambitesh
-	 */
-	private static Comparable evaluate(Comparable value1, Comparable value2,
-			String operator) {
-
-		switch (operator) {
-		case "==":
-			return (value1.compareTo(value2) == 0);
-		case "!=":
-			return (value1.compareTo(value2) != 0);
-		case "<":
-			return (value1.compareTo(value2) > 0);
-		case "<=":
-			return (value1.compareTo(value2) >= 0);
-		case ">":
-			return (value1.compareTo(value2) < 0);
-		case ">=":
-			return (value1.compareTo(value2) <= 0);
-		case "&":
-			return ((Boolean) value1 && (Boolean) value2);
-		case "|":
-			return ((Boolean) value1 || (Boolean) value2);
-		default:
-			return null;
-		}
-
-	}
-
 	/***************************************************************************
 	 * This method gets an operator string and return the priority for that
 	 * operator
@@ -1168,6 +2514,9 @@ public class Table implements Serializable, Cloneable {
 	 */
 	private static Integer operator2priority(String inputStr) {
 		HashMap<String, Integer> operators = new HashMap<>();
+		operators.put("like", 11);
+		operators.put("contains", 10);
+		operators.put("match", 9);
 		operators.put("==", 8);
 		operators.put("!=", 7);
 		operators.put("<", 6);
@@ -1197,6 +2546,9 @@ public class Table implements Serializable, Cloneable {
 	 */
 	private static String priority2operator(Integer inputInt) {
 		HashMap<Integer, String> operators = new HashMap<>();
+		operators.put(11, "like");
+		operators.put(10, "contains");
+		operators.put(9, "match");
 		operators.put(8, "==");
 		operators.put(7, "!=");
 		operators.put(6, "<");
@@ -1219,7 +2571,7 @@ public class Table implements Serializable, Cloneable {
 	 * "1979 < year & year < 1990" --> { "1979", "year", "<", "year", "1990",
 	 * "<", "&" }
 	 * 
-	 * "==", "!=", "<",
+	 * "like", "contains", "match", "==", "!=", "<",
 	 * "<=", ">", ">=" 2 Boolean operators: "&", "|" (from high to low
 	 * precedence
 	 * 
@@ -1233,7 +2585,7 @@ public class Table implements Serializable, Cloneable {
 	private static String[] infix2postfix(String condition) {
 		if (condition == null || condition.trim() == "")
 			return null;
-		String[] infix = condition.split(" ");
+		String[] infix = tokens(condition);
 		String[] postfix = new String[infix.length];
 
 		Stack<Integer> operatorStack = new Stack<Integer>();
@@ -1275,7 +2627,34 @@ public class Table implements Serializable, Cloneable {
 	} // infix2postfix
 
 	/***************************************************************************
-	 * Find the classes in the "java.lang" package with given names.
+	 * Split a condition into its tokens at (runs of) spaces, except those
+	 * inside quoted literals, so a literal may hold several words. Ex: "TextStr
+	 * contains 'magna erat'" --> { "TextStr", "contains", "'magna erat'" }
+	 * 
+	 * @param condition
+	 *            the untokenized condition
+	 * @return the tokens
+	 */
+	private static String[] tokens(String condition) {
+		ArrayList<String> tokens = new ArrayList<>();
+		int start = 0;
+		boolean quoted = false;
+		for (int i = 0; i <= condition.length(); i++) {
+			char c = (i < condition.length()) ? condition.charAt(i) : ' ';
+			if (c == '\'')
+				quoted = !quoted;
+			if (c == ' ' && !quoted) {
+				if (i > start)
+					tokens.add(condition.substring(start, i));
+				start = i + 1;
+			} // if
+		} // for
+		return tokens.toArray(new String[tokens.size()]);
+	} // tokens
+
+	/***************************************************************************
+	 * Find the classes in the "java.lang" package with given names, falling
+	 * back to this package for the domains it provides (Timestamp, Decimal).
 	 * 
 	 * @param className
 	 *            the array of class name (e.g., {"Integer", "String"})
@@ -1288,7 +2667,12 @@ public class Table implements Serializable, Cloneable {
 			try {
 				classArray[i] = Class.forName("java.lang." + className[i]);
 			} catch (ClassNotFoundException ex) {
-				out.println("findClass: " + ex);
+				try {
+					classArray[i] = Class.forName("internal.database."
+							+ className[i]);
+				} catch (ClassNotFoundException ex2) {
+					out.println("findClass: " + ex);
+				} // try
 			} // try
 		} // for
 
@@ -1354,12 +2738,22 @@ public class Table implements Serializable, Cloneable {
 	}
 
 	/****************
-	 * @return Number of tuples for a Table
+	 * @return Number of tuples for a Table (visible to a snapshot taken now)
 	 * 
 	 * @author Sina, Arash, Navid, Sambitesh
 	 */
 	public int getTupleCount() {
-		return tuples.size();
+		Versions.Snapshot snap = versions.snapshot();
+		try {
+			if (snap.all)
+				return snap.size;
+			int n = 0;
+			for (int i = 0; i < snap.size; i++)
+				n += snap.visible(i) ? 1 : 0;
+			return n;
+		} finally {
+			snap.close();
+		} // try
 	}
 
 } // Table class
@@ -0,0 +1,79 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TestBitmapIndex.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.util.Random;
+
+/*******************************************************************************
+ * This class benchmarks select with and without Table.bitmapIndexes (see
+ * BitmapIndex) on a SALE table with bitmap indexes on sex and StoreCategory
+ * (10 categories, dictionary encoded): a conjunction and a disjunction the
+ * bitmaps answer on their own, and a conjunction with a predicate on Amount
+ * that is checked on the tuples the bitmaps leave. Each query runs scanning
+ * sequentially and in parallel, on rows and on columns, and the number of
+ * selected tuples must not depend on the bitmaps.
+ */
+@SuppressWarnings("rawtypes")
+public class TestBitmapIndex {
+	/***************************************************************************
+	 * The main method is the driver for the benchmark.
+	 *
+	 * @param args
+	 *            the command-line arguments (args [0] gives the number of
+	 *            sales)
+	 */
+	public static void main(String[] args) {
+		int n = 1000000;
+		if (args.length >= 1)
+			n = Integer.valueOf(args[0]);
+
+		String[] category = { "Grocery", "Toys", "Books", "Garden", "Music",
+				"Sports", "Shoes", "Beauty", "Games", "Tools" };
+		String[] query = { "sex == 'F' & StoreCategory == 'Grocery'",
+				"StoreCategory == 'Toys' | StoreCategory == 'Books'",
+				"StoreCategory == 'Garden' & Amount > 900" };
+		int threads = Table.parallelism;
+		int parallel = Math.max(2, threads);
+
+		for (Table.Storage storage : Table.Storage.values()) {
+			Random rand = new Random(1);
+			Table sale = new Table("sale", new String[] { "SaleId", "sex",
+					"StoreCategory", "Amount" }, new Class[] { Integer.class,
+					String.class, String.class, Integer.class },
+					new String[] { "SaleId" }, storage);
+			sale.dictionaryEncode("StoreCategory");
+			sale.bitmapIndex("sex StoreCategory");
+			for (int i = 0; i < n; i++) {
+				sale.insert(new Comparable[] { i,
+						rand.nextBoolean() ? "M" : "F",
+						category[rand.nextInt(category.length)],
+						rand.nextInt(1000) });
+			} // for
+
+			for (String q : query) {
+				out.println(storage + ": select " + q);
+				for (int p : new int[] { 1, parallel }) {
+					Table.parallelism = p;
+					int[] selected = new int[2];
+					for (int z = 0; z < 2; z++) {
+						Table.bitmapIndexes = z == 1;
+						selected[z] = Benchmark.time(p + " thread(s)"
+								+ (Table.bitmapIndexes ? " bitmaps" : ""),
+								() -> sale.select(q).getTupleCount());
+					} // for
+					Benchmark.check(storage + " " + p + " thread(s): " + q,
+							selected[0], selected[1]);
+				} // for
+			} // for
+		} // for
+		Table.parallelism = threads;
+		Table.bitmapIndexes = true;
+	} // main
+
+} // TestBitmapIndex
@@ -0,0 +1,78 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TestBloomFilter.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/*******************************************************************************
+ * This class benchmarks the Bloom filters (see BloomFilter) with and without
+ * Table.bloomFilters: minus, union and index_join of two PRODUCT tables keyed
+ * by ProdId that share 1% of their keys (so almost every probe of the index
+ * misses), and a hash join of PURCHASE with a VIP table holding 1% of the
+ * customers (so the runtime filter drops almost every purchase). Every
+ * operator must give the same number of tuples with and without the filters.
+ */
+@SuppressWarnings("rawtypes")
+public class TestBloomFilter {
+	/***************************************************************************
+	 * The main method is the driver for the benchmark.
+	 *
+	 * @param args
+	 *            the command-line arguments (args [0] gives the number of
+	 *            tuples per table)
+	 */
+	public static void main(String[] args) {
+		int n = 200000;
+		if (args.length >= 1)
+			n = Integer.valueOf(args[0]);
+
+		Random rand = new Random(1);
+		Table product1 = new Table("product1", "ProdId ProdName Price",
+				"String String Integer", "ProdId");
+		Table product2 = new Table("product2", "ProdId ProdName Price",
+				"String String Integer", "ProdId");
+		for (int i = 0; i < n; i++) {
+			product1.insert(new Comparable[] { "ProdId" + i, "Name" + i,
+					rand.nextInt(1000) });
+			product2.insert(new Comparable[] { "ProdId" + (i + n - n / 100),
+					"Name" + i, rand.nextInt(1000) });
+		} // for
+
+		int nCustomers = Math.max(1, n / 10);
+		Table vip = new Table("vip", "CustId CustName",
+				"Integer String", "CustId");
+		for (int i = 0; i < nCustomers; i += 100)
+			vip.insert(new Comparable[] { i, "Name" + i });
+		Table purchase = new Table("purchase", "PurchId CustId ProdId",
+				"Integer Integer String", "PurchId");
+		for (int i = 0; i < n; i++)
+			purchase.insert(new Comparable[] { i, rand.nextInt(nCustomers),
+					"ProdId" + rand.nextInt(n) });
+
+		String[] label = { "minus", "union", "index_join", "join (1% VIP)" };
+		IntSupplier[] op = {
+				() -> product1.minus(product2).getTupleCount(),
+				() -> product1.union(product2).getTupleCount(),
+				() -> product1.index_join("ProdId == ProdId", product2)
+						.getTupleCount(),
+				() -> purchase.join("CustId == CustId", vip).getTupleCount() };
+		int[][] count = new int[2][op.length];
+		for (int z = 0; z < 2; z++) {
+			Table.bloomFilters = z == 1;
+			out.println("bloomFilters = " + Table.bloomFilters);
+			for (int k = 0; k < op.length; k++)
+				count[z][k] = Benchmark.time(label[k], op[k]);
+		} // for
+		for (int k = 0; k < op.length; k++)
+			Benchmark.check(label[k], count[0][k], count[1][k]);
+		Table.bloomFilters = true;
+	} // main
+
+} // TestBloomFilter
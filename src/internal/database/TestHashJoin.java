@@ -0,0 +1,72 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TestHashJoin.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.util.Random;
+
+/*******************************************************************************
+ * This class benchmarks the parallel radix partitioned hash join (see
+ * HashJoin) on PURCHASE |><| CUSTOMER with 1, 2, ..., N threads, timing both
+ * finding the matching pairs and the whole Table.join (which also builds the
+ * result table).
+ */
+@SuppressWarnings("rawtypes")
+public class TestHashJoin {
+	/***************************************************************************
+	 * The main method is the driver for the benchmark.
+	 *
+	 * @param args
+	 *            the command-line arguments (args [0] gives the number of
+	 *            purchases, args [1] the maximum number of threads)
+	 */
+	public static void main(String[] args) {
+		int nPurchases = 200000;
+		int maxThreads = Runtime.getRuntime().availableProcessors();
+		if (args.length >= 1)
+			nPurchases = Integer.valueOf(args[0]);
+		if (args.length >= 2)
+			maxThreads = Integer.valueOf(args[1]);
+		int nCustomers = Math.max(1, nPurchases / 10);
+
+		Random rand = new Random(1);
+		Table customer = new Table("customer",
+				"CustId CustName sex age CustAddress CustZip",
+				"Integer String String Integer String String", "CustId");
+		for (int i = 0; i < nCustomers; i++) {
+			customer.insert(new Comparable[] { i, "Name" + i,
+					rand.nextBoolean() ? "M" : "F", 18 + rand.nextInt(60),
+					"Address" + rand.nextInt(), "Zip" + rand.nextInt(99999) });
+		} // for
+
+		Table purchase = new Table("purchase",
+				"PurchId CustId ProdId StoreId Feedback Payment Timestamp",
+				"Integer Integer String String Integer Integer String",
+				"PurchId");
+		for (int i = 0; i < nPurchases; i++) {
+			purchase.insert(new Comparable[] { i,
+					rand.nextInt(nCustomers), "ProdId" + rand.nextInt(),
+					"StoreId" + rand.nextInt(1000), rand.nextInt(6),
+					rand.nextInt(139), "2013-04-18 05:52:26" });
+		} // for
+
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			final int n = nPurchases, t = threads;
+			Table.parallelism = threads;
+			out.println("threads = " + threads);
+			Benchmark.time("HashJoin.join", 15, 5,
+					() -> HashJoin.join(purchase.tuples, n,
+							purchase.codec(), 1, customer.tuples, nCustomers,
+							customer.codec(), 0, true, null, true, t).length);
+			Benchmark.time("Table.join", 5, 2,
+					() -> purchase.join("CustId == CustId", customer)
+							.getTupleCount());
+		} // for
+	} // main
+
+} // TestHashJoin
@@ -0,0 +1,129 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TestIndex.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/*******************************************************************************
+ * This class benchmarks the insert latency of the index structures a table
+ * may use (see Table.Indexing): N random keys are put into each index one at
+ * a time and the latency of every put is measured, so the spikes (e.g.,
+ * directory doubling or splits) show in the tail percentiles rather than
+ * disappearing in the average. Finally, the heap retained by a BpTree and a
+ * TreeMap indexing long string keys with a shared prefix (URLs) is compared.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class TestIndex {
+	/***************************************************************************
+	 * The main method is the driver for the benchmark.
+	 *
+	 * @param args
+	 *            the command-line arguments (args [0] gives the number of
+	 *            keys)
+	 */
+	public static void main(String[] args) {
+		int nKeys = 1000000;
+		if (args.length >= 1)
+			nKeys = Integer.valueOf(args[0]);
+
+		Random rand = new Random(1);
+		KeyType[] keys = new KeyType[nKeys];
+		for (int i = 0; i < nKeys; i++)
+			keys[i] = new KeyType(new Comparable[] { rand.nextInt() });
+
+		for (int run = 0; run < 3; run++) {
+			boolean last = run == 2;
+			if (last)
+				out.println("insert latency for " + nKeys + " keys");
+			measure("ExtHash", new ExtHash<>(KeyType.class, Integer.class, 2),
+					keys, last);
+			measure("LinHash", new LinHash<>(KeyType.class, Integer.class, 4),
+					keys, last);
+			measure("BpTree", new BpTree(KeyType.class, Integer.class), keys,
+					last);
+			measure("TreeMap", new TreeMap<KeyType, Integer>(), keys, last);
+		} // for
+
+		keys = null;
+		out.println("heap retained for " + nKeys + " URL keys");
+		BpTree bpt = new BpTree(KeyType.class, Integer.class);
+		footprint("BpTree", bpt, nKeys);
+		out.println("  BpTree   height: " + bpt.height());
+		bpt = null;
+		footprint("TreeMap", new TreeMap<KeyType, Integer>(), nKeys);
+	} // main
+
+	/***************************************************************************
+	 * Put n URL keys ("https://www.facebook.com/posts/" followed by a random
+	 * number) into the index and print the heap it retains.
+	 *
+	 * @param label
+	 *            the name of the index structure
+	 * @param index
+	 *            the (empty) index
+	 * @param n
+	 *            the number of keys
+	 */
+	private static void footprint(String label, Map<KeyType, Integer> index,
+			int n) {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long before = runtime.totalMemory() - runtime.freeMemory();
+
+		Random rand = new Random(1);
+		for (int i = 0; i < n; i++)
+			index.put(new KeyType(new Comparable[] {
+					"https://www.facebook.com/posts/" + rand.nextInt() }), i);
+
+		System.gc();
+		long after = runtime.totalMemory() - runtime.freeMemory();
+		out.printf("  %-8s %8.1f MB  %5.1f bytes/key  (%d keys)%n", label,
+				(after - before) / 1E6, (double) (after - before) / n, index
+						.size());
+	} // footprint
+
+	/***************************************************************************
+	 * Put the keys into the index one at a time, timing every put, and print
+	 * the latency percentiles (unless the run is a warm-up).
+	 *
+	 * @param label
+	 *            the name of the index structure
+	 * @param index
+	 *            the (empty) index
+	 * @param keys
+	 *            the keys to put
+	 * @param print
+	 *            whether to print the results
+	 */
+	private static void measure(String label, Map<KeyType, Integer> index,
+			KeyType[] keys, boolean print) {
+		long[] latency = new long[keys.length];
+		long beforeTime = System.nanoTime();
+		for (int i = 0; i < keys.length; i++) {
+			long t = System.nanoTime();
+			index.put(keys[i], i);
+			latency[i] = System.nanoTime() - t;
+		} // for
+		double total = (System.nanoTime() - beforeTime) / 1E6;
+		if (!print)
+			return;
+
+		Arrays.sort(latency);
+		out.printf("  %-8s total: %9.3f ms  p50: %6d ns  p99: %7d ns  "
+				+ "p99.9: %8d ns  max: %9d ns%n", label, total,
+				latency[(int) (0.5 * (latency.length - 1))],
+				latency[(int) (0.99 * (latency.length - 1))],
+				latency[(int) (0.999 * (latency.length - 1))],
+				latency[latency.length - 1]);
+	} // measure
+
+} // TestIndex
@@ -0,0 +1,76 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TestLike.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.util.Random;
+
+/*******************************************************************************
+ * This class benchmarks "like" in select with and without Table.likeIndexes
+ * on a POST table keyed by bUrl (indexed by a B+ tree) with a trigram index
+ * on ProdName: a prefix of the URLs (served by a range scan of the B+ tree)
+ * and two infixes of the product names (served by the trigram index). Each
+ * query runs on rows and on columns, and the number of selected tuples must
+ * not depend on the indexes.
+ */
+@SuppressWarnings("rawtypes")
+public class TestLike {
+	/***************************************************************************
+	 * The main method is the driver for the benchmark.
+	 *
+	 * @param args
+	 *            the command-line arguments (args [0] gives the number of
+	 *            posts)
+	 */
+	public static void main(String[] args) {
+		int n = 500000;
+		if (args.length >= 1)
+			n = Integer.valueOf(args[0]);
+
+		String[] brand = { "Acme", "Globex", "Initech", "Umbrella", "Stark",
+				"Wayne", "Wonka", "Hooli", "Vandelay", "Tyrell" };
+		String[] product = { "Phone", "Headphones", "Lamp", "Desk", "Chair",
+				"Kettle", "Blender", "Camera", "Monitor", "Keyboard", "Mouse",
+				"Speaker", "Watch", "Backpack", "Bottle", "Charger" };
+		String[] query = { "bUrl like 'https://www.facebook.com/posts/35%'",
+				"ProdName like '%Headphones%'",
+				"ProdName like '%Wonka Kettle%'" };
+		Table.Indexing indexing = Table.indexing;
+		Table.indexing = Table.Indexing.BPTREE;
+
+		for (Table.Storage storage : Table.Storage.values()) {
+			Random rand = new Random(1);
+			Table post = new Table("post", new String[] { "bUrl", "ProdName",
+					"Hits" }, new Class[] { String.class, String.class,
+					Integer.class }, new String[] { "bUrl" }, storage);
+			post.trigramIndex("ProdName");
+			for (int i = 0; i < n; i++) {
+				post.insert(new Comparable[] {
+						"https://www.facebook.com/posts/" + rand.nextInt(1000000000)
+								+ "/" + i,
+						brand[rand.nextInt(brand.length)] + " "
+								+ product[rand.nextInt(product.length)] + " "
+								+ rand.nextInt(1000), rand.nextInt(100000) });
+			} // for
+
+			for (String q : query) {
+				out.println(storage + ": select " + q);
+				int[] selected = new int[2];
+				for (int z = 0; z < 2; z++) {
+					Table.likeIndexes = z == 1;
+					selected[z] = Benchmark.time(Table.likeIndexes ? "index"
+							: "scan", () -> post.select(q).getTupleCount());
+				} // for
+				Benchmark.check(storage + ": " + q, selected[0], selected[1]);
+			} // for
+		} // for
+		Table.likeIndexes = true;
+		Table.indexing = indexing;
+	} // main
+
+} // TestLike
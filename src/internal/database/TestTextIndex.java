@@ -0,0 +1,72 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TestTextIndex.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.util.Random;
+
+/*******************************************************************************
+ * This class benchmarks text search in select with and without
+ * Table.textIndexes (see TextIndex) on a TWEET table whose TextStr holds 10
+ * to 30 words drawn from a vocabulary of 5000 with a skewed (Zipf like)
+ * distribution: "contains" of a rare word, "contains" of two frequent words
+ * and "match" of two rare words. Each query runs on rows and on columns, the
+ * number of selected tuples must not depend on the index, and the size of
+ * the postings lists is compared with the size of the text.
+ */
+@SuppressWarnings("rawtypes")
+public class TestTextIndex {
+	/***************************************************************************
+	 * The main method is the driver for the benchmark.
+	 *
+	 * @param args
+	 *            the command-line arguments (args [0] gives the number of
+	 *            tweets)
+	 */
+	public static void main(String[] args) {
+		int n = 200000;
+		if (args.length >= 1)
+			n = Integer.valueOf(args[0]);
+
+		String[] query = { "TextStr contains 'w3000'",
+				"TextStr contains 'w1 w2'", "TextStr match 'w4000 w4001'" };
+
+		for (Table.Storage storage : Table.Storage.values()) {
+			Random rand = new Random(1);
+			Table tweet = new Table("tweet", new String[] { "tId", "TextStr" },
+					new Class[] { Integer.class, String.class },
+					new String[] { "tId" }, storage);
+			tweet.textIndex("TextStr");
+			long textBytes = 0;
+			for (int i = 0; i < n; i++) {
+				StringBuilder text = new StringBuilder();
+				for (int k = 10 + rand.nextInt(21); k > 0; k--) {
+					int w = (int) Math.pow(5000, rand.nextDouble());
+					text.append("w").append(w).append((k > 1) ? " " : ".");
+				} // for
+				textBytes += text.length();
+				tweet.insert(new Comparable[] { i, text.toString() });
+			} // for
+			out.println(storage + ": " + textBytes + " bytes of text, "
+					+ tweet.postingsBytes("TextStr") + " bytes of postings");
+
+			for (String q : query) {
+				out.println(storage + ": select " + q);
+				int[] selected = new int[2];
+				for (int z = 0; z < 2; z++) {
+					Table.textIndexes = z == 1;
+					selected[z] = Benchmark.time(Table.textIndexes ? "index"
+							: "scan", () -> tweet.select(q).getTupleCount());
+				} // for
+				Benchmark.check(storage + ": " + q, selected[0], selected[1]);
+			} // for
+		} // for
+		Table.textIndexes = true;
+	} // main
+
+} // TestTextIndex
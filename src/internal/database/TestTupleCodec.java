@@ -0,0 +1,202 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TestTupleCodec.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*******************************************************************************
+ * This class benchmarks packing/unpacking PURCHASE shaped tuples with the
+ * schema-compiled TupleCodec against per-field packing that dispatches on the
+ * domain name and allocates a byte array (via Conversions) for every value.
+ * The codec must give back every tuple, including long and non-ASCII
+ * strings, and the same tuples as the per-field path (see roundTrip).
+ */
+@SuppressWarnings("rawtypes")
+public class TestTupleCodec {
+	/**
+	 * Domains of the PURCHASE table (see MyTupleGenerator).
+	 */
+	private static final Class[] PURCHASE = { String.class, String.class,
+			String.class, String.class, String.class, Integer.class,
+			Integer.class, String.class };
+
+	/***************************************************************************
+	 * The main method is the driver for the benchmark.
+	 *
+	 * @param args
+	 *            the command-line arguments (args [0] gives number of tuples)
+	 */
+	public static void main(String[] args) {
+		int nTuples = 100000;
+		if (args.length == 1)
+			nTuples = Integer.valueOf(args[0]);
+
+		Random rand = new Random(1);
+		Comparable[][] tups = new Comparable[nTuples][];
+		for (int i = 0; i < nTuples; i++) {
+			tups[i] = new Comparable[] { "CustId" + rand.nextInt(10000),
+					"ProdId" + rand.nextInt(), "StoreId" + rand.nextInt(),
+					"PromoId" + rand.nextInt(2000),
+					"ShipCatName" + rand.nextInt(12), rand.nextInt(6),
+					rand.nextInt(139), "2013-04-18 05:52:26" };
+		} // for
+
+		TupleCodec codec = new TupleCodec(PURCHASE);
+		ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+		roundTrip(tups, codec, buf);
+		roundTrip(edgeCases(), codec, buf);
+
+		Benchmark.time("Per-field (Conversions)", 30, 10, () -> {
+			int sink = 0;
+			for (Comparable[] tup : tups)
+				sink += legacyUnpack(legacyPack(tup)).length;
+			return sink;
+		});
+		Benchmark.time("TupleCodec", 30, 10, () -> {
+			int sink = 0;
+			for (Comparable[] tup : tups) {
+				buf.clear();
+				codec.encode(tup, buf);
+				sink += codec.decode(buf, 0).length;
+			} // for
+			return sink;
+		});
+	} // main
+
+	/***************************************************************************
+	 * Check that the codec gives back each tuple, and that the per-field path
+	 * gives back the same tuple whenever it can: the per-field path encodes
+	 * strings in the platform charset (as Table did), so it loses the
+	 * characters that charset cannot encode, while the codec uses UTF-8.
+	 *
+	 * @param tups
+	 *            the tuples to check
+	 * @param codec
+	 *            the codec compiled for PURCHASE
+	 * @param buf
+	 *            the buffer to encode into
+	 * @throws IllegalStateException
+	 *             if a tuple does not survive the codec, or the two paths
+	 *             disagree on a tuple the platform charset can encode
+	 */
+	private static void roundTrip(Comparable[][] tups, TupleCodec codec,
+			ByteBuffer buf) {
+		CharsetEncoder platform = Charset.defaultCharset().newEncoder();
+		for (Comparable[] tup : tups) {
+			buf.clear();
+			codec.encode(tup, buf);
+			Comparable[] compiled = codec.decode(buf, 0);
+			Comparable[] legacy = legacyUnpack(legacyPack(tup));
+			boolean encodable = true;
+			for (Comparable v : tup)
+				encodable &= !(v instanceof String)
+						|| platform.canEncode((String) v);
+			if (!Arrays.equals(compiled, tup)
+					|| encodable && !Arrays.equals(legacy, compiled))
+				throw new IllegalStateException("round trip mismatch: "
+						+ Arrays.toString(tup) + " -> "
+						+ Arrays.toString(compiled) + " (codec), "
+						+ Arrays.toString(legacy) + " (per field)");
+		} // for
+	} // roundTrip
+
+	/***************************************************************************
+	 * Return PURCHASE tuples with strings longer than 64 characters, empty
+	 * strings, non-ASCII strings (2, 3 and 4 bytes per character in UTF-8)
+	 * and extreme integers.
+	 *
+	 * @return the tuples
+	 */
+	private static Comparable[][] edgeCases() {
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < 300; i++)
+			s.append((char) ('a' + i % 26));
+		String longStr = s.toString();
+		return new Comparable[][] {
+				{ longStr, "ProdId" + longStr, "", "PromoId", "ShipCatName",
+						0, -1, "2013-04-18 05:52:26" },
+				{ "Cr\u00e8me br\u00fbl\u00e9e", "\u6771\u4eac",
+						"Stra\u00dfe", "\ud83d\ude00 emoji", longStr + "\u00fc",
+						Integer.MAX_VALUE, Integer.MIN_VALUE,
+						"2013-04-18 05:52:26" } };
+	} // edgeCases
+
+	/***************************************************************************
+	 * Pack a tuple the way Table did before the codec: dispatch on the domain
+	 * name and allocate a byte array for every field.
+	 *
+	 * @param tup
+	 *            the tuple to pack
+	 * @return the packed record
+	 */
+	private static byte[] legacyPack(Comparable[] tup) {
+		List<byte[]> fields = new ArrayList<>();
+		int size = 0;
+		for (int j = 0; j < PURCHASE.length; j++) {
+			byte[] b = null;
+			switch (PURCHASE[j].getName()) {
+			case "java.lang.Integer":
+				b = Conversions.int2ByteArray((Integer) tup[j]);
+				break;
+			case "java.lang.String":
+				byte[] s = ((String) tup[j]).getBytes();
+				b = new byte[4 + s.length];
+				System.arraycopy(Conversions.int2ByteArray(s.length), 0, b, 0, 4);
+				System.arraycopy(s, 0, b, 4, s.length);
+				break;
+			}
+			fields.add(b);
+			size += b.length;
+		} // for
+
+		byte[] record = new byte[size];
+		int i = 0;
+		for (byte[] b : fields) {
+			System.arraycopy(b, 0, record, i, b.length);
+			i += b.length;
+		} // for
+		return record;
+	} // legacyPack
+
+	/***************************************************************************
+	 * Unpack a record packed by legacyPack, copying every field into a new
+	 * byte array before converting it.
+	 *
+	 * @param record
+	 *            the packed record
+	 * @return the unpacked tuple
+	 */
+	private static Comparable[] legacyUnpack(byte[] record) {
+		Comparable[] tup = new Comparable[PURCHASE.length];
+		int i = 0;
+		for (int j = 0; j < PURCHASE.length; j++) {
+			byte[] b = new byte[4];
+			System.arraycopy(record, i, b, 0, 4);
+			i += 4;
+			switch (PURCHASE[j].getName()) {
+			case "java.lang.Integer":
+				tup[j] = Conversions.byteArray2Int(b);
+				break;
+			case "java.lang.String":
+				int len = Conversions.byteArray2Int(b);
+				b = new byte[len];
+				System.arraycopy(record, i, b, 0, len);
+				i += len;
+				tup[j] = new String(b);
+				break;
+			}
+		} // for
+		return tup;
+	} // legacyUnpack
+
+} // TestTupleCodec
@@ -0,0 +1,202 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TestWal.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.math3.stat.descriptive.moment.Mean;
+import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
+
+import com.google.common.primitives.Doubles;
+
+/*******************************************************************************
+ * This class benchmarks the commit throughput of the write-ahead log (see
+ * WriteAheadLog): N threads append and commit PURCHASE tuples, under each
+ * sync mode and, for FSYNC, with group commit batches of 1, 4, 16, ... commits
+ * per fsync. Finally a logged table is filled and recovered by replaying its
+ * whole log, and again from a checkpoint.
+ */
+@SuppressWarnings("rawtypes")
+public class TestWal {
+	/**
+	 * The longest a group commit leader waits for its batch in microseconds.
+	 */
+	private static final long GROUP_MICROS = 2000;
+
+	/***************************************************************************
+	 * The main method is the driver for the benchmark.
+	 *
+	 * @param args
+	 *            the command-line arguments (args [0] gives the number of
+	 *            commits per run, args [1] the number of threads)
+	 */
+	public static void main(String[] args) throws Exception {
+		int nCommits = 20000;
+		int nThreads = 16;
+		if (args.length >= 1)
+			nCommits = Integer.valueOf(args[0]);
+		if (args.length >= 2)
+			nThreads = Integer.valueOf(args[1]);
+
+		Class[] domain = { Integer.class, Integer.class, String.class,
+				String.class, Integer.class, Integer.class, String.class };
+		TupleCodec codec = new TupleCodec(domain);
+
+		run("OFF", WriteAheadLog.Sync.OFF, 1, codec, nCommits, nThreads);
+		run("WRITE", WriteAheadLog.Sync.WRITE, 1, codec, nCommits, nThreads);
+		for (int group = 1; group <= nThreads; group *= 4)
+			run("FSYNC group " + group, WriteAheadLog.Sync.FSYNC, group,
+					codec, nCommits / 4, nThreads);
+
+		new File("walbench.wal").delete();
+		new File("walbench.ckpt").delete();
+		Table purchase = new Table("walbench",
+				"PurchId CustId ProdId StoreId Feedback Payment Timestamp",
+				"Integer Integer String String Integer Integer String",
+				"PurchId");
+		purchase.log(WriteAheadLog.Sync.FSYNC, nThreads, GROUP_MICROS);
+		long beforeTime = System.nanoTime();
+		insert(purchase, nCommits / 4, nThreads);
+		out.printf("Table.insert (FSYNC group %d): %9.0f commits/s%n",
+				nThreads, nCommits / 4 / ((System.nanoTime() - beforeTime) / 1E9));
+
+		// the recovered table replaces the data file of the filled one
+		recover("recovery (whole log)").checkpoint();
+		recover("recovery (checkpoint)");
+	} // main
+
+	/***************************************************************************
+	 * Time recovering the logged PURCHASE table and print it.
+	 *
+	 * @param label
+	 *            the name of the measured variant
+	 * @return the recovered table
+	 */
+	private static Table recover(String label) {
+		long beforeTime = System.nanoTime();
+		Table recovered = new Table("walbench",
+				"PurchId CustId ProdId StoreId Feedback Payment Timestamp",
+				"Integer Integer String String Integer Integer String",
+				"PurchId");
+		recovered.log(WriteAheadLog.Sync.FSYNC);
+		out.printf("%s: %d tuples in %.3f ms%n", label,
+				recovered.getTupleCount(),
+				(System.nanoTime() - beforeTime) / 1E6);
+		return recovered;
+	} // recover
+
+	/***************************************************************************
+	 * Time nThreads threads committing n tuples to a fresh log with the given
+	 * sync mode and group size, and print the throughput.
+	 *
+	 * @param label
+	 *            the name of the measured variant
+	 * @param sync
+	 *            the sync mode
+	 * @param group
+	 *            the number of commits per fsync
+	 * @param codec
+	 *            the codec encoding the tuples
+	 * @param n
+	 *            the number of commits per run
+	 * @param nThreads
+	 *            the number of threads
+	 */
+	private static void run(String label, WriteAheadLog.Sync sync, int group,
+			final TupleCodec codec, final int n, int nThreads)
+			throws IOException, InterruptedException {
+		List<Double> times = new ArrayList<>();
+		long[] stats = null;
+
+		for (int run = 0; run < 4; run++) {
+			new File("walbench.wal").delete();
+			final WriteAheadLog wal = new WriteAheadLog("walbench", sync, group,
+					GROUP_MICROS);
+
+			long beforeTime = System.nanoTime();
+			Thread[] threads = new Thread[nThreads];
+			for (int k = 0; k < nThreads; k++) {
+				final int first = k;
+				final int step = nThreads;
+				threads[k] = new Thread() {
+					public void run() {
+						for (int i = first; i < n; i += step)
+							wal.commit(wal.append(WriteAheadLog.INSERT, codec,
+									purchase(i)));
+					} // run
+				};
+				threads[k].start();
+			} // for
+			for (Thread t : threads)
+				t.join();
+			times.add((System.nanoTime() - beforeTime) / 1E6);
+
+			stats = wal.stats();
+			wal.close();
+		} // for
+
+		// discard the warm-up run
+		times.remove(0);
+
+		StandardDeviation stdDev = new StandardDeviation();
+		Mean mean = new Mean();
+		double stdErr = stdDev.evaluate(Doubles.toArray(times))
+				/ Math.sqrt(times.size());
+		double average = mean.evaluate(Doubles.toArray(times));
+
+		out.printf("  %-16s %9.0f commits/s  Average: %9.3f ms  Std Err: "
+				+ "%7.3f ms  commits per fsync: %s%n", label, n / average
+				* 1000, average, stdErr, (stats[1] == 0) ? "-" : String
+				.format("%.1f", (double) n / stats[1]));
+	} // run
+
+	/***************************************************************************
+	 * Insert n tuples into the table from nThreads threads.
+	 *
+	 * @param table
+	 *            the table to insert into
+	 * @param n
+	 *            the number of tuples
+	 * @param nThreads
+	 *            the number of threads
+	 */
+	private static void insert(final Table table, final int n, int nThreads)
+			throws InterruptedException {
+		Thread[] threads = new Thread[nThreads];
+		for (int k = 0; k < nThreads; k++) {
+			final int first = k;
+			final int step = nThreads;
+			threads[k] = new Thread() {
+				public void run() {
+					for (int i = first; i < n; i += step)
+						table.insert(purchase(i));
+				} // run
+			};
+			threads[k].start();
+		} // for
+		for (Thread t : threads)
+			t.join();
+	} // insert
+
+	/***************************************************************************
+	 * Return the ith purchase tuple.
+	 *
+	 * @param i
+	 *            the purchase id
+	 * @return the tuple
+	 */
+	private static Comparable[] purchase(int i) {
+		return new Comparable[] { i, i % 1000, "ProdId" + (i % 5000),
+				"StoreId" + (i % 100), i % 6, i % 139, "2013-04-18 05:52:26" };
+	} // purchase
+
+} // TestWal
@@ -0,0 +1,78 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TestZoneMap.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.util.Random;
+
+/*******************************************************************************
+ * This class benchmarks select with and without Table.zoneMaps (see ZoneMap)
+ * on a VISIT table whose Timestamp grows with the insertion order (so its
+ * zones are narrow) while age, Hits and Price are random (so their zones span
+ * the whole domain): a one-day range on Timestamp, the same range combined
+ * with a predicate on age, and a range on Hits that zones cannot narrow. Each
+ * query runs in each execution mode, on rows and on columns, and the number
+ * of selected tuples must not depend on the zones.
+ */
+@SuppressWarnings("rawtypes")
+public class TestZoneMap {
+	/***************************************************************************
+	 * The main method is the driver for the benchmark.
+	 *
+	 * @param args
+	 *            the command-line arguments (args [0] gives the number of
+	 *            visits)
+	 */
+	public static void main(String[] args) {
+		int n = 1000000;
+		if (args.length >= 1)
+			n = Integer.valueOf(args[0]);
+
+		String[] query = { "Timestamp >= '2024-02-01' & Timestamp < '2024-02-02'",
+				"Timestamp < '2024-01-08' & age > 70",
+				"Hits > 990000" };
+		int threads = Table.parallelism;
+
+		for (Table.Storage storage : Table.Storage.values()) {
+			Random rand = new Random(1);
+			long start = Timestamp.parse("2024-01-01");
+			Table visit = new Table("visit", new String[] { "VisitId",
+					"Timestamp", "age", "Hits", "Price" }, new Class[] {
+					Integer.class, Timestamp.class, Integer.class, Long.class,
+					Double.class }, new String[] { "VisitId" }, storage);
+			for (int i = 0; i < n; i++) {
+				visit.insert(new Comparable[] { i,
+						new Timestamp(start + i * 10000000L),
+						18 + rand.nextInt(60), (long) rand.nextInt(1000000),
+						rand.nextDouble() * 100 });
+			} // for
+
+			for (String q : query) {
+				out.println(storage + ": select " + q);
+				for (String mode : new String[] { "TUPLE", "BATCH", "PARALLEL" }) {
+					Table.execution = mode.equals("TUPLE") ? Table.Execution.TUPLE
+							: Table.Execution.BATCH;
+					Table.parallelism = mode.equals("PARALLEL") ? threads : 1;
+					int[] selected = new int[2];
+					for (int z = 0; z < 2; z++) {
+						Table.zoneMaps = z == 1;
+						selected[z] = Benchmark.time(mode
+								+ (Table.zoneMaps ? " zones" : ""),
+								() -> visit.select(q).getTupleCount());
+					} // for
+					Benchmark.check(storage + " " + mode + ": " + q,
+							selected[0], selected[1]);
+				} // for
+			} // for
+		} // for
+		Table.parallelism = threads;
+		Table.execution = Table.Execution.BATCH;
+		Table.zoneMaps = true;
+	} // main
+
+} // TestZoneMap
@@ -0,0 +1,166 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TextIndex.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*******************************************************************************
+ * This class provides the inverted index of a string attribute holding text
+ * (e.g., TextStr): the text of each tuple is split into terms (see tokenize),
+ * and the term dictionary maps each distinct term to its postings list, the
+ * ascending positions of the tuples whose text contains it (see Postings).
+ *
+ * The index answers "contains" (the text has all the terms of the literal),
+ * intersecting the postings lists from the shortest one, and "match" (the
+ * text has any of them), uniting them (see Condition).
+ *
+ * Tuples are added by one thread at a time, while selections may run
+ * concurrently.
+ */
+class TextIndex {
+	/**
+	 * The position of the attribute.
+	 */
+	private final int col;
+
+	/**
+	 * The term dictionary, mapping each term to its postings list.
+	 */
+	private final Map<String, Postings> terms = new HashMap<>();
+
+	/**
+	 * The number of tuples indexed.
+	 */
+	private int size = 0;
+
+	/***************************************************************************
+	 * Construct an empty index.
+	 *
+	 * @param _col
+	 *            the position of the attribute
+	 */
+	TextIndex(int _col) {
+		col = _col;
+	} // constructor
+
+	/***************************************************************************
+	 * Split a text into its distinct terms: the maximal runs of letters and
+	 * digits, in lower case.
+	 *
+	 * @param text
+	 *            the text
+	 * @return the terms, in order of first occurrence
+	 */
+	static String[] tokenize(String text) {
+		Set<String> seen = new HashSet<>();
+		StringBuilder term = new StringBuilder();
+		for (int i = 0; i <= text.length(); i++) {
+			char c = (i < text.length()) ? text.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c)) {
+				term.append(Character.toLowerCase(c));
+			} else if (term.length() > 0) {
+				seen.add(term.toString());
+				term.setLength(0);
+			} // if
+		} // for
+		return seen.toArray(new String[seen.size()]);
+	} // tokenize
+
+	/***************************************************************************
+	 * Return whether a text has all (or any) of the given terms.
+	 *
+	 * @param text
+	 *            the text
+	 * @param query
+	 *            the terms (see tokenize)
+	 * @param all
+	 *            whether all the terms are required ("contains") or any
+	 *            suffices ("match")
+	 * @return whether the text satisfies the query
+	 */
+	static boolean matches(String text, String[] query, boolean all) {
+		Set<String> words = new HashSet<>(Arrays.asList(tokenize(text)));
+		for (String t : query) {
+			if (words.contains(t) != all)
+				return !all;
+		} // for
+		return all;
+	} // matches
+
+	/***************************************************************************
+	 * Return the number of tuples indexed.
+	 *
+	 * @return the number of tuples
+	 */
+	synchronized int size() {
+		return size;
+	} // size
+
+	/***************************************************************************
+	 * Add the terms of the next tuple of the table to the index.
+	 *
+	 * @param v
+	 *            the view over the tuple
+	 */
+	synchronized void add(TupleView v) {
+		for (String t : tokenize((String) v.get(col))) {
+			Postings p = terms.get(t);
+			if (p == null)
+				terms.put(t, p = new Postings());
+			p.add(size);
+		} // for
+		size++;
+	} // add
+
+	/***************************************************************************
+	 * Return the positions of the tuples whose text satisfies the condition c
+	 * (a "contains" or "match" of this attribute).
+	 *
+	 * @param c
+	 *            the condition
+	 * @return the positions, or null if the index cannot narrow them (a
+	 *         "contains" without terms holds for every tuple)
+	 */
+	synchronized Bitmap select(Condition c) {
+		Bitmap r = new Bitmap();
+		if (c.op == Condition.MATCH) {
+			for (String t : c.terms) {
+				Postings p = terms.get(t);
+				if (p != null)
+					r = r.or(p.toBitmap());
+			} // for
+			return r;
+		} // if
+
+		if (c.terms.length == 0)
+			return null;
+		Postings[] lists = new Postings[c.terms.length];
+		for (int k = 0; k < lists.length; k++) {
+			lists[k] = terms.get(c.terms[k]);
+			if (lists[k] == null)
+				return r;
+		} // for
+		return Postings.intersect(lists);
+	} // select
+
+	/***************************************************************************
+	 * Return the number of bytes the postings lists take.
+	 *
+	 * @return the size of the postings
+	 */
+	synchronized long postingsBytes() {
+		long n = 0;
+		for (Postings p : terms.values())
+			n += p.bytes();
+		return n;
+	} // postingsBytes
+
+} // TextIndex class
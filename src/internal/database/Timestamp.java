@@ -0,0 +1,174 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Timestamp.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+/*******************************************************************************
+ * This class provides a timestamp domain: a point in time (UTC) kept as the
+ * number of microseconds since the epoch, so timestamps are packed into 8
+ * bytes and compared as longs instead of as strings. Timestamps are written
+ * as "yyyy-MM-dd HH:mm:ss[.ffffff]"; since conditions are split on spaces, a
+ * literal in a condition uses 'T' instead of the space (e.g., ts >
+ * '2013-04-18T05:52:26') or gives the date only.
+ */
+public final class Timestamp implements Comparable<Timestamp> {
+	/**
+	 * Microseconds per second and per day.
+	 */
+	private static final long SECOND = 1000000L, DAY = 86400L * SECOND;
+
+	/**
+	 * The number of microseconds since 1970-01-01 00:00:00 UTC.
+	 */
+	public final long micros;
+
+	/***************************************************************************
+	 * Construct a timestamp from the number of microseconds since the epoch.
+	 *
+	 * @param _micros
+	 *            the microseconds since the epoch
+	 */
+	public Timestamp(long _micros) {
+		micros = _micros;
+	} // constructor
+
+	/***************************************************************************
+	 * Construct a timestamp by parsing "yyyy-MM-dd[ HH:mm:ss[.ffffff]]" (a 'T'
+	 * may separate the date from the time).
+	 *
+	 * @param s
+	 *            the string to parse
+	 */
+	public Timestamp(String s) {
+		micros = parse(s);
+	} // constructor
+
+	/***************************************************************************
+	 * Parse "yyyy-MM-dd[ HH:mm:ss[.ffffff]]" into microseconds since the
+	 * epoch.
+	 *
+	 * @param s
+	 *            the string to parse
+	 * @return the microseconds since the epoch
+	 */
+	public static long parse(String s) {
+		try {
+			int year = Integer.parseInt(s.substring(0, 4));
+			int month = Integer.parseInt(s.substring(5, 7));
+			int day = Integer.parseInt(s.substring(8, 10));
+			if (s.charAt(4) != '-' || s.charAt(7) != '-' || month < 1
+					|| month > 12 || day < 1 || day > daysInMonth(year, month))
+				throw new NumberFormatException();
+
+			long t = daysFromCivil(year, month, day) * DAY;
+			if (s.length() == 10)
+				return t;
+
+			char sep = s.charAt(10);
+			int hour = Integer.parseInt(s.substring(11, 13));
+			int minute = Integer.parseInt(s.substring(14, 16));
+			int second = Integer.parseInt(s.substring(17, 19));
+			if ((sep != ' ' && sep != 'T') || s.charAt(13) != ':'
+					|| s.charAt(16) != ':' || hour > 23 || minute > 59
+					|| second > 59)
+				throw new NumberFormatException();
+			t += ((hour * 60L + minute) * 60L + second) * SECOND;
+
+			if (s.length() > 19) {
+				String frac = s.substring(20);
+				if (s.charAt(19) != '.' || frac.isEmpty() || frac.length() > 6)
+					throw new NumberFormatException();
+				long f = Long.parseLong(frac);
+				for (int k = frac.length(); k < 6; k++)
+					f *= 10;
+				t += f;
+			} // if
+			return t;
+		} catch (IndexOutOfBoundsException | NumberFormatException ex) {
+			throw new NumberFormatException("Timestamp: cannot parse \"" + s
+					+ "\"");
+		} // try
+	} // parse
+
+	/***************************************************************************
+	 * Compare this timestamp with another one.
+	 *
+	 * @param other
+	 *            the other timestamp
+	 * @return negative, zero or positive as this is before, at or after other
+	 */
+	public int compareTo(Timestamp other) {
+		return Long.compare(micros, other.micros);
+	} // compareTo
+
+	public boolean equals(Object obj) {
+		return obj instanceof Timestamp && ((Timestamp) obj).micros == micros;
+	} // equals
+
+	public int hashCode() {
+		return Long.hashCode(micros);
+	} // hashCode
+
+	/***************************************************************************
+	 * Format the timestamp as "yyyy-MM-dd HH:mm:ss[.ffffff]".
+	 *
+	 * @return the formatted timestamp
+	 */
+	public String toString() {
+		long days = Math.floorDiv(micros, DAY);
+		long rest = Math.floorMod(micros, DAY);
+
+		// civil from days (proleptic Gregorian calendar)
+		long z = days + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		long day = doy - (153 * mp + 2) / 5 + 1;
+		long month = mp < 10 ? mp + 3 : mp - 9;
+		long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+		long sec = rest / SECOND;
+		String s = String.format("%04d-%02d-%02d %02d:%02d:%02d", year, month,
+				day, sec / 3600, sec / 60 % 60, sec % 60);
+		return (rest % SECOND == 0) ? s : s
+				+ String.format(".%06d", rest % SECOND);
+	} // toString
+
+	/***************************************************************************
+	 * Return the number of days of a month (of the proleptic Gregorian
+	 * calendar).
+	 *
+	 * @param year
+	 *            the year
+	 * @param month
+	 *            the month (1 to 12)
+	 * @return the number of days of the month
+	 */
+	private static int daysInMonth(int year, int month) {
+		if (month == 2)
+			return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29
+					: 28;
+		return (month == 4 || month == 6 || month == 9 || month == 11) ? 30
+				: 31;
+	} // daysInMonth
+
+	/***************************************************************************
+	 * Return the number of days from 1970-01-01 to the given date of the
+	 * proleptic Gregorian calendar.
+	 */
+	private static long daysFromCivil(long year, int month, int day) {
+		year -= month <= 2 ? 1 : 0;
+		long era = Math.floorDiv(year, 400);
+		long yoe = year - era * 400;
+		long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day
+				- 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	} // daysFromCivil
+
+} // Timestamp class
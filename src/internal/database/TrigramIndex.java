@@ -0,0 +1,129 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TrigramIndex.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*******************************************************************************
+ * This class provides the trigram index of a string attribute: each distinct
+ * run of three consecutive characters (trigram) of the values maps to the
+ * postings list of the tuples whose value holds it (see Postings). A LIKE
+ * pattern (see Condition.like) can only match a value that holds every
+ * trigram of the literal runs between its wildcards, so intersecting their
+ * postings lists leaves the candidate tuples, e.g., '%phone%' the ones
+ * holding "pho", "hon" and "one". The candidates must still be checked
+ * against the pattern. Patterns whose runs are all shorter than three
+ * characters are not narrowed.
+ *
+ * Tuples are added by one thread at a time, while selections may run
+ * concurrently.
+ */
+class TrigramIndex {
+	/**
+	 * The position of the attribute.
+	 */
+	private final int col;
+
+	/**
+	 * The postings list of each trigram (its three chars packed in a long).
+	 */
+	private final Map<Long, Postings> trigrams = new HashMap<>();
+
+	/**
+	 * The number of tuples indexed.
+	 */
+	private int size = 0;
+
+	/***************************************************************************
+	 * Construct an empty index.
+	 *
+	 * @param _col
+	 *            the position of the attribute
+	 */
+	TrigramIndex(int _col) {
+		col = _col;
+	} // constructor
+
+	/***************************************************************************
+	 * Return the distinct trigrams of a string, packed in longs.
+	 *
+	 * @param s
+	 *            the string
+	 * @return the trigrams in ascending order
+	 */
+	static long[] trigrams(String s) {
+		int n = s.length() - 2;
+		if (n <= 0)
+			return new long[0];
+		long[] g = new long[n];
+		for (int i = 0; i < n; i++)
+			g[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16)
+					| s.charAt(i + 2);
+		Arrays.sort(g);
+		int m = 1;
+		for (int i = 1; i < n; i++) {
+			if (g[i] != g[m - 1])
+				g[m++] = g[i];
+		} // for
+		return Arrays.copyOf(g, m);
+	} // trigrams
+
+	/***************************************************************************
+	 * Return the number of tuples indexed.
+	 *
+	 * @return the number of tuples
+	 */
+	synchronized int size() {
+		return size;
+	} // size
+
+	/***************************************************************************
+	 * Add the trigrams of the next tuple of the table to the index.
+	 *
+	 * @param v
+	 *            the view over the tuple
+	 */
+	synchronized void add(TupleView v) {
+		for (long g : trigrams((String) v.get(col))) {
+			Postings p = trigrams.get(g);
+			if (p == null)
+				trigrams.put(g, p = new Postings());
+			p.add(size);
+		} // for
+		size++;
+	} // add
+
+	/***************************************************************************
+	 * Return the positions of the tuples that may match the LIKE condition c
+	 * on this attribute (a superset of those that do).
+	 *
+	 * @param c
+	 *            the condition
+	 * @return the positions, or null if the index cannot narrow them
+	 */
+	synchronized Bitmap select(Condition c) {
+		long[] all = new long[0];
+		for (String run : ((String) c.value).split("[%_]")) {
+			long[] g = trigrams(run);
+			all = Arrays.copyOf(all, all.length + g.length);
+			System.arraycopy(g, 0, all, all.length - g.length, g.length);
+		} // for
+		if (all.length == 0)
+			return null;
+
+		Postings[] lists = new Postings[all.length];
+		for (int k = 0; k < all.length; k++) {
+			lists[k] = trigrams.get(all[k]);
+			if (lists[k] == null)
+				return new Bitmap();
+		} // for
+		return Postings.intersect(lists);
+	} // select
+
+} // TrigramIndex class
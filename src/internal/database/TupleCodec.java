@@ -0,0 +1,569 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TupleCodec.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*******************************************************************************
+ * This class packs tuples into records and unpacks them again. The schema is
+ * compiled once into an array of type codes and the offset of every attribute
+ * in the fixed part of the record, so encoding and decoding never dispatch on
+ * class names and write/read values directly into/from a caller supplied
+ * ByteBuffer. A record is laid out as follows: the fixed part holds every
+ * attribute in schema order (numbers and characters in place, strings as the
+ * int offset at which their bytes end), followed by the heap of UTF-8 encoded
+ * string bytes. Dictionary encoded strings are stored in the fixed part as the
+ * int code their Dictionary gives them, while Timestamp and Decimal values
+ * take 8 bytes (their long representation).
+ */
+@SuppressWarnings("rawtypes")
+public class TupleCodec {
+	/**
+	 * Type codes for the supported domains.
+	 */
+	static final byte BYTE = 0, SHORT = 1, INT = 2, LONG = 3, FLOAT = 4,
+			DOUBLE = 5, CHAR = 6, STRING = 7, DICT = 8, TIMESTAMP = 9,
+			DECIMAL = 10;
+
+	/**
+	 * The type code of each attribute.
+	 */
+	final byte[] type;
+
+	/**
+	 * The offset of each attribute within the fixed part of the record.
+	 */
+	final int[] offset;
+
+	/**
+	 * For each string attribute, the position of the previous string
+	 * attribute (-1 if it is the first one), used to locate where its bytes
+	 * start.
+	 */
+	private final int[] prevString;
+
+	/**
+	 * The size of the fixed part of a record in bytes.
+	 */
+	private final int fixedSize;
+
+	/**
+	 * The dictionary of each dictionary encoded attribute (null for the
+	 * others).
+	 */
+	final Dictionary[] dictionary;
+
+	/***************************************************************************
+	 * Compile the given domains into a codec.
+	 *
+	 * @param domain
+	 *            the attribute domains (data types)
+	 */
+	public TupleCodec(Class[] domain) {
+		this(domain, new Dictionary[domain.length]);
+	} // constructor
+
+	/***************************************************************************
+	 * Compile the given domains into a codec, storing the string attributes
+	 * that have a dictionary as codes.
+	 *
+	 * @param domain
+	 *            the attribute domains (data types)
+	 * @param _dictionary
+	 *            the dictionary of each attribute (null if not encoded)
+	 */
+	public TupleCodec(Class[] domain, Dictionary[] _dictionary) {
+		type = new byte[domain.length];
+		offset = new int[domain.length];
+		prevString = new int[domain.length];
+		dictionary = _dictionary;
+
+		int s = 0;
+		int last = -1;
+		for (int j = 0; j < domain.length; j++) {
+			type[j] = typeOf(domain[j]);
+			if (type[j] == STRING && dictionary[j] != null)
+				type[j] = DICT;
+			offset[j] = s;
+			s += width(type[j]);
+			if (type[j] == STRING) {
+				prevString[j] = last;
+				last = j;
+			} // if
+		} // for
+		fixedSize = s;
+	} // constructor
+
+	/***************************************************************************
+	 * Map a domain to its type code.
+	 *
+	 * @param domain
+	 *            the domain (data type)
+	 * @return the type code
+	 */
+	static byte typeOf(Class domain) {
+		if (domain == Byte.class)
+			return BYTE;
+		if (domain == Short.class)
+			return SHORT;
+		if (domain == Integer.class)
+			return INT;
+		if (domain == Long.class)
+			return LONG;
+		if (domain == Float.class)
+			return FLOAT;
+		if (domain == Double.class)
+			return DOUBLE;
+		if (domain == Character.class)
+			return CHAR;
+		if (domain == String.class)
+			return STRING;
+		if (domain == Timestamp.class)
+			return TIMESTAMP;
+		if (domain == Decimal.class)
+			return DECIMAL;
+		throw new IllegalArgumentException("TupleCodec: unsupported domain "
+				+ domain);
+	} // typeOf
+
+	/***************************************************************************
+	 * Return the number of bytes a value of the given type takes in the fixed
+	 * part of a record.
+	 *
+	 * @param t
+	 *            the type code
+	 * @return the width in bytes
+	 */
+	static int width(byte t) {
+		switch (t) {
+		case BYTE:
+			return 1;
+		case SHORT:
+		case CHAR:
+			return 2;
+		case INT:
+		case FLOAT:
+		case STRING:
+		case DICT:
+			return 4;
+		default:
+			return 8;
+		}
+	} // width
+
+	/***************************************************************************
+	 * Return whether values of the given type are represented by a long
+	 * (i.e., all types but the floating point ones and strings), so they can
+	 * be compared as longs.
+	 *
+	 * @param t
+	 *            the type code
+	 * @return whether the type is integral
+	 */
+	static boolean integral(byte t) {
+		return t != FLOAT && t != DOUBLE && t != STRING;
+	} // integral
+
+	/***************************************************************************
+	 * Return the long representation of a value of an integral type (see
+	 * integral): the number itself, a character's code, a Timestamp's
+	 * microseconds or a Decimal's unscaled value.
+	 *
+	 * @param v
+	 *            the value
+	 * @return its long representation
+	 */
+	static long toLong(Comparable v) {
+		if (v instanceof Number)
+			return ((Number) v).longValue();
+		if (v instanceof Character)
+			return (Character) v;
+		if (v instanceof Timestamp)
+			return ((Timestamp) v).micros;
+		return ((Decimal) v).unscaled;
+	} // toLong
+
+	/***************************************************************************
+	 * Return the value as a double, see toLong for the non numeric types.
+	 *
+	 * @param v
+	 *            the value
+	 * @return its double representation
+	 */
+	static double toDouble(Comparable v) {
+		if (v instanceof Float || v instanceof Double)
+			return ((Number) v).doubleValue();
+		return toLong(v);
+	} // toDouble
+
+	/***************************************************************************
+	 * Return the size of the fixed part of a record.
+	 *
+	 * @return the size in bytes
+	 */
+	public int fixedSize() {
+		return fixedSize;
+	} // fixedSize
+
+	/***************************************************************************
+	 * Return the number of bytes needed to encode the given tuple.
+	 *
+	 * @param tup
+	 *            the tuple to measure
+	 * @return the size of its record in bytes
+	 */
+	public int size(Comparable[] tup) {
+		int s = fixedSize;
+		for (int j = 0; j < type.length; j++) {
+			if (type[j] == STRING)
+				s += utf8Length((String) tup[j]);
+		} // for
+		return s;
+	} // size
+
+	/***************************************************************************
+	 * Return the number of bytes needed to encode the given row.
+	 *
+	 * @param row
+	 *            the row to measure
+	 * @return the size of its record in bytes
+	 */
+	public int size(Row row) {
+		int s = fixedSize;
+		for (int j = 0; j < type.length; j++) {
+			if (type[j] == STRING)
+				s += utf8Length(row.str[j]);
+		} // for
+		return s;
+	} // size
+
+	/***************************************************************************
+	 * Encode the tuple into buf starting at its current position, which is
+	 * advanced past the record. The buffer must have at least size (tup)
+	 * bytes remaining.
+	 *
+	 * @param tup
+	 *            the tuple to encode
+	 * @param buf
+	 *            the buffer to encode into
+	 */
+	public void encode(Comparable[] tup, ByteBuffer buf) {
+		int base = buf.position();
+		int heap = fixedSize;
+		for (int j = 0; j < type.length; j++) {
+			int pos = base + offset[j];
+			switch (type[j]) {
+			case BYTE:
+				buf.put(pos, (Byte) tup[j]);
+				break;
+			case SHORT:
+				buf.putShort(pos, (Short) tup[j]);
+				break;
+			case INT:
+				buf.putInt(pos, (Integer) tup[j]);
+				break;
+			case LONG:
+				buf.putLong(pos, (Long) tup[j]);
+				break;
+			case FLOAT:
+				buf.putFloat(pos, (Float) tup[j]);
+				break;
+			case DOUBLE:
+				buf.putDouble(pos, (Double) tup[j]);
+				break;
+			case CHAR:
+				buf.putChar(pos, (Character) tup[j]);
+				break;
+			case STRING:
+				heap = putUtf8((String) tup[j], buf, base, heap);
+				buf.putInt(pos, heap);
+				break;
+			case DICT:
+				buf.putInt(pos, dictionary[j].encode((String) tup[j]));
+				break;
+			case TIMESTAMP:
+				buf.putLong(pos, ((Timestamp) tup[j]).micros);
+				break;
+			case DECIMAL:
+				buf.putLong(pos, ((Decimal) tup[j]).unscaled);
+				break;
+			}
+		} // for
+		buf.position(base + heap);
+	} // encode
+
+	/***************************************************************************
+	 * Encode the row (which must have been laid out by this codec) into buf
+	 * starting at its current position, which is advanced past the record.
+	 * The buffer must have at least size (row) bytes remaining.
+	 *
+	 * @param row
+	 *            the row to encode
+	 * @param buf
+	 *            the buffer to encode into
+	 */
+	public void encode(Row row, ByteBuffer buf) {
+		int base = buf.position();
+		int heap = fixedSize;
+		long[] prim = row.prim;
+		for (int j = 0; j < type.length; j++) {
+			int pos = base + offset[j];
+			switch (type[j]) {
+			case BYTE:
+				buf.put(pos, (byte) prim[j]);
+				break;
+			case SHORT:
+				buf.putShort(pos, (short) prim[j]);
+				break;
+			case INT:
+			case DICT:
+				buf.putInt(pos, (int) prim[j]);
+				break;
+			case FLOAT:
+				buf.putFloat(pos, (float) Double.longBitsToDouble(prim[j]));
+				break;
+			case DOUBLE:
+				buf.putDouble(pos, Double.longBitsToDouble(prim[j]));
+				break;
+			case CHAR:
+				buf.putChar(pos, (char) prim[j]);
+				break;
+			case STRING:
+				heap = putUtf8(row.str[j], buf, base, heap);
+				buf.putInt(pos, heap);
+				break;
+			default:
+				buf.putLong(pos, prim[j]);
+			}
+		} // for
+		buf.position(base + heap);
+	} // encode
+
+	/***************************************************************************
+	 * Decode the record starting at position base of buf into a tuple.
+	 *
+	 * @param buf
+	 *            the buffer holding the record
+	 * @param base
+	 *            the position at which the record starts
+	 * @return the decoded tuple
+	 */
+	public Comparable[] decode(ByteBuffer buf, int base) {
+		Comparable[] tup = new Comparable[type.length];
+		for (int j = 0; j < type.length; j++) {
+			tup[j] = decode(buf, base, j);
+		} // for
+		return tup;
+	} // decode
+
+	/***************************************************************************
+	 * Decode the jth attribute of the record starting at position base of buf.
+	 *
+	 * @param buf
+	 *            the buffer holding the record
+	 * @param base
+	 *            the position at which the record starts
+	 * @param j
+	 *            the attribute position
+	 * @return the decoded value
+	 */
+	public Comparable decode(ByteBuffer buf, int base, int j) {
+		int pos = base + offset[j];
+		switch (type[j]) {
+		case BYTE:
+			return buf.get(pos);
+		case SHORT:
+			return buf.getShort(pos);
+		case INT:
+			return buf.getInt(pos);
+		case LONG:
+			return buf.getLong(pos);
+		case FLOAT:
+			return buf.getFloat(pos);
+		case DOUBLE:
+			return buf.getDouble(pos);
+		case CHAR:
+			return buf.getChar(pos);
+		case STRING:
+			int start = stringStart(buf, base, j);
+			int end = buf.getInt(pos);
+			return new String(buf.array(), buf.arrayOffset() + base + start,
+					end - start, StandardCharsets.UTF_8);
+		case DICT:
+			return dictionary[j].decode(buf.getInt(pos));
+		case TIMESTAMP:
+			return new Timestamp(buf.getLong(pos));
+		case DECIMAL:
+			return new Decimal(buf.getLong(pos));
+		default:
+			out.println("TupleCodec.decode: unknown type code " + type[j]);
+			return null;
+		}
+	} // decode
+
+	/***************************************************************************
+	 * Read the jth attribute, which must be of an integral type (see
+	 * integral), of the record starting at position base of buf as a long,
+	 * without boxing it.
+	 *
+	 * @param buf
+	 *            the buffer holding the record
+	 * @param base
+	 *            the position at which the record starts
+	 * @param j
+	 *            the attribute position
+	 * @return the long representation of the value
+	 */
+	long getLong(ByteBuffer buf, int base, int j) {
+		int pos = base + offset[j];
+		switch (type[j]) {
+		case BYTE:
+			return buf.get(pos);
+		case SHORT:
+			return buf.getShort(pos);
+		case INT:
+		case DICT:
+			return buf.getInt(pos);
+		case CHAR:
+			return buf.getChar(pos);
+		case FLOAT:
+			return (long) buf.getFloat(pos);
+		case DOUBLE:
+			return (long) buf.getDouble(pos);
+		default:
+			return buf.getLong(pos);
+		}
+	} // getLong
+
+	/***************************************************************************
+	 * Read the jth attribute, which must not be a string, of the record
+	 * starting at position base of buf as a double, without boxing it.
+	 *
+	 * @param buf
+	 *            the buffer holding the record
+	 * @param base
+	 *            the position at which the record starts
+	 * @param j
+	 *            the attribute position
+	 * @return the value as a double
+	 */
+	double getDouble(ByteBuffer buf, int base, int j) {
+		switch (type[j]) {
+		case FLOAT:
+			return buf.getFloat(base + offset[j]);
+		case DOUBLE:
+			return buf.getDouble(base + offset[j]);
+		default:
+			return getLong(buf, base, j);
+		}
+	} // getDouble
+
+	/***************************************************************************
+	 * Return the code of the dictionary encoded attribute j of the record
+	 * starting at position base of buf, without decoding it.
+	 *
+	 * @param buf
+	 *            the buffer holding the record
+	 * @param base
+	 *            the position at which the record starts
+	 * @param j
+	 *            the position of a dictionary encoded attribute
+	 * @return the code
+	 */
+	int code(ByteBuffer buf, int base, int j) {
+		return buf.getInt(base + offset[j]);
+	} // code
+
+	/***************************************************************************
+	 * Return the offset (relative to the record) at which the bytes of string
+	 * attribute j start.
+	 *
+	 * @param buf
+	 *            the buffer holding the record
+	 * @param base
+	 *            the position at which the record starts
+	 * @param j
+	 *            the position of a string attribute
+	 * @return the offset of its first byte
+	 */
+	int stringStart(ByteBuffer buf, int base, int j) {
+		int p = prevString[j];
+		return (p < 0) ? fixedSize : buf.getInt(base + offset[p]);
+	} // stringStart
+
+	/***************************************************************************
+	 * Return the number of bytes needed to encode s in UTF-8.
+	 *
+	 * @param s
+	 *            the string to measure
+	 * @return its UTF-8 length
+	 */
+	static int utf8Length(String s) {
+		int n = s.length();
+		int len = n;
+		for (int i = 0; i < n; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80) {
+				if (c < 0x800) {
+					len += 1;
+				} else if (Character.isHighSurrogate(c) && i + 1 < n
+						&& Character.isLowSurrogate(s.charAt(i + 1))) {
+					len += 2;
+					i++;
+				} else if (!Character.isSurrogate(c)) {
+					len += 2; // unpaired surrogates are written as '?'
+				} // if
+			} // if
+		} // for
+		return len;
+	} // utf8Length
+
+	/***************************************************************************
+	 * Write s in UTF-8 into buf at position base + at.
+	 *
+	 * @param s
+	 *            the string to write
+	 * @param buf
+	 *            the buffer to write into
+	 * @param base
+	 *            the position at which the record starts
+	 * @param at
+	 *            the offset (relative to the record) to write at
+	 * @return the offset just past the written bytes
+	 */
+	private static int putUtf8(String s, ByteBuffer buf, int base, int at) {
+		int p = base + at;
+		int n = s.length();
+		for (int i = 0; i < n; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				buf.put(p++, (byte) c);
+			} else if (c < 0x800) {
+				buf.put(p++, (byte) (0xc0 | (c >> 6)));
+				buf.put(p++, (byte) (0x80 | (c & 0x3f)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < n
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				buf.put(p++, (byte) (0xf0 | (cp >> 18)));
+				buf.put(p++, (byte) (0x80 | ((cp >> 12) & 0x3f)));
+				buf.put(p++, (byte) (0x80 | ((cp >> 6) & 0x3f)));
+				buf.put(p++, (byte) (0x80 | (cp & 0x3f)));
+			} else if (Character.isSurrogate(c)) {
+				buf.put(p++, (byte) '?');
+			} else {
+				buf.put(p++, (byte) (0xe0 | (c >> 12)));
+				buf.put(p++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+				buf.put(p++, (byte) (0x80 | (c & 0x3f)));
+			} // if
+		} // for
+		return p - base;
+	} // putUtf8
+
+} // TupleCodec class
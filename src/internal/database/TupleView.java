@@ -0,0 +1,64 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  TupleView.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+/*******************************************************************************
+ * The TupleView interface provides access to the attribute values of a tuple
+ * without requiring it to be unpacked into a Comparable array first, so an
+ * implementation may decode a value only when it is accessed. Values that are
+ * not strings can also be read as primitives (see TupleCodec.integral), which
+ * avoids boxing them.
+ */
+@SuppressWarnings("rawtypes")
+public interface TupleView {
+	/***************************************************************************
+	 * Return the value of the jth attribute.
+	 * 
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value
+	 */
+	Comparable get(int j);
+
+	/***************************************************************************
+	 * Return the long representation (see TupleCodec.toLong) of the jth
+	 * attribute, which must be of an integral type.
+	 * 
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value as a long
+	 */
+	long getLong(int j);
+
+	/***************************************************************************
+	 * Return the value of the jth attribute, which must not be a string, as a
+	 * double.
+	 * 
+	 * @param j
+	 *            the attribute position
+	 * @return the attribute value as a double
+	 */
+	double getDouble(int j);
+
+	/***************************************************************************
+	 * Return the code of the jth attribute, which must be dictionary encoded,
+	 * without decoding it.
+	 * 
+	 * @param j
+	 *            the attribute position
+	 * @return the dictionary code
+	 */
+	int code(int j);
+
+	/***************************************************************************
+	 * Return all the attribute values as a tuple.
+	 * 
+	 * @return the tuple
+	 */
+	Comparable[] toTuple();
+
+} // TupleView interface
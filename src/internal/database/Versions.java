@@ -0,0 +1,572 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  Versions.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*******************************************************************************
+ * This class keeps the versions of the records of a table for multi-version
+ * concurrency control. Every record is a version, begun by the transaction
+ * that appended it and ended (end stamp, INFINITY while it is current) by the
+ * one that updated or deleted it. An update appends the new version and links
+ * it to the one it replaces, forming a version chain from the oldest version
+ * of a key (the one the index points to) to the newest. The stamps are kept
+ * in memory next to the records rather than in them, since sealed pages may
+ * be compressed and cannot be rewritten when a version ends.
+ *
+ * Writers (serialized by the table's latch) stamp their versions and then
+ * commit, which publishes them. Since versions are appended in commit order,
+ * a version's position orders it by begin stamp: a reader takes a Snapshot,
+ * i.e., the last commit timestamp and the number of versions at that point,
+ * and sees exactly the versions before that number whose end is later than
+ * the timestamp, so it neither waits for nor sees later writers. Versions
+ * that no snapshot can see any more are unlinked from their chains by a
+ * background collector, so lookups do not walk them again, and once most
+ * versions are ended and no snapshot is open, the table is compacted (see
+ * compact): the ended versions are dropped and the current ones renumbered,
+ * so scans no longer read them.
+ */
+class Versions {
+	/**
+	 * The end stamp of a current version.
+	 */
+	static final long INFINITY = Long.MAX_VALUE;
+
+	/**
+	 * The interval between two runs of the collector in milliseconds.
+	 */
+	private static final long COLLECT_INTERVAL = 1000;
+
+	/**
+	 * The smallest number of ended versions the collector compacts.
+	 */
+	private static final int COMPACT_MIN = 1 << 10;
+
+	/**
+	 * The end stamp of each version.
+	 */
+	private volatile long[] end = new long[64];
+
+	/**
+	 * The next (newer) and previous (older) version of each version in its
+	 * chain (-1 if none).
+	 */
+	private volatile int[] next = new int[64];
+	private volatile int[] prev = new int[64];
+
+	/**
+	 * The number of stamped versions.
+	 */
+	private volatile int count = 0;
+
+	/**
+	 * The timestamp of the last committed transaction, and the number of
+	 * versions when it committed.
+	 */
+	private long committed = 0;
+	private int committedCount = 0;
+
+	/**
+	 * The number of versions ended so far.
+	 */
+	private int ended = 0;
+
+	/**
+	 * The versions ended but not yet collected.
+	 */
+	private int[] pending = new int[16];
+	private int nPending = 0;
+
+	/**
+	 * The timestamps of the open snapshots, with the number of snapshots open
+	 * on each.
+	 */
+	private final TreeMap<Long, Integer> active = new TreeMap<>();
+
+	/**
+	 * Whether new snapshots wait, so the open ones can drain before the
+	 * versions are compacted (see drain).
+	 */
+	private boolean draining = false;
+
+	/**
+	 * The versions of the tables the collector vacuums (held weakly, so
+	 * dropped tables are not kept alive), and the thread running it.
+	 */
+	private static final Set<Versions> collected = Collections
+			.newSetFromMap(new WeakHashMap<Versions, Boolean>());
+	private static ScheduledExecutorService collector = null;
+
+	/**
+	 * The compaction of the table (see Table.vacuum), which the collector
+	 * runs once most of the versions are ended.
+	 */
+	private final Runnable vacuum;
+
+	/***************************************************************************
+	 * This interface lets the table move its records and rebuild its indexes
+	 * when the versions are compacted (see compact).
+	 */
+	interface Compactor {
+		/***********************************************************************
+		 * Keep only the given versions (records), renumbered in order.
+		 *
+		 * @param keep
+		 *            the versions to keep, in ascending order
+		 * @param n
+		 *            the number of versions to keep
+		 * @return whether the records were moved (if not, nothing changed)
+		 */
+		boolean compact(int[] keep, int n);
+	} // Compactor interface
+
+	/***************************************************************************
+	 * Construct the (empty) versions of a table.
+	 *
+	 * @param _vacuum
+	 *            the compaction of the table, see Table.vacuum
+	 */
+	Versions(Runnable _vacuum) {
+		vacuum = _vacuum;
+	} // constructor
+
+	/***************************************************************************
+	 * This inner class provides a snapshot of the versions: the versions
+	 * visible to it stay the same, whatever is committed later. A snapshot
+	 * must be closed once the reader is done, so the versions only it can see
+	 * may be collected.
+	 */
+	class Snapshot {
+		/**
+		 * The timestamp of the snapshot.
+		 */
+		final long ts;
+
+		/**
+		 * The number of versions when the snapshot was taken (later ones are
+		 * never visible).
+		 */
+		final int size;
+
+		/**
+		 * Whether all versions before size are visible, i.e., none of them
+		 * had ended when the snapshot was taken.
+		 */
+		final boolean all;
+
+		/***********************************************************************
+		 * Construct a snapshot.
+		 */
+		private Snapshot(long _ts, int _size, boolean _all) {
+			ts = _ts;
+			size = _size;
+			all = _all;
+		} // constructor
+
+		/***********************************************************************
+		 * Return whether the ith version is visible to this snapshot.
+		 *
+		 * @param i
+		 *            the version (record) index
+		 * @return whether it is visible
+		 */
+		boolean visible(int i) {
+			return i < size && (all || end[i] > ts);
+		} // visible
+
+		/***********************************************************************
+		 * Drop the versions start + sel [k] not visible to this snapshot from
+		 * a selection vector.
+		 *
+		 * @param start
+		 *            the index of the first version of the batch
+		 * @param sel
+		 *            the selection vector
+		 * @param n
+		 *            the number of selected versions
+		 * @return the number of selected versions left
+		 */
+		int filter(int start, int[] sel, int n) {
+			if (all)
+				return n;
+			long[] e = end;
+			int m = 0;
+			for (int k = 0; k < n; k++) {
+				int s = sel[k];
+				sel[m] = s;
+				m += (e[start + s] > ts) ? 1 : 0;
+			} // for
+			return m;
+		} // filter
+
+		/***********************************************************************
+		 * Follow the version chain from the ith version to the version visible
+		 * to this snapshot.
+		 *
+		 * @param i
+		 *            the oldest version of a key (-1 if none)
+		 * @return the visible version, or -1 if the key has none
+		 */
+		int resolve(int i) {
+			int[] n = next;
+			while (i >= 0 && i < size && end[i] <= ts)
+				i = n[i];
+			return (i < size) ? i : -1;
+		} // resolve
+
+		/***********************************************************************
+		 * Close the snapshot.
+		 */
+		void close() {
+			synchronized (Versions.this) {
+				Integer n = active.get(ts);
+				if (n == null || n == 1)
+					active.remove(ts);
+				else
+					active.put(ts, n - 1);
+				if (active.isEmpty())
+					Versions.this.notifyAll();
+			} // synchronized
+		} // close
+	} // Snapshot inner class
+
+	/***************************************************************************
+	 * Take a snapshot of the committed versions (waiting while the versions
+	 * are drained, see drain).
+	 *
+	 * @return the snapshot (to be closed)
+	 */
+	synchronized Snapshot snapshot() {
+		while (draining) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} // try
+		} // while
+		Integer n = active.get(committed);
+		active.put(committed, (n == null) ? 1 : n + 1);
+		return new Snapshot(committed, committedCount, ended == 0);
+	} // snapshot
+
+	/***************************************************************************
+	 * Return the timestamp of the next transaction (of the table's writer).
+	 *
+	 * @return the timestamp
+	 */
+	synchronized long next() {
+		return committed + 1;
+	} // next
+
+	/***************************************************************************
+	 * Add the (current) versions of the records from index count on, up to
+	 * the given number of records, for the next commit.
+	 *
+	 * @param size
+	 *            the number of records
+	 * @param previous
+	 *            the older version of the key of the first new one, which it
+	 *            is chained to (-1 if none)
+	 */
+	synchronized void add(int size, int previous) {
+		int i = count;
+		if (size > end.length) {
+			int capacity = Math.max(size, 2 * end.length);
+			long[] e = Arrays.copyOf(end, capacity);
+			int[] n = Arrays.copyOf(next, capacity);
+			int[] p = Arrays.copyOf(prev, capacity);
+			end = e;
+			next = n;
+			prev = p;
+		} // if
+		for (int k = i; k < size; k++) {
+			end[k] = INFINITY;
+			next[k] = -1;
+			prev[k] = -1;
+		} // for
+		if (previous >= 0 && i < size) {
+			prev[i] = previous;
+			next[previous] = i;
+		} // if
+		count = size;
+	} // add
+
+	/***************************************************************************
+	 * End the ith version in the transaction with timestamp ts.
+	 *
+	 * @param i
+	 *            the version index
+	 * @param ts
+	 *            the timestamp of the writing transaction
+	 */
+	synchronized void end(int i, long ts) {
+		end[i] = ts;
+		ended++;
+		if (nPending == pending.length)
+			pending = Arrays.copyOf(pending, 2 * nPending);
+		pending[nPending++] = i;
+	} // end
+
+	/***************************************************************************
+	 * Commit the transaction with timestamp ts, making its versions visible
+	 * to the snapshots taken from now on.
+	 *
+	 * @param ts
+	 *            the timestamp of the writing transaction
+	 */
+	synchronized void commit(long ts) {
+		committed = ts;
+		committedCount = count;
+	} // commit
+
+	/***************************************************************************
+	 * Follow the version chain from the ith version to the newest version.
+	 *
+	 * @param i
+	 *            the oldest version of a key
+	 * @return the newest version
+	 */
+	int newest(int i) {
+		int[] n = next;
+		while (n[i] >= 0)
+			i = n[i];
+		return i;
+	} // newest
+
+	/***************************************************************************
+	 * Return whether the ith version is current (not ended).
+	 *
+	 * @param i
+	 *            the version index
+	 * @return whether it is current
+	 */
+	boolean current(int i) {
+		return end[i] == INFINITY;
+	} // current
+
+	/***************************************************************************
+	 * Return the number of versions ended so far.
+	 *
+	 * @return the number of ended versions
+	 */
+	synchronized int ended() {
+		return ended;
+	} // ended
+
+	/***************************************************************************
+	 * Save the committed versions (for a checkpoint): the last commit
+	 * timestamp, and the end stamp and chain links of each version.
+	 *
+	 * @param out
+	 *            the output to save them to
+	 * @throws IOException
+	 *             if the versions cannot be written
+	 */
+	synchronized void save(DataOutput out) throws IOException {
+		out.writeLong(committed);
+		out.writeInt(committedCount);
+		for (int i = 0; i < committedCount; i++) {
+			out.writeLong(end[i]);
+			out.writeInt(next[i]);
+			out.writeInt(prev[i]);
+		} // for
+	} // save
+
+	/***************************************************************************
+	 * Restore the saved versions into these (empty) versions. No snapshot is
+	 * open yet, so the ended versions are pending collection right away.
+	 *
+	 * @param in
+	 *            the input to restore them from
+	 * @throws IOException
+	 *             if the versions cannot be read
+	 */
+	synchronized void restore(DataInput in) throws IOException {
+		long ts = in.readLong();
+		int size = in.readInt();
+		add(size, -1);
+		for (int i = 0; i < size; i++) {
+			long e = in.readLong();
+			next[i] = in.readInt();
+			prev[i] = in.readInt();
+			if (e != INFINITY)
+				end(i, e);
+		} // for
+		commit(ts);
+	} // restore
+
+	/***************************************************************************
+	 * Collect the obsolete versions, i.e., the ended versions no open (or
+	 * future) snapshot can see, by unlinking them from their chains. The
+	 * oldest version of a chain stays, since the index points to it.
+	 *
+	 * @return the number of versions collected
+	 */
+	synchronized int collect() {
+		long horizon = active.isEmpty() ? committed : active.firstKey();
+		int[] n = next;
+		int[] p = prev;
+		int freed = 0;
+		int left = 0;
+		for (int k = 0; k < nPending; k++) {
+			int i = pending[k];
+			if (end[i] > horizon) {
+				pending[left++] = i;
+				continue;
+			} // if
+			if (p[i] >= 0) {
+				n[p[i]] = n[i];
+				if (n[i] >= 0)
+					p[n[i]] = p[i];
+			} // if
+			freed++;
+		} // for
+		nPending = left;
+		return freed;
+	} // collect
+
+	/***************************************************************************
+	 * Make new snapshots wait and wait for the open ones to be closed, so the
+	 * versions can be compacted. A snapshot may be held while another is
+	 * taken (e.g., of another table being drained), so the wait is bounded:
+	 * if the snapshots are not all closed in time, new ones are let through
+	 * again.
+	 *
+	 * @param millis
+	 *            the longest to wait in milliseconds
+	 * @return whether all snapshots are closed (new ones wait until release)
+	 */
+	synchronized boolean drain(long millis) {
+		draining = true;
+		long deadline = System.currentTimeMillis() + millis;
+		while (!active.isEmpty()) {
+			long left = deadline - System.currentTimeMillis();
+			try {
+				if (left > 0)
+					wait(left);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				left = 0;
+			} // try
+			if (left <= 0 && !active.isEmpty()) {
+				release();
+				return false;
+			} // if
+		} // while
+		return true;
+	} // drain
+
+	/***************************************************************************
+	 * Let new snapshots be taken again after drain.
+	 */
+	synchronized void release() {
+		draining = false;
+		notifyAll();
+	} // release
+
+	/***************************************************************************
+	 * Compact the versions if no snapshot is open: the ended versions, which
+	 * no later snapshot can see, are dropped and the current ones renumbered
+	 * in order, while the table moves its records and rebuilds its indexes
+	 * accordingly (see Compactor). Snapshots cannot be taken meanwhile, and
+	 * the table's latch must be held, so all versions are committed. If a
+	 * snapshot is open (or the table cannot move its records), the obsolete
+	 * versions are only unlinked from their chains (see collect).
+	 *
+	 * @param c
+	 *            the compactor of the table (null to only collect)
+	 * @return the number of versions dropped (or collected)
+	 */
+	synchronized int compact(Compactor c) {
+		if (c == null || !active.isEmpty() || ended == 0)
+			return collect();
+
+		int[] keep = new int[count - ended];
+		int m = 0;
+		for (int i = 0; i < count; i++) {
+			if (end[i] == INFINITY)
+				keep[m++] = i;
+		} // for
+		if (!c.compact(keep, m))
+			return collect();
+
+		int dropped = count - m;
+		int capacity = Math.max(64, 2 * m);
+		if (capacity < end.length) {
+			end = new long[capacity];
+			next = new int[capacity];
+			prev = new int[capacity];
+		} // if
+		for (int k = 0; k < m; k++) {
+			end[k] = INFINITY;
+			next[k] = -1;
+			prev[k] = -1;
+		} // for
+		count = m;
+		committedCount = m;
+		ended = 0;
+		nPending = 0;
+		return dropped;
+	} // compact
+
+	/***************************************************************************
+	 * Return whether the collector should compact the versions, i.e., enough
+	 * of them, and most, are ended.
+	 *
+	 * @return whether the versions are worth compacting
+	 */
+	private synchronized boolean crowded() {
+		return ended >= COMPACT_MIN && 2 * ended >= count;
+	} // crowded
+
+	/***************************************************************************
+	 * Have the background collector collect the obsolete versions of this
+	 * table from now on, compacting the table once most versions are ended.
+	 */
+	void collectInBackground() {
+		synchronized (collected) {
+			if (!collected.add(this) || collector != null)
+				return;
+
+			collector = Executors
+					.newSingleThreadScheduledExecutor(new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "version-collector");
+							t.setDaemon(true);
+							return t;
+						} // newThread
+					});
+		} // synchronized
+
+		collector.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				Versions[] tables;
+				synchronized (collected) {
+					tables = collected.toArray(new Versions[0]);
+				} // synchronized
+				for (Versions v : tables) {
+					v.collect();
+					if (v.crowded())
+						v.vacuum.run();
+				} // for
+			} // run
+		}, COLLECT_INTERVAL, COLLECT_INTERVAL, TimeUnit.MILLISECONDS);
+	} // collectInBackground
+
+} // Versions class
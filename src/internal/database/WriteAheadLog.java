@@ -0,0 +1,485 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  WriteAheadLog.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import static java.lang.System.out;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+
+/*******************************************************************************
+ * This class provides the write-ahead log of a table. Every change (insert,
+ * update or delete) is appended to the log as a redo record before the
+ * writer returns, so the table can be rebuilt after a crash by replaying the
+ * log (see recover). A record is laid out as
+ *
+ *     length (int) | checksum (int) | type (byte) | payload
+ *
+ * where the payload is the tuple (or key) encoded by a TupleCodec without
+ * dictionaries and the checksum is the CRC32 of the type and payload, so a
+ * record torn by a crash is detected and the log cut before it. The log
+ * sequence number (LSN) of a record is the offset in the log just past it.
+ *
+ * Records are appended to an in-memory buffer; when they reach the file
+ * depends on the sync mode. In FSYNC mode the writer waits (after releasing
+ * the table's latch) until its record is forced to disk. Commits waiting at
+ * the same time share a single write and fsync (group commit): whichever
+ * commit finds no flush in progress becomes the leader and flushes all the
+ * records buffered so far, waiting first up to groupDelay for groupSize
+ * commits to gather, while the others wait for it to finish.
+ */
+@SuppressWarnings("rawtypes")
+public class WriteAheadLog {
+	/**
+	 * File extension for log files.
+	 */
+	private static final String EXT = ".wal";
+
+	/**
+	 * The record types.
+	 */
+	static final byte INSERT = 1;
+	static final byte UPDATE = 2;
+	static final byte DELETE = 3;
+
+	/**
+	 * The size of a record header in bytes.
+	 */
+	private static final int HEADER = 9;
+
+	/**
+	 * The number of buffered bytes at which the buffer is written out in OFF
+	 * mode, and the size of the buffer recovery reads the log with.
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/***************************************************************************
+	 * The sync modes: when a commit returns, its records are buffered in
+	 * memory (OFF, lost on any crash), written to the operating system (WRITE,
+	 * lost only when the machine crashes) or forced to disk (FSYNC).
+	 */
+	public enum Sync {
+		OFF, WRITE, FSYNC
+	} // Sync
+
+	/**
+	 * The logs open (held weakly), flushed when the virtual machine exits.
+	 */
+	private static final Set<WriteAheadLog> open = Collections
+			.newSetFromMap(new WeakHashMap<WriteAheadLog, Boolean>());
+	private static boolean hooked = false;
+
+	/**
+	 * The log file and its channel.
+	 */
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+
+	/**
+	 * The sync mode.
+	 */
+	private final Sync sync;
+
+	/**
+	 * The number of commits a leader waits to gather before flushing, and
+	 * the longest it waits for them in nanoseconds (FSYNC mode).
+	 */
+	private final int groupSize;
+	private final long groupDelay;
+
+	/**
+	 * The records appended but not written yet, and the buffer swapped in for
+	 * it while it is written.
+	 */
+	private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+	private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+
+	/**
+	 * The LSN of the last record appended, written and forced to disk.
+	 */
+	private long appended = 0;
+	private long written = 0;
+	private long durable = 0;
+
+	/**
+	 * Whether a leader is writing the buffer, and the number of commits
+	 * waiting for their records.
+	 */
+	private boolean flushing = false;
+	private int waiting = 0;
+
+	/**
+	 * Whether writing the log failed (the commits stop waiting then).
+	 */
+	private boolean failed = false;
+
+	/**
+	 * The number of writes and fsyncs done so far.
+	 */
+	private long writes = 0;
+	private long syncs = 0;
+
+	/**
+	 * Computes the checksums of the appended records.
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/***************************************************************************
+	 * This interface is implemented by the table a log is replayed into.
+	 */
+	interface Redo {
+		/***********************************************************************
+		 * Redo the change of a record.
+		 *
+		 * @param type
+		 *            the record type
+		 * @param buf
+		 *            the buffer holding the payload
+		 * @param base
+		 *            the position at which the payload starts
+		 */
+		void redo(byte type, ByteBuffer buf, int base);
+	} // Redo interface
+
+	/***************************************************************************
+	 * Open the log of the given table (appending to the records already in
+	 * it, see recover).
+	 *
+	 * @param tableName
+	 *            the name of the table
+	 * @param _sync
+	 *            the sync mode
+	 * @param _groupSize
+	 *            the number of commits to gather per fsync (FSYNC mode)
+	 * @param groupMicros
+	 *            the longest a leader waits for them in microseconds
+	 * @throws IOException
+	 *             if the log cannot be opened
+	 */
+	WriteAheadLog(String tableName, Sync _sync, int _groupSize,
+			long groupMicros) throws IOException {
+		file = new RandomAccessFile(tableName + EXT, "rw");
+		channel = file.getChannel();
+		sync = _sync;
+		groupSize = Math.max(1, _groupSize);
+		groupDelay = groupMicros * 1000;
+
+		synchronized (open) {
+			open.add(this);
+			if (!hooked) {
+				Runtime.getRuntime().addShutdownHook(
+						new Thread("wal-flusher") {
+							public void run() {
+								WriteAheadLog[] logs;
+								synchronized (open) {
+									logs = open.toArray(new WriteAheadLog[0]);
+								} // synchronized
+								for (WriteAheadLog log : logs)
+									log.flush();
+							} // run
+						});
+				hooked = true;
+			} // if
+		} // synchronized
+	} // constructor
+
+	/***************************************************************************
+	 * Replay the records of the log from the given LSN on (e.g., the one of
+	 * the table's checkpoint), cutting the log before the first torn or
+	 * corrupt record (left by a crash), and position the log after the last
+	 * valid one.
+	 *
+	 * @param redo
+	 *            the table to redo the changes in
+	 * @param from
+	 *            the LSN to replay from (0 for the whole log)
+	 * @return the number of records replayed
+	 */
+	synchronized int recover(Redo redo, long from) {
+		ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+		CRC32 check = new CRC32();
+		long valid = from;
+		int n = 0;
+		try {
+			if (from > channel.size()) {
+				out.println("WriteAheadLog.recover: the log ends before the checkpoint");
+				valid = channel.size();
+			} // if
+			channel.position(valid);
+			boolean eof = false;
+			boolean torn = false;
+			while (!eof && !torn) {
+				eof = channel.read(buf) < 0;
+				buf.flip();
+				while (buf.remaining() >= HEADER) {
+					int p = buf.position();
+					int length = buf.getInt(p);
+					if (length < 0 || valid + HEADER + length > channel.size()) {
+						torn = true;
+						break;
+					} // if
+					if (buf.remaining() < HEADER + length) {
+						if (HEADER + length > buf.capacity()) {
+							ByteBuffer larger = ByteBuffer.allocate(HEADER
+									+ length);
+							larger.put(buf).flip();
+							buf = larger;
+						} // if
+						break;
+					} // if
+
+					check.reset();
+					check.update(buf.array(), p + 8, length + 1);
+					if ((int) check.getValue() != buf.getInt(p + 4)) {
+						torn = true;
+						break;
+					} // if
+
+					redo.redo(buf.get(p + 8), buf, p + HEADER);
+					buf.position(p + HEADER + length);
+					valid += HEADER + length;
+					n++;
+				} // while
+				buf.compact();
+			} // while
+
+			if (valid < channel.size()) {
+				out.println("WriteAheadLog.recover: cutting the log at " + valid
+						+ " of " + channel.size() + " bytes");
+				channel.truncate(valid);
+			} // if
+		} catch (IOException e) {
+			System.err.println("There was an error while reading the log");
+			e.printStackTrace();
+		} // try
+
+		appended = written = durable = valid;
+		return n;
+	} // recover
+
+	/***************************************************************************
+	 * Return the LSN of the last record appended.
+	 *
+	 * @return the LSN
+	 */
+	synchronized long lsn() {
+		return appended;
+	} // lsn
+
+	/***************************************************************************
+	 * Append a record holding a tuple (or key) to the log.
+	 *
+	 * @param type
+	 *            the record type
+	 * @param codec
+	 *            the codec (without dictionaries) to encode it with
+	 * @param tup
+	 *            the tuple or key
+	 * @return the LSN of the record, to be passed to commit
+	 */
+	synchronized long append(byte type, TupleCodec codec, Comparable[] tup) {
+		int length = codec.size(tup);
+		if (buffer.remaining() < HEADER + length) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(
+					2 * buffer.capacity(), buffer.position() + HEADER + length));
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		} // if
+
+		int p = buffer.position();
+		buffer.putInt(length);
+		buffer.putInt(0);
+		buffer.put(type);
+		codec.encode(tup, buffer);
+		crc.reset();
+		crc.update(buffer.array(), p + 8, length + 1);
+		buffer.putInt(p + 4, (int) crc.getValue());
+		appended += HEADER + length;
+
+		if (sync == Sync.OFF && buffer.position() >= BUFFER_SIZE && !flushing) {
+			long from = written;
+			ByteBuffer batch = swap();
+			finish(batch, appended, false, write(batch, from, false));
+		} // if
+		return appended;
+	} // append
+
+	/***************************************************************************
+	 * Wait until the record with the given LSN (and all before it) is as
+	 * durable as the sync mode requires. Must not be called while holding the
+	 * table's latch, or the commits could not be grouped.
+	 *
+	 * @param lsn
+	 *            the LSN returned by append
+	 */
+	void commit(long lsn) {
+		if (sync == Sync.OFF)
+			return;
+		boolean force = sync == Sync.FSYNC;
+		long deadline = System.nanoTime() + groupDelay;
+
+		synchronized (this) {
+			waiting++;
+		} // synchronized
+		try {
+			while (true) {
+				ByteBuffer batch;
+				long from, upTo;
+				synchronized (this) {
+					if ((force ? durable : written) >= lsn || failed)
+						return;
+					long left = deadline - System.nanoTime();
+					if (flushing) {
+						wait();
+						continue;
+					} // if
+					if (force && waiting < groupSize && left > 0) {
+						wait(left / 1000000, (int) (left % 1000000));
+						continue;
+					} // if
+					from = written;
+					upTo = appended;
+					batch = swap();
+				} // synchronized
+				finish(batch, upTo, force, write(batch, from, force));
+			} // while
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			synchronized (this) {
+				waiting--;
+			} // synchronized
+		} // try
+	} // commit
+
+	/***************************************************************************
+	 * Write and force all the records appended so far.
+	 */
+	void flush() {
+		ByteBuffer batch;
+		long from, upTo;
+		synchronized (this) {
+			try {
+				while (flushing)
+					wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} // try
+			if (durable == appended || failed)
+				return;
+			from = written;
+			upTo = appended;
+			batch = swap();
+		} // synchronized
+		finish(batch, upTo, true, write(batch, from, true));
+	} // flush
+
+	/***************************************************************************
+	 * Take the buffered records to write them as the leader, swapping in the
+	 * spare buffer, so other writers keep appending meanwhile. The caller
+	 * must hold the monitor.
+	 *
+	 * @return the buffer holding the records
+	 */
+	private ByteBuffer swap() {
+		ByteBuffer batch = buffer;
+		buffer = spare;
+		flushing = true;
+		return batch;
+	} // swap
+
+	/***************************************************************************
+	 * Write a batch of records at the given offset of the log (and force the
+	 * log to disk).
+	 *
+	 * @param batch
+	 *            the buffer holding the records
+	 * @param at
+	 *            the offset to write them at
+	 * @param force
+	 *            whether to force the log to disk
+	 * @return whether the batch was written
+	 */
+	private boolean write(ByteBuffer batch, long at, boolean force) {
+		try {
+			batch.flip();
+			while (batch.hasRemaining())
+				at += channel.write(batch, at);
+			writes++;
+			if (force) {
+				channel.force(false);
+				syncs++;
+			} // if
+			return true;
+		} catch (IOException e) {
+			System.err.println("There was an error while writing to the log");
+			e.printStackTrace();
+			return false;
+		} // try
+	} // write
+
+	/***************************************************************************
+	 * Finish a flush: advance the written (and durable) LSN past the batch,
+	 * recycle its buffer and wake up the waiting commits.
+	 *
+	 * @param batch
+	 *            the buffer holding the records
+	 * @param upTo
+	 *            the LSN of the last record in it
+	 * @param force
+	 *            whether the log was forced to disk
+	 * @param ok
+	 *            whether the batch was written
+	 */
+	private synchronized void finish(ByteBuffer batch, long upTo,
+			boolean force, boolean ok) {
+		batch.clear();
+		spare = batch;
+		if (ok) {
+			written = upTo;
+			if (force)
+				durable = upTo;
+		} // if
+		failed |= !ok;
+		flushing = false;
+		notifyAll();
+	} // finish
+
+	/***************************************************************************
+	 * Return the number of writes and of fsyncs of the log so far.
+	 *
+	 * @return the writes and the fsyncs
+	 */
+	synchronized long[] stats() {
+		return new long[] { writes, syncs };
+	} // stats
+
+	/***************************************************************************
+	 * Flush the log and close it.
+	 */
+	void close() {
+		flush();
+		synchronized (open) {
+			open.remove(this);
+		} // synchronized
+		try {
+			file.close();
+		} catch (IOException e) {
+			System.err.println("There was an error while closing the log");
+			e.printStackTrace();
+		} // try
+	} // close
+
+} // WriteAheadLog class
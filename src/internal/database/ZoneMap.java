@@ -0,0 +1,258 @@
+package internal.database;
+
+/*******************************************************************************
+ * @file  ZoneMap.java
+ *
+ * @author   Sina, Arash, Navid, Sambitesh
+ */
+
+import java.util.Arrays;
+
+/*******************************************************************************
+ * This class keeps the zone map of a table: for each block of BLOCK
+ * consecutive tuples (a batch, see Batch) and each attribute, the smallest and
+ * largest value in the block, as a long for integral attributes (see
+ * TupleCodec.integral), as a double for floating point ones, as a String for
+ * strings and as the code for dictionary encoded ones. The zones are updated
+ * as tuples are added (see add), never shrink, and are only ever too wide
+ * (e.g., after updates), so a block whose zones cannot satisfy a condition
+ * (see mayMatch) can be skipped by a scan without reading its tuples: e.g.,
+ * "age > 70" skips the blocks whose largest age is at most 70. Comparisons
+ * between attributes are not narrowed. Dictionary codes are not ordered like
+ * their strings, so their zones only serve equality tests. A LIKE pattern is
+ * narrowed by its prefix: a block can only hold a string starting with it if
+ * its largest string is not below the prefix and its smallest one is not
+ * past all the strings starting with it.
+ *
+ * Tuples are added by one thread at a time, while scans may check zones
+ * concurrently.
+ */
+@SuppressWarnings("rawtypes")
+class ZoneMap {
+	/**
+	 * The number of tuples per block.
+	 */
+	static final int BLOCK = Batch.SIZE;
+
+	/**
+	 * The type code (see TupleCodec) of each attribute.
+	 */
+	private final byte[] type;
+
+	/**
+	 * The smallest and largest value of each attribute per block (long [],
+	 * double [] or String [] depending on the type).
+	 */
+	private final Object[] lo, hi;
+
+	/**
+	 * The number of tuples summarized.
+	 */
+	private int size = 0;
+
+	/***************************************************************************
+	 * Construct an empty zone map.
+	 *
+	 * @param _type
+	 *            the type codes of the attributes (see TupleCodec.type)
+	 */
+	ZoneMap(byte[] _type) {
+		type = _type.clone();
+		lo = new Object[type.length];
+		hi = new Object[type.length];
+		for (int j = 0; j < type.length; j++) {
+			lo[j] = vector(type[j], 16);
+			hi[j] = vector(type[j], 16);
+		} // for
+	} // constructor
+
+	/***************************************************************************
+	 * Return the number of tuples summarized.
+	 *
+	 * @return the number of tuples
+	 */
+	synchronized int size() {
+		return size;
+	} // size
+
+	/***************************************************************************
+	 * Add the next tuple of the table to the zones of its block.
+	 *
+	 * @param v
+	 *            the view over the tuple
+	 */
+	synchronized void add(TupleView v) {
+		int b = size / BLOCK;
+		boolean first = size % BLOCK == 0;
+		if (first && b == blocks()) {
+			for (int j = 0; j < type.length; j++) {
+				lo[j] = grow(lo[j]);
+				hi[j] = grow(hi[j]);
+			} // for
+		} // if
+
+		for (int j = 0; j < type.length; j++) {
+			byte t = type[j];
+			if (t == TupleCodec.STRING) {
+				String s = (String) v.get(j);
+				String[] l = (String[]) lo[j];
+				String[] h = (String[]) hi[j];
+				if (first || s.compareTo(l[b]) < 0)
+					l[b] = s;
+				if (first || s.compareTo(h[b]) > 0)
+					h[b] = s;
+			} else if (t == TupleCodec.DICT || TupleCodec.integral(t)) {
+				long x = (t == TupleCodec.DICT) ? v.code(j) : v.getLong(j);
+				long[] l = (long[]) lo[j];
+				long[] h = (long[]) hi[j];
+				if (first || x < l[b])
+					l[b] = x;
+				if (first || x > h[b])
+					h[b] = x;
+			} else {
+				double x = v.getDouble(j);
+				double[] l = (double[]) lo[j];
+				double[] h = (double[]) hi[j];
+				if (first || Double.compare(x, l[b]) < 0)
+					l[b] = x;
+				if (first || Double.compare(x, h[b]) > 0)
+					h[b] = x;
+			} // if
+		} // for
+		size++;
+	} // add
+
+	/***************************************************************************
+	 * Return whether any tuple from index from to to - 1 may satisfy the
+	 * condition, i.e., whether the zones of some block overlapping the range
+	 * do not rule it out (tuples not summarized yet are never ruled out).
+	 *
+	 * @param cond
+	 *            the condition
+	 * @param from
+	 *            the index of the first tuple
+	 * @param to
+	 *            the index past the last tuple
+	 * @return false if no tuple in the range satisfies the condition
+	 */
+	synchronized boolean mayMatch(Condition cond, int from, int to) {
+		if (to > size)
+			return true;
+		for (int b = from / BLOCK; b <= (to - 1) / BLOCK; b++) {
+			if (mayMatch(cond, b))
+				return true;
+		} // for
+		return false;
+	} // mayMatch
+
+	/***************************************************************************
+	 * Return whether a tuple of block b may satisfy the condition.
+	 *
+	 * @param c
+	 *            the condition
+	 * @param b
+	 *            the block
+	 * @return false if no tuple of the block satisfies the condition
+	 */
+	private boolean mayMatch(Condition c, int b) {
+		switch (c.kind) {
+		case Condition.AND:
+			return mayMatch(c.left, b) && mayMatch(c.right, b);
+		case Condition.OR:
+			return mayMatch(c.left, b) || mayMatch(c.right, b);
+		case Condition.CONST:
+			return c.constant;
+		case Condition.COL_LONG:
+			return overlaps(c.op, Long.compare(((long[]) lo[c.col])[b],
+					c.longValue), Long.compare(((long[]) hi[c.col])[b],
+					c.longValue));
+		case Condition.COL_DOUBLE:
+			return overlaps(c.op, Double.compare(((double[]) lo[c.col])[b],
+					c.doubleValue), Double.compare(((double[]) hi[c.col])[b],
+					c.doubleValue));
+		case Condition.COL_CODE:
+			if (c.code < 0)
+				return c.op == Condition.NE;
+			return overlaps(c.op, Long.compare(((long[]) lo[c.col])[b],
+					c.code), Long.compare(((long[]) hi[c.col])[b], c.code));
+		case Condition.COL_LIT:
+			if (type[c.col] != TupleCodec.STRING)
+				return true;
+			return overlaps(c.op,
+					((String[]) lo[c.col])[b].compareTo((String) c.value),
+					((String[]) hi[c.col])[b].compareTo((String) c.value));
+		case Condition.COL_LIKE:
+			if (type[c.col] != TupleCodec.STRING || c.prefix.isEmpty())
+				return true;
+			String l = ((String[]) lo[c.col])[b];
+			return ((String[]) hi[c.col])[b].compareTo(c.prefix) >= 0
+					&& (l.compareTo(c.prefix) <= 0 || l.startsWith(c.prefix));
+		default:
+			return true;
+		}
+	} // mayMatch
+
+	/***************************************************************************
+	 * Return whether some value between the smallest and the largest of a
+	 * zone may be op the literal, given how both compare with it.
+	 *
+	 * @param op
+	 *            the comparison operator (see Condition)
+	 * @param cLo
+	 *            the smallest value compared with the literal
+	 * @param cHi
+	 *            the largest value compared with the literal
+	 * @return false if no value of the zone satisfies the comparison
+	 */
+	private static boolean overlaps(int op, int cLo, int cHi) {
+		switch (op) {
+		case Condition.EQ:
+			return cLo <= 0 && cHi >= 0;
+		case Condition.NE:
+			return cLo != 0 || cHi != 0;
+		case Condition.LT:
+			return cLo < 0;
+		case Condition.LE:
+			return cLo <= 0;
+		case Condition.GT:
+			return cHi > 0;
+		default:
+			return cHi >= 0;
+		}
+	} // overlaps
+
+	/***************************************************************************
+	 * Return the number of blocks the zone vectors can hold.
+	 */
+	private int blocks() {
+		Object v = lo[0];
+		if (v instanceof long[])
+			return ((long[]) v).length;
+		if (v instanceof double[])
+			return ((double[]) v).length;
+		return ((String[]) v).length;
+	} // blocks
+
+	/***************************************************************************
+	 * Return a zone vector for the given type with room for n blocks.
+	 */
+	private static Object vector(byte t, int n) {
+		if (t == TupleCodec.STRING)
+			return new String[n];
+		if (t == TupleCodec.DICT || TupleCodec.integral(t))
+			return new long[n];
+		return new double[n];
+	} // vector
+
+	/***************************************************************************
+	 * Return a copy of a zone vector with twice the room.
+	 */
+	private static Object grow(Object v) {
+		if (v instanceof long[])
+			return Arrays.copyOf((long[]) v, 2 * ((long[]) v).length);
+		if (v instanceof double[])
+			return Arrays.copyOf((double[]) v, 2 * ((double[]) v).length);
+		return Arrays.copyOf((String[]) v, 2 * ((String[]) v).length);
+	} // grow
+
+} // ZoneMap class
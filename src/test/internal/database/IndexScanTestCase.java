@@ -0,0 +1,389 @@
+package test.internal.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import internal.database.Table;
+import internal.database.Timestamp;
+
+import org.junit.Test;
+
+@SuppressWarnings("rawtypes")
+public class IndexScanTestCase extends TestCase {
+
+	/***************************************************************************
+	 * Minus, union and joins must give the same tuples with and without the
+	 * Bloom filters
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testBloomFilters() {
+		for (Table.Storage storage : Table.Storage.values()) {
+			Random rand = new Random(1);
+			Table product1 = new Table("product1", new String[] { "ProdId",
+					"ProdName", "Price" }, new Class[] { String.class,
+					String.class, Integer.class }, new String[] { "ProdId" },
+					storage);
+			Table product2 = new Table("product2", new String[] { "ProdId",
+					"ProdName", "Price" }, new Class[] { String.class,
+					String.class, Integer.class }, new String[] { "ProdId" },
+					storage);
+			for (int i = 0; i < 5000; i++) {
+				product1.insert(new Comparable[] { "ProdId" + i, "Name" + i,
+						rand.nextInt(1000) });
+				product2.insert(new Comparable[] { "ProdId" + (i + 4950),
+						"Name" + i, rand.nextInt(1000) });
+			}
+			Table vip = new Table("vip", new String[] { "CustId", "CustName" },
+					new Class[] { Integer.class, String.class },
+					new String[] { "CustId" }, storage);
+			for (int i = 0; i < 500; i += 100)
+				vip.insert(new Comparable[] { i, "Name" + i });
+			Table purchase = new Table("purchase", new String[] { "PurchId",
+					"CustId" }, new Class[] { Integer.class, Integer.class },
+					new String[] { "PurchId" }, storage);
+			for (int i = 0; i < 5000; i++)
+				purchase.insert(new Comparable[] { i, rand.nextInt(500) });
+
+			Table[][] result = new Table[2][];
+			try {
+				for (int z = 0; z < 2; z++) {
+					Table.bloomFilters = z == 1;
+					result[z] = new Table[] { product1.minus(product2),
+							product1.union(product2),
+							product1.index_join("ProdId == ProdId", product2),
+							purchase.join("CustId == CustId", vip) };
+				}
+			} finally {
+				Table.bloomFilters = true;
+			}
+			String[] op = { "minus", "union", "index_join", "join" };
+			for (int k = 0; k < op.length; k++)
+				assertSameTuples(storage + " " + op[k], result[0][k],
+						result[1][k]);
+			assertEquals(storage + " minus", 4950,
+					result[0][0].getTupleCount());
+			assertEquals(storage + " index_join", 50,
+					result[0][2].getTupleCount());
+		}
+	}
+
+	/***************************************************************************
+	 * Select must give the same tuples with and without the zone maps, in
+	 * every execution mode, also after updates widen the zones
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testZoneMaps() {
+		String[] query = {
+				"Timestamp >= '2024-01-05' & Timestamp < '2024-01-06'",
+				"Timestamp < '2024-01-02' & age > 70", "Hits > 990000",
+				"Price <= 1.5", "City == 'City7'", "City like 'City1%'",
+				"age != 40 & Hits < 1000 | VisitId == 19999" };
+		Table.Execution execution = Table.execution;
+		int parallelism = Table.parallelism;
+		for (Table.Storage storage : Table.Storage.values()) {
+			Random rand = new Random(1);
+			long start = Timestamp.parse("2024-01-01");
+			Table visit = new Table("visit", new String[] { "VisitId",
+					"Timestamp", "age", "Hits", "Price", "City" }, new Class[] {
+					Integer.class, Timestamp.class, Integer.class, Long.class,
+					Double.class, String.class }, new String[] { "VisitId" },
+					storage);
+			for (int i = 0; i < 20000; i++)
+				visit.insert(new Comparable[] { i,
+						new Timestamp(start + i * 60000000L),
+						18 + rand.nextInt(60), (long) rand.nextInt(1000000),
+						rand.nextDouble() * 100, "City" + rand.nextInt(50) });
+			for (int i = 0; i < 20000; i += 97)
+				visit.update(new Comparable[] { i,
+						new Timestamp(start + 4 * 86400000000L + i * 1000000L),
+						75, 995000L, 1.0, "City17" });
+
+			try {
+				for (Table.Execution mode : Table.Execution.values()) {
+					for (int p = 1; p <= 2; p++) {
+						Table.execution = mode;
+						Table.parallelism = p;
+						for (String q : query) {
+							Table.zoneMaps = false;
+							Table scan = visit.select(q);
+							Table.zoneMaps = true;
+							assertSameTuples(storage + " " + mode + " " + p
+									+ ": " + q, scan, visit.select(q));
+						}
+					}
+				}
+			} finally {
+				Table.zoneMaps = true;
+				Table.execution = execution;
+				Table.parallelism = parallelism;
+			}
+			assertEquals(storage + " updated tuples", 1440 + 207 - 15,
+					visit.select(query[0]).getTupleCount());
+		}
+	}
+
+	/***************************************************************************
+	 * Select must give the same tuples with and without the bitmap indexes,
+	 * scanning sequentially and in parallel, also after updates and deletes
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testBitmapIndexes() {
+		String[] category = { "Grocery", "Toys", "Books", "Garden", "Music",
+				"Sports", "Shoes", "Beauty", "Games", "Tools" };
+		String[] query = { "sex == 'F' & StoreCategory == 'Grocery'",
+				"StoreCategory == 'Toys' | StoreCategory == 'Books'",
+				"StoreCategory == 'Garden' & Amount > 900",
+				"StoreCategory != 'Tools' & Rating < 3",
+				"Rating >= 4 | sex == 'M' & StoreCategory == 'Games'",
+				"StoreCategory == 'Nothing' | Rating == 9" };
+		int parallelism = Table.parallelism;
+		for (Table.Storage storage : Table.Storage.values()) {
+			Random rand = new Random(1);
+			Table sale = new Table("sale", new String[] { "SaleId", "sex",
+					"StoreCategory", "Rating", "Amount" }, new Class[] {
+					Integer.class, String.class, String.class, Integer.class,
+					Integer.class }, new String[] { "SaleId" }, storage);
+			sale.dictionaryEncode("StoreCategory");
+			sale.bitmapIndex("sex StoreCategory Rating");
+			for (int i = 0; i < 20000; i++)
+				sale.insert(new Comparable[] { i,
+						rand.nextBoolean() ? "M" : "F",
+						category[rand.nextInt(category.length)],
+						1 + rand.nextInt(5), rand.nextInt(1000) });
+			for (int i = 0; i < 20000; i += 89)
+				sale.update(new Comparable[] { i, "F", "Grocery", 5, 950 });
+			for (int i = 1; i < 20000; i += 53)
+				sale.delete(new Comparable[] { i });
+
+			try {
+				for (int p = 1; p <= 2; p++) {
+					Table.parallelism = p;
+					for (String q : query) {
+						Table.bitmapIndexes = false;
+						Table scan = sale.select(q);
+						Table.bitmapIndexes = true;
+						assertSameTuples(storage + " " + p + ": " + q, scan,
+								sale.select(q));
+					}
+				}
+			} finally {
+				Table.bitmapIndexes = true;
+				Table.parallelism = parallelism;
+			}
+		}
+	}
+
+	/***************************************************************************
+	 * Select must give the same tuples with and without the text index, also
+	 * after updates and deletes
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testTextIndexes() {
+		String[] query = { "TextStr contains 'w300'",
+				"TextStr contains 'w1 w2'", "TextStr match 'w400 w401'",
+				"TextStr contains 'W1, w3!'", "TextStr contains 'nothing'",
+				"TextStr match 'nothing w450'", "TextStr contains ''",
+				"TextStr contains 'w5' & tId < 1000 | TextStr match 'w499'" };
+		for (Table.Storage storage : Table.Storage.values()) {
+			Random rand = new Random(1);
+			Table tweet = new Table("tweet", new String[] { "tId", "TextStr" },
+					new Class[] { Integer.class, String.class },
+					new String[] { "tId" }, storage);
+			tweet.textIndex("TextStr");
+			for (int i = 0; i < 5000; i++)
+				tweet.insert(new Comparable[] { i, text(rand) });
+			for (int i = 0; i < 5000; i += 37)
+				tweet.update(new Comparable[] { i, "W300 and W1, w2." });
+			for (int i = 1; i < 5000; i += 41)
+				tweet.delete(new Comparable[] { i });
+
+			try {
+				for (String q : query) {
+					Table.textIndexes = false;
+					Table scan = tweet.select(q);
+					Table.textIndexes = true;
+					assertSameTuples(storage + ": " + q, scan, tweet.select(q));
+				}
+			} finally {
+				Table.textIndexes = true;
+			}
+		}
+	}
+
+	/***************************************************************************
+	 * Return a text of 10 to 30 words drawn from a vocabulary of 500 with a
+	 * skewed distribution
+	 */
+	private static String text(Random rand) {
+		StringBuilder text = new StringBuilder();
+		for (int k = 10 + rand.nextInt(21); k > 0; k--) {
+			int w = (int) Math.pow(500, rand.nextDouble());
+			text.append("w").append(w).append((k > 1) ? " " : ".");
+		}
+		return text.toString();
+	}
+
+	/***************************************************************************
+	 * Select with "like" must give the same tuples with and without the key
+	 * index prefix scans and the trigram index, for every index structure,
+	 * also after updates and deletes
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testLikeIndexes() {
+		String[] brand = { "Acme", "Globex", "Initech", "Umbrella", "Wonka" };
+		String[] product = { "Phone", "Headphones", "Lamp", "Kettle",
+				"Camera" };
+		String[] query = { "bUrl like 'https://x.com/posts/35%'",
+				"bUrl like 'https://x.com/posts/1%/9'",
+				"bUrl like 'https://x.com/posts/7_%'",
+				"bUrl like 'https://x.com/posts/42/42'",
+				"bUrl like 'https://y.com/%'", "ProdName like '%Headphones%'",
+				"ProdName like '%Wonka Kettle%'", "ProdName like 'Acme _amp%'",
+				"ProdName like '%on%'", "ProdName like '%'",
+				"ProdName like '%Nothing%' | bUrl like '%/99%'" };
+		Table.Indexing indexing = Table.indexing;
+		for (Table.Storage storage : Table.Storage.values()) {
+			for (Table.Indexing structure : Table.Indexing.values()) {
+				Table.indexing = structure;
+				Random rand = new Random(1);
+				Table post;
+				try {
+					post = new Table("post", new String[] { "bUrl",
+							"ProdName", "Hits" }, new Class[] { String.class,
+							String.class, Integer.class },
+							new String[] { "bUrl" }, storage);
+				} finally {
+					Table.indexing = indexing;
+				}
+				post.trigramIndex("ProdName");
+				for (int i = 0; i < 5000; i++)
+					post.insert(new Comparable[] {
+							"https://x.com/posts/" + rand.nextInt(1000) + "/"
+									+ i,
+							brand[rand.nextInt(brand.length)] + " "
+									+ product[rand.nextInt(product.length)]
+									+ " " + rand.nextInt(100),
+							rand.nextInt(100000) });
+				post.insert(new Comparable[] { "https://x.com/posts/42/42",
+						"Acme Lamp", 1 });
+				for (Comparable[] tup : post.select("Hits < 5000").tuples)
+					post.update(new Comparable[] { tup[0], "Wonka Kettle", 0 });
+				for (Comparable[] tup : post.select("Hits > 95000").tuples)
+					post.delete(new Comparable[] { tup[0] });
+
+				try {
+					for (String q : query) {
+						Table.likeIndexes = false;
+						Table scan = post.select(q);
+						Table.likeIndexes = true;
+						assertSameTuples(storage + " " + structure + ": " + q,
+								scan, post.select(q));
+					}
+				} finally {
+					Table.likeIndexes = true;
+				}
+			}
+		}
+	}
+
+	/***************************************************************************
+	 * Select with "contains" or "match" on an attribute that is not a String
+	 * must be rejected
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testTextNonString() {
+		Table tweet = new Table("tweet", "tId TextStr", "Integer String", "tId");
+		for (int i = 0; i < 200; i++)
+			tweet.insert(new Comparable[] { i, "w" + i + " w" + (i + 1) });
+
+		for (String q : new String[] { "tId contains '1'", "tId match '1 2'",
+				"TextStr contains 'w1' & tId match '1'" }) {
+			try {
+				tweet.select(q);
+				fail(q + " was not rejected");
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(),
+						e.getMessage().contains("tId is not a String"));
+			}
+		}
+		assertEquals("TextStr contains 'w1'", 2,
+				tweet.select("TextStr contains 'w1'").getTupleCount());
+	}
+
+	/***************************************************************************
+	 * Select with "like" on an attribute that is not a String must be
+	 * rejected, whatever the index structure, and not scan the keys
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testLikeNonString() {
+		Table.Indexing indexing = Table.indexing;
+		for (Table.Indexing structure : Table.Indexing.values()) {
+			Table.indexing = structure;
+			Table item;
+			try {
+				item = new Table("item", "id name", "Integer String", "id");
+			} finally {
+				Table.indexing = indexing;
+			}
+			for (int i = 0; i < 200; i++)
+				item.insert(new Comparable[] { i, "name" + i });
+
+			for (String q : new String[] { "id like '1%'",
+					"name == 'name1' | id like '%'" }) {
+				try {
+					item.select(q);
+					fail(structure + ": " + q + " was not rejected");
+				} catch (IllegalArgumentException e) {
+					assertTrue(structure + ": " + e.getMessage(),
+							e.getMessage().contains("id is not a String"));
+				}
+			}
+			assertEquals(structure + ": name like 'name1%'", 111,
+					item.select("name like 'name1%'").getTupleCount());
+		}
+	}
+
+	/***************************************************************************
+	 * Assert that two tables hold the same tuples, in any order
+	 *
+	 * @param message
+	 *            the operation that built the tables
+	 * @param scan
+	 *            the table built without the index
+	 * @param indexed
+	 *            the table built with the index
+	 */
+	private static void assertSameTuples(String message, Table scan,
+			Table indexed) {
+		assertEquals(message + ": the tuple counts differ",
+				scan.getTupleCount(), indexed.getTupleCount());
+		assertEquals(message + ": the tuples differ", sorted(scan),
+				sorted(indexed));
+	}
+
+	private static List<String> sorted(Table table) {
+		List<String> tuples = new ArrayList<>();
+		for (Comparable[] tup : table.tuples)
+			tuples.add(Arrays.toString(tup));
+		Collections.sort(tuples);
+		return tuples;
+	}
+}
@@ -0,0 +1,139 @@
+package test.internal.database;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+import internal.database.Table;
+import internal.database.WriteAheadLog;
+
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("rawtypes")
+public class RecoveryTestCase extends TestCase {
+
+	static final String NAME = "walrecovery";
+
+	/**
+	 * The tuples the recovered table must hold, by key.
+	 */
+	Map<Integer, Comparable[]> expected;
+
+	/***************************************************************************
+	 * Remove the files left by a previous run, so the table starts empty
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Before
+	public void setUp() throws Exception {
+		new File(NAME + ".wal").delete();
+		new File(NAME + ".ckpt").delete();
+		new File(NAME + ".dat").delete();
+		expected = new TreeMap<>();
+	}
+
+	/***************************************************************************
+	 * Recovery replaying the whole log must rebuild the table
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testRecoverLog() {
+		fill(false);
+		checkRecovered();
+	}
+
+	/***************************************************************************
+	 * Recovery restoring the checkpoint and replaying the log after it must
+	 * rebuild the table
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testRecoverCheckpoint() {
+		fill(true);
+		checkRecovered();
+	}
+
+	/***************************************************************************
+	 * Insert, update and delete tuples of a logged table, optionally taking a
+	 * checkpoint half way, and keep the expected contents
+	 *
+	 * @param checkpoint
+	 *            whether to take a checkpoint between the changes
+	 */
+	private void fill(boolean checkpoint) {
+		Table table = newTable();
+		assertTrue("The table could not be logged!",
+				table.log(WriteAheadLog.Sync.WRITE));
+
+		for (int i = 0; i < 1000; i++)
+			insert(table, new Comparable[] { i, "name" + i, i });
+		for (int i = 0; i < 300; i++)
+			update(table, new Comparable[] { i, "name" + i, -i });
+		for (int i = 900; i < 1000; i++)
+			delete(table, i);
+
+		if (checkpoint)
+			assertTrue("The checkpoint was not taken!", table.checkpoint());
+
+		for (int i = 300; i < 600; i++)
+			update(table, new Comparable[] { i, "renamed" + i, i });
+		for (int i = 0; i < 100; i++)
+			delete(table, i);
+		for (int i = 1000; i < 1100; i++)
+			insert(table, new Comparable[] { i, "name" + i, i });
+		for (int i = 900; i < 950; i++)
+			insert(table, new Comparable[] { i, "again" + i, i });
+	}
+
+	/***************************************************************************
+	 * Recover the table as after a crash and check it holds exactly the
+	 * expected tuples
+	 */
+	private void checkRecovered() {
+		Table recovered = newTable();
+		assertTrue("The table could not be recovered!",
+				recovered.log(WriteAheadLog.Sync.WRITE));
+
+		Table all = recovered.select("'true' == 'true'");
+		assertEquals("The number of recovered tuples is not true",
+				expected.size(), all.getTupleCount());
+		for (Comparable[] tup : all.tuples) {
+			Comparable[] exp = expected.get(tup[0]);
+			assertNotNull("A deleted tuple was recovered: " + tup[0], exp);
+			for (int j = 0; j < exp.length; j++)
+				assertEquals("The recovered tuple " + tup[0]
+						+ " is not true", exp[j], tup[j]);
+		}
+
+		assertEquals("The updated tuples are not recovered", 200,
+				recovered.select("qty < 0").getTupleCount());
+		assertEquals("The deleted tuples are recovered", 0,
+				recovered.select("id < 100").getTupleCount());
+		assertEquals("The reinserted tuples are not recovered", 50,
+				recovered.select("id >= 900 & id < 1000").getTupleCount());
+	}
+
+	private Table newTable() {
+		return new Table(NAME, "id name qty", "Integer String Integer", "id");
+	}
+
+	private void insert(Table table, Comparable[] tup) {
+		assertTrue("The insert was rejected!", table.insert(tup));
+		expected.put((Integer) tup[0], tup);
+	}
+
+	private void update(Table table, Comparable[] tup) {
+		assertTrue("The update was rejected!", table.update(tup));
+		expected.put((Integer) tup[0], tup);
+	}
+
+	private void delete(Table table, int id) {
+		assertTrue("The delete was rejected!",
+				table.delete(new Comparable[] { id }));
+		expected.remove(id);
+	}
+}
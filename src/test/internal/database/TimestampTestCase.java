@@ -0,0 +1,37 @@
+package test.internal.database;
+
+import junit.framework.TestCase;
+import internal.database.Timestamp;
+
+import org.junit.Test;
+
+public class TimestampTestCase extends TestCase {
+
+	/***************************************************************************
+	 * Dates past the end of their month must be rejected, taking leap years
+	 * into account
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testDaysOfMonth() {
+		for (String s : new String[] { "2024-02-31", "2023-02-29",
+				"1900-02-29", "2023-04-31T10:00:00", "2023-06-31",
+				"2023-09-31 00:00:00", "2023-11-31", "2023-01-32" }) {
+			try {
+				Timestamp.parse(s);
+				fail(s + " was not rejected");
+			} catch (NumberFormatException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains(s));
+			}
+		}
+
+		assertEquals("2024-02-29", Timestamp.parse("2024-03-01")
+				- 86400000000L, Timestamp.parse("2024-02-29"));
+		assertEquals("2000-02-29", Timestamp.parse("2000-03-01")
+				- 86400000000L, Timestamp.parse("2000-02-29"));
+		assertEquals("2023-12-31T23:59:59", Timestamp.parse("2024-01-01")
+				- 1000000L, Timestamp.parse("2023-12-31T23:59:59"));
+		assertEquals("1970-01-01", 0, Timestamp.parse("1970-01-01"));
+	}
+}
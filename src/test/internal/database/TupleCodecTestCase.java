@@ -0,0 +1,55 @@
+package test.internal.database;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import internal.database.Table;
+
+import org.junit.Test;
+
+@SuppressWarnings("rawtypes")
+public class TupleCodecTestCase extends TestCase {
+
+	/***************************************************************************
+	 * Packing and unpacking PURCHASE tuples must give them back, including
+	 * long, empty and non-ASCII strings and extreme integers
+	 *
+	 * @author Sina, Arash, Navid, Sambitesh
+	 */
+	@Test
+	public void testRoundTrip() {
+		Table purchase = new Table("purchase",
+				"CustId ProdId StoreId PromoId ShipCatName Feedback Payment Timestamp",
+				"String String String String String Integer Integer String",
+				"CustId ProdId");
+
+		StringBuilder s = new StringBuilder();
+		for (int i = 0; i < 300; i++)
+			s.append((char) ('a' + i % 26));
+		String longStr = s.toString();
+		Comparable[][] tups = {
+				{ longStr, "ProdId" + longStr, "", "PromoId", "ShipCatName",
+						0, -1, "2013-04-18 05:52:26" },
+				{ "Cr\u00e8me br\u00fbl\u00e9e", "\u6771\u4eac",
+						"Stra\u00dfe", "\ud83d\ude00 emoji", longStr + "\u00fc",
+						Integer.MAX_VALUE, Integer.MIN_VALUE,
+						"2013-04-18 05:52:26" } };
+		for (Comparable[] tup : tups)
+			assertTrue("The tuple was not packed/unpacked back: "
+					+ Arrays.toString(tup),
+					Arrays.equals(tup, purchase.unpack(purchase.pack(tup))));
+
+		Random rand = new Random(1);
+		for (int i = 0; i < 1000; i++) {
+			Comparable[] tup = { "CustId" + rand.nextInt(10000),
+					"ProdId" + rand.nextInt(), "StoreId" + rand.nextInt(),
+					"PromoId" + rand.nextInt(2000),
+					"ShipCatName" + rand.nextInt(12), rand.nextInt(6),
+					rand.nextInt(139), "2013-04-18 05:52:26" };
+			assertTrue("The tuple was not packed/unpacked back: "
+					+ Arrays.toString(tup),
+					Arrays.equals(tup, purchase.unpack(purchase.pack(tup))));
+		}
+	}
+}